@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.entity;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * The movement a client reported since the last tick, merged into a single position and rotation <p/> <p>The
+ * movement packets of a client write into the fields of its movement instead of allocating anything, and a later
+ * packet simply overwrites what an earlier one of the same tick reported. Once per tick the server thread takes the
+ * merged movement, see {@link TridentPlayer#tickMovement()}, so a client sending more packets than there are ticks
+ * costs one validation per tick rather than one per packet.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public final class PlayerMovement {
+    static final int POSITION = 1;
+    static final int LOOK = 2;
+    static final int GROUND = 4;
+    // How far, squared, the y coordinate confirming a teleport may be off, the vanilla server allows the same
+    static final double TELEPORT_Y_TOLERANCE = 0.01;
+
+    @GuardedBy("this")
+    int changes;
+    @GuardedBy("this")
+    int packets;
+    @GuardedBy("this")
+    double x;
+    @GuardedBy("this")
+    double y;
+    @GuardedBy("this")
+    double z;
+    @GuardedBy("this")
+    float yaw;
+    @GuardedBy("this")
+    float pitch;
+    @GuardedBy("this")
+    boolean onGround;
+    // Positions reported before the client took a teleport are stale, until it reports the position it was sent
+    @GuardedBy("this")
+    private boolean teleporting;
+    @GuardedBy("this")
+    private double teleportX;
+    @GuardedBy("this")
+    private double teleportY;
+    @GuardedBy("this")
+    private double teleportZ;
+
+    PlayerMovement() {
+    }
+
+    /**
+     * Records the position the client moved to
+     *
+     * @param x        the x coordinate
+     * @param y        the y coordinate of the feet
+     * @param z        the z coordinate
+     * @param onGround whether the client stands on the ground
+     */
+    public synchronized void position(double x, double y, double z, boolean onGround) {
+        if (this.accept(x, y, z)) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.changes |= PlayerMovement.POSITION;
+        }
+        this.onGround = onGround;
+        this.changes |= PlayerMovement.GROUND;
+        this.packets++;
+    }
+
+    /**
+     * Records the rotation the client turned to
+     *
+     * @param yaw      the yaw, in degrees
+     * @param pitch    the pitch, in degrees
+     * @param onGround whether the client stands on the ground
+     */
+    public synchronized void look(float yaw, float pitch, boolean onGround) {
+        this.yaw = yaw;
+        this.pitch = pitch;
+        this.onGround = onGround;
+        this.changes |= PlayerMovement.LOOK | PlayerMovement.GROUND;
+        this.packets++;
+    }
+
+    /**
+     * Records the position and the rotation the client moved and turned to
+     *
+     * @param x        the x coordinate
+     * @param y        the y coordinate of the feet
+     * @param z        the z coordinate
+     * @param yaw      the yaw, in degrees
+     * @param pitch    the pitch, in degrees
+     * @param onGround whether the client stands on the ground
+     */
+    public synchronized void move(double x, double y, double z, float yaw, float pitch, boolean onGround) {
+        if (this.accept(x, y, z)) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.changes |= PlayerMovement.POSITION;
+        }
+        this.yaw = yaw;
+        this.pitch = pitch;
+        this.onGround = onGround;
+        this.changes |= PlayerMovement.LOOK | PlayerMovement.GROUND;
+        this.packets++;
+    }
+
+    /**
+     * Records whether the client stands on the ground, without moving
+     *
+     * @param onGround whether the client stands on the ground
+     */
+    public synchronized void ground(boolean onGround) {
+        this.onGround = onGround;
+        this.changes |= PlayerMovement.GROUND;
+        this.packets++;
+    }
+
+    /**
+     * Drops the positions the client reports until it reports the position it was teleported to, and the position
+     * reported so far
+     *
+     * @param x the x coordinate the client was sent
+     * @param y the y coordinate the client was sent
+     * @param z the z coordinate the client was sent
+     */
+    synchronized void teleported(double x, double y, double z) {
+        this.teleporting = true;
+        this.teleportX = x;
+        this.teleportY = y;
+        this.teleportZ = z;
+        this.changes &= ~PlayerMovement.POSITION;
+    }
+
+    /**
+     * Gets the amount of movement packets merged since the last tick
+     *
+     * @return the merged packet count
+     */
+    public synchronized int getPackets() {
+        return this.packets;
+    }
+
+    @GuardedBy("this")
+    private boolean accept(double x, double y, double z) {
+        if (!this.teleporting)
+            return true;
+
+        // The client confirms a teleport by reporting the position it was sent; it may settle the y coordinate a bit
+        double dy = y - this.teleportY;
+        if (x != this.teleportX || z != this.teleportZ || dy * dy >= PlayerMovement.TELEPORT_Y_TOLERANCE)
+            return false;
+
+        this.teleporting = false;
+        return true;
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.entity;
+
+import net.tridentsdk.server.netty.client.ClientConnection;
+import net.tridentsdk.world.EntityViewTracker;
+import net.tridentsdk.world.TridentWorld;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An entity which lives in a world and is shown to the clients near it <p/> <p>The clients which can see the entity
+ * are kept up to date by the {@link EntityViewTracker} of the world, so sending an update about the entity only touches
+ * its viewers. Subclasses send the packets which show and hide the entity from {@link #onViewerAdded(ClientConnection)}
+ * and {@link #onViewerRemoved(ClientConnection)}.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public class TridentEntity {
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    private final int id = TridentEntity.NEXT_ID.incrementAndGet();
+    private final TridentWorld world;
+    // Read without the lock when broadcasting, changes only when the entity or a viewer crosses a chunk border
+    private final Set<ClientConnection> viewers = new CopyOnWriteArraySet<>();
+
+    @GuardedBy("this")
+    private double x;
+    @GuardedBy("this")
+    private double y;
+    @GuardedBy("this")
+    private double z;
+    @GuardedBy("this")
+    private float yaw;
+    @GuardedBy("this")
+    private float pitch;
+    private volatile boolean spawned;
+
+    /**
+     * Creates an entity, which is not shown to anybody until it is {@link #spawn() spawned}
+     *
+     * @param world the world the entity is in
+     * @param x     the x coordinate
+     * @param y     the y coordinate
+     * @param z     the z coordinate
+     */
+    public TridentEntity(TridentWorld world, double x, double y, double z) {
+        this.world = world;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    /**
+     * Gets the id which identifies the entity to the clients
+     *
+     * @return the entity id
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * Gets the world the entity is in
+     *
+     * @return the world
+     */
+    public TridentWorld getWorld() {
+        return this.world;
+    }
+
+    /**
+     * Gets the x coordinate of the entity
+     *
+     * @return the x coordinate
+     */
+    public synchronized double getX() {
+        return this.x;
+    }
+
+    /**
+     * Gets the y coordinate of the feet of the entity
+     *
+     * @return the y coordinate
+     */
+    public synchronized double getY() {
+        return this.y;
+    }
+
+    /**
+     * Gets the z coordinate of the entity
+     *
+     * @return the z coordinate
+     */
+    public synchronized double getZ() {
+        return this.z;
+    }
+
+    /**
+     * Gets the rotation of the entity around the vertical axis
+     *
+     * @return the yaw in degrees
+     */
+    public synchronized float getYaw() {
+        return this.yaw;
+    }
+
+    /**
+     * Gets the angle the entity looks up or down
+     *
+     * @return the pitch in degrees
+     */
+    public synchronized float getPitch() {
+        return this.pitch;
+    }
+
+    /**
+     * Gets the x coordinate of the chunk the entity is in
+     *
+     * @return the chunk x coordinate
+     */
+    public synchronized int getChunkX() {
+        return (int) Math.floor(this.x) >> 4;
+    }
+
+    /**
+     * Gets the z coordinate of the chunk the entity is in
+     *
+     * @return the chunk z coordinate
+     */
+    public synchronized int getChunkZ() {
+        return (int) Math.floor(this.z) >> 4;
+    }
+
+    /**
+     * Checks if the entity stands on the ground, which its viewers are told along with its movement
+     *
+     * @return {@code true} if the entity is on the ground
+     */
+    public boolean isOnGround() {
+        return false;
+    }
+
+    /**
+     * Moves the entity, updating who can see it if it crossed a chunk border, and sending the move to its viewers at
+     * the end of the tick
+     *
+     * @param x     the new x coordinate
+     * @param y     the new y coordinate
+     * @param z     the new z coordinate
+     * @param yaw   the new yaw, in degrees
+     * @param pitch the new pitch, in degrees
+     */
+    public void setLocation(double x, double y, double z, float yaw, float pitch) {
+        boolean crossed;
+        synchronized (this) {
+            crossed = (int) Math.floor(x) >> 4 != this.getChunkX() || (int) Math.floor(z) >> 4 != this.getChunkZ();
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.yaw = yaw;
+            this.pitch = pitch;
+        }
+
+        if (!this.spawned)
+            return;
+
+        if (crossed)
+            this.world.getEntityTracker().update(this);
+        this.world.getMovementTracker().entityMoved(this);
+    }
+
+    /**
+     * Adds the entity to its world, showing it to the clients which view its chunk
+     */
+    public void spawn() {
+        this.spawned = true;
+        this.world.getEntityTracker().add(this);
+    }
+
+    /**
+     * Removes the entity from its world, hiding it from every viewer
+     */
+    public void remove() {
+        this.spawned = false;
+        this.world.getEntityTracker().remove(this);
+    }
+
+    /**
+     * Checks if the entity is in its world
+     *
+     * @return {@code true} if the entity was spawned and not removed since
+     */
+    public boolean isSpawned() {
+        return this.spawned;
+    }
+
+    /**
+     * Gets the clients which can see the entity, the only clients updates about the entity have to be sent to
+     *
+     * @return the viewers of the entity
+     */
+    public Set<ClientConnection> getViewers() {
+        return Collections.unmodifiableSet(this.viewers);
+    }
+
+    /**
+     * Checks if the client may see the entity at all, e.g. a player does not see itself
+     *
+     * @param viewer the client
+     * @return {@code true} if the client is shown the entity while it views its chunk
+     */
+    protected boolean isVisibleTo(ClientConnection viewer) {
+        return true;
+    }
+
+    /**
+     * Shows the entity to a client, called by the {@link EntityViewTracker}
+     *
+     * @param viewer the client
+     */
+    public void addViewer(ClientConnection viewer) {
+        if (this.isVisibleTo(viewer) && this.viewers.add(viewer))
+            this.onViewerAdded(viewer);
+    }
+
+    /**
+     * Hides the entity from a client, called by the {@link EntityViewTracker}
+     *
+     * @param viewer the client
+     */
+    public void removeViewer(ClientConnection viewer) {
+        if (this.viewers.remove(viewer))
+            this.onViewerRemoved(viewer);
+    }
+
+    /**
+     * Called once a client can see the entity, to send the packets which spawn the entity on the client
+     *
+     * @param viewer the new viewer
+     */
+    protected void onViewerAdded(ClientConnection viewer) {
+    }
+
+    /**
+     * Called once a client can no longer see the entity, to send the packets which destroy the entity on the client
+     *
+     * @param viewer the former viewer
+     */
+    protected void onViewerRemoved(ClientConnection viewer) {
+    }
+}
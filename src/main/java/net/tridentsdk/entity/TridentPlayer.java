@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.entity;
+
+import net.tridentsdk.packets.play.out.PacketPlayOutPlayerPosition;
+import net.tridentsdk.server.netty.client.ClientConnection;
+import net.tridentsdk.world.ChunkStreamer;
+import net.tridentsdk.world.TridentWorld;
+
+/**
+ * The entity of a client which joined the server <p/> <p>The chunks around the player are streamed to its client by
+ * the {@link ChunkStreamer} of its world, which follows the player from chunk to chunk. The movement packets of the
+ * client are merged into its {@link PlayerMovement}, and applied once per tick by {@link #tickMovement()}; a move which
+ * does not pass validation puts the client back where the server thinks it is.</p>
+ *
+ * @author The TridentSDK Team
+ */
+public class TridentPlayer extends TridentEntity {
+    // The furthest a client may move within a tick, squared
+    private static final double MAX_MOVE_SQUARED = 100.0;
+    // Vanilla clients cannot go past the world border there
+    private static final double MAX_COORDINATE = 3.0E7;
+
+    private final ClientConnection connection;
+    private final PlayerMovement movement = new PlayerMovement();
+    private volatile boolean onGround;
+
+    /**
+     * Creates the player of a client, which is shown and streamed chunks once it is {@link #spawn() spawned}
+     *
+     * @param connection the connection of the client
+     * @param world      the world the player is in
+     * @param x          the x coordinate
+     * @param y          the y coordinate of the feet
+     * @param z          the z coordinate
+     */
+    public TridentPlayer(ClientConnection connection, TridentWorld world, double x, double y, double z) {
+        super(world, x, y, z);
+        this.connection = connection;
+    }
+
+    /**
+     * Gets the connection of the client controlling the player
+     *
+     * @return the client connection
+     */
+    public ClientConnection getConnection() {
+        return this.connection;
+    }
+
+    /**
+     * Gets the movement the client reported since the last tick
+     *
+     * @return the merged movement
+     */
+    public PlayerMovement getMovement() {
+        return this.movement;
+    }
+
+    /**
+     * Checks if the client last reported to stand on the ground
+     *
+     * @return {@code true} if the player is on the ground
+     */
+    @Override
+    public boolean isOnGround() {
+        return this.onGround;
+    }
+
+    @Override
+    public void setLocation(double x, double y, double z, float yaw, float pitch) {
+        int chunkX = this.getChunkX();
+        int chunkZ = this.getChunkZ();
+        super.setLocation(x, y, z, yaw, pitch);
+
+        int newX = (int) Math.floor(x) >> 4;
+        int newZ = (int) Math.floor(z) >> 4;
+        if ((newX != chunkX || newZ != chunkZ) && this.isSpawned())
+            this.getWorld().getStreamer().updateView(this.connection, newX, newZ);
+    }
+
+    /**
+     * Moves the player and its client, whatever the client reported before
+     *
+     * @param x     the x coordinate
+     * @param y     the y coordinate of the feet
+     * @param z     the z coordinate
+     * @param yaw   the yaw, in degrees
+     * @param pitch the pitch, in degrees
+     */
+    public void teleport(double x, double y, double z, float yaw, float pitch) {
+        this.setLocation(x, y, z, yaw, pitch);
+        this.movement.teleported(x, y, z);
+        this.connection.sendPacket(new PacketPlayOutPlayerPosition().set(x, y, z, yaw, pitch));
+    }
+
+    @Override
+    public void spawn() {
+        super.spawn();
+        this.getWorld().getStreamer().updateView(this.connection, this.getChunkX(), this.getChunkZ());
+    }
+
+    @Override
+    public void remove() {
+        super.remove();
+        this.getWorld().getStreamer().removeViewer(this.connection);
+    }
+
+    /**
+     * Validates and applies the movement the client reported since the last tick. Called by the server thread.
+     */
+    public void tickMovement() {
+        int changes;
+        double x;
+        double y;
+        double z;
+        float yaw;
+        float pitch;
+        boolean onGround;
+        int packets;
+        synchronized (this.movement) {
+            changes = this.movement.changes;
+            if (changes == 0)
+                return;
+
+            x = this.movement.x;
+            y = this.movement.y;
+            z = this.movement.z;
+            yaw = this.movement.yaw;
+            pitch = this.movement.pitch;
+            onGround = this.movement.onGround;
+            packets = this.movement.packets;
+            this.movement.changes = 0;
+            this.movement.packets = 0;
+        }
+
+        if ((changes & PlayerMovement.GROUND) != 0)
+            this.onGround = onGround;
+        if ((changes & (PlayerMovement.POSITION | PlayerMovement.LOOK)) == 0)
+            return;
+
+        if ((changes & PlayerMovement.LOOK) == 0) {
+            yaw = this.getYaw();
+            pitch = this.getPitch();
+        }
+
+        if ((changes & PlayerMovement.POSITION) == 0) {
+            x = this.getX();
+            y = this.getY();
+            z = this.getZ();
+        } else if (!this.isValidMove(x, y, z, packets)) {
+            this.teleport(this.getX(), this.getY(), this.getZ(), yaw, pitch);
+            return;
+        }
+
+        this.setLocation(x, y, z, yaw, pitch);
+    }
+
+    /**
+     * Checks if the player may move from where it is to the position the client reported, neither too far nor through
+     * blocks, see {@link net.tridentsdk.world.collision.MovementValidator}
+     *
+     * @param x       the reported x coordinate
+     * @param y       the reported y coordinate of the feet
+     * @param z       the reported z coordinate
+     * @param packets how many movement packets were merged into the move
+     * @return {@code true} to accept the move, {@code false} to put the client back
+     */
+    protected boolean isValidMove(double x, double y, double z, int packets) {
+        if (Double.isNaN(x) || Double.isNaN(y) || Double.isNaN(z) ||
+                Math.abs(x) > TridentPlayer.MAX_COORDINATE || Math.abs(z) > TridentPlayer.MAX_COORDINATE ||
+                Math.abs(y) > TridentPlayer.MAX_COORDINATE)
+            return false;
+
+        double fromX = this.getX();
+        double fromY = this.getY();
+        double fromZ = this.getZ();
+        double dx = x - fromX;
+        double dy = y - fromY;
+        double dz = z - fromZ;
+        if (dx * dx + dy * dy + dz * dz > TridentPlayer.MAX_MOVE_SQUARED)
+            return false;
+
+        return this.getWorld().getMovementValidator().isValid(fromX, fromY, fromZ, x, y, z, this.onGround,
+                                                              packets);
+    }
+
+    @Override
+    protected boolean isVisibleTo(ClientConnection viewer) {
+        return viewer != this.connection;
+    }
+}
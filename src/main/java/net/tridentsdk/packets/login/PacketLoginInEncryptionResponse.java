@@ -113,6 +113,7 @@ public class PacketLoginInEncryptionResponse extends InPacket {
         packet.setName(name);
 
         connection.sendPacket(packet);
+        connection.setName(name);
         connection.setStage(Protocol.ClientStage.PLAY);
         LoginManager.getInstance().finish(connection.getAddress());
     }
@@ -28,12 +28,21 @@
 package net.tridentsdk.packets.play.in;
 
 import io.netty.buffer.ByteBuf;
+import net.tridentsdk.packets.play.out.PacketPlayOutChat;
 import net.tridentsdk.server.netty.Codec;
 import net.tridentsdk.server.netty.client.ClientConnection;
 import net.tridentsdk.server.netty.packet.InPacket;
 import net.tridentsdk.server.netty.packet.Packet;
+import net.tridentsdk.server.netty.protocol.Protocol;
+
+import java.util.Collection;
+import java.util.Iterator;
 
 public class PacketPlayInChat extends InPacket {
+    /**
+     * The longest message a vanilla client sends, in characters
+     */
+    public static final int MAX_LENGTH = 100;
 
     private String message;
 
@@ -53,7 +62,26 @@ public class PacketPlayInChat extends InPacket {
         return this.message;
     }
 
+    /**
+     * Shows the message to every client in the play stage, encoded once for all of them <p/> <p>The message is
+     * prefixed with the name of its sender like vanilla chat, {@code <name> message}. A message longer than
+     * {@link #MAX_LENGTH} cannot come from a vanilla client, it disconnects the client like the vanilla server
+     * does.</p>
+     */
     @Override
     public void handleReceived(ClientConnection connection) {
+        if (this.message.length() > PacketPlayInChat.MAX_LENGTH) {
+            connection.logout();
+            return;
+        }
+
+        Collection<ClientConnection> recipients = ClientConnection.getConnections();
+        for (Iterator<ClientConnection> iterator = recipients.iterator(); iterator.hasNext(); ) {
+            if (iterator.next().getStage() != Protocol.ClientStage.PLAY)
+                iterator.remove();
+        }
+
+        String text = "<" + connection.getName() + "> " + this.message;
+        ClientConnection.broadcast(recipients, new PacketPlayOutChat().setText(text, PacketPlayOutChat.CHAT));
     }
 }
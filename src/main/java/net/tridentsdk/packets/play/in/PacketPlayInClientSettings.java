@@ -61,6 +61,7 @@ public class PacketPlayInClientSettings extends InPacket {
 
     @Override
     public void handleReceived(ClientConnection connection) {
-        // TODO: Act accordingly
+        // TODO: Locale and chat settings
+        connection.setViewDistance(this.viewDistance);
     }
 }
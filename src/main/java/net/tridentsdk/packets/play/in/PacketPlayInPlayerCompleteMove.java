@@ -28,10 +28,15 @@
 package net.tridentsdk.packets.play.in;
 
 import io.netty.buffer.ByteBuf;
-import net.tridentsdk.api.Location;
+import net.tridentsdk.entity.TridentPlayer;
 import net.tridentsdk.server.netty.client.ClientConnection;
 import net.tridentsdk.server.netty.packet.Packet;
 
+/**
+ * Sent by the client when it moved and turned at once
+ *
+ * @author The TridentSDK Team
+ */
 public class PacketPlayInPlayerCompleteMove extends PacketPlayInPlayerMove {
 
     private float newYaw;
@@ -44,11 +49,9 @@ public class PacketPlayInPlayerCompleteMove extends PacketPlayInPlayerMove {
 
     @Override
     public Packet decode(ByteBuf buf) {
-        double x = buf.readDouble();
-        double y = buf.readDouble();
-        double z = buf.readDouble();
-
-        super.location = new Location(null, x, y, z); // TODO: Get the player's world
+        super.x = buf.readDouble();
+        super.y = buf.readDouble();
+        super.z = buf.readDouble();
 
         this.newYaw = buf.readFloat();
         this.newPitch = buf.readFloat();
@@ -57,8 +60,18 @@ public class PacketPlayInPlayerCompleteMove extends PacketPlayInPlayerMove {
         return this;
     }
 
+    public float getYaw() {
+        return this.newYaw;
+    }
+
+    public float getPitch() {
+        return this.newPitch;
+    }
+
     @Override
     public void handleReceived(ClientConnection connection) {
-        // TODO: Act accordingly
+        TridentPlayer player = connection.getPlayer();
+        if (player != null)
+            player.getMovement().move(super.x, super.y, super.z, this.newYaw, this.newPitch, super.onGround);
     }
 }
@@ -28,6 +28,7 @@
 package net.tridentsdk.packets.play.in;
 
 import io.netty.buffer.ByteBuf;
+import net.tridentsdk.entity.TridentPlayer;
 import net.tridentsdk.server.netty.client.ClientConnection;
 import net.tridentsdk.server.netty.packet.InPacket;
 import net.tridentsdk.server.netty.packet.Packet;
@@ -54,6 +55,8 @@ public class PacketPlayInPlayerFall extends InPacket {
 
     @Override
     public void handleReceived(ClientConnection connection) {
-        // TODO: Update the player's data
+        TridentPlayer player = connection.getPlayer();
+        if (player != null)
+            player.getMovement().ground(this.onGround);
     }
 }
@@ -28,6 +28,7 @@
 package net.tridentsdk.packets.play.in;
 
 import io.netty.buffer.ByteBuf;
+import net.tridentsdk.entity.TridentPlayer;
 import net.tridentsdk.server.netty.client.ClientConnection;
 import net.tridentsdk.server.netty.packet.InPacket;
 import net.tridentsdk.server.netty.packet.Packet;
@@ -53,8 +54,22 @@ public class PacketPlayInPlayerLook extends InPacket {
         return this;
     }
 
+    public float getYaw() {
+        return this.newYaw;
+    }
+
+    public float getPitch() {
+        return this.newPitch;
+    }
+
+    public boolean isOnGround() {
+        return this.onGround;
+    }
+
     @Override
     public void handleReceived(ClientConnection connection) {
-        // TODO: Update values
+        TridentPlayer player = connection.getPlayer();
+        if (player != null)
+            player.getMovement().look(this.newYaw, this.newPitch, this.onGround);
     }
 }
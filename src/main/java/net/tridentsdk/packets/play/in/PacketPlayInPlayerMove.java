@@ -28,14 +28,23 @@
 package net.tridentsdk.packets.play.in;
 
 import io.netty.buffer.ByteBuf;
-import net.tridentsdk.api.Location;
+import net.tridentsdk.entity.TridentPlayer;
 import net.tridentsdk.server.netty.client.ClientConnection;
 import net.tridentsdk.server.netty.packet.InPacket;
 import net.tridentsdk.server.netty.packet.Packet;
 
+/**
+ * Sent by the client when it moved <p/> <p>The position is merged into the {@link
+ * net.tridentsdk.entity.PlayerMovement} of the player, so only the last position of a tick is validated and
+ * applied.</p>
+ *
+ * @author The TridentSDK Team
+ */
 public class PacketPlayInPlayerMove extends InPacket {
 
-    protected Location location;
+    protected double x;
+    protected double y;
+    protected double z;
     protected boolean onGround;
 
     @Override
@@ -45,19 +54,29 @@ public class PacketPlayInPlayerMove extends InPacket {
 
     @Override
     public Packet decode(ByteBuf buf) {
-        double x = buf.readDouble();
-        double y = buf.readDouble();
-        double z = buf.readDouble();
-
-        this.location = new Location(null, x, y, z); // TODO: Get the player's world
-
+        this.x = buf.readDouble();
+        this.y = buf.readDouble();
+        this.z = buf.readDouble();
         this.onGround = buf.readBoolean();
 
         return this;
     }
 
-    public Location getLocation() {
-        return this.location;
+    public double getX() {
+        return this.x;
+    }
+
+    /**
+     * Gets the y coordinate of the feet of the player
+     *
+     * @return the feet y coordinate
+     */
+    public double getY() {
+        return this.y;
+    }
+
+    public double getZ() {
+        return this.z;
     }
 
     public boolean isOnGround() {
@@ -66,6 +85,8 @@ public class PacketPlayInPlayerMove extends InPacket {
 
     @Override
     public void handleReceived(ClientConnection connection) {
-        // TODO: Act accordingly
+        TridentPlayer player = connection.getPlayer();
+        if (player != null)
+            player.getMovement().position(this.x, this.y, this.z, this.onGround);
     }
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.packets.play.out;
+
+import io.netty.buffer.ByteBuf;
+import net.tridentsdk.server.netty.Codec;
+import net.tridentsdk.server.netty.packet.OutPacket;
+import net.tridentsdk.world.BlockState;
+
+/**
+ * Changes a single block the client has loaded
+ *
+ * @author The TridentSDK Team
+ */
+public class PacketPlayOutBlockChange extends OutPacket {
+    private int x;
+    private int y;
+    private int z;
+    private int state;
+
+    @Override
+    public int getId() {
+        return 0x23;
+    }
+
+    /**
+     * Sets the block to change
+     *
+     * @param x     the block x coordinate
+     * @param y     the block y coordinate
+     * @param z     the block z coordinate
+     * @param state the new state of the block, see {@link BlockState}
+     * @return this packet
+     */
+    public PacketPlayOutBlockChange set(int x, int y, int z, int state) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.state = state;
+        return this;
+    }
+
+    @Override
+    public void encode(ByteBuf buf) {
+        buf.writeLong(((long) this.x & 0x3FFFFFFL) << 38 | ((long) this.y & 0xFFFL) << 26 |
+                              (long) this.z & 0x3FFFFFFL);
+        Codec.writeVarInt32(buf, this.state);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.packets.play.out;
+
+import io.netty.buffer.ByteBuf;
+import net.tridentsdk.server.netty.Codec;
+import net.tridentsdk.server.netty.packet.OutPacket;
+
+/**
+ * Shows a message in the chat of the client
+ *
+ * @author The TridentSDK Team
+ */
+public class PacketPlayOutChat extends OutPacket {
+    /**
+     * Shown in the chat box
+     */
+    public static final int CHAT = 0;
+    /**
+     * Shown in the chat box, unless the client only shows system messages
+     */
+    public static final int SYSTEM = 1;
+    /**
+     * Shown above the hot bar
+     */
+    public static final int ACTION_BAR = 2;
+
+    private String jsonMessage;
+    private int position;
+
+    @Override
+    public int getId() {
+        return 0x02;
+    }
+
+    /**
+     * Sets the message as a JSON chat component
+     *
+     * @param jsonMessage the JSON of the message
+     * @param position    where the message is shown, e.g. {@link #CHAT}
+     * @return this packet
+     */
+    public PacketPlayOutChat set(String jsonMessage, int position) {
+        this.jsonMessage = jsonMessage;
+        this.position = position;
+        return this;
+    }
+
+    /**
+     * Sets the message as plain text
+     *
+     * @param text     the text of the message
+     * @param position where the message is shown, e.g. {@link #CHAT}
+     * @return this packet
+     */
+    public PacketPlayOutChat setText(String text, int position) {
+        StringBuilder json = new StringBuilder(text.length() + 12).append("{\"text\":\"");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\')
+                json.append('\\').append(c);
+            else if (c < 0x20)
+                json.append(String.format("\\u%04x", (int) c));
+            else
+                json.append(c);
+        }
+        return this.set(json.append("\"}").toString(), position);
+    }
+
+    @Override
+    public void encode(ByteBuf buf) {
+        Codec.writeString(buf, this.jsonMessage);
+        buf.writeByte(this.position);
+    }
+}
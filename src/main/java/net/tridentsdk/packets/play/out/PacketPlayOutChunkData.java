@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.packets.play.out;
+
+import io.netty.buffer.ByteBuf;
+import net.tridentsdk.server.netty.Codec;
+import net.tridentsdk.server.netty.packet.OutPacket;
+import net.tridentsdk.server.netty.packet.PacketType;
+import net.tridentsdk.world.ChunkSection;
+import net.tridentsdk.world.TridentChunk;
+
+import java.util.Arrays;
+
+/**
+ * Sends the blocks and light of a chunk column <p/> <p>Every section which is not all air is sent as its block states,
+ * two bytes each in little endian order, followed by the block light and the sky light of every section, and the
+ * biomes of the column.</p> <p/> <p>A packet made by {@link #setSections(TridentChunk, int)} only replaces some
+ * sections of a column the client has loaded already, and leaves out the biomes.</p>
+ *
+ * @author The TridentSDK Team
+ */
+public class PacketPlayOutChunkData extends OutPacket {
+    private static final int BLOCKS = 16 * 16 * 16;
+    private static final int BIOMES = 16 * 16;
+
+    private int chunkX;
+    private int chunkZ;
+    private int mask;
+    private boolean continuous;
+    private byte[] data;
+
+    @Override
+    public int getId() {
+        return 0x21;
+    }
+
+    @Override
+    public PacketType getType() {
+        return PacketType.OUT;
+    }
+
+    /**
+     * Copies the sections of the chunk into the packet
+     *
+     * @param chunk the chunk to send
+     * @return this packet
+     */
+    public PacketPlayOutChunkData setChunk(TridentChunk chunk) {
+        return this.copy(chunk, 0xFFFF, true);
+    }
+
+    /**
+     * Copies some sections of the chunk into the packet, to resend them to a client which has the chunk loaded
+     *
+     * @param chunk    the chunk to send
+     * @param sections the sections to send, a bit for each with the bottom section being the lowest bit
+     * @return this packet
+     */
+    public PacketPlayOutChunkData setSections(TridentChunk chunk, int sections) {
+        return this.copy(chunk, sections, false);
+    }
+
+    /**
+     * Makes the packet unload a column on the client, which is a continuous column without any section
+     *
+     * @param x the chunk x coordinate
+     * @param z the chunk z coordinate
+     * @return this packet
+     */
+    public PacketPlayOutChunkData setUnload(int x, int z) {
+        this.chunkX = x;
+        this.chunkZ = z;
+        this.continuous = true;
+        this.mask = 0;
+        this.data = new byte[0];
+        return this;
+    }
+
+    private PacketPlayOutChunkData copy(TridentChunk chunk, int include, boolean continuous) {
+        this.chunkX = chunk.getX();
+        this.chunkZ = chunk.getZ();
+        this.continuous = continuous;
+
+        ChunkSection[] sections = new ChunkSection[TridentChunk.SECTIONS];
+        int count = 0;
+        this.mask = 0;
+        for (int i = 0; i < TridentChunk.SECTIONS; i++) {
+            ChunkSection section = chunk.getSection(i);
+            if (section == null || (include & 1 << i) == 0)
+                continue;
+
+            sections[count++] = section;
+            this.mask |= 1 << i;
+        }
+
+        int biomesLength = continuous ? PacketPlayOutChunkData.BIOMES : 0;
+        byte[] data = new byte[count * (PacketPlayOutChunkData.BLOCKS * 3) + biomesLength];
+        int[] states = new int[PacketPlayOutChunkData.BLOCKS];
+        byte[] blockLight = new byte[PacketPlayOutChunkData.BLOCKS / 2];
+        byte[] skyLight = new byte[PacketPlayOutChunkData.BLOCKS / 2];
+
+        int blocksAt = 0;
+        int blockLightAt = count * PacketPlayOutChunkData.BLOCKS * 2;
+        int skyLightAt = blockLightAt + count * blockLight.length;
+        for (int i = 0; i < count; i++) {
+            sections[i].copyStates(states);
+            for (int state : states) {
+                data[blocksAt++] = (byte) state;
+                data[blocksAt++] = (byte) (state >>> 8);
+            }
+
+            // A section released meanwhile copies nothing, don't repeat the light of the one before
+            Arrays.fill(blockLight, (byte) 0);
+            Arrays.fill(skyLight, (byte) 0);
+            sections[i].copyLight(blockLight, skyLight);
+            System.arraycopy(blockLight, 0, data, blockLightAt, blockLight.length);
+            System.arraycopy(skyLight, 0, data, skyLightAt, skyLight.length);
+            blockLightAt += blockLight.length;
+            skyLightAt += skyLight.length;
+        }
+
+        if (continuous) {
+            byte[] biomes = new byte[PacketPlayOutChunkData.BIOMES];
+            chunk.copyBiomes(biomes);
+            System.arraycopy(biomes, 0, data, skyLightAt, biomes.length);
+        }
+
+        this.data = data;
+        return this;
+    }
+
+    @Override
+    public void encode(ByteBuf buf) {
+        buf.writeInt(this.chunkX);
+        buf.writeInt(this.chunkZ);
+        buf.writeBoolean(this.continuous); // Ground-up continuous, the whole column is sent
+        buf.writeShort(this.mask);
+
+        Codec.writeVarInt32(buf, this.data.length);
+        buf.writeBytes(this.data);
+    }
+}
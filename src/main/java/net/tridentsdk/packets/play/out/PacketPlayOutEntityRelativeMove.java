@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.packets.play.out;
+
+import io.netty.buffer.ByteBuf;
+import net.tridentsdk.server.netty.Codec;
+import net.tridentsdk.server.netty.packet.OutPacket;
+
+/**
+ * Moves an entity by less than four blocks along every axis, relative to where the client last saw it
+ *
+ * @author The TridentSDK Team
+ */
+public class PacketPlayOutEntityRelativeMove extends OutPacket {
+    private int entityId;
+    private int dx;
+    private int dy;
+    private int dz;
+    private boolean onGround;
+
+    @Override
+    public int getId() {
+        return 0x15;
+    }
+
+    /**
+     * Sets the entity and the distance it moved
+     *
+     * @param entityId the id of the entity
+     * @param dx       the distance moved along the x axis, in 32ths of a block
+     * @param dy       the distance moved along the y axis, in 32ths of a block
+     * @param dz       the distance moved along the z axis, in 32ths of a block
+     * @param onGround whether the entity stands on the ground
+     * @return this packet
+     */
+    public PacketPlayOutEntityRelativeMove set(int entityId, int dx, int dy, int dz, boolean onGround) {
+        this.entityId = entityId;
+        this.dx = dx;
+        this.dy = dy;
+        this.dz = dz;
+        this.onGround = onGround;
+        return this;
+    }
+
+    @Override
+    public void encode(ByteBuf buf) {
+        Codec.writeVarInt32(buf, this.entityId);
+        buf.writeByte(this.dx);
+        buf.writeByte(this.dy);
+        buf.writeByte(this.dz);
+        buf.writeBoolean(this.onGround);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.packets.play.out;
+
+import io.netty.buffer.ByteBuf;
+import net.tridentsdk.server.netty.Codec;
+import net.tridentsdk.server.netty.packet.OutPacket;
+import net.tridentsdk.world.BlockState;
+
+/**
+ * Changes several blocks of a single chunk column at once <p/> <p>Every record is the position of the block in the
+ * chunk, the column as {@code x << 4 | z} and the height, followed by the new block state.</p>
+ *
+ * @author The TridentSDK Team
+ */
+public class PacketPlayOutMultiBlockChange extends OutPacket {
+    private int chunkX;
+    private int chunkZ;
+    private int count;
+    private short[] positions = new short[0];
+    private int[] states = new int[0];
+
+    @Override
+    public int getId() {
+        return 0x22;
+    }
+
+    /**
+     * Sets the chunk whose blocks change, and drops the records added so far
+     *
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @param blocks the amount of records which are going to be added
+     * @return this packet
+     */
+    public PacketPlayOutMultiBlockChange setChunk(int chunkX, int chunkZ, int blocks) {
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.count = 0;
+        if (this.positions.length < blocks) {
+            this.positions = new short[blocks];
+            this.states = new int[blocks];
+        }
+        return this;
+    }
+
+    /**
+     * Adds a changed block, which must lie in the chunk
+     *
+     * @param x     the x coordinate in the chunk, 0 to 15
+     * @param y     the y coordinate, 0 to 255
+     * @param z     the z coordinate in the chunk, 0 to 15
+     * @param state the new state of the block, see {@link BlockState}
+     * @return this packet
+     */
+    public PacketPlayOutMultiBlockChange add(int x, int y, int z, int state) {
+        if (this.count == this.positions.length) {
+            int length = Math.max(16, this.count << 1);
+            short[] positions = new short[length];
+            int[] states = new int[length];
+            System.arraycopy(this.positions, 0, positions, 0, this.count);
+            System.arraycopy(this.states, 0, states, 0, this.count);
+            this.positions = positions;
+            this.states = states;
+        }
+
+        this.positions[this.count] = (short) ((x & 15) << 12 | (z & 15) << 8 | y & 0xFF);
+        this.states[this.count++] = state;
+        return this;
+    }
+
+    /**
+     * Gets the amount of changed blocks added to the packet
+     *
+     * @return the record count
+     */
+    public int getCount() {
+        return this.count;
+    }
+
+    @Override
+    public void encode(ByteBuf buf) {
+        buf.writeInt(this.chunkX);
+        buf.writeInt(this.chunkZ);
+        Codec.writeVarInt32(buf, this.count);
+
+        for (int i = 0; i < this.count; i++) {
+            buf.writeShort(this.positions[i]);
+            Codec.writeVarInt32(buf, this.states[i]);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.server;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.*;
+
+/**
+ * Records how long each stage of the shutdown took and what it had to abandon to meet its deadline
+ *
+ * @author The TridentSDK Team
+ */
+@NotThreadSafe
+public final class ShutdownReport {
+    private final Map<ShutdownStage, Long> durations = new EnumMap<>(ShutdownStage.class);
+    private final Map<ShutdownStage, List<String>> abandoned = new EnumMap<>(ShutdownStage.class);
+
+    void record(ShutdownStage stage, long duration, List<String> abandoned) {
+        this.durations.put(stage, Long.valueOf(duration));
+        this.abandoned.put(stage, Collections.unmodifiableList(new ArrayList<>(abandoned)));
+    }
+
+    /**
+     * Gets how long the stage took to run
+     *
+     * @param stage the stage to lookup
+     * @return the duration in milliseconds, or {@code -1} if the stage did not run
+     */
+    public long getDuration(ShutdownStage stage) {
+        Long duration = this.durations.get(stage);
+        return duration == null ? -1L : duration.longValue();
+    }
+
+    /**
+     * Gets the work the stage did not finish before its deadline
+     *
+     * @param stage the stage to lookup
+     * @return a description of each piece of abandoned work
+     */
+    public List<String> getAbandoned(ShutdownStage stage) {
+        List<String> list = this.abandoned.get(stage);
+        return list == null ? Collections.<String>emptyList() : list;
+    }
+
+    /**
+     * Checks if every stage finished all of its work in time
+     *
+     * @return {@code true} if nothing was abandoned
+     */
+    public boolean isClean() {
+        for (List<String> list : this.abandoned.values())
+            if (!list.isEmpty())
+                return false;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Shutdown report:");
+        for (Map.Entry<ShutdownStage, Long> entry : this.durations.entrySet()) {
+            builder.append("\n  ").append(entry.getKey()).append(": ").append(entry.getValue()).append("ms");
+
+            for (String work : this.getAbandoned(entry.getKey()))
+                builder.append("\n    abandoned ").append(work);
+        }
+        return builder.toString();
+    }
+}
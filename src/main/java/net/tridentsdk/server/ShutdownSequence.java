@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.server;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.EventLoopGroup;
+import net.tridentsdk.api.Trident;
+import net.tridentsdk.server.netty.client.ClientConnection;
+import net.tridentsdk.server.threads.BackgroundTaskExecutor;
+import net.tridentsdk.server.threads.ThreadsManager;
+import net.tridentsdk.world.TridentWorld;
+import net.tridentsdk.world.TridentWorldLoader;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs the {@link ShutdownStage}s in order, giving each stage its configured deadline <p/> <p>A stage which runs out
+ * of time abandons its remaining work and lets the next stage start, so the shutdown as a whole always finishes. What
+ * was abandoned is collected in the {@link ShutdownReport}.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@NotThreadSafe
+final class ShutdownSequence {
+    private final TridentConfig config;
+    private final Channel serverChannel;
+    private final EventLoopGroup[] eventLoops;
+    private final ShutdownReport report = new ShutdownReport();
+
+    /**
+     * Prepares the shutdown of the server
+     *
+     * @param config        the configuration to read stage deadlines from, {@code null} to use the defaults
+     * @param serverChannel the channel accepting connections, {@code null} if it was never bound
+     * @param eventLoops    the netty event loops to shut down last
+     */
+    ShutdownSequence(TridentConfig config, Channel serverChannel, EventLoopGroup... eventLoops) {
+        this.config = config;
+        this.serverChannel = serverChannel;
+        this.eventLoops = eventLoops;
+    }
+
+    /**
+     * Runs every stage of the shutdown
+     *
+     * @return what each stage took and abandoned
+     */
+    ShutdownReport run() {
+        for (ShutdownStage stage : ShutdownStage.values()) {
+            long timeout = this.config == null ? stage.getDefaultDeadline() : this.config.getShutdownDeadline(stage);
+            List<String> abandoned = new ArrayList<>();
+            long start = System.nanoTime();
+
+            try {
+                this.runStage(stage, timeout, abandoned);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                abandoned.add("the rest of the stage after " + e);
+            }
+
+            this.report.record(stage, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), abandoned);
+        }
+
+        return this.report;
+    }
+
+    private void runStage(ShutdownStage stage, long timeout, List<String> abandoned) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        switch (stage) {
+            case STOP_ACCEPTING:
+                this.stopAccepting(timeout, abandoned);
+                break;
+
+            case DRAIN_PLAYERS:
+                int pending = ThreadsManager.drainPlayers(timeout);
+                if (pending != 0)
+                    abandoned.add((pending < 0 ? "unknown amount of" : String.valueOf(pending)) +
+                                          " tasks queued on player handlers");
+                break;
+
+            case FLUSH_OUTBOUND:
+                this.flushConnections(deadline, abandoned);
+                break;
+
+            case SAVE_WORLDS:
+                this.saveWorlds(deadline, abandoned);
+                break;
+
+            case STOP_THREADS:
+                this.stopThreads(deadline, abandoned);
+                break;
+        }
+    }
+
+    private void stopAccepting(long timeout, List<String> abandoned) {
+        if (this.serverChannel == null)
+            return;
+
+        if (!this.serverChannel.close().awaitUninterruptibly(timeout))
+            abandoned.add("closing the server socket");
+    }
+
+    private void flushConnections(long deadline, List<String> abandoned) {
+        Collection<ClientConnection> connections = ClientConnection.getConnections();
+
+        // Closing once an empty write completes makes sure every write before it made it out
+        for (ClientConnection connection : connections)
+            connection.getChannel().writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+
+        int unflushed = 0;
+        for (ClientConnection connection : connections) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (!connection.getChannel().closeFuture().awaitUninterruptibly(Math.max(0L, remaining))) {
+                connection.getChannel().close();
+                unflushed++;
+            }
+        }
+
+        if (unflushed > 0)
+            abandoned.add("pending packets of " + unflushed + " connections");
+    }
+
+    private void saveWorlds(long deadline, List<String> abandoned) {
+        Map<TridentWorld, FutureTask<Void>> saves = new HashMap<>();
+
+        for (final TridentWorld world : TridentWorldLoader.getLoadedWorlds()) {
+            FutureTask<Void> save = new FutureTask<>(new Runnable() {
+                @Override public void run() {
+                    world.getLoader().save(world);
+                }
+            }, null);
+
+            saves.put(world, save);
+            BackgroundTaskExecutor.execute(save, BackgroundTaskExecutor.Lane.IO);
+        }
+
+        for (Map.Entry<TridentWorld, FutureTask<Void>> entry : saves.entrySet()) {
+            try {
+                entry.getValue().get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                entry.getValue().cancel(true);
+                abandoned.add("saving world " + entry.getKey().getName());
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+                abandoned.add("saving world " + entry.getKey().getName() + " (failed)");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abandoned.add("saving world " + entry.getKey().getName() + " (interrupted)");
+            }
+        }
+
+        // Nothing writes to the region files past this point, so their headers are forced to the disk and unmapped
+        Set<TridentWorldLoader> loaders = new HashSet<>();
+        for (TridentWorld world : saves.keySet()) {
+            if (world.getLoader() instanceof TridentWorldLoader)
+                loaders.add((TridentWorldLoader) world.getLoader());
+        }
+        for (TridentWorldLoader loader : loaders)
+            loader.closeRegions();
+    }
+
+    private void stopThreads(long deadline, List<String> abandoned) {
+        TridentServer server = (TridentServer) Trident.getServer();
+        if (server != null) {
+            int dropped = server.stopMainThread(TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+
+            if (server.isMainThreadAlive())
+                abandoned.add("the main thread is still running a task");
+            if (dropped > 0)
+                abandoned.add(dropped + " tasks queued on the main thread");
+        }
+
+        abandoned.addAll(ThreadsManager.stopAll(TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+
+        for (EventLoopGroup group : this.eventLoops) {
+            long remaining = Math.max(0L, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+            if (!group.shutdownGracefully(0L, remaining, TimeUnit.MILLISECONDS).awaitUninterruptibly(remaining))
+                abandoned.add("a netty event loop group");
+        }
+    }
+}
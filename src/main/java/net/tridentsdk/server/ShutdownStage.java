@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.server;
+
+/**
+ * The stages the server goes through when shutting down, in the order they are run
+ *
+ * @author The TridentSDK Team
+ */
+public enum ShutdownStage {
+    /**
+     * Closes the server socket, so no new clients can connect
+     */
+    STOP_ACCEPTING("stop-accepting", 5000L),
+
+    /**
+     * Lets the player handlers finish the tasks queued on them
+     */
+    DRAIN_PLAYERS("drain-players", 10000L),
+
+    /**
+     * Writes out the packets still pending on client connections, then closes them
+     */
+    FLUSH_OUTBOUND("flush-outbound", 5000L),
+
+    /**
+     * Saves every loaded world, all worlds at the same time
+     */
+    SAVE_WORLDS("save-worlds", 60000L),
+
+    /**
+     * Stops the main thread, the background lanes, the player handlers and the netty event loops
+     */
+    STOP_THREADS("stop-threads", 10000L);
+
+    private final String key;
+    private final long defaultDeadline;
+
+    ShutdownStage(String key, long defaultDeadline) {
+        this.key = key;
+        this.defaultDeadline = defaultDeadline;
+    }
+
+    /**
+     * The key of the stage deadline in the {@code shutdown} section of the configuration
+     *
+     * @return the configuration key
+     */
+    public String getKey() {
+        return this.key;
+    }
+
+    /**
+     * The time the stage may take if the configuration does not specify one
+     *
+     * @return the default deadline, in milliseconds
+     */
+    public long getDefaultDeadline() {
+        return this.defaultDeadline;
+    }
+}
@@ -31,6 +31,9 @@ import net.tridentsdk.server.config.YamlConfiguration;
 
 import javax.annotation.concurrent.ThreadSafe;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * The configuration holder that wraps the server's configuration defaults and values upon startup
@@ -50,11 +53,21 @@ public class TridentConfig {
      * @param properties the properties file specifying options for the server use
      */
     public TridentConfig(File properties) {
-        /*FileInputStream stream = new FileInputStream(properties); */
-        this.config = null; /* new YamlConfiguration(stream) */
+        this.config = TridentConfig.load(properties);
+        this.port = (short) this.config.getInt("port", TridentConfig.DEFAULT_PORT);
+    }
+
+    private static YamlConfiguration load(File properties) {
+        if (properties != null && properties.isFile()) {
+            try (InputStream stream = new FileInputStream(properties)) {
+                return new YamlConfiguration(stream);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
 
-        // TODO: Temporary
-        this.port = (short) TridentConfig.DEFAULT_PORT;
+        // Missing file, every option falls back to its default
+        return new YamlConfiguration("");
     }
 
     /**
@@ -65,4 +78,23 @@ public class TridentConfig {
     public short getPort() {
         return this.port;
     }
+
+    /**
+     * Gets the configuration that options which do not have a dedicated getter are read from
+     *
+     * @return the parsed configuration file
+     */
+    public YamlConfiguration getConfig() {
+        return this.config;
+    }
+
+    /**
+     * Gets the time a stage of the shutdown sequence may take before its remaining work is abandoned
+     *
+     * @param stage the stage to lookup
+     * @return the deadline of the stage, in milliseconds
+     */
+    public long getShutdownDeadline(ShutdownStage stage) {
+        return this.config.getLong("shutdown." + stage.getKey(), stage.getDefaultDeadline());
+    }
 }
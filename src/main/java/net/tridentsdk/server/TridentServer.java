@@ -30,9 +30,15 @@ package net.tridentsdk.server;
 import net.tridentsdk.api.Server;
 import net.tridentsdk.api.Trident;
 import net.tridentsdk.server.netty.protocol.Protocol;
+import net.tridentsdk.server.threads.Heartbeat;
+import net.tridentsdk.server.threads.TridentScheduler;
+import net.tridentsdk.server.threads.Watchdog;
+import net.tridentsdk.world.TridentWorld;
+import net.tridentsdk.world.TridentWorldLoader;
 
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TransferQueue;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -43,14 +49,22 @@ import java.util.concurrent.atomic.AtomicReference;
  */
 @ThreadSafe
 public final class TridentServer implements Server, Runnable {
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50L);
+    // Falling further behind than this gives up on catching up, rather than running ticks back to back
+    private static final long MAX_LAG_NANOS = TimeUnit.SECONDS.toNanos(2L);
+
     private final AtomicReference<Thread> SERVER_THREAD = new AtomicReference<>();
     //private final ProfileRepository PROFILE_REPOSITORY = new HttpProfileRepository("minecraft");
 
     private final TridentConfig config;
     private final Protocol protocol;
     private final TransferQueue<Runnable> threadTasks = new LinkedTransferQueue<>();
+    private final TridentScheduler scheduler = new TridentScheduler();
+    private final ViewDistanceGovernor viewDistance = new ViewDistanceGovernor();
 
-    private boolean stopped;
+    // Set before the main thread starts, which publishes it to the main thread
+    private Heartbeat heartbeat;
+    private volatile boolean stopped;
 
     private TridentServer(TridentConfig config) {
         this.config = config;
@@ -66,8 +80,11 @@ public final class TridentServer implements Server, Runnable {
         TridentServer server = new TridentServer(config);
         Trident.setServer(server);
 
-        server.SERVER_THREAD.set(new Thread(server, "TridentServer Main Thread"));
-        server.SERVER_THREAD.get().start();
+        Thread thread = new Thread(server, "TridentServer Main Thread");
+        server.heartbeat = new Heartbeat(thread.getName(), thread);
+        server.SERVER_THREAD.set(thread);
+        Watchdog.watch(server.heartbeat);
+        thread.start();
 
         return server;
         // We CANNOT let the "this" instance escape during creation, else we lose thread-safety
@@ -98,7 +115,16 @@ public final class TridentServer implements Server, Runnable {
     }
 
     /**
-     * Puts a task into the execution queue
+     * Gets the scheduler which runs delayed and repeating tasks on the server ticks
+     *
+     * @return the server scheduler
+     */
+    public TridentScheduler getScheduler() {
+        return this.scheduler;
+    }
+
+    /**
+     * Puts a task into the execution queue, which is run on the main thread between two ticks
      */
     public void addTask(Runnable task) {
         this.threadTasks.add(task);
@@ -108,34 +134,99 @@ public final class TridentServer implements Server, Runnable {
     public void run() {
         //TODO: Set some server stuff up
 
-        //TODO: Main server Loop
+        long nextTick = System.nanoTime();
         while (!this.stopped) {
+            this.tick();
+
+            nextTick += TridentServer.TICK_NANOS;
+            long lag = System.nanoTime() - nextTick;
+            if (lag > TridentServer.MAX_LAG_NANOS) {
+                System.err.println("Can't keep up! Skipping " + lag / TridentServer.TICK_NANOS + " ticks");
+                nextTick = System.nanoTime();
+            }
+
+            // Spend the rest of the tick on queued tasks, but run at least one even when behind
             try {
-                // task cannot be null because it will block until there is an
-                // element in the linked queue
-                Runnable task = this.threadTasks.take();
-                task.run();
+                do {
+                    Runnable task = this.threadTasks.poll(nextTick - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (task == null)
+                        break;
+                    this.runTask(task);
+                } while (nextTick - System.nanoTime() > 0L && !this.stopped);
             } catch (InterruptedException ignored) {
+                // Woken up to check if the server was stopped
             }
-            this.run();
+        }
+    }
+
+    private void tick() {
+        long start = System.nanoTime();
+        this.heartbeat.begin(this.scheduler);
+        try {
+            this.scheduler.tick();
+            for (TridentWorld world : TridentWorldLoader.getLoadedWorlds())
+                world.tick();
+            this.viewDistance.tick(System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        } finally {
+            this.heartbeat.end();
+        }
+    }
+
+    private void runTask(Runnable task) {
+        this.heartbeat.begin(task);
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        } finally {
+            this.heartbeat.end();
         }
     }
 
     /**
-     * Performs the shutdown procedure on the server, ending with the exit of the JVM
+     * Performs the shutdown procedure on the server, ending with the exit of the JVM <p/> <p>The shutdown runs on its
+     * own thread, because it needs to wait for the thread which called this method</p>
      */
     @Override
     public void shutdown() {
-        //TODO: Cleanup stuff...
-        this.SERVER_THREAD.get().interrupt();
+        new Thread(new Runnable() {
+            @Override public void run() {
+                TridentStart.close();
+            }
+        }, "Trident Shutdown").start();
+    }
+
+    /**
+     * Stops the main thread once the task it is running finishes
+     *
+     * @param timeout the maximum time to wait for the main thread to die, in milliseconds
+     * @return the amount of tasks which were still queued and will never run
+     */
+    int stopMainThread(long timeout) {
+        Thread thread = this.SERVER_THREAD.get();
+
+        this.stopped = true;
+        Watchdog.unwatch(this.heartbeat);
+        thread.interrupt();
         try {
-            this.threadTasks.transfer(new Runnable() {
-                @Override public void run() {
-                    TridentServer.this.stopped = true;
-                }
-            });
+            thread.join(Math.max(1L, timeout));
         } catch (InterruptedException e) {
-            e.printStackTrace();
+            Thread.currentThread().interrupt();
         }
+
+        int abandoned = this.threadTasks.size();
+        this.threadTasks.clear();
+        return abandoned;
+    }
+
+    /**
+     * Checks if the main thread is still alive
+     *
+     * @return {@code true} if the main thread did not die yet
+     */
+    boolean isMainThreadAlive() {
+        return this.SERVER_THREAD.get().isAlive();
     }
 }
@@ -28,18 +28,28 @@
 package net.tridentsdk.server;
 
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import joptsimple.*;
-import net.tridentsdk.api.Trident;
 import net.tridentsdk.server.netty.TridentChannelInitializer;
-import net.tridentsdk.server.threads.ThreadsManager;
+import net.tridentsdk.server.threads.BackgroundTaskExecutor;
+import net.tridentsdk.server.threads.Watchdog;
+import net.tridentsdk.world.ChunkSaver;
+import net.tridentsdk.world.ChunkStreamer;
+import net.tridentsdk.world.ChunkViewTracker;
+import net.tridentsdk.world.TridentWorld;
+import net.tridentsdk.world.TridentWorldLoader;
+import net.tridentsdk.world.gen.Pregenerator;
+import net.tridentsdk.world.storage.StorageBackends;
 
 import javax.annotation.concurrent.ThreadSafe;
 import java.io.File;
 import java.util.Collection;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Server class that starts the connection listener. <p/> <p>Despite the fact that this class is under protected access,
@@ -51,6 +61,10 @@ import java.util.Collection;
 final class TridentStart {
     private static final EventLoopGroup bossGroup = new NioEventLoopGroup();
     private static final EventLoopGroup workerGroup = new NioEventLoopGroup();
+    private static final AtomicBoolean closing = new AtomicBoolean();
+
+    private static volatile TridentConfig config;
+    private static volatile Channel serverChannel;
 
     private TridentStart() {} // Do not initialize
 
@@ -88,6 +102,26 @@ final class TridentStart {
                       .ofType(File.class)
                       .defaultsTo(new File("server.yml"))
                       .describedAs("Properties file");
+        OptionSpec<Boolean> virtualThreads =
+                parser.acceptsAll(TridentStart.asList("virtual-threads"),
+                                  "Whether to run blocking background tasks on virtual threads, if supported")
+                      .withRequiredArg()
+                      .ofType(Boolean.class)
+                      .defaultsTo(false)
+                      .describedAs("Virtual threads");
+        OptionSpec<Integer> pregenerate =
+                parser.acceptsAll(TridentStart.asList("pregenerate"),
+                                  "Generates the chunks within the radius around spawn before the server starts")
+                      .withRequiredArg()
+                      .ofType(Integer.class)
+                      .defaultsTo(0)
+                      .describedAs("Radius in chunks");
+        OptionSpec<String> pregenerateWorld =
+                parser.acceptsAll(TridentStart.asList("pregenerate-world"), "The world to pregenerate")
+                      .withRequiredArg()
+                      .ofType(String.class)
+                      .defaultsTo("world")
+                      .describedAs("World name");
 
         OptionSet options;
         try {
@@ -97,7 +131,11 @@ final class TridentStart {
             return;
         }
 
-        TridentStart.init(new TridentConfig(options.valueOf(properties)));
+        if (options.valueOf(virtualThreads).booleanValue() && !BackgroundTaskExecutor.enableVirtualThreads())
+            System.err.println("Virtual threads are not supported by this JVM, blocking tasks use platform threads");
+
+        TridentStart.init(new TridentConfig(options.valueOf(properties)), options.valueOf(pregenerateWorld),
+                          options.valueOf(pregenerate).intValue());
     }
 
     private static Collection<String> asList(String... params) {
@@ -107,10 +145,26 @@ final class TridentStart {
     /**
      * Initializes the server with the configuration file
      *
-     * @param config the configuration to use for option lookup
+     * @param config            the configuration to use for option lookup
+     * @param pregenerateWorld  the world to pregenerate
+     * @param pregenerateRadius the radius around spawn to pregenerate, {@code 0} to skip pregeneration
      */
-    private static void init(TridentConfig config) {
+    private static void init(TridentConfig config, String pregenerateWorld, int pregenerateRadius) {
+        TridentStart.config = config;
+
         try {
+            TridentStart.selectChunkStorage(config);
+            ChunkViewTracker.setGracePeriod(config.getConfig().getInt("chunk-unload-delay", 600));
+            ChunkSaver.setInterval(config.getConfig().getInt("autosave-interval", 6000));
+            ChunkSaver.setBudget(config.getConfig().getLong("autosave-bytes-per-second", 4L * 1024L * 1024L));
+            ChunkStreamer.setTickBudget(config.getConfig().getLong("chunk-send-bytes-per-tick", 1024L * 1024L));
+            ChunkStreamer.setConnectionBudget(
+                    config.getConfig().getLong("chunk-send-bytes-per-connection", 128L * 1024L));
+            ViewDistanceGovernor.setRange(config.getConfig().getInt("view-distance-min", 4),
+                                          config.getConfig().getInt("view-distance", 10));
+            if (pregenerateRadius > 0)
+                TridentStart.pregenerate(pregenerateWorld, pregenerateRadius);
+
             ServerBootstrap b = new ServerBootstrap();
             b.group(TridentStart.bossGroup, TridentStart.workerGroup)
              .channel(NioServerSocketChannel.class)
@@ -119,10 +173,14 @@ final class TridentStart {
 
             // Bind and start to accept incoming connections.
             ChannelFuture f = b.bind((int) config.getPort()).sync();
+            TridentStart.serverChannel = f.channel();
 
             //Runs the server on a separate thread
             //Server should read all settings from the loaded config
             TridentServer.createServer(config);
+            Watchdog.start(config.getConfig().getLong("watchdog.threshold", 10000L),
+                           config.getConfig().getLong("watchdog.interval", 1000L),
+                           config.getConfig().getBoolean("watchdog.restart-player-handlers", false));
 
             // Wait until the server socket is closed, to gracefully shut down your server.
             f.channel().closeFuture().sync();
@@ -134,13 +192,53 @@ final class TridentStart {
     }
 
     /**
-     * Shuts down the server by closing the backed event loops
+     * Generates the area around spawn with every core, before anybody can join. Chunks generated by an earlier,
+     * interrupted run are skipped. The world is only loaded to pregenerate it, and unloaded again once done.
+     */
+    private static void pregenerate(String name, int radius) throws InterruptedException {
+        TridentWorldLoader loader = new TridentWorldLoader();
+        TridentWorld world = (TridentWorld) loader.load(name);
+        int cores = Runtime.getRuntime().availableProcessors();
+        Pregenerator pregenerator = Pregenerator.around(world, 0, 0, radius, cores);
+
+        try {
+            pregenerator.start().get();
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+        } catch (InterruptedException e) {
+            // The chunks in progress are still written, so the region files can only be closed after them
+            pregenerator.cancel();
+            try {
+                Uninterruptibles.getUninterruptibly(pregenerator.start());
+            } catch (ExecutionException ignored) {
+            }
+            throw e;
+        } finally {
+            loader.unload(world);
+        }
+    }
+
+    private static void selectChunkStorage(TridentConfig config) {
+        String name = config.getConfig().getString("chunk-storage", "heap");
+        long capacity = config.getConfig().getLong("chunk-storage-capacity", 512L) * 1024L * 1024L;
+
+        try {
+            StorageBackends.set(StorageBackends.forName(name, capacity));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage() + ", keeping chunk data on the heap");
+        }
+    }
+
+    /**
+     * Shuts down the server, running each {@link ShutdownStage} within its configured deadline <p/> <p>Only the first
+     * call performs the shutdown, later calls return immediately</p>
      */
     public static void close() {
-        //Correct way to close the socket and shut down the server
-        TridentStart.workerGroup.shutdownGracefully().awaitUninterruptibly();
-        TridentStart.bossGroup.shutdownGracefully().awaitUninterruptibly();
-        Trident.getServer().shutdown();
-        ThreadsManager.stopAll();
+        if (!TridentStart.closing.compareAndSet(false, true))
+            return;
+
+        ShutdownReport report = new ShutdownSequence(TridentStart.config, TridentStart.serverChannel,
+                                                     TridentStart.workerGroup, TridentStart.bossGroup).run();
+        System.out.println(report);
     }
 }
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.server;
+
+import net.tridentsdk.world.ChunkStreamer;
+import net.tridentsdk.world.TridentWorld;
+import net.tridentsdk.world.TridentWorldLoader;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trades the view distance of the clients for capacity while the server is under load <p/> <p>The time the ticks take
+ * is averaged over a window of {@link #WINDOW} ticks. At the end of every window, the view distance cap of the
+ * {@link ChunkStreamer} goes down by a chunk if the ticks took more than {@link #LOWER_TICK_LOAD} of their time or the
+ * heap was fuller than {@link #LOWER_HEAP_LOAD} after the last collection, and back up by a chunk once both are well
+ * below that again. The cap stays between the configured minimum and maximum; the gap between the thresholds keeps it
+ * from flapping.</p> <p/> <p>Only used by the server thread.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@NotThreadSafe
+public final class ViewDistanceGovernor {
+    /**
+     * The amount of ticks between two decisions
+     */
+    public static final int WINDOW = 100;
+    /**
+     * The share of the tick time above which the view distance is lowered
+     */
+    public static final double LOWER_TICK_LOAD = 0.8;
+    /**
+     * The share of the tick time below which the view distance is raised again
+     */
+    public static final double RAISE_TICK_LOAD = 0.5;
+    /**
+     * The share of the maximum heap above which the view distance is lowered
+     */
+    public static final double LOWER_HEAP_LOAD = 0.85;
+    /**
+     * The share of the maximum heap below which the view distance is raised again
+     */
+    public static final double RAISE_HEAP_LOAD = 0.7;
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50L);
+
+    private static volatile int minimum = 4;
+    private static volatile int maximum = 10;
+
+    private long elapsed;
+    private int ticks;
+
+    ViewDistanceGovernor() {
+    }
+
+    /**
+     * Gets the view distance the server never lowers the cap below
+     *
+     * @return the minimum view distance, in chunks
+     */
+    public static int getMinimum() {
+        return ViewDistanceGovernor.minimum;
+    }
+
+    /**
+     * Gets the view distance clients are capped at while the server keeps up
+     *
+     * @return the maximum view distance, in chunks
+     */
+    public static int getMaximum() {
+        return ViewDistanceGovernor.maximum;
+    }
+
+    /**
+     * Sets the range the view distance cap is kept in, and starts over at the maximum
+     *
+     * @param minimum the view distance the cap is never lowered below, in chunks
+     * @param maximum the view distance clients get while the server keeps up, in chunks
+     */
+    public static void setRange(int minimum, int maximum) {
+        if (minimum < 0 || minimum > maximum || maximum > ChunkStreamer.MAX_VIEW_DISTANCE)
+            throw new IllegalArgumentException("The view distance range must lie between 0 and " +
+                                                       ChunkStreamer.MAX_VIEW_DISTANCE);
+
+        ViewDistanceGovernor.minimum = minimum;
+        ViewDistanceGovernor.maximum = maximum;
+        ChunkStreamer.setViewDistance(maximum);
+    }
+
+    /**
+     * Records the time the last tick took, and adjusts the view distance cap at the end of a window
+     *
+     * @param nanos the duration of the tick
+     */
+    void tick(long nanos) {
+        this.elapsed += nanos;
+        if (++this.ticks < ViewDistanceGovernor.WINDOW)
+            return;
+
+        double tickLoad = (double) this.elapsed / this.ticks / ViewDistanceGovernor.TICK_NANOS;
+        this.elapsed = 0L;
+        this.ticks = 0;
+
+        double heapLoad = ViewDistanceGovernor.heapLoad();
+        int current = ChunkStreamer.getViewDistance();
+        int next = current;
+        if (tickLoad > ViewDistanceGovernor.LOWER_TICK_LOAD || heapLoad > ViewDistanceGovernor.LOWER_HEAP_LOAD)
+            next = Math.max(ViewDistanceGovernor.minimum, current - 1);
+        else if (tickLoad < ViewDistanceGovernor.RAISE_TICK_LOAD && heapLoad < ViewDistanceGovernor.RAISE_HEAP_LOAD)
+            next = Math.min(ViewDistanceGovernor.maximum, current + 1);
+
+        if (next == current)
+            return;
+
+        ChunkStreamer.setViewDistance(next);
+        for (TridentWorld world : TridentWorldLoader.getLoadedWorlds())
+            world.getStreamer().refresh();
+    }
+
+    /**
+     * Gets the share of the maximum heap which was still used after the last collection, ignoring the garbage which
+     * the next collection frees anyway
+     */
+    private static double heapLoad() {
+        long max = Runtime.getRuntime().maxMemory();
+        if (max == Long.MAX_VALUE)
+            return 0.0;
+
+        long used = 0L;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP)
+                continue;
+
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage == null)
+                usage = pool.getUsage();
+            used += usage.getUsed();
+        }
+
+        return (double) used / max;
+    }
+}
@@ -30,14 +30,19 @@ package net.tridentsdk.server.config;
 import org.yaml.snakeyaml.Yaml;
 
 import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
 
 /**
- * Wrapper class over the YML file format, backed by {@link org.yaml.snakeyaml.Yaml}
+ * Wrapper class over the YML file format, backed by {@link org.yaml.snakeyaml.Yaml} <p/> <p>Values are looked up
+ * using paths separated by dots, so {@code shutdown.save-worlds} reads the {@code save-worlds} key of the {@code
+ * shutdown} section</p>
  *
  * @author The TridentSDK Team
  */
 public class YamlConfiguration {
     private final Yaml yaml;
+    private final Map<?, ?> root;
 
     /**
      * Loads the file name and parses the YAML format
@@ -46,7 +51,7 @@ public class YamlConfiguration {
      */
     public YamlConfiguration(String string) {
         this.yaml = new Yaml();
-        this.yaml.load(string);
+        this.root = YamlConfiguration.asMap(this.yaml.load(string));
     }
 
     /**
@@ -56,6 +61,92 @@ public class YamlConfiguration {
      */
     public YamlConfiguration(InputStream stream) {
         this.yaml = new Yaml();
-        this.yaml.load(stream);
+        this.root = YamlConfiguration.asMap(this.yaml.load(stream));
     }
-}
\ No newline at end of file
+
+    private static Map<?, ?> asMap(Object object) {
+        if (object instanceof Map)
+            return (Map<?, ?>) object;
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Gets the raw value at the given path
+     *
+     * @param path the dot separated path of the key
+     * @return the value, or {@code null} if there is none
+     */
+    public Object get(String path) {
+        Map<?, ?> section = this.root;
+        String[] keys = path.split("\\.");
+
+        for (int i = 0; i < keys.length - 1; i++) {
+            Object child = section.get(keys[i]);
+            if (!(child instanceof Map))
+                return null;
+            section = (Map<?, ?>) child;
+        }
+
+        return section.get(keys[keys.length - 1]);
+    }
+
+    /**
+     * Gets the number at the given path
+     *
+     * @param path the dot separated path of the key
+     * @param def  the value to use if the key is missing or not a number
+     * @return the configured value
+     */
+    public long getLong(String path, long def) {
+        Object value = this.get(path);
+        return value instanceof Number ? ((Number) value).longValue() : def;
+    }
+
+    /**
+     * Gets the number at the given path
+     *
+     * @param path the dot separated path of the key
+     * @param def  the value to use if the key is missing or not a number
+     * @return the configured value
+     */
+    public int getInt(String path, int def) {
+        Object value = this.get(path);
+        return value instanceof Number ? ((Number) value).intValue() : def;
+    }
+
+    /**
+     * Gets the number at the given path
+     *
+     * @param path the dot separated path of the key
+     * @param def  the value to use if the key is missing or not a number
+     * @return the configured value
+     */
+    public double getDouble(String path, double def) {
+        Object value = this.get(path);
+        return value instanceof Number ? ((Number) value).doubleValue() : def;
+    }
+
+    /**
+     * Gets the boolean at the given path
+     *
+     * @param path the dot separated path of the key
+     * @param def  the value to use if the key is missing or not a boolean
+     * @return the configured value
+     */
+    public boolean getBoolean(String path, boolean def) {
+        Object value = this.get(path);
+        return value instanceof Boolean ? ((Boolean) value).booleanValue() : def;
+    }
+
+    /**
+     * Gets the string at the given path
+     *
+     * @param path the dot separated path of the key
+     * @param def  the value to use if the key is missing
+     * @return the configured value
+     */
+    public String getString(String path, String def) {
+        Object value = this.get(path);
+        return value == null ? def : String.valueOf(value);
+    }
+}
@@ -28,15 +28,22 @@
 package net.tridentsdk.server.netty.client;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
+import net.tridentsdk.entity.TridentPlayer;
 import net.tridentsdk.server.encryption.RSA;
 import net.tridentsdk.server.netty.packet.Packet;
 import net.tridentsdk.server.netty.protocol.Protocol;
+import net.tridentsdk.world.ChunkStreamer;
+import net.tridentsdk.world.TridentWorld;
+import net.tridentsdk.world.TridentWorldLoader;
 
 import java.net.InetSocketAddress;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
@@ -57,6 +64,10 @@ public class ClientConnection {
     private volatile Protocol.ClientStage stage;
     private volatile boolean encryptionEnabled;
     private volatile PrivateKey privateKey;
+    // Until the client sends its settings, it is streamed as far as the server allows
+    private volatile int viewDistance = ChunkStreamer.MAX_VIEW_DISTANCE;
+    private volatile TridentPlayer player;
+    private volatile String name;
 
     /**
      * Creates a new connection handler for the joining channel stream
@@ -93,6 +104,21 @@ public class ClientConnection {
         return reference.get();
     }
 
+    /**
+     * Gets every connection currently known to the server
+     *
+     * @return the registered connections
+     */
+    public static Collection<ClientConnection> getConnections() {
+        Collection<ClientConnection> connections = new ArrayList<>(ClientConnection.clientData.size());
+        for (AtomicReference<ClientConnection> reference : ClientConnection.clientData.values()) {
+            ClientConnection connection = reference.get();
+            if (connection != null)
+                connections.add(connection);
+        }
+        return connections;
+    }
+
     public static ClientConnection registerConnection(ChannelHandlerContext channelContext) {
         ClientConnection newConnection = new ClientConnection(channelContext);
 
@@ -114,27 +140,122 @@ public class ClientConnection {
             throw new IllegalArgumentException("You can not use encryption if encryption is not enabled!");
 
         try {
-            if (encrypted) {
-                buffer.writeBytes(RSA.encrypt((byte) packet.getId(), this.publicKey));
-
-                packet.encode(buffer);
-                buffer.writeBytes(this.encrypt(buffer.array()));
-            } else {
-                buffer.writeInt(packet.getId());
-                packet.encode(buffer);
-            }
+            ClientConnection.writePacket(packet, buffer);
         } catch (Exception ex) {
             ex.printStackTrace();
         }
 
+        if (encrypted) {
+            try {
+                this.sendEncrypted(buffer);
+            } finally {
+                buffer.release();
+            }
+            return;
+        }
+
         // Write the encoded packet and flush it
         this.channel.writeAndFlush(buffer);
     }
 
+    /**
+     * Encrypts a packet encoded with {@link #writePacket(Packet, ByteBuf)} for this client and sends it. The id is
+     * encrypted on its own, followed by the data and the encrypted id and data. The encoded packet is left as it is.
+     *
+     * @param encoded the encoded packet
+     */
+    private void sendEncrypted(ByteBuf encoded) {
+        ByteBuf buffer = this.channel.alloc().buffer();
+
+        try {
+            int id = encoded.getInt(encoded.readerIndex());
+            buffer.writeBytes(RSA.encrypt((byte) id, this.publicKey));
+            buffer.writeBytes(encoded, encoded.readerIndex() + 4, encoded.readableBytes() - 4);
+
+            byte[] written = new byte[buffer.readableBytes()];
+            buffer.getBytes(buffer.readerIndex(), written);
+            buffer.writeBytes(this.encrypt(written));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+
+        this.channel.writeAndFlush(buffer);
+    }
+
     public void sendPacket(Packet packet) {
         this.sendPacket(packet, false);
     }
 
+    /**
+     * Writes the id and the data of an unencrypted packet, the way it is sent through the client stream
+     *
+     * @param packet the packet to encode
+     * @param buffer the buffer to write to
+     */
+    public static void writePacket(Packet packet, ByteBuf buffer) {
+        buffer.writeInt(packet.getId());
+        packet.encode(buffer);
+    }
+
+    /**
+     * Sends a packet which was already encoded with {@link #writePacket(Packet, ByteBuf)}, e.g. one shared by many
+     * clients <p/> <p>The stream takes over the buffer and releases it once written. To keep a shared packet, pass a
+     * retained duplicate of it, or use {@link #broadcast(Collection, ByteBuf)}.</p>
+     *
+     * @param encoded the encoded packet
+     */
+    public void sendEncoded(ByteBuf encoded) {
+        this.channel.writeAndFlush(encoded);
+    }
+
+    /**
+     * Sends a packet to many clients, encoding it only once <p/> <p>The packet is written with {@link
+     * #writePacket(Packet, ByteBuf)} into a single pooled buffer, and every recipient is handed a retained duplicate of
+     * it, see {@link #broadcast(Collection, ByteBuf)}. Clients with encryption enabled are sent the packet encrypted
+     * for each of them, as encryption is not done by the pipeline.</p>
+     *
+     * @param recipients the clients to send the packet to
+     * @param packet     the packet to send, which may be reused once this returns
+     */
+    public static void broadcast(Collection<ClientConnection> recipients, Packet packet) {
+        if (recipients.isEmpty())
+            return;
+
+        ByteBuf encoded = PooledByteBufAllocator.DEFAULT.directBuffer(64);
+        try {
+            ClientConnection.writePacket(packet, encoded);
+        } catch (RuntimeException e) {
+            encoded.release();
+            throw e;
+        }
+
+        ClientConnection.broadcast(recipients, encoded);
+    }
+
+    /**
+     * Sends a packet which was already encoded with {@link #writePacket(Packet, ByteBuf)} to many clients <p/> <p>Every
+     * recipient is handed a retained duplicate of the buffer, which shares its content but not its indices, and the
+     * reference held by the caller is released afterwards. The encoded packet goes through the pipeline of each
+     * channel, so the compression of a client is still applied for it alone; handlers doing so must write to a buffer
+     * of their own rather than change the shared one in place. Encryption is not done by the pipeline, so clients with
+     * encryption enabled are sent a copy encrypted for each of them.</p>
+     *
+     * @param recipients the clients to send the packet to
+     * @param encoded    the encoded packet, released once handed to every recipient
+     */
+    public static void broadcast(Collection<ClientConnection> recipients, ByteBuf encoded) {
+        try {
+            for (ClientConnection recipient : recipients) {
+                if (recipient.isEncryptionEnabled())
+                    recipient.sendEncrypted(encoded);
+                else
+                    recipient.sendEncoded(encoded.duplicate().retain());
+            }
+        } finally {
+            encoded.release();
+        }
+    }
+
     public byte[] encrypt(byte... data) throws Exception {
         return RSA.encrypt(data, this.publicKey);
     }
@@ -197,12 +318,74 @@ public class ClientConnection {
         return this.privateKey;
     }
 
+    /**
+     * Gets the name the client logged in with
+     *
+     * @return the name, {@code null} until the login succeeded
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Sets the name the client logged in with, once the login succeeded
+     *
+     * @param name the name of the client
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the player the client controls
+     *
+     * @return the player, {@code null} until the client joined a world
+     */
+    public TridentPlayer getPlayer() {
+        return this.player;
+    }
+
+    /**
+     * Sets the player the client controls, which its movement packets are applied to
+     *
+     * @param player the player, {@code null} once it left
+     */
+    public void setPlayer(TridentPlayer player) {
+        this.player = player;
+    }
+
+    /**
+     * Gets the view distance the client asked for, which the server may cap, see
+     * {@link ChunkStreamer#getViewDistance(ClientConnection)}
+     *
+     * @return the requested view distance, in chunks
+     */
+    public int getViewDistance() {
+        return this.viewDistance;
+    }
+
+    /**
+     * Sets the view distance the client asked for, and streams the chunks of its new view
+     *
+     * @param viewDistance the requested view distance, in chunks
+     */
+    public void setViewDistance(int viewDistance) {
+        this.viewDistance = Math.max(0, Math.min(viewDistance, ChunkStreamer.MAX_VIEW_DISTANCE));
+        for (TridentWorld world : TridentWorldLoader.getLoadedWorlds())
+            world.getStreamer().refresh(this);
+    }
+
     /**
      * Removes the client's server side client handler
      */
     public void logout() {
         // TODO
         ClientConnection.clientData.remove(this.address);
+        TridentPlayer player = this.player;
+        if (player != null)
+            player.remove();
+        for (TridentWorld world : TridentWorldLoader.getLoadedWorlds())
+            world.getStreamer().removeViewer(this);
 
         this.channel.close();
     }
@@ -33,8 +33,8 @@ import net.tridentsdk.api.Trident;
 import net.tridentsdk.server.TridentServer;
 import net.tridentsdk.server.netty.packet.*;
 import net.tridentsdk.server.netty.protocol.Protocol;
-import net.tridentsdk.server.threads.BackgroundTaskExecutor;
 import net.tridentsdk.server.threads.PlayerThreads;
+import net.tridentsdk.server.threads.PlayerThreads.ThreadPlayerWrapper;
 
 import javax.annotation.concurrent.ThreadSafe;
 import java.net.InetSocketAddress;
@@ -84,10 +84,22 @@ public class ClientConnectionHandler extends SimpleChannelInboundHandler<PacketD
 
         packet.decode(data.getData());
 
+        // Packets before play change the stage the next frame is decoded with, so they are handled right away
+        if (connection.getStage() != Protocol.ClientStage.PLAY) {
+            packet.handleReceived(connection);
+            return;
+        }
+
+        // Every packet of a player is handled on the same thread, in the order it arrived
+        ThreadPlayerWrapper wrapper = PlayerThreads.clientThreadHandle(connection);
+        if (wrapper == null)
+            return;
+
         final ClientConnection finalConnection = connection;
-        BackgroundTaskExecutor.execute(new Runnable() {
+        final Packet finalPacket = packet;
+        wrapper.addTask(new Runnable() {
             @Override public void run() {
-                PlayerThreads.clientThreadHandle(finalConnection);
+                finalPacket.handleReceived(finalConnection);
             }
         });
     }
@@ -27,25 +27,158 @@
 
 package net.tridentsdk.server.threads;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import javax.annotation.concurrent.ThreadSafe;
 
 /**
- * Executes background tasks that don't matter too much to the actual server
+ * Executes background tasks that don't matter too much to the actual server <p/> <p>Tasks are split into lanes, each
+ * backed by a bounded pool of named threads with a bounded queue. CPU-bound work should never wait behind blocking
+ * work, so anything that sleeps on disk or network belongs in {@link Lane#IO}.</p>
  *
  * @author The TridentSDK Team
  */
+@ThreadSafe
 public final class BackgroundTaskExecutor {
-    static final ExecutorService SERVICE = Executors.newCachedThreadPool();
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+
+    private static final int MAX_VIRTUAL_IN_FLIGHT = 10_000;
+
+    static final LaneService CPU = new LaneExecutor("CPU", BackgroundTaskExecutor.CORES, 8192,
+                                                    OverflowPolicy.CALLER_RUNS);
+    static volatile LaneService IO = new LaneExecutor("IO", Math.max(4, BackgroundTaskExecutor.CORES * 2), 2048,
+                                                      OverflowPolicy.CALLER_RUNS);
 
     private BackgroundTaskExecutor() {}
 
     /**
-     * Execute the task in the internal thread pool <p/> <p>Synchronization is a requirement</p>
+     * Execute the task in the internal CPU-bound thread pool <p/> <p>Synchronization is a requirement</p>
      *
      * @param runnable the task to execute
      */
     public static void execute(Runnable runnable) {
-        BackgroundTaskExecutor.SERVICE.execute(runnable);
+        BackgroundTaskExecutor.execute(runnable, Lane.CPU);
+    }
+
+    /**
+     * Execute the task in the thread pool backing the given lane <p/> <p>Synchronization is a requirement</p> <p/>
+     * <p>If the lane is saturated, the task is handled according to the lane's {@link OverflowPolicy}</p>
+     *
+     * @param runnable the task to execute
+     * @param lane     the lane which fits the kind of work the task does
+     */
+    public static void execute(Runnable runnable, Lane lane) {
+        BackgroundTaskExecutor.executorFor(lane).execute(runnable);
+    }
+
+    /**
+     * Execute the task in the thread pool backing the given lane, if the lane has room for it <p/> <p>Unlike
+     * {@link #execute(Runnable, Lane)} the overflow policy does not apply: the task is never run on the calling thread
+     * and never dropped silently, so the caller can keep it and try again later.</p>
+     *
+     * @param runnable the task to execute
+     * @param lane     the lane which fits the kind of work the task does
+     * @return {@code true} if the task was handed to the lane, {@code false} if the lane is saturated or shut down
+     */
+    public static boolean offer(Runnable runnable, Lane lane) {
+        return BackgroundTaskExecutor.executorFor(lane).offer(runnable);
+    }
+
+    /**
+     * Sets what happens to tasks submitted while the lane is saturated
+     *
+     * @param lane   the lane to change
+     * @param policy the policy to apply from now on
+     */
+    public static void setOverflowPolicy(Lane lane, OverflowPolicy policy) {
+        BackgroundTaskExecutor.executorFor(lane).setPolicy(policy);
+    }
+
+    /**
+     * Gets the policy currently applied to tasks submitted while the lane is saturated
+     *
+     * @param lane the lane to lookup
+     * @return the overflow policy of the lane
+     */
+    public static OverflowPolicy getOverflowPolicy(Lane lane) {
+        return BackgroundTaskExecutor.executorFor(lane).getPolicy();
+    }
+
+    /**
+     * Takes a snapshot of the queue depth, throughput and queue wait times of the lane
+     *
+     * @param lane the lane to measure
+     * @return the current lane statistics
+     */
+    public static LaneStatistics statistics(Lane lane) {
+        return BackgroundTaskExecutor.executorFor(lane).statistics();
+    }
+
+    /**
+     * Checks if the running JVM is able to run the IO lane on virtual threads
+     *
+     * @return {@code true} if {@link #enableVirtualThreads()} can succeed
+     */
+    public static boolean supportsVirtualThreads() {
+        return VirtualLaneExecutor.isSupported();
+    }
+
+    /**
+     * Moves the IO lane onto virtual threads, leaving the platform threads to the CPU lane <p/> <p>Tasks already
+     * queued in the old IO lane still run to completion. Blocking tasks no longer hold an OS thread while they wait,
+     * so thousands of them can be in flight at once.</p>
+     *
+     * @return {@code true} if the IO lane now runs on virtual threads, {@code false} if the JVM does not support them
+     */
+    public static synchronized boolean enableVirtualThreads() {
+        if (!VirtualLaneExecutor.isSupported())
+            return false;
+
+        LaneService old = BackgroundTaskExecutor.IO;
+        if (old instanceof VirtualLaneExecutor)
+            return true;
+
+        BackgroundTaskExecutor.IO = new VirtualLaneExecutor("IO", BackgroundTaskExecutor.MAX_VIRTUAL_IN_FLIGHT,
+                                                            old.getPolicy());
+        old.shutdown();
+        return true;
+    }
+
+    /**
+     * Checks if the IO lane currently runs on virtual threads
+     *
+     * @return {@code true} if blocking tasks run on virtual threads
+     */
+    public static boolean usesVirtualThreads() {
+        return BackgroundTaskExecutor.IO instanceof VirtualLaneExecutor;
+    }
+
+    private static LaneService executorFor(Lane lane) {
+        switch (lane) {
+            case CPU:
+                return BackgroundTaskExecutor.CPU;
+
+            case IO:
+                return BackgroundTaskExecutor.IO;
+
+            default:
+                throw new IllegalArgumentException(lane + " is not a supported lane");
+        }
+    }
+
+    /**
+     * The kind of work a background task does
+     *
+     * @author The TridentSDK Team
+     */
+    public enum Lane {
+        /**
+         * Work which keeps a core busy until it is done, such as packet handling or chunk generation
+         */
+        CPU,
+
+        /**
+         * Work which spends most of its time waiting, such as disk access or web requests <p/> <p>Runs on virtual
+         * threads once {@link #enableVirtualThreads()} has been called</p>
+         */
+        IO
     }
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.server.threads;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A progress counter published by a worker thread, which the {@link Watchdog} reads to find stalled workers <p/>
+ * <p>Only the owning thread writes to the heartbeat. The writes are lazy, so beating costs no more than a plain field
+ * store on the worker; the watchdog only needs to see them eventually.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public final class Heartbeat {
+    private final String name;
+    private final Thread thread;
+    private final AtomicLong beats = new AtomicLong();
+    private final AtomicReference<Object> task = new AtomicReference<>();
+
+    /**
+     * Creates a heartbeat for the given worker thread
+     *
+     * @param name   the name of the worker used in stall reports
+     * @param thread the thread which does the work
+     */
+    public Heartbeat(String name, Thread thread) {
+        this.name = name;
+        this.thread = thread;
+    }
+
+    /**
+     * Marks the start of a task on the worker
+     *
+     * @param task the task which is about to run
+     */
+    public void begin(Object task) {
+        this.task.lazySet(task);
+    }
+
+    /**
+     * Marks the end of the task started last, counting one unit of progress
+     */
+    public void end() {
+        this.task.lazySet(null);
+        this.beats.lazySet(this.beats.get() + 1L);
+    }
+
+    /**
+     * Gets the name of the worker
+     *
+     * @return the worker name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Gets the thread which publishes this heartbeat
+     *
+     * @return the worker thread
+     */
+    public Thread getThread() {
+        return this.thread;
+    }
+
+    /**
+     * Gets the amount of tasks the worker has finished
+     *
+     * @return the progress counter
+     */
+    public long getBeats() {
+        return this.beats.get();
+    }
+
+    /**
+     * Gets the task the worker is running
+     *
+     * @return the running task, or {@code null} if the worker is idle
+     */
+    public Object getTask() {
+        return this.task.get();
+    }
+}
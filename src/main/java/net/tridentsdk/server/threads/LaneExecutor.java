@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.server.threads;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.tridentsdk.api.docs.AccessNoDoc;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of named threads which backs a single lane of the {@link BackgroundTaskExecutor}
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+@AccessNoDoc
+final class LaneExecutor extends ThreadPoolExecutor implements LaneService {
+    // How many times an overflowing task may take the place of the oldest before it is dropped itself
+    private static final int DISCARD_ATTEMPTS = 3;
+
+    private final String name;
+    private final int capacity;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong waitTotal = new AtomicLong();
+    private final AtomicLong waitMax = new AtomicLong();
+
+    private volatile OverflowPolicy policy;
+
+    LaneExecutor(String name, int threads, int capacity, OverflowPolicy policy) {
+        super(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(capacity),
+              new ThreadFactoryBuilder().setNameFormat("Trident " + name + " Worker #%d").build());
+        this.name = name;
+        this.capacity = capacity;
+        this.policy = policy;
+
+        // Idle lanes should not hold on to their threads
+        this.allowCoreThreadTimeOut(true);
+        this.setRejectedExecutionHandler(new OverflowHandler());
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        this.submitted.incrementAndGet();
+        super.execute(new TimedTask(command, false));
+    }
+
+    @Override
+    public boolean offer(Runnable command) {
+        this.submitted.incrementAndGet();
+        try {
+            super.execute(new TimedTask(command, true));
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    @Override
+    protected void beforeExecute(Thread thread, Runnable runnable) {
+        if (runnable instanceof TimedTask)
+            this.recordWait(System.nanoTime() - ((TimedTask) runnable).queuedAt);
+    }
+
+    @Override
+    protected void afterExecute(Runnable runnable, Throwable throwable) {
+        this.completed.incrementAndGet();
+
+        if (throwable != null)
+            throwable.printStackTrace();
+    }
+
+    private void recordWait(long wait) {
+        this.started.incrementAndGet();
+        this.waitTotal.addAndGet(wait);
+
+        long max = this.waitMax.get();
+        while (wait > max && !this.waitMax.compareAndSet(max, wait))
+            max = this.waitMax.get();
+    }
+
+    @Override
+    public OverflowPolicy getPolicy() {
+        return this.policy;
+    }
+
+    @Override
+    public void setPolicy(OverflowPolicy policy) {
+        if (policy == null)
+            throw new NullPointerException("Policy cannot be null");
+        this.policy = policy;
+    }
+
+    @Override
+    public LaneStatistics statistics() {
+        long started = this.started.get();
+        return new LaneStatistics(this.name, this.getPoolSize(), this.getActiveCount(), this.getQueue().size(),
+                                  this.capacity, this.submitted.get(), this.completed.get(), this.overflowed.get(),
+                                  this.dropped.get(), started == 0L ? 0L : this.waitTotal.get() / started,
+                                  this.waitMax.get());
+    }
+
+    /**
+     * Wraps a task with the time it was handed to the lane, so the time spent in the queue can be measured
+     */
+    private static final class TimedTask implements Runnable {
+        private final Runnable task;
+        private final long queuedAt;
+        // Handed over by offer, so it is refused rather than put through the overflow policy
+        private final boolean offered;
+
+        TimedTask(Runnable task, boolean offered) {
+            this.task = task;
+            this.queuedAt = System.nanoTime();
+            this.offered = offered;
+        }
+
+        @Override public void run() {
+            this.task.run();
+        }
+    }
+
+    private final class OverflowHandler implements RejectedExecutionHandler {
+        @Override public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                LaneExecutor.this.dropped.incrementAndGet();
+                throw new RejectedExecutionException(LaneExecutor.this.name + " lane has been shut down");
+            }
+
+            LaneExecutor.this.overflowed.incrementAndGet();
+            if (runnable instanceof TimedTask && ((TimedTask) runnable).offered)
+                throw new RejectedExecutionException(LaneExecutor.this.name + " lane is saturated");
+
+            switch (LaneExecutor.this.policy) {
+                case CALLER_RUNS:
+                    runnable.run();
+                    break;
+
+                case DISCARD_OLDEST:
+                    // Goes straight to the queue rather than back into execute, which could recurse under overload
+                    BlockingQueue<Runnable> queue = executor.getQueue();
+                    for (int attempt = 0; attempt < LaneExecutor.DISCARD_ATTEMPTS; attempt++) {
+                        if (queue.poll() != null)
+                            LaneExecutor.this.dropped.incrementAndGet();
+                        if (queue.offer(runnable)) {
+                            // The workers of an idle lane time out, one has to be there to take the task
+                            if (executor.getPoolSize() == 0)
+                                executor.prestartCoreThread();
+                            return;
+                        }
+                    }
+
+                    // Other submitters kept filling the room up, so the new task is the one dropped
+                    LaneExecutor.this.dropped.incrementAndGet();
+                    break;
+
+                case DISCARD:
+                    LaneExecutor.this.dropped.incrementAndGet();
+                    break;
+
+                case ABORT:
+                    LaneExecutor.this.dropped.incrementAndGet();
+                    throw new RejectedExecutionException(LaneExecutor.this.name + " lane is saturated");
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.server.threads;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A point-in-time view of the load on a single {@link BackgroundTaskExecutor} lane
+ *
+ * @author The TridentSDK Team
+ */
+@Immutable
+public final class LaneStatistics {
+    private final String name;
+    private final int threads;
+    private final int activeThreads;
+    private final int queueDepth;
+    private final int queueCapacity;
+    private final long submitted;
+    private final long completed;
+    private final long overflowed;
+    private final long dropped;
+    private final long averageWait;
+    private final long maxWait;
+
+    LaneStatistics(String name, int threads, int activeThreads, int queueDepth, int queueCapacity, long submitted,
+                   long completed, long overflowed, long dropped, long averageWait, long maxWait) {
+        this.name = name;
+        this.threads = threads;
+        this.activeThreads = activeThreads;
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+        this.submitted = submitted;
+        this.completed = completed;
+        this.overflowed = overflowed;
+        this.dropped = dropped;
+        this.averageWait = averageWait;
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * The name of the lane, which is also used in the thread names
+     *
+     * @return the lane name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * The amount of threads currently alive in the lane
+     *
+     * @return the pool size
+     */
+    public int getThreads() {
+        return this.threads;
+    }
+
+    /**
+     * The amount of threads currently running a task
+     *
+     * @return the busy threads
+     */
+    public int getActiveThreads() {
+        return this.activeThreads;
+    }
+
+    /**
+     * The amount of tasks waiting for a thread
+     *
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+        return this.queueDepth;
+    }
+
+    /**
+     * The maximum amount of tasks which can wait before the overflow policy kicks in
+     *
+     * @return the queue bound
+     */
+    public int getQueueCapacity() {
+        return this.queueCapacity;
+    }
+
+    /**
+     * The total amount of tasks handed to the lane
+     *
+     * @return the submitted task count
+     */
+    public long getSubmitted() {
+        return this.submitted;
+    }
+
+    /**
+     * The total amount of tasks which were run by a lane thread. Tasks run by the caller because of overflow are not
+     * counted.
+     *
+     * @return the completed task count
+     */
+    public long getCompleted() {
+        return this.completed;
+    }
+
+    /**
+     * The total amount of times a task found the lane saturated
+     *
+     * @return the overflow count
+     */
+    public long getOverflowed() {
+        return this.overflowed;
+    }
+
+    /**
+     * The total amount of tasks which were never run because of overflow or shutdown
+     *
+     * @return the dropped task count
+     */
+    public long getDropped() {
+        return this.dropped;
+    }
+
+    /**
+     * The average time tasks spent in the queue, in nanoseconds
+     *
+     * @return the average queue wait
+     */
+    public long getAverageWait() {
+        return this.averageWait;
+    }
+
+    /**
+     * The longest time a task spent in the queue, in nanoseconds
+     *
+     * @return the maximum queue wait
+     */
+    public long getMaxWait() {
+        return this.maxWait;
+    }
+
+    @Override
+    public String toString() {
+        return this.name + "[threads=" + this.activeThreads + "/" + this.threads + ", queued=" + this.queueDepth + "/" +
+                this.queueCapacity + ", submitted=" + this.submitted + ", completed=" + this.completed +
+                ", overflowed=" + this.overflowed + ", dropped=" + this.dropped + ", avgWait=" +
+                this.averageWait / 1000L + "us, maxWait=" + this.maxWait / 1000L + "us]";
+    }
+}
@@ -30,9 +30,11 @@ package net.tridentsdk.server.threads;
 import net.tridentsdk.api.docs.AccessNoDoc;
 import net.tridentsdk.server.netty.client.ClientConnection;
 
+import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Player handling thread manager
@@ -41,19 +43,27 @@ import java.util.concurrent.*;
  */
 @ThreadSafe
 public final class PlayerThreads {
+    // Guards the assignment maps; held only to look up or change them, so the netty threads never wait for long
+    static final Object MAPPER_LOCK = new Object();
+    @GuardedBy("MAPPER_LOCK")
     static final Map<ThreadPlayerHandler, Integer> THREAD_MAP = new HashMap<>(4);
+    @GuardedBy("MAPPER_LOCK")
     static final Map<ClientConnection, ThreadPlayerWrapper> WRAPPER_MAP = new HashMap<>();
 
     static final Map<ClientConnection, ThreadPlayerWrapper> CACHE_MAP = new ConcurrentHashMap<>();
+    static final List<ThreadPlayerHandler> HANDLERS = new CopyOnWriteArrayList<>();
     static final ExecutorService SERVICE = Executors.newSingleThreadExecutor();
 
     static {
-        PlayerThreads.SERVICE.execute(new Runnable() {
-            @Override public void run() {
-                for (int i = 0; i < 4; i++)
-                    PlayerThreads.THREAD_MAP.put(new ThreadPlayerHandler(), Integer.valueOf(0));
+        synchronized (PlayerThreads.MAPPER_LOCK) {
+            for (int i = 0; i < 4; i++) {
+                ThreadPlayerHandler handler = new ThreadPlayerHandler(i);
+                PlayerThreads.THREAD_MAP.put(handler, Integer.valueOf(0));
+                PlayerThreads.HANDLERS.add(handler);
+                Watchdog.watch(handler.getHeartbeat());
+                handler.start();
             }
-        });
+        }
     }
 
     private static final Map.Entry<?, ? extends Number> DEF_ENTRY = new AbstractMap.SimpleEntry<>(null, Long.MAX_VALUE);
@@ -62,9 +72,10 @@ public final class PlayerThreads {
 
     /**
      * Gets the management tool for the player <p/> <p>This will put in a new value for the caches if cannot find for a
-     * new player</p> <p/> <p>May block the first call</p>
+     * new player</p> <p/> <p>Never waits for other work, so it can be called from the netty threads</p>
      *
      * @param connection the player to find the wrapper for
+     * @return the wrapper, or {@code null} if the player handlers were shut down
      */
     public static ThreadPlayerWrapper clientThreadHandle(ClientConnection connection) {
         ThreadPlayerWrapper wrapper = PlayerThreads.CACHE_MAP.get(connection); // Fast path
@@ -72,37 +83,27 @@ public final class PlayerThreads {
         return wrapper;
     }
 
-    private static ThreadPlayerWrapper fallbackHandle(final ClientConnection connection) {
-        Callable<ThreadPlayerWrapper> callable = new Callable<ThreadPlayerWrapper>() {
-            @Override public ThreadPlayerWrapper call() throws Exception {
-                ThreadPlayerWrapper wrapper = PlayerThreads.WRAPPER_MAP.get(connection);
-
-                if (wrapper == null) {
-                    Map.Entry<ThreadPlayerHandler, ? extends Number> handler =
-                            PlayerThreads.minMap(PlayerThreads.THREAD_MAP);
-                    ThreadPlayerWrapper wrap = new ThreadPlayerWrapper(handler.getKey());
+    private static ThreadPlayerWrapper fallbackHandle(ClientConnection connection) {
+        ThreadPlayerWrapper wrapper;
+        synchronized (PlayerThreads.MAPPER_LOCK) {
+            wrapper = PlayerThreads.WRAPPER_MAP.get(connection);
 
-                    PlayerThreads.WRAPPER_MAP.put(connection, wrap);
-                    PlayerThreads.THREAD_MAP.put(handler.getKey(), Integer.valueOf(handler.getValue().intValue() + 1));
+            if (wrapper == null) {
+                Map.Entry<ThreadPlayerHandler, ? extends Number> handler =
+                        PlayerThreads.minMap(PlayerThreads.THREAD_MAP);
+                if (handler.getKey() == null)
+                    return null; // Shut down, there is no handler left to take the player
 
-                    wrapper = wrap;
-                }
-
-                return wrapper;
+                wrapper = new ThreadPlayerWrapper(handler.getKey());
+                PlayerThreads.WRAPPER_MAP.put(connection, wrapper);
+                PlayerThreads.THREAD_MAP.put(handler.getKey(), Integer.valueOf(handler.getValue().intValue() + 1));
             }
-        };
-
-        Future<ThreadPlayerWrapper> future = PlayerThreads.SERVICE.submit(callable);
 
-        try {
-            ThreadPlayerWrapper wrapper = future.get();
-            if (wrapper != null) PlayerThreads.CACHE_MAP.put(connection, wrapper);
-            return wrapper;
-        } catch (InterruptedException e) {
-            return null;
-        } catch (ExecutionException e) {
-            return null;
+            // Cached under the lock, so it cannot land after the player was removed
+            PlayerThreads.CACHE_MAP.put(connection, wrapper);
         }
+
+        return wrapper;
     }
 
     /**
@@ -110,17 +111,63 @@ public final class PlayerThreads {
      *
      * @param connection the player to remove the wrapper cache
      */
-    public static void remove(final ClientConnection connection) {
-        PlayerThreads.SERVICE.execute(new Runnable() {
-            @Override public void run() {
-                ThreadPlayerWrapper wrapper = PlayerThreads.WRAPPER_MAP.remove(connection);
-
-                if (wrapper != null) {
-                    ThreadPlayerHandler handle = wrapper.getHandler();
-                    PlayerThreads.THREAD_MAP.put(handle, Integer.valueOf(PlayerThreads.THREAD_MAP.get(handle) - 1));
+    public static void remove(ClientConnection connection) {
+        synchronized (PlayerThreads.MAPPER_LOCK) {
+            PlayerThreads.CACHE_MAP.remove(connection);
+            ThreadPlayerWrapper wrapper = PlayerThreads.WRAPPER_MAP.remove(connection);
+            if (wrapper == null)
+                return;
+
+            ThreadPlayerHandler handle = wrapper.getHandler();
+            Integer players = PlayerThreads.THREAD_MAP.get(handle);
+            if (players != null)
+                PlayerThreads.THREAD_MAP.put(handle, Integer.valueOf(players.intValue() - 1));
+        }
+    }
+
+    /**
+     * Replaces a stalled handler with a fresh thread <p/> <p>The players and the queued tasks of the stalled handler
+     * move over to the new one, and tasks still added to the stalled handler are forwarded. The stalled handler is
+     * interrupted and dies once its current task returns; it starts no other task, but the one it is stuck in may
+     * still finish alongside the new handler.</p>
+     *
+     * @param stalled the handler which stopped making progress
+     */
+    static void restart(final ThreadPlayerHandler stalled) {
+        try {
+            PlayerThreads.SERVICE.execute(new Runnable() {
+                @Override public void run() {
+                    synchronized (PlayerThreads.MAPPER_LOCK) {
+                        PlayerThreads.replace(stalled);
+                    }
                 }
-            }
-        });
+            });
+        } catch (RejectedExecutionException ignored) {
+            // Shutting down, the handlers are stopped anyway
+        }
+    }
+
+    @GuardedBy("MAPPER_LOCK")
+    private static void replace(ThreadPlayerHandler stalled) {
+        Integer players = PlayerThreads.THREAD_MAP.remove(stalled);
+        if (players == null)
+            return; // Already replaced or shut down
+
+        ThreadPlayerHandler handler = new ThreadPlayerHandler(PlayerThreads.HANDLERS.indexOf(stalled));
+        for (ThreadPlayerWrapper wrapper : PlayerThreads.WRAPPER_MAP.values())
+            if (wrapper.getHandler() == stalled)
+                wrapper.handler = handler;
+
+        // Tasks added through a wrapper which still saw the stalled handler are forwarded from now on
+        stalled.replaceWith(handler);
+
+        PlayerThreads.THREAD_MAP.put(handler, players);
+        PlayerThreads.HANDLERS.set(PlayerThreads.HANDLERS.indexOf(stalled), handler);
+        Watchdog.unwatch(stalled.getHeartbeat());
+        Watchdog.watch(handler.getHeartbeat());
+        handler.start();
+
+        System.err.println("Watchdog: replaced " + stalled.getName() + " after a stall");
     }
 
     /**
@@ -145,41 +192,113 @@ public final class PlayerThreads {
     @AccessNoDoc
     static class ThreadPlayerHandler extends Thread {
         private final TransferQueue<Runnable> tasks = new LinkedTransferQueue<>();
-        private boolean stopped;
-        // Does not need to be volatile because only this thread can change it
+        private final Heartbeat heartbeat;
+        // Tasks added and not finished yet, counted before they are queued so a task just taken is never missed
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile boolean stopped;
+        // The handler which took over once this one stalled
+        private volatile ThreadPlayerHandler successor;
+
+        ThreadPlayerHandler(int index) {
+            super("Trident Player Handler #" + index);
+            this.heartbeat = new Heartbeat(this.getName(), this);
+        }
 
         @Override
         public void run() {
-            if (!this.stopped) {
+            while (!this.stopped) {
                 try {
                     Runnable task = this.tasks.take();
-                    task.run();
+                    ThreadPlayerHandler successor = this.successor;
+                    if (successor != null) {
+                        successor.addTask(task);
+                        this.inFlight.decrementAndGet();
+                        break;
+                    }
+
+                    this.heartbeat.begin(task);
+                    try {
+                        task.run();
+                    } finally {
+                        this.heartbeat.end();
+                        this.inFlight.decrementAndGet();
+                    }
                 } catch (InterruptedException ignored) {
+                    // Woken up to check if the handler was stopped
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
                 }
-                this.run();
             }
         }
 
-        @Override public void interrupt() {
-            super.interrupt();
-            this.addTask(new Runnable() {
-                @Override public void run() {
-                    ThreadPlayerHandler.this.stopped = true;
-                }
-            });
+        /**
+         * Gets the progress counter the watchdog uses to detect a stalled handler
+         *
+         * @return the heartbeat of the handler
+         */
+        Heartbeat getHeartbeat() {
+            return this.heartbeat;
         }
 
-        public void addTask(Runnable task) {
-            try {
-                this.tasks.transfer(task);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+        /**
+         * Stops the handler as soon as the task it is running finishes, without waiting for the queued tasks
+         */
+        void stopHandler() {
+            this.stopped = true;
+            this.interrupt();
+        }
+
+        /**
+         * Stops the handler, and hands its queued tasks and every task added to it later to another handler
+         *
+         * @param successor the handler to take over
+         */
+        void replaceWith(ThreadPlayerHandler successor) {
+            this.successor = successor;
+            this.stopHandler();
+            this.forwardTasks(successor);
+        }
+
+        private void forwardTasks(ThreadPlayerHandler successor) {
+            Runnable task;
+            while ((task = this.tasks.poll()) != null) {
+                successor.addTask(task);
+                this.inFlight.decrementAndGet();
             }
         }
+
+        /**
+         * Checks if there is nothing queued and nothing running on the handler
+         *
+         * @return {@code true} if the handler is waiting for work
+         */
+        boolean isIdle() {
+            return this.inFlight.get() == 0;
+        }
+
+        /**
+         * Gets the amount of tasks waiting to be handled
+         *
+         * @return the queued task count
+         */
+        int pendingTasks() {
+            return this.tasks.size();
+        }
+
+        public void addTask(Runnable task) {
+            this.inFlight.incrementAndGet();
+            this.tasks.add(task);
+
+            // Added while or after the handler was replaced, after its queue was handed over
+            ThreadPlayerHandler successor = this.successor;
+            if (successor != null)
+                this.forwardTasks(successor);
+        }
     }
 
     public static class ThreadPlayerWrapper /* implements Player */ {
-        private final ThreadPlayerHandler handler;
+        // Only swapped by the watchdog when the handler stalls
+        private volatile ThreadPlayerHandler handler;
 
         /**
          * Wraps the thread player handling thread
@@ -198,5 +317,14 @@ public final class PlayerThreads {
         public ThreadPlayerHandler getHandler() {
             return this.handler;
         }
+
+        /**
+         * Queues a task on the thread handling the player, after the tasks queued before it
+         *
+         * @param task the task to run
+         */
+        public void addTask(Runnable task) {
+            this.handler.addTask(task);
+        }
     }
 }
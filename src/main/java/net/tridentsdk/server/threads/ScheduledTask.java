@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.server.threads;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A task handed to the {@link TridentScheduler}, which can be used to cancel it <p/> <p>The task doubles as the node of
+ * the timing wheel bucket it waits in, so scheduling a task allocates nothing but the task itself and cancelling it
+ * unlinks it in constant time.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public final class ScheduledTask {
+    private static final AtomicIntegerFieldUpdater<ScheduledTask> CANCELLED =
+            AtomicIntegerFieldUpdater.newUpdater(ScheduledTask.class, "cancelled");
+
+    private final TridentScheduler scheduler;
+    private final Runnable runnable;
+    private final boolean async;
+    private final long delay;
+    private final long period;
+
+    // Owned by the tick thread
+    long due;
+    int level = -1;
+    int slot;
+    ScheduledTask prev;
+    ScheduledTask next;
+
+    private volatile int cancelled;
+
+    ScheduledTask(TridentScheduler scheduler, Runnable runnable, boolean async, long delay, long period) {
+        this.scheduler = scheduler;
+        this.runnable = runnable;
+        this.async = async;
+        this.delay = delay;
+        this.period = period;
+    }
+
+    /**
+     * Stops the task from running again <p/> <p>A run which already started is not interrupted. The task is removed
+     * from the scheduler right away when called from the tick thread, otherwise at the start of the next tick.</p>
+     *
+     * @return {@code true} if this call cancelled the task, {@code false} if it was cancelled already
+     */
+    public boolean cancel() {
+        if (!ScheduledTask.CANCELLED.compareAndSet(this, 0, 1))
+            return false;
+
+        this.scheduler.cancel(this);
+        return true;
+    }
+
+    /**
+     * Checks if the task was cancelled
+     *
+     * @return {@code true} if the task will not run again
+     */
+    public boolean isCancelled() {
+        return this.cancelled != 0;
+    }
+
+    /**
+     * Checks if the task runs on the background pool instead of the tick thread
+     *
+     * @return {@code true} if the task is asynchronous
+     */
+    public boolean isAsync() {
+        return this.async;
+    }
+
+    /**
+     * Gets the amount of ticks between two runs of the task
+     *
+     * @return the period in ticks, {@code 0} if the task runs once
+     */
+    public long getPeriod() {
+        return this.period;
+    }
+
+    /**
+     * Gets the task which is run
+     *
+     * @return the runnable of the task
+     */
+    public Runnable getRunnable() {
+        return this.runnable;
+    }
+
+    long getDelay() {
+        return this.delay;
+    }
+
+    boolean isLinked() {
+        return this.level >= 0;
+    }
+
+    void markDone() {
+        this.cancelled = 1;
+    }
+
+    @Override
+    public String toString() {
+        return "ScheduledTask[" + this.runnable + (this.async ? ", async" : "") +
+                (this.period > 0L ? ", every " + this.period + " ticks" : "") + "]";
+    }
+}
@@ -27,9 +27,10 @@
 
 package net.tridentsdk.server.threads;
 
-import net.tridentsdk.server.netty.client.ClientConnection;
-
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handles the majority of the lifecycle for the threads
@@ -40,17 +41,111 @@ public final class ThreadsManager {
     private ThreadsManager() {}
 
     /**
-     * Stops all the executors and clears all caches of concurrent threads
+     * Waits for the player handlers to run everything queued on them
+     *
+     * @param timeout the maximum time to wait, in milliseconds
+     * @return the amount of tasks still queued when the time ran out, {@code 0} if all were handled
+     */
+    public static int drainPlayers(long timeout) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        while (!ThreadsManager.playersIdle()) {
+            if (System.nanoTime() - deadline >= 0L) {
+                int pending = 0;
+                for (PlayerThreads.ThreadPlayerHandler handler : PlayerThreads.HANDLERS)
+                    pending += handler.pendingTasks();
+                return pending;
+            }
+
+            try {
+                Thread.sleep(5L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+
+        return 0;
+    }
+
+    private static boolean playersIdle() {
+        for (PlayerThreads.ThreadPlayerHandler handler : PlayerThreads.HANDLERS)
+            if (!handler.isIdle())
+                return false;
+        return true;
+    }
+
+    /**
+     * Stops all the executors and clears all caches of concurrent threads, without waiting for queued work
      */
     public static void stopAll() {
-        BackgroundTaskExecutor.SERVICE.shutdownNow();
-        PlayerThreads.SERVICE.shutdownNow();
-
-        PlayerThreads.THREAD_MAP.clear();
-        PlayerThreads.WRAPPER_MAP.clear();
-        for (Map.Entry<ClientConnection, PlayerThreads.ThreadPlayerWrapper> entry :
-                PlayerThreads.CACHE_MAP.entrySet())
-            entry.getValue().getHandler().interrupt();
-        PlayerThreads.CACHE_MAP.clear();
+        ThreadsManager.stopAll(0L);
+    }
+
+    /**
+     * Stops all the executors and clears all caches of concurrent threads <p/> <p>Background tasks that are already
+     * queued may run until the timeout expires, after which they are interrupted and dropped. The caches are only
+     * cleared once the player handlers have died, so no handler sees a half cleared map.</p>
+     *
+     * @param timeout the maximum time to wait for the threads to die, in milliseconds
+     * @return a description of the work that was abandoned because it did not finish in time
+     */
+    public static List<String> stopAll(long timeout) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        List<String> abandoned = new ArrayList<>();
+
+        // Stopped first, so it does not report the stopping threads or restart handlers on the dead mapper
+        Watchdog.stop();
+
+        LaneService cpu = BackgroundTaskExecutor.CPU;
+        LaneService io = BackgroundTaskExecutor.IO;
+        cpu.shutdown();
+        io.shutdown();
+        PlayerThreads.SERVICE.shutdown();
+        for (PlayerThreads.ThreadPlayerHandler handler : PlayerThreads.HANDLERS)
+            handler.stopHandler();
+
+        ThreadsManager.awaitOrKill(cpu, "CPU lane", deadline, abandoned);
+        ThreadsManager.awaitOrKill(io, "IO lane", deadline, abandoned);
+        ThreadsManager.awaitOrKill(PlayerThreads.SERVICE, "player thread mapper", deadline, abandoned);
+
+        for (PlayerThreads.ThreadPlayerHandler handler : PlayerThreads.HANDLERS) {
+            try {
+                handler.join(Math.max(1L, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            int pending = handler.pendingTasks();
+            if (handler.isAlive())
+                abandoned.add(handler.getName() + " is still running a task");
+            if (pending > 0)
+                abandoned.add(pending + " tasks queued on " + handler.getName());
+        }
+
+        synchronized (PlayerThreads.MAPPER_LOCK) {
+            PlayerThreads.THREAD_MAP.clear();
+            PlayerThreads.WRAPPER_MAP.clear();
+            PlayerThreads.CACHE_MAP.clear();
+            PlayerThreads.HANDLERS.clear();
+        }
+
+        return abandoned;
+    }
+
+    private static void awaitOrKill(ExecutorService service, String name, long deadline, List<String> abandoned) {
+        try {
+            long remaining = deadline - System.nanoTime();
+            if (remaining > 0L && service.awaitTermination(remaining, TimeUnit.NANOSECONDS))
+                return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        int dropped = service.shutdownNow().size();
+        if (dropped > 0)
+            abandoned.add(dropped + " tasks queued on the " + name);
+        else if (!service.isTerminated())
+            abandoned.add("the " + name + " is still running tasks");
     }
 }
@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.server.threads;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Runs delayed and repeating tasks, keyed by the tick they are due on <p/> <p>Synchronous tasks run on the tick thread
+ * during {@link #tick()}, asynchronous tasks are handed to the {@link BackgroundTaskExecutor} when they are due.</p>
+ * <p/> <p>Pending tasks are kept in a hierarchical timing wheel. The first wheel has a bucket for each of the next 256
+ * ticks, every further wheel covers 64 buckets of the whole wheel below it. A tick only looks at its own bucket, and
+ * every 256 ticks moves one bucket of the wheel above down, so the cost of a tick does not depend on the amount of
+ * pending tasks.</p> <p/> <p>Only the tick thread touches the wheels. Tasks scheduled or cancelled from other threads
+ * are queued and applied at the start of the next tick.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public final class TridentScheduler {
+    private static final int ROOT_BITS = 8;
+    private static final int ROOT_SIZE = 1 << TridentScheduler.ROOT_BITS;
+    private static final int ROOT_MASK = TridentScheduler.ROOT_SIZE - 1;
+    private static final int LEVEL_BITS = 6;
+    private static final int LEVEL_SIZE = 1 << TridentScheduler.LEVEL_BITS;
+    private static final int LEVEL_MASK = TridentScheduler.LEVEL_SIZE - 1;
+    private static final int LEVELS = 5;
+
+    // Tasks further out are parked in the last wheel and moved down again once it comes around
+    private static final long MAX_DELTA = (1L << TridentScheduler.ROOT_BITS +
+            (TridentScheduler.LEVELS - 1) * TridentScheduler.LEVEL_BITS) - 1L;
+
+    private final ScheduledTask[][] wheels = new ScheduledTask[TridentScheduler.LEVELS][];
+    private final Queue<ScheduledTask> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<ScheduledTask> cancelled = new ConcurrentLinkedQueue<>();
+
+    // The next tick to run, only written by the tick thread
+    private volatile long tick;
+    private volatile Thread tickThread;
+    private int pending;
+
+    public TridentScheduler() {
+        this.wheels[0] = new ScheduledTask[TridentScheduler.ROOT_SIZE];
+        for (int i = 1; i < TridentScheduler.LEVELS; i++)
+            this.wheels[i] = new ScheduledTask[TridentScheduler.LEVEL_SIZE];
+    }
+
+    /**
+     * Runs the task on the next tick
+     *
+     * @param task the task to run
+     * @return the handle to cancel the task
+     */
+    public ScheduledTask runTask(Runnable task) {
+        return this.schedule(task, false, 0L, 0L);
+    }
+
+    /**
+     * Runs the task on the tick thread after the given amount of ticks
+     *
+     * @param task  the task to run
+     * @param delay the ticks to wait, {@code 0} for the next tick
+     * @return the handle to cancel the task
+     */
+    public ScheduledTask runTaskLater(Runnable task, long delay) {
+        return this.schedule(task, false, delay, 0L);
+    }
+
+    /**
+     * Runs the task on the tick thread after the given amount of ticks, then every period
+     *
+     * @param task   the task to run
+     * @param delay  the ticks to wait before the first run
+     * @param period the ticks between two runs
+     * @return the handle to cancel the task
+     */
+    public ScheduledTask runTaskTimer(Runnable task, long delay, long period) {
+        if (period <= 0L)
+            throw new IllegalArgumentException("Period must be positive");
+        return this.schedule(task, false, delay, period);
+    }
+
+    /**
+     * Runs the task on the background pool on the next tick
+     *
+     * @param task the task to run
+     * @return the handle to cancel the task
+     */
+    public ScheduledTask runTaskAsync(Runnable task) {
+        return this.schedule(task, true, 0L, 0L);
+    }
+
+    /**
+     * Runs the task on the background pool after the given amount of ticks
+     *
+     * @param task  the task to run
+     * @param delay the ticks to wait, {@code 0} for the next tick
+     * @return the handle to cancel the task
+     */
+    public ScheduledTask runTaskAsyncLater(Runnable task, long delay) {
+        return this.schedule(task, true, delay, 0L);
+    }
+
+    /**
+     * Runs the task on the background pool after the given amount of ticks, then every period <p/> <p>Runs are
+     * started on the tick regardless of whether the previous run finished</p>
+     *
+     * @param task   the task to run
+     * @param delay  the ticks to wait before the first run
+     * @param period the ticks between two runs
+     * @return the handle to cancel the task
+     */
+    public ScheduledTask runTaskAsyncTimer(Runnable task, long delay, long period) {
+        if (period <= 0L)
+            throw new IllegalArgumentException("Period must be positive");
+        return this.schedule(task, true, delay, period);
+    }
+
+    private ScheduledTask schedule(Runnable runnable, boolean async, long delay, long period) {
+        if (runnable == null)
+            throw new NullPointerException("Task cannot be null");
+        if (delay < 0L)
+            throw new IllegalArgumentException("Delay cannot be negative");
+
+        ScheduledTask task = new ScheduledTask(this, runnable, async, delay, period);
+        if (Thread.currentThread() == this.tickThread)
+            this.insert(task);
+        else
+            this.scheduled.add(task);
+        return task;
+    }
+
+    void cancel(ScheduledTask task) {
+        if (Thread.currentThread() == this.tickThread)
+            this.unlink(task);
+        else
+            this.cancelled.add(task);
+    }
+
+    /**
+     * Gets the number of the next tick to run, which is the amount of ticks run so far
+     *
+     * @return the current tick
+     */
+    public long getCurrentTick() {
+        return this.tick;
+    }
+
+    /**
+     * Runs a single tick: applies the tasks scheduled and cancelled from other threads, then runs every task due on
+     * this tick <p/> <p>Must always be called from the same thread</p>
+     */
+    public void tick() {
+        this.tickThread = Thread.currentThread();
+
+        ScheduledTask task;
+        while ((task = this.scheduled.poll()) != null)
+            if (!task.isCancelled())
+                this.insert(task);
+        while ((task = this.cancelled.poll()) != null)
+            this.unlink(task);
+
+        long current = this.tick;
+        int index = (int) (current & TridentScheduler.ROOT_MASK);
+
+        // When the first wheel comes around, move the next bucket of each wheel above down, as far as needed
+        if (index == 0) {
+            for (int level = 1; level < TridentScheduler.LEVELS; level++)
+                if (this.cascade(level, current) != 0)
+                    break;
+        }
+
+        ScheduledTask due = this.detach(0, index);
+        this.tick = current + 1L;
+
+        while (due != null) {
+            task = due;
+            due = task.next;
+            task.next = null;
+
+            if (task.isCancelled())
+                continue;
+            this.run(task);
+
+            if (task.getPeriod() > 0L) {
+                if (!task.isCancelled()) {
+                    task.due += task.getPeriod();
+                    this.link(task);
+                }
+            } else {
+                task.markDone();
+            }
+        }
+    }
+
+    private void run(ScheduledTask task) {
+        try {
+            if (task.isAsync())
+                BackgroundTaskExecutor.execute(task.getRunnable());
+            else
+                task.getRunnable().run();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Gets the amount of tasks waiting in the wheels, not counting the ones scheduled from other threads since the last
+     * tick <p/> <p>Only accurate when called from the tick thread</p>
+     *
+     * @return the pending task count
+     */
+    public int getPendingTasks() {
+        return this.pending;
+    }
+
+    private void insert(ScheduledTask task) {
+        task.due = this.tick + task.getDelay();
+        this.link(task);
+    }
+
+    private void link(ScheduledTask task) {
+        long delta = task.due - this.tick;
+        int level;
+        int slot;
+
+        if (delta < 0L) {
+            // Overdue tasks run on the next tick
+            level = 0;
+            slot = (int) (this.tick & TridentScheduler.ROOT_MASK);
+        } else if (delta < TridentScheduler.ROOT_SIZE) {
+            level = 0;
+            slot = (int) (task.due & TridentScheduler.ROOT_MASK);
+        } else {
+            long due = task.due;
+            if (delta > TridentScheduler.MAX_DELTA)
+                due = this.tick + TridentScheduler.MAX_DELTA;
+
+            level = 1;
+            int shift = TridentScheduler.ROOT_BITS + TridentScheduler.LEVEL_BITS;
+            while (level < TridentScheduler.LEVELS - 1 && delta >= 1L << shift) {
+                level++;
+                shift += TridentScheduler.LEVEL_BITS;
+            }
+            slot = (int) (due >> shift - TridentScheduler.LEVEL_BITS & TridentScheduler.LEVEL_MASK);
+        }
+
+        ScheduledTask[] wheel = this.wheels[level];
+        ScheduledTask head = wheel[slot];
+        task.level = level;
+        task.slot = slot;
+        task.prev = null;
+        task.next = head;
+        if (head != null)
+            head.prev = task;
+        wheel[slot] = task;
+        this.pending++;
+    }
+
+    private void unlink(ScheduledTask task) {
+        if (!task.isLinked())
+            return;
+
+        if (task.prev == null)
+            this.wheels[task.level][task.slot] = task.next;
+        else
+            task.prev.next = task.next;
+        if (task.next != null)
+            task.next.prev = task.prev;
+
+        task.prev = null;
+        task.next = null;
+        task.level = -1;
+        this.pending--;
+    }
+
+    private int cascade(int level, long current) {
+        int shift = TridentScheduler.ROOT_BITS + (level - 1) * TridentScheduler.LEVEL_BITS;
+        int index = (int) (current >> shift & TridentScheduler.LEVEL_MASK);
+
+        ScheduledTask task = this.detach(level, index);
+        while (task != null) {
+            ScheduledTask next = task.next;
+            task.next = null;
+            this.link(task);
+            task = next;
+        }
+
+        return index;
+    }
+
+    /**
+     * Empties a bucket, marking every task in it as unlinked up front, so a task cancelled while the bucket is being
+     * worked through does not touch the bucket it left
+     */
+    private ScheduledTask detach(int level, int index) {
+        ScheduledTask head = this.wheels[level][index];
+        this.wheels[level][index] = null;
+
+        for (ScheduledTask task = head; task != null; task = task.next) {
+            task.prev = null;
+            task.level = -1;
+            this.pending--;
+        }
+
+        return head;
+    }
+}
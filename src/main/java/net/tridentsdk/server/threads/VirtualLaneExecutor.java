@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.server.threads;
+
+import net.tridentsdk.api.docs.AccessNoDoc;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lane which starts a virtual thread for every task, so blocking work does not tie up an OS thread while it waits
+ * <p/> <p>Virtual threads only exist from Java 21 onwards, while the server is compiled for Java 7. Everything is
+ * therefore looked up reflectively, and {@link #isSupported()} must be checked before creating the lane.</p> <p/>
+ * <p>There is no queue; instead the amount of tasks in flight is capped, and the overflow policy applies once the cap
+ * is reached.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+@AccessNoDoc
+final class VirtualLaneExecutor extends AbstractExecutorService implements LaneService {
+    private static final Method THREAD_OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_FACTORY;
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        Method perTask = null;
+
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+
+            // Preview builds expose the methods but refuse to run them
+            ofVirtual.invoke(null);
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException |
+                InvocationTargetException e) {
+            ofVirtual = null;
+        }
+
+        THREAD_OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_FACTORY = factory;
+        NEW_THREAD_PER_TASK_EXECUTOR = perTask;
+    }
+
+    private final String name;
+    private final int maxInFlight;
+    private final Semaphore permits;
+    private final ExecutorService delegate;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong waitTotal = new AtomicLong();
+    private final AtomicLong waitMax = new AtomicLong();
+
+    private volatile OverflowPolicy policy;
+
+    VirtualLaneExecutor(String name, int maxInFlight, OverflowPolicy policy) {
+        if (!VirtualLaneExecutor.isSupported())
+            throw new UnsupportedOperationException("Virtual threads are not supported by this JVM");
+
+        this.name = name;
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+        this.policy = policy;
+
+        try {
+            Object builder = VirtualLaneExecutor.THREAD_OF_VIRTUAL.invoke(null);
+            builder = VirtualLaneExecutor.BUILDER_NAME.invoke(builder, "Trident " + name + " Virtual #", 0L);
+            ThreadFactory factory = (ThreadFactory) VirtualLaneExecutor.BUILDER_FACTORY.invoke(builder);
+
+            this.delegate = (ExecutorService) VirtualLaneExecutor.NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new UnsupportedOperationException("Could not create a virtual thread executor", e);
+        }
+    }
+
+    /**
+     * Checks if the running JVM can start virtual threads
+     *
+     * @return {@code true} if a virtual lane can be created
+     */
+    static boolean isSupported() {
+        return VirtualLaneExecutor.THREAD_OF_VIRTUAL != null;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        this.submitted.incrementAndGet();
+
+        if (this.delegate.isShutdown()) {
+            this.dropped.incrementAndGet();
+            throw new RejectedExecutionException(this.name + " lane has been shut down");
+        }
+
+        if (!this.permits.tryAcquire()) {
+            this.overflow(command);
+            return;
+        }
+
+        this.start(command);
+    }
+
+    @Override
+    public boolean offer(Runnable command) {
+        this.submitted.incrementAndGet();
+        if (this.delegate.isShutdown())
+            return false;
+
+        if (!this.permits.tryAcquire()) {
+            this.overflowed.incrementAndGet();
+            return false;
+        }
+
+        try {
+            this.start(command);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Starts the task on a virtual thread, once it holds a permit
+     */
+    private void start(final Runnable command) {
+        final long queuedAt = System.nanoTime();
+        try {
+            this.delegate.execute(new Runnable() {
+                @Override public void run() {
+                    VirtualLaneExecutor.this.recordWait(System.nanoTime() - queuedAt);
+                    try {
+                        command.run();
+                    } catch (RuntimeException | Error e) {
+                        e.printStackTrace();
+                    } finally {
+                        VirtualLaneExecutor.this.completed.incrementAndGet();
+                        VirtualLaneExecutor.this.permits.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            this.permits.release();
+            this.dropped.incrementAndGet();
+            throw e;
+        }
+    }
+
+    private void overflow(Runnable command) {
+        this.overflowed.incrementAndGet();
+        switch (this.policy) {
+            case CALLER_RUNS:
+                command.run();
+                break;
+
+            // There is no queue to discard from, the newest task is the only candidate
+            case DISCARD_OLDEST:
+            case DISCARD:
+                this.dropped.incrementAndGet();
+                break;
+
+            case ABORT:
+                this.dropped.incrementAndGet();
+                throw new RejectedExecutionException(this.name + " lane is saturated");
+        }
+    }
+
+    private void recordWait(long wait) {
+        this.started.incrementAndGet();
+        this.waitTotal.addAndGet(wait);
+
+        long max = this.waitMax.get();
+        while (wait > max && !this.waitMax.compareAndSet(max, wait))
+            max = this.waitMax.get();
+    }
+
+    @Override
+    public OverflowPolicy getPolicy() {
+        return this.policy;
+    }
+
+    @Override
+    public void setPolicy(OverflowPolicy policy) {
+        if (policy == null)
+            throw new NullPointerException("Policy cannot be null");
+        this.policy = policy;
+    }
+
+    @Override
+    public LaneStatistics statistics() {
+        int inFlight = this.maxInFlight - this.permits.availablePermits();
+        long started = this.started.get();
+        return new LaneStatistics(this.name, inFlight, inFlight, 0, 0, this.submitted.get(), this.completed.get(),
+                                  this.overflowed.get(), this.dropped.get(),
+                                  started == 0L ? 0L : this.waitTotal.get() / started, this.waitMax.get());
+    }
+
+    @Override
+    public void shutdown() {
+        this.delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return this.delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return this.delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return this.delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return this.delegate.awaitTermination(timeout, unit);
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.server.threads;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.lang.management.*;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the {@link Heartbeat}s of the server workers and reports the ones which stop making progress <p/> <p>A worker
+ * is stalled when it is in the middle of a task and its heartbeat did not change for longer than the threshold. Idle
+ * workers waiting for tasks are never reported. Each stall is reported once, with the task, the stack of the worker,
+ * the owner of the lock it waits on and a dump of every thread.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public final class Watchdog {
+    private static final List<Heartbeat> HEARTBEATS = new CopyOnWriteArrayList<>();
+    private static volatile Thread thread;
+
+    private Watchdog() {}
+
+    /**
+     * Starts reporting stalls of the given heartbeat
+     *
+     * @param heartbeat the heartbeat to watch
+     */
+    public static void watch(Heartbeat heartbeat) {
+        Watchdog.HEARTBEATS.add(heartbeat);
+    }
+
+    /**
+     * Stops reporting stalls of the given heartbeat
+     *
+     * @param heartbeat the heartbeat to forget
+     */
+    public static void unwatch(Heartbeat heartbeat) {
+        Watchdog.HEARTBEATS.remove(heartbeat);
+    }
+
+    /**
+     * Starts the watchdog thread, if it is not running yet
+     *
+     * @param threshold             the time a task may run without progress before it is reported, in milliseconds
+     * @param interval              the time between checks, in milliseconds
+     * @param restartPlayerHandlers {@code true} to replace stalled player handlers with fresh threads
+     */
+    public static synchronized void start(final long threshold, final long interval,
+                                          final boolean restartPlayerHandlers) {
+        if (Watchdog.thread != null)
+            return;
+
+        Thread watchdog = new Thread(new Runnable() {
+            @Override public void run() {
+                Watchdog.loop(TimeUnit.MILLISECONDS.toNanos(threshold), interval, restartPlayerHandlers);
+            }
+        }, "Trident Watchdog");
+        watchdog.setDaemon(true);
+        watchdog.setPriority(Thread.MAX_PRIORITY);
+        watchdog.start();
+
+        Watchdog.thread = watchdog;
+    }
+
+    /**
+     * Stops the watchdog thread
+     */
+    public static synchronized void stop() {
+        Thread watchdog = Watchdog.thread;
+        if (watchdog != null) {
+            watchdog.interrupt();
+            Watchdog.thread = null;
+        }
+    }
+
+    private static void loop(long threshold, long interval, boolean restartPlayerHandlers) {
+        // Only touched by the watchdog thread
+        Map<Heartbeat, Pulse> pulses = new IdentityHashMap<>();
+
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long now = System.nanoTime();
+            pulses.keySet().retainAll(Watchdog.HEARTBEATS);
+
+            for (Heartbeat heartbeat : Watchdog.HEARTBEATS) {
+                Pulse pulse = pulses.get(heartbeat);
+                long beats = heartbeat.getBeats();
+                Object task = heartbeat.getTask();
+
+                if (pulse == null) {
+                    pulse = new Pulse();
+                    pulses.put(heartbeat, pulse);
+                }
+
+                if (pulse.beats != beats || task == null) {
+                    pulse.reset(beats, now);
+                    continue;
+                }
+
+                long stalled = now - pulse.since;
+                if (stalled < threshold || pulse.reported)
+                    continue;
+
+                pulse.reported = true;
+                Watchdog.report(heartbeat, task, stalled);
+
+                Thread worker = heartbeat.getThread();
+                if (restartPlayerHandlers && worker instanceof PlayerThreads.ThreadPlayerHandler)
+                    PlayerThreads.restart((PlayerThreads.ThreadPlayerHandler) worker);
+            }
+        }
+    }
+
+    private static void report(Heartbeat heartbeat, Object task, long stalled) {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        StringBuilder report = new StringBuilder();
+
+        report.append("Watchdog: ").append(heartbeat.getName()).append(" made no progress for ")
+              .append(TimeUnit.NANOSECONDS.toMillis(stalled)).append("ms\n");
+        report.append("Running task: ").append(task).append('\n');
+
+        ThreadInfo info = bean.getThreadInfo(new long[] { heartbeat.getThread().getId() },
+                                             bean.isObjectMonitorUsageSupported(),
+                                             bean.isSynchronizerUsageSupported())[0];
+        if (info != null) {
+            Watchdog.append(report, info);
+
+            // Follow the chain of lock owners, they are the ones actually holding up the worker
+            long owner = info.getLockOwnerId();
+            for (int depth = 0; owner != -1L && depth < 8; depth++) {
+                ThreadInfo ownerInfo = bean.getThreadInfo(new long[] { owner }, bean.isObjectMonitorUsageSupported(),
+                                                          bean.isSynchronizerUsageSupported())[0];
+                if (ownerInfo == null)
+                    break;
+
+                report.append("Lock owner:\n");
+                Watchdog.append(report, ownerInfo);
+                owner = ownerInfo.getLockOwnerId();
+            }
+        }
+
+        long[] deadlocked = bean.findDeadlockedThreads();
+        if (deadlocked != null)
+            report.append("Deadlock detected between ").append(deadlocked.length).append(" threads\n");
+
+        report.append("Full thread dump:\n");
+        for (ThreadInfo thread : bean.dumpAllThreads(bean.isObjectMonitorUsageSupported(),
+                                                     bean.isSynchronizerUsageSupported()))
+            Watchdog.append(report, thread);
+
+        System.err.print(report);
+    }
+
+    private static void append(StringBuilder report, ThreadInfo info) {
+        report.append('"').append(info.getThreadName()).append("\" id=").append(info.getThreadId()).append(' ')
+              .append(info.getThreadState());
+
+        if (info.getLockName() != null)
+            report.append(" on ").append(info.getLockName());
+        if (info.getLockOwnerName() != null)
+            report.append(" owned by \"").append(info.getLockOwnerName()).append("\" id=")
+                  .append(info.getLockOwnerId());
+        report.append('\n');
+
+        StackTraceElement[] trace = info.getStackTrace();
+        MonitorInfo[] monitors = info.getLockedMonitors();
+        for (int i = 0; i < trace.length; i++) {
+            report.append("    at ").append(trace[i]).append('\n');
+
+            for (MonitorInfo monitor : monitors)
+                if (monitor.getLockedStackDepth() == i)
+                    report.append("    - locked ").append(monitor).append('\n');
+        }
+
+        for (LockInfo lock : info.getLockedSynchronizers())
+            report.append("    - holds ").append(lock).append('\n');
+    }
+
+    /**
+     * The last heartbeat value seen by the watchdog, and since when it has not changed
+     */
+    private static final class Pulse {
+        private long beats = -1L;
+        private long since;
+        private boolean reported;
+
+        void reset(long beats, long since) {
+            this.beats = beats;
+            this.since = since;
+            this.reported = false;
+        }
+    }
+}
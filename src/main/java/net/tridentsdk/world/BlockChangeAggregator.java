@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world;
+
+import net.tridentsdk.api.world.Chunk;
+import net.tridentsdk.packets.play.out.PacketPlayOutBlockChange;
+import net.tridentsdk.packets.play.out.PacketPlayOutChunkData;
+import net.tridentsdk.packets.play.out.PacketPlayOutMultiBlockChange;
+import net.tridentsdk.server.netty.client.ClientConnection;
+import net.tridentsdk.server.netty.packet.Packet;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Collects the blocks changed during a tick and sends them to the viewers of their chunks once the tick is over <p/>
+ * <p>Changes are recorded per chunk section, each block once no matter how often it changed. When the tick ends, the
+ * changes of a chunk go out as a single block change or a single multi block change packet, carrying the state the
+ * blocks ended up with. A section with more than {@link #MAX_RECORDS} changed blocks is resent as a whole instead, and
+ * a column which lost one of those sections is resent whole from its cached chunk packet, see
+ * {@link TridentChunk#retainPacket()}.</p> <p/> <p>Every packet is encoded once and shared by all viewers of the
+ * chunk, see {@link ClientConnection#broadcast(java.util.Collection, Packet)}. Only clients which were sent the chunk
+ * get its changes, see {@link ChunkStreamer#wasSent(ClientConnection, int, int)}.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public class BlockChangeAggregator {
+    /**
+     * The most changed blocks of a section which are sent one by one, a section with more is resent
+     */
+    public static final int MAX_RECORDS = 64;
+
+    private final TridentWorld world;
+    @GuardedBy("this")
+    private final ChunkMap<ChunkChanges> chunks = new ChunkMap<>();
+    @GuardedBy("this")
+    private List<ChunkChanges> changed = new ArrayList<>();
+    @GuardedBy("this")
+    private final Queue<ChunkChanges> free = new ArrayDeque<>();
+
+    // Only used by the thread flushing the changes
+    private List<ChunkChanges> flushing = new ArrayList<>();
+    private final List<ClientConnection> receivers = new ArrayList<>();
+    private final PacketPlayOutBlockChange single = new PacketPlayOutBlockChange();
+    private final PacketPlayOutMultiBlockChange multi = new PacketPlayOutMultiBlockChange();
+
+    BlockChangeAggregator(TridentWorld world) {
+        this.world = world;
+    }
+
+    /**
+     * Records that a block changed, to be sent at the end of the tick
+     *
+     * @param x the block x coordinate
+     * @param y the block y coordinate
+     * @param z the block z coordinate
+     */
+    public synchronized void blockChanged(int x, int y, int z) {
+        long key = ChunkMap.key(x >> 4, z >> 4);
+        ChunkChanges changes = this.chunks.get(key);
+        if (changes == null) {
+            changes = this.free.poll();
+            if (changes == null)
+                changes = new ChunkChanges();
+
+            changes.reset(x >> 4, z >> 4);
+            this.chunks.put(key, changes);
+            this.changed.add(changes);
+        }
+
+        changes.add(y >> 4, ChunkSection.index(x & 15, y & 15, z & 15));
+    }
+
+    /**
+     * Gets the amount of chunks with changes waiting for the end of the tick
+     *
+     * @return the changed chunk count
+     */
+    public synchronized int getChangedChunks() {
+        return this.changed.size();
+    }
+
+    /**
+     * Sends the changes collected since the last flush to the viewers of the chunks. Called by the server thread at the
+     * end of the tick.
+     */
+    public void flush() {
+        synchronized (this) {
+            if (this.changed.isEmpty())
+                return;
+
+            List<ChunkChanges> flushing = this.changed;
+            this.changed = this.flushing;
+            this.flushing = flushing;
+            this.chunks.clear();
+        }
+
+        try {
+            for (ChunkChanges changes : this.flushing) {
+                try {
+                    this.send(changes);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        } finally {
+            synchronized (this) {
+                this.free.addAll(this.flushing);
+            }
+            this.flushing.clear();
+            this.receivers.clear();
+        }
+    }
+
+    private void send(ChunkChanges changes) {
+        // A client in view of the chunk may still be waiting for it, and would get the changes before the chunk
+        List<ClientConnection> viewers = this.receivers;
+        viewers.clear();
+        for (ClientConnection viewer : this.world.getViewTracker().getViewers(changes.x, changes.z))
+            if (this.world.getStreamer().wasSent(viewer, changes.x, changes.z))
+                viewers.add(viewer);
+        if (viewers.isEmpty())
+            return;
+
+        Chunk loaded = this.world.getChunkAt(changes.x, changes.z, false);
+        if (!(loaded instanceof TridentChunk))
+            return;
+
+        TridentChunk chunk = (TridentChunk) loaded;
+        int baseX = changes.x << 4;
+        int baseZ = changes.z << 4;
+
+        if (changes.resend != 0) {
+            // A section can only be replaced, not removed; the whole column clears the ones which are all air now
+            if ((chunk.getSectionMask() & changes.resend) != changes.resend) {
+                ClientConnection.broadcast(viewers, chunk.retainPacket());
+                return;
+            }
+
+            ClientConnection.broadcast(viewers, new PacketPlayOutChunkData().setSections(chunk, changes.resend));
+        }
+
+        int records = 0;
+        for (int section = 0; section < TridentChunk.SECTIONS; section++)
+            records += changes.counts[section];
+
+        if (records == 1) {
+            for (int section = 0; section < TridentChunk.SECTIONS; section++) {
+                if (changes.counts[section] == 0)
+                    continue;
+
+                int index = changes.records[section][0];
+                int x = index & 15;
+                int y = section << 4 | index >> 8;
+                int z = index >> 4 & 15;
+                ClientConnection.broadcast(viewers,
+                                           this.single.set(baseX | x, y, baseZ | z, chunk.getBlockState(x, y, z)));
+            }
+        } else if (records > 1) {
+            this.multi.setChunk(changes.x, changes.z, records);
+            for (int section = 0; section < TridentChunk.SECTIONS; section++) {
+                for (int i = 0; i < changes.counts[section]; i++) {
+                    int index = changes.records[section][i];
+                    int x = index & 15;
+                    int y = section << 4 | index >> 8;
+                    int z = index >> 4 & 15;
+                    this.multi.add(x, y, z, chunk.getBlockState(x, y, z));
+                }
+            }
+            ClientConnection.broadcast(viewers, this.multi);
+        }
+    }
+
+    /**
+     * The blocks changed in a single chunk during the tick, reused once they are sent
+     */
+    private static final class ChunkChanges {
+        final short[][] records = new short[TridentChunk.SECTIONS][];
+        final int[] counts = new int[TridentChunk.SECTIONS];
+        int x;
+        int z;
+        // Sections with too many changes to send one by one
+        int resend;
+
+        void reset(int x, int z) {
+            this.x = x;
+            this.z = z;
+            this.resend = 0;
+            for (int section = 0; section < TridentChunk.SECTIONS; section++)
+                this.counts[section] = 0;
+        }
+
+        void add(int section, int index) {
+            if ((this.resend & 1 << section) != 0)
+                return;
+
+            short[] records = this.records[section];
+            if (records == null)
+                records = this.records[section] = new short[BlockChangeAggregator.MAX_RECORDS];
+
+            int count = this.counts[section];
+            for (int i = 0; i < count; i++)
+                if (records[i] == index)
+                    return;
+
+            if (count == BlockChangeAggregator.MAX_RECORDS) {
+                this.resend |= 1 << section;
+                this.counts[section] = 0;
+                return;
+            }
+
+            records[count] = (short) index;
+            this.counts[section] = count + 1;
+        }
+    }
+}
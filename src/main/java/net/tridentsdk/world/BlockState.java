@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world;
+
+/**
+ * Packs a block id and its metadata into a single int, the way the protocol sends blocks <p/> <p>The id takes the
+ * upper 12 bits and the metadata the lower 4.</p>
+ *
+ * @author The TridentSDK Team
+ */
+public final class BlockState {
+    /**
+     * The state of air, which chunks are filled with by default
+     */
+    public static final int AIR = 0;
+
+    private BlockState() {}
+
+    /**
+     * Packs a block id and metadata into a block state
+     *
+     * @param id   the block id, 0 to 4095
+     * @param meta the block metadata, 0 to 15
+     * @return the block state
+     */
+    public static int of(int id, int meta) {
+        return (id & 0xFFF) << 4 | meta & 0xF;
+    }
+
+    /**
+     * Gets the block id out of a block state
+     *
+     * @param state the block state
+     * @return the block id
+     */
+    public static int id(int state) {
+        return state >>> 4;
+    }
+
+    /**
+     * Gets the block metadata out of a block state
+     *
+     * @param state the block state
+     * @return the block metadata
+     */
+    public static int meta(int state) {
+        return state & 0xF;
+    }
+}
@@ -0,0 +1,410 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A concurrent open addressing map keyed by packed chunk coordinates, so looking up a chunk allocates nothing <p/>
+ * <p>Reads never lock. Writes are serialized on the map, and a table which gets too full is rehashed into a new one
+ * which is then published as a whole.</p> <p/> <p>A slot is claimed by a single key for the lifetime of its table:
+ * removing a key leaves a tombstone only the same key may fill again. A reader which found the key in a slot can
+ * therefore trust the value next to it. Tombstones are dropped on the next rehash.</p>
+ *
+ * @param <V> the type of value mapped to the chunk coordinates
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public final class ChunkMap<V> implements Serializable {
+    private static final long serialVersionUID = -4219402870571963813L;
+
+    private static final Object TOMBSTONE = new Object();
+    private static final int MIN_CAPACITY = 64;
+
+    private transient volatile Table table;
+
+    @GuardedBy("this")
+    private transient int size;
+    @GuardedBy("this")
+    private transient int tombstones;
+
+    /**
+     * Creates an empty map
+     */
+    public ChunkMap() {
+        this(ChunkMap.MIN_CAPACITY);
+    }
+
+    /**
+     * Creates an empty map which can hold the given amount of chunks without rehashing
+     *
+     * @param expected the amount of chunks expected to be loaded
+     */
+    public ChunkMap(int expected) {
+        this.table = new Table(ChunkMap.capacityFor(expected));
+    }
+
+    /**
+     * Packs chunk coordinates into a single key
+     *
+     * @param x the chunk x coordinate
+     * @param z the chunk z coordinate
+     * @return the key of the chunk
+     */
+    public static long key(int x, int z) {
+        return (long) x << 32 | z & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Gets the x coordinate out of a packed key
+     *
+     * @param key the key made by {@link #key(int, int)}
+     * @return the chunk x coordinate
+     */
+    public static int keyX(long key) {
+        return (int) (key >> 32);
+    }
+
+    /**
+     * Gets the z coordinate out of a packed key
+     *
+     * @param key the key made by {@link #key(int, int)}
+     * @return the chunk z coordinate
+     */
+    public static int keyZ(long key) {
+        return (int) key;
+    }
+
+    private static int capacityFor(int expected) {
+        int capacity = ChunkMap.MIN_CAPACITY;
+        // Keep at most half of the slots in use
+        while (capacity < expected * 2)
+            capacity <<= 1;
+        return capacity;
+    }
+
+    private static int hash(long key) {
+        // The murmur3 finalizer, neighbouring chunks differ in few low bits
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /**
+     * Gets the value mapped to the chunk
+     *
+     * @param x the chunk x coordinate
+     * @param z the chunk z coordinate
+     * @return the value, or {@code null} if there is none
+     */
+    public V get(int x, int z) {
+        return this.get(ChunkMap.key(x, z));
+    }
+
+    /**
+     * Gets the value mapped to the packed chunk key
+     *
+     * @param key the key made by {@link #key(int, int)}
+     * @return the value, or {@code null} if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        Table table = this.table;
+        int mask = table.mask;
+
+        for (int i = ChunkMap.hash(key) & mask; ; i = i + 1 & mask) {
+            Object value = table.values.get(i);
+            if (value == null)
+                return null;
+
+            // The key is written before the value, so it is visible once the value is
+            if (table.keys.get(i) == key)
+                return value == ChunkMap.TOMBSTONE ? null : (V) value;
+        }
+    }
+
+    /**
+     * Checks if a value is mapped to the chunk
+     *
+     * @param x the chunk x coordinate
+     * @param z the chunk z coordinate
+     * @return {@code true} if the chunk has a value
+     */
+    public boolean containsKey(int x, int z) {
+        return this.get(ChunkMap.key(x, z)) != null;
+    }
+
+    /**
+     * Maps the value to the chunk
+     *
+     * @param x     the chunk x coordinate
+     * @param z     the chunk z coordinate
+     * @param value the value to map
+     * @return the value previously mapped to the chunk, or {@code null}
+     */
+    public V put(int x, int z, V value) {
+        return this.put(ChunkMap.key(x, z), value, false);
+    }
+
+    /**
+     * Maps the value to the packed chunk key
+     *
+     * @param key   the key made by {@link #key(int, int)}
+     * @param value the value to map
+     * @return the value previously mapped to the chunk, or {@code null}
+     */
+    public V put(long key, V value) {
+        return this.put(key, value, false);
+    }
+
+    /**
+     * Maps the value to the chunk, unless a value is mapped to it already
+     *
+     * @param x     the chunk x coordinate
+     * @param z     the chunk z coordinate
+     * @param value the value to map
+     * @return the value already mapped to the chunk, or {@code null} if the given value was mapped
+     */
+    public V putIfAbsent(int x, int z, V value) {
+        return this.put(ChunkMap.key(x, z), value, true);
+    }
+
+    /**
+     * Maps the value to the packed chunk key, unless a value is mapped to it already
+     *
+     * @param key   the key made by {@link #key(int, int)}
+     * @param value the value to map
+     * @return the value already mapped to the chunk, or {@code null} if the given value was mapped
+     */
+    public V putIfAbsent(long key, V value) {
+        return this.put(key, value, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized V put(long key, V value, boolean onlyIfAbsent) {
+        if (value == null)
+            throw new NullPointerException("Value cannot be null");
+
+        Table table = this.table;
+        int mask = table.mask;
+        for (int i = ChunkMap.hash(key) & mask; ; i = i + 1 & mask) {
+            Object old = table.values.get(i);
+
+            if (old == null) {
+                table.keys.set(i, key);
+                table.values.set(i, value);
+
+                if (++this.size + this.tombstones > table.values.length() >> 1)
+                    this.rehash();
+                return null;
+            }
+
+            if (table.keys.get(i) == key) {
+                if (old == ChunkMap.TOMBSTONE) {
+                    this.tombstones--;
+                    this.size++;
+                    old = null;
+                } else if (onlyIfAbsent) {
+                    return (V) old;
+                }
+
+                table.values.set(i, value);
+                return (V) old;
+            }
+        }
+    }
+
+    /**
+     * Removes the value mapped to the chunk
+     *
+     * @param x the chunk x coordinate
+     * @param z the chunk z coordinate
+     * @return the removed value, or {@code null} if there was none
+     */
+    public V remove(int x, int z) {
+        return this.remove(ChunkMap.key(x, z), null);
+    }
+
+    /**
+     * Removes the value mapped to the packed chunk key
+     *
+     * @param key the key made by {@link #key(int, int)}
+     * @return the removed value, or {@code null} if there was none
+     */
+    public V remove(long key) {
+        return this.remove(key, null);
+    }
+
+    /**
+     * Removes the value mapped to the packed chunk key, only if it is the given value
+     *
+     * @param key      the key made by {@link #key(int, int)}
+     * @param expected the value which has to be mapped, {@code null} to remove any value
+     * @return the removed value, or {@code null} if nothing was removed
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V remove(long key, V expected) {
+        Table table = this.table;
+        int mask = table.mask;
+
+        for (int i = ChunkMap.hash(key) & mask; ; i = i + 1 & mask) {
+            Object old = table.values.get(i);
+            if (old == null)
+                return null;
+
+            if (table.keys.get(i) == key) {
+                if (old == ChunkMap.TOMBSTONE || (expected != null && old != expected))
+                    return null;
+
+                table.values.set(i, ChunkMap.TOMBSTONE);
+                this.size--;
+                this.tombstones++;
+                return (V) old;
+            }
+        }
+    }
+
+    @GuardedBy("this")
+    private void rehash() {
+        Table old = this.table;
+        // Mostly tombstones only needs cleaning up, not a bigger table
+        Table table = new Table(ChunkMap.capacityFor(this.size + 1));
+
+        for (int i = 0; i < old.values.length(); i++) {
+            Object value = old.values.get(i);
+            if (value == null || value == ChunkMap.TOMBSTONE)
+                continue;
+
+            long key = old.keys.get(i);
+            int j = ChunkMap.hash(key) & table.mask;
+            while (table.values.get(j) != null)
+                j = j + 1 & table.mask;
+
+            table.keys.set(j, key);
+            table.values.set(j, value);
+        }
+
+        this.tombstones = 0;
+        this.table = table;
+    }
+
+    /**
+     * Gets the amount of chunks with a value
+     *
+     * @return the size of the map
+     */
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * Checks if no chunk has a value
+     *
+     * @return {@code true} if the map is empty
+     */
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    /**
+     * Copies the values of the map, in no particular order <p/> <p>Values put or removed during the copy may or may not
+     * be part of it</p>
+     *
+     * @return the current values
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        Table table = this.table;
+        List<V> values = new ArrayList<>();
+
+        for (int i = 0; i < table.values.length(); i++) {
+            Object value = table.values.get(i);
+            if (value != null && value != ChunkMap.TOMBSTONE)
+                values.add((V) value);
+        }
+
+        return values;
+    }
+
+    /**
+     * Removes every value
+     */
+    public synchronized void clear() {
+        this.table = new Table(ChunkMap.MIN_CAPACITY);
+        this.size = 0;
+        this.tombstones = 0;
+    }
+
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+
+        Table table = this.table;
+        out.writeInt(this.size);
+        for (int i = 0; i < table.values.length(); i++) {
+            Object value = table.values.get(i);
+            if (value != null && value != ChunkMap.TOMBSTONE) {
+                out.writeLong(table.keys.get(i));
+                out.writeObject(value);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+
+        int size = in.readInt();
+        this.table = new Table(ChunkMap.capacityFor(size));
+        this.size = 0;
+        this.tombstones = 0;
+        for (int i = 0; i < size; i++)
+            this.put(in.readLong(), (V) in.readObject());
+    }
+
+    private static final class Table {
+        private final AtomicLongArray keys;
+        private final AtomicReferenceArray<Object> values;
+        private final int mask;
+
+        Table(int capacity) {
+            this.keys = new AtomicLongArray(capacity);
+            this.values = new AtomicReferenceArray<>(capacity);
+            this.mask = capacity - 1;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world;
+
+import net.tridentsdk.api.world.Chunk;
+import net.tridentsdk.server.threads.BackgroundTaskExecutor;
+import net.tridentsdk.world.region.RegionFile;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Saves the changed chunks of a world in the background, a few at a time <p/> <p>Every autosave interval the chunks
+ * marked dirty are queued, sorted by region file. Each tick hands the next batch to the IO lane of the
+ * {@link BackgroundTaskExecutor}, as long as the I/O budget allows: a token bucket is filled with the budget every
+ * tick and drained by the bytes the batches actually wrote, so the disk never sees more than the configured rate and
+ * an autosave does not stall the server thread or the other IO tasks. A batch the lane has no room for is kept for
+ * the next tick, it is never written on the server thread.</p> <p/> <p>A batch only holds chunks of a
+ * single region file, and the region is forced to the disk once, after its last chunk of the round is written, rather
+ * than once per chunk.</p> <p/> <p>Chunks are encoded from snapshots, so the world keeps changing while they are
+ * written. Chunks changed again before their turn are written once; chunks unloaded before their turn are saved by the
+ * {@link ChunkViewTracker} instead.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public class ChunkSaver {
+    private static final int TICKS_PER_SECOND = 20;
+    private static final int INITIAL_CHUNK_SIZE = 8 * 1024;
+
+    private static volatile int interval = 6000;
+    private static volatile long budget = 4L * 1024L * 1024L;
+
+    private final TridentWorld world;
+    @GuardedBy("this")
+    private final Deque<TridentChunk> queue = new ArrayDeque<>();
+    @GuardedBy("this")
+    private long tick;
+    @GuardedBy("this")
+    private long tokens;
+
+    private final AtomicBoolean writing = new AtomicBoolean();
+    private final AtomicLong written = new AtomicLong();
+    private volatile int chunkSize = ChunkSaver.INITIAL_CHUNK_SIZE;
+
+    ChunkSaver(TridentWorld world) {
+        this.world = world;
+    }
+
+    /**
+     * Gets the amount of ticks between two autosaves
+     *
+     * @return the autosave interval in ticks
+     */
+    public static int getInterval() {
+        return ChunkSaver.interval;
+    }
+
+    /**
+     * Sets the amount of ticks between two autosaves, for every world
+     *
+     * @param ticks the autosave interval in ticks, {@code 0} to disable autosaves
+     */
+    public static void setInterval(int ticks) {
+        if (ticks < 0)
+            throw new IllegalArgumentException("The autosave interval cannot be negative");
+
+        ChunkSaver.interval = ticks;
+    }
+
+    /**
+     * Gets the amount of bytes autosaves may write per second, in every world
+     *
+     * @return the I/O budget in bytes per second
+     */
+    public static long getBudget() {
+        return ChunkSaver.budget;
+    }
+
+    /**
+     * Sets the amount of bytes autosaves may write per second, in every world
+     *
+     * @param bytesPerSecond the I/O budget in bytes per second
+     */
+    public static void setBudget(long bytesPerSecond) {
+        if (bytesPerSecond <= 0L)
+            throw new IllegalArgumentException("The I/O budget must be positive");
+
+        ChunkSaver.budget = bytesPerSecond;
+    }
+
+    /**
+     * Gets the amount of chunks still waiting to be written in the current autosave
+     *
+     * @return the queued chunks
+     */
+    public synchronized int getQueued() {
+        return this.queue.size();
+    }
+
+    /**
+     * Checks if a batch of chunks is being written
+     *
+     * @return {@code true} if a batch runs
+     */
+    public boolean isWriting() {
+        return this.writing.get();
+    }
+
+    /**
+     * Queues every dirty chunk to be written, unless the previous autosave is still running. Called by {@link #tick()}
+     * once the interval runs out.
+     */
+    public synchronized void autosave() {
+        if (!this.queue.isEmpty())
+            return;
+
+        List<TridentChunk> dirty = new ArrayList<>();
+        for (Chunk chunk : this.world.getLoadedChunks())
+            if (chunk instanceof TridentChunk && ((TridentChunk) chunk).isDirty())
+                dirty.add((TridentChunk) chunk);
+
+        Collections.sort(dirty, new Comparator<TridentChunk>() {
+            @Override
+            public int compare(TridentChunk first, TridentChunk second) {
+                long firstRegion = ChunkSaver.region(first);
+                long secondRegion = ChunkSaver.region(second);
+                if (firstRegion != secondRegion)
+                    return firstRegion < secondRegion ? -1 : 1;
+
+                long firstChunk = ChunkMap.key(first.getX(), first.getZ());
+                long secondChunk = ChunkMap.key(second.getX(), second.getZ());
+                return firstChunk < secondChunk ? -1 : firstChunk == secondChunk ? 0 : 1;
+            }
+        });
+        this.queue.addAll(dirty);
+    }
+
+    /**
+     * Refills the I/O budget, runs the autosave once the interval is over, and hands the next batch of chunks to the
+     * IO lane. Called by the server thread.
+     */
+    public synchronized void tick() {
+        this.tick++;
+        if (!(this.world.getLoader() instanceof TridentWorldLoader))
+            return;
+
+        int interval = ChunkSaver.interval;
+        if (interval > 0 && this.tick % interval == 0L)
+            this.autosave();
+
+        // Allow a burst of a second, and pay for what the previous batch wrote beyond the budget
+        long perSecond = ChunkSaver.budget;
+        this.tokens = Math.min(perSecond, this.tokens + perSecond / ChunkSaver.TICKS_PER_SECOND);
+        this.tokens -= this.written.getAndSet(0L);
+
+        if (this.tokens <= 0L || this.queue.isEmpty() || !this.writing.compareAndSet(false, true))
+            return;
+
+        List<TridentChunk> batch = new ArrayList<>();
+        TridentChunk first = this.queue.peek();
+        long region = ChunkSaver.region(first);
+        long estimate = 0L;
+        TridentChunk chunk;
+        while ((chunk = this.queue.peek()) != null && ChunkSaver.region(chunk) == region &&
+                (batch.isEmpty() || estimate + this.chunkSize <= this.tokens)) {
+            this.queue.poll();
+
+            // Saved in the meantime, or unloaded and saved by the view tracker
+            if (!chunk.isDirty() || this.world.getChunkAt(chunk.getX(), chunk.getZ(), false) != chunk)
+                continue;
+
+            batch.add(chunk);
+            estimate += this.chunkSize;
+        }
+
+        // The region is done for this round, force it to the disk once its last batch is written
+        boolean last = chunk == null || ChunkSaver.region(chunk) != region;
+        SaveBatch save = new SaveBatch((TridentWorldLoader) this.world.getLoader(), batch, last ? first : null);
+
+        // A saturated lane would run the writes on the server thread, so the batch waits for the next tick instead
+        if (!BackgroundTaskExecutor.offer(save, BackgroundTaskExecutor.Lane.IO)) {
+            for (int i = batch.size() - 1; i >= 0; i--)
+                this.queue.addFirst(batch.get(i));
+            this.writing.set(false);
+        }
+    }
+
+    private static long region(TridentChunk chunk) {
+        return ChunkMap.key(chunk.getX() >> 5, chunk.getZ() >> 5);
+    }
+
+    /**
+     * Writes chunks of a single region, and forces the region to the disk if it is given a chunk to flush
+     */
+    private final class SaveBatch implements Runnable {
+        private final TridentWorldLoader loader;
+        private final List<TridentChunk> chunks;
+        private final TridentChunk flush;
+
+        SaveBatch(TridentWorldLoader loader, List<TridentChunk> chunks, TridentChunk flush) {
+            this.loader = loader;
+            this.chunks = chunks;
+            this.flush = flush;
+        }
+
+        @Override
+        public void run() {
+            ChunkSaver saver = ChunkSaver.this;
+            long bytes = 0L;
+
+            try {
+                for (TridentChunk chunk : this.chunks) {
+                    try {
+                        bytes += this.loader.saveChunk(chunk);
+                    } catch (IOException | RuntimeException e) {
+                        // Still dirty, the next autosave tries again
+                        e.printStackTrace();
+                    }
+                }
+
+                if (this.flush != null)
+                    this.loader.flush(saver.world, this.flush.getX(), this.flush.getZ());
+            } finally {
+                if (!this.chunks.isEmpty() && bytes > 0L)
+                    saver.chunkSize = (int) Math.max(RegionFile.SECTOR_SIZE, bytes / this.chunks.size());
+
+                saver.written.addAndGet(bytes);
+                saver.writing.set(false);
+            }
+        }
+    }
+}
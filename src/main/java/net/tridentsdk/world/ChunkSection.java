@@ -0,0 +1,591 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world;
+
+import net.tridentsdk.world.storage.LongStorage;
+import net.tridentsdk.world.storage.StorageBackends;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A 16x16x16 cube of blocks in a chunk <p/> <p>Blocks are stored as indices into a palette of the block states which
+ * appear in the section, packed into longs with as few bits as the palette needs. The palette starts out at 4 bits and
+ * widens a bit at a time as new states appear. Past 8 bits the palette stops paying off, and the section stores the
+ * block states themselves.</p> <p/> <p>An index never spans two longs, which wastes a few bits for odd widths but
+ * keeps reads to a single load, shift and mask.</p> <p/> <p>Block light and sky light are kept as 4 bit nibbles next to
+ * the blocks. All data lives in storage of the current {@link net.tridentsdk.world.storage.StorageBackend}, which
+ * must be handed back with {@link #release()} once the section is no longer used.</p> <p/> <p>Snapshots share sections
+ * with their chunk instead of copying them, see {@link #retain()}. A shared section is immutable; the chunk copies it
+ * before the next change and leaves the original to the snapshots.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public final class ChunkSection implements Serializable {
+    /**
+     * The amount of blocks in a section
+     */
+    public static final int SIZE = 16 * 16 * 16;
+
+    private static final long serialVersionUID = -8471296236140291583L;
+    private static final int MIN_BITS = 4;
+    private static final int MAX_PALETTE_BITS = 8;
+    private static final int DIRECT_BITS = 16;
+    private static final int LIGHT_LONGS = ChunkSection.SIZE * 4 / 64;
+    private static final long FULL_LIGHT = 0xFFFFFFFFFFFFFFFFL;
+
+    @GuardedBy("this")
+    private int bits;
+    @GuardedBy("this")
+    private int perLong;
+    @GuardedBy("this")
+    private long mask;
+    // All storage is null once the section is released
+    @GuardedBy("this")
+    private transient LongStorage data;
+    @GuardedBy("this")
+    private transient LongStorage blockLight;
+    @GuardedBy("this")
+    private transient LongStorage skyLight;
+
+    // null once the section stores block states directly
+    @GuardedBy("this")
+    private int[] palette;
+    @GuardedBy("this")
+    private int paletteSize;
+
+    @GuardedBy("this")
+    private int nonAir;
+
+    // The chunk holds one reference, every snapshot sharing the section another
+    @GuardedBy("this")
+    private int references = 1;
+
+    /**
+     * Creates a section filled with air
+     */
+    public ChunkSection() {
+        this.palette = new int[1 << ChunkSection.MIN_BITS];
+        this.palette[0] = BlockState.AIR;
+        this.paletteSize = 1;
+        this.resize(ChunkSection.MIN_BITS);
+
+        this.blockLight = StorageBackends.get().allocate(ChunkSection.LIGHT_LONGS);
+        this.skyLight = StorageBackends.get().allocate(ChunkSection.LIGHT_LONGS);
+        for (int i = 0; i < ChunkSection.LIGHT_LONGS; i++)
+            this.skyLight.set(i, ChunkSection.FULL_LIGHT);
+    }
+
+    private ChunkSection(ChunkSection source) {
+        this.palette = source.palette == null ? null : source.palette.clone();
+        this.paletteSize = source.paletteSize;
+        this.nonAir = source.nonAir;
+        this.bits = source.bits;
+        this.perLong = source.perLong;
+        this.mask = source.mask;
+        this.data = ChunkSection.copy(source.data);
+        this.blockLight = ChunkSection.copy(source.blockLight);
+        this.skyLight = ChunkSection.copy(source.skyLight);
+    }
+
+    /**
+     * Gets the index of a block in the section
+     *
+     * @param x the x coordinate in the section, 0 to 15
+     * @param y the y coordinate in the section, 0 to 15
+     * @param z the z coordinate in the section, 0 to 15
+     * @return the index of the block
+     */
+    public static int index(int x, int y, int z) {
+        return y << 8 | z << 4 | x;
+    }
+
+    /**
+     * Gets the state of the block at the index
+     *
+     * @param index the index made by {@link #index(int, int, int)}
+     * @return the block state
+     */
+    public synchronized int get(int index) {
+        if (this.data == null)
+            return BlockState.AIR;
+
+        int value = this.read(index);
+        return this.palette == null ? value : this.palette[value];
+    }
+
+    /**
+     * Sets the state of the block at the index
+     *
+     * @param index the index made by {@link #index(int, int, int)}
+     * @param state the new block state
+     * @return the previous block state
+     */
+    public synchronized int set(int index, int state) {
+        this.checkWritable();
+
+        int value = this.valueOf(state);
+        int old = this.read(index);
+        if (this.palette != null)
+            old = this.palette[old];
+
+        if (old == state)
+            return old;
+
+        this.write(index, value);
+        if (old == BlockState.AIR)
+            this.nonAir++;
+        else if (state == BlockState.AIR)
+            this.nonAir--;
+
+        return old;
+    }
+
+    /**
+     * Copies the state of every block in the section, in index order
+     *
+     * @param states the array to copy into, at least {@link #SIZE} long
+     */
+    public synchronized void copyStates(int[] states) {
+        if (this.data == null) {
+            Arrays.fill(states, 0, ChunkSection.SIZE, BlockState.AIR);
+            return;
+        }
+
+        for (int i = 0; i < ChunkSection.SIZE; i++) {
+            int value = this.read(i);
+            states[i] = this.palette == null ? value : this.palette[value];
+        }
+    }
+
+    /**
+     * Replaces every block in the section at once <p/> <p>The palette is built in a single pass and the data written
+     * a long at a time, rather than widening the palette over and over as when blocks are set one by one. Used by
+     * terrain generation, which fills whole sections.</p>
+     *
+     * @param states the block states in index order, at least {@link #SIZE} long
+     */
+    public synchronized void loadStates(int[] states) {
+        this.checkWritable();
+
+        int[] palette = new int[1 << ChunkSection.MAX_PALETTE_BITS];
+        int[] values = new int[ChunkSection.SIZE];
+        int size = 0;
+        int nonAir = 0;
+        int last = 0;
+        boolean direct = false;
+
+        for (int i = 0; i < ChunkSection.SIZE; i++) {
+            int state = states[i];
+            if (state != BlockState.AIR)
+                nonAir++;
+            if (direct)
+                continue;
+
+            // Neighbouring blocks are mostly the same, try the last hit before searching
+            if (size == 0 || palette[last] != state) {
+                last = -1;
+                for (int p = 0; p < size; p++) {
+                    if (palette[p] == state) {
+                        last = p;
+                        break;
+                    }
+                }
+
+                if (last == -1) {
+                    if (size == palette.length) {
+                        direct = true;
+                        continue;
+                    }
+
+                    palette[size] = state;
+                    last = size++;
+                }
+            }
+
+            values[i] = last;
+        }
+
+        if (direct) {
+            this.palette = null;
+            this.paletteSize = 0;
+            this.resize(ChunkSection.DIRECT_BITS);
+            values = states;
+        } else {
+            int bits = Math.max(ChunkSection.MIN_BITS, 32 - Integer.numberOfLeadingZeros(size - 1));
+            this.palette = new int[1 << bits];
+            System.arraycopy(palette, 0, this.palette, 0, size);
+            this.paletteSize = size;
+            this.resize(bits);
+        }
+
+        for (int slot = 0, i = 0; i < ChunkSection.SIZE; slot++) {
+            long packed = 0L;
+            for (int shift = 0; shift + this.bits <= 64 && i < ChunkSection.SIZE; shift += this.bits)
+                packed |= (long) values[i++] << shift;
+            this.data.set(slot, packed);
+        }
+
+        this.nonAir = nonAir;
+    }
+
+    /**
+     * Gets the light emitted onto the block by nearby blocks
+     *
+     * @param index the index made by {@link #index(int, int, int)}
+     * @return the block light, 0 to 15
+     */
+    public synchronized int getBlockLight(int index) {
+        return this.blockLight == null ? 0 : ChunkSection.getNibble(this.blockLight, index);
+    }
+
+    /**
+     * Sets the light emitted onto the block by nearby blocks
+     *
+     * @param index the index made by {@link #index(int, int, int)}
+     * @param light the block light, 0 to 15
+     */
+    public synchronized void setBlockLight(int index, int light) {
+        this.checkShared();
+        if (this.blockLight != null)
+            ChunkSection.setNibble(this.blockLight, index, light);
+    }
+
+    /**
+     * Gets the light reaching the block from the sky
+     *
+     * @param index the index made by {@link #index(int, int, int)}
+     * @return the sky light, 0 to 15
+     */
+    public synchronized int getSkyLight(int index) {
+        return this.skyLight == null ? 15 : ChunkSection.getNibble(this.skyLight, index);
+    }
+
+    /**
+     * Sets the light reaching the block from the sky
+     *
+     * @param index the index made by {@link #index(int, int, int)}
+     * @param light the sky light, 0 to 15
+     */
+    public synchronized void setSkyLight(int index, int light) {
+        this.checkShared();
+        if (this.skyLight != null)
+            ChunkSection.setNibble(this.skyLight, index, light);
+    }
+
+    /**
+     * Copies the light of the section as nibble arrays, two blocks to a byte with the lower index in the low nibble
+     *
+     * @param blockLight the array to copy the block light into, 2048 bytes long
+     * @param skyLight   the array to copy the sky light into, 2048 bytes long
+     */
+    public synchronized void copyLight(byte[] blockLight, byte[] skyLight) {
+        if (this.blockLight == null)
+            return;
+
+        ChunkSection.copyNibbles(this.blockLight, blockLight);
+        ChunkSection.copyNibbles(this.skyLight, skyLight);
+    }
+
+    /**
+     * Replaces the light of the section with nibble arrays, laid out like {@link #copyLight(byte[], byte[])} writes
+     * them
+     *
+     * @param blockLight the block light, 2048 bytes long
+     * @param skyLight   the sky light, 2048 bytes long
+     */
+    public synchronized void loadLight(byte[] blockLight, byte[] skyLight) {
+        this.checkShared();
+        if (this.blockLight == null)
+            return;
+
+        ChunkSection.loadNibbles(blockLight, this.blockLight);
+        ChunkSection.loadNibbles(skyLight, this.skyLight);
+    }
+
+    private static void copyNibbles(LongStorage storage, byte[] nibbles) {
+        for (int i = 0; i < ChunkSection.LIGHT_LONGS; i++) {
+            long value = storage.get(i);
+            for (int b = 0; b < 8; b++)
+                nibbles[i << 3 | b] = (byte) (value >>> (b << 3));
+        }
+    }
+
+    private static void loadNibbles(byte[] nibbles, LongStorage storage) {
+        for (int i = 0; i < ChunkSection.LIGHT_LONGS; i++) {
+            long value = 0L;
+            for (int b = 0; b < 8; b++)
+                value |= (nibbles[i << 3 | b] & 0xFFL) << (b << 3);
+            storage.set(i, value);
+        }
+    }
+
+    private static int getNibble(LongStorage storage, int index) {
+        return (int) (storage.get(index >> 4) >>> ((index & 15) << 2) & 0xF);
+    }
+
+    private static void setNibble(LongStorage storage, int index, int value) {
+        int shift = (index & 15) << 2;
+        storage.set(index >> 4, storage.get(index >> 4) & ~(0xFL << shift) | (long) (value & 0xF) << shift);
+    }
+
+    /**
+     * Shares the section with a snapshot, which makes it immutable until every snapshot released it again
+     *
+     * @return this section
+     */
+    public synchronized ChunkSection retain() {
+        if (this.data == null)
+            throw new IllegalStateException("Section was released");
+
+        this.references++;
+        return this;
+    }
+
+    /**
+     * Checks if a snapshot shares the section, so it must be copied before it is changed
+     *
+     * @return {@code true} if the section cannot be changed
+     */
+    public synchronized boolean isShared() {
+        return this.references > 1;
+    }
+
+    /**
+     * Copies the blocks and light of the section into new storage
+     *
+     * @return a section which is not shared with anything
+     */
+    public synchronized ChunkSection copy() {
+        if (this.data == null)
+            throw new IllegalStateException("Section was released");
+
+        return new ChunkSection(this);
+    }
+
+    /**
+     * Drops a reference to the section, handing its storage back to the backend once the chunk and every snapshot
+     * dropped theirs. A released section reads as air and can no longer be changed.
+     */
+    public synchronized void release() {
+        if (this.data == null || --this.references > 0)
+            return;
+
+        this.data.release();
+        this.blockLight.release();
+        this.skyLight.release();
+        this.data = null;
+        this.blockLight = null;
+        this.skyLight = null;
+    }
+
+    /**
+     * Checks if every block in the section is air, so the section does not need to be kept
+     *
+     * @return {@code true} if the section is empty
+     */
+    public synchronized boolean isEmpty() {
+        return this.nonAir == 0;
+    }
+
+    /**
+     * Checks if the section is lit the way a missing section reads: no block light, and full sky light
+     *
+     * @return {@code true} if dropping the section loses no light
+     */
+    public synchronized boolean hasDefaultLight() {
+        if (this.blockLight == null)
+            return true;
+
+        for (int i = 0; i < ChunkSection.LIGHT_LONGS; i++)
+            if (this.blockLight.get(i) != 0L || this.skyLight.get(i) != ChunkSection.FULL_LIGHT)
+                return false;
+        return true;
+    }
+
+    /**
+     * Gets the amount of blocks which are not air
+     *
+     * @return the non-air block count
+     */
+    public synchronized int getNonAirCount() {
+        return this.nonAir;
+    }
+
+    /**
+     * Gets the amount of bits each block takes
+     *
+     * @return the bits per block
+     */
+    public synchronized int getBitsPerBlock() {
+        return this.bits;
+    }
+
+    /**
+     * Estimates the memory taken by the block data, the light and the palette, in bytes
+     *
+     * @return the approximate size of the section
+     */
+    public synchronized int getMemoryUsage() {
+        if (this.data == null)
+            return 0;
+
+        return (this.data.length() + ChunkSection.LIGHT_LONGS * 2) * 8 +
+                (this.palette == null ? 0 : this.palette.length * 4);
+    }
+
+    @GuardedBy("this")
+    private void checkWritable() {
+        if (this.data == null)
+            throw new IllegalStateException("Section was released");
+        this.checkShared();
+    }
+
+    @GuardedBy("this")
+    private void checkShared() {
+        if (this.references > 1)
+            throw new IllegalStateException("Section is shared with a snapshot, change a copy instead");
+    }
+
+    private static LongStorage copy(LongStorage source) {
+        LongStorage copy = StorageBackends.get().allocate(source.length());
+        for (int i = 0; i < source.length(); i++)
+            copy.set(i, source.get(i));
+        return copy;
+    }
+
+    @GuardedBy("this")
+    private int read(int index) {
+        int shift = index % this.perLong * this.bits;
+        return (int) (this.data.get(index / this.perLong) >>> shift & this.mask);
+    }
+
+    @GuardedBy("this")
+    private void write(int index, int value) {
+        int slot = index / this.perLong;
+        int shift = index % this.perLong * this.bits;
+        this.data.set(slot, this.data.get(slot) & ~(this.mask << shift) | (long) value << shift);
+    }
+
+    @GuardedBy("this")
+    private int valueOf(int state) {
+        if (this.palette == null)
+            return state;
+
+        for (int i = 0; i < this.paletteSize; i++)
+            if (this.palette[i] == state)
+                return i;
+
+        if (this.paletteSize == this.palette.length) {
+            if (this.bits == ChunkSection.MAX_PALETTE_BITS) {
+                this.removePalette();
+                return state;
+            }
+
+            this.widen(this.bits + 1);
+        }
+
+        this.palette[this.paletteSize] = state;
+        return this.paletteSize++;
+    }
+
+    @GuardedBy("this")
+    private void widen(int bits) {
+        int[] values = new int[ChunkSection.SIZE];
+        for (int i = 0; i < ChunkSection.SIZE; i++)
+            values[i] = this.read(i);
+
+        int[] palette = new int[1 << bits];
+        System.arraycopy(this.palette, 0, palette, 0, this.paletteSize);
+        this.palette = palette;
+
+        this.resize(bits);
+        for (int i = 0; i < ChunkSection.SIZE; i++)
+            this.write(i, values[i]);
+    }
+
+    @GuardedBy("this")
+    private void removePalette() {
+        int[] states = new int[ChunkSection.SIZE];
+        this.copyStates(states);
+
+        this.palette = null;
+        this.paletteSize = 0;
+        this.resize(ChunkSection.DIRECT_BITS);
+        for (int i = 0; i < ChunkSection.SIZE; i++)
+            this.write(i, states[i]);
+    }
+
+    @GuardedBy("this")
+    private void resize(int bits) {
+        if (this.data != null)
+            this.data.release();
+
+        this.bits = bits;
+        this.perLong = 64 / bits;
+        this.mask = (1L << bits) - 1L;
+        this.data = StorageBackends.get().allocate((ChunkSection.SIZE + this.perLong - 1) / this.perLong);
+    }
+
+    private static void write(ObjectOutputStream out, LongStorage storage) throws IOException {
+        out.writeInt(storage.length());
+        for (int i = 0; i < storage.length(); i++)
+            out.writeLong(storage.get(i));
+    }
+
+    private static LongStorage read(ObjectInputStream in) throws IOException {
+        LongStorage storage = StorageBackends.get().allocate(in.readInt());
+        for (int i = 0; i < storage.length(); i++)
+            storage.set(i, in.readLong());
+        return storage;
+    }
+
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        if (this.data == null)
+            throw new IllegalStateException("Section was released");
+
+        out.defaultWriteObject();
+        ChunkSection.write(out, this.data);
+        ChunkSection.write(out, this.blockLight);
+        ChunkSection.write(out, this.skyLight);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.references = 1;
+        this.data = ChunkSection.read(in);
+        this.blockLight = ChunkSection.read(in);
+        this.skyLight = ChunkSection.read(in);
+    }
+}
@@ -0,0 +1,398 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import net.tridentsdk.api.world.Chunk;
+import net.tridentsdk.packets.play.out.PacketPlayOutChunkData;
+import net.tridentsdk.server.netty.client.ClientConnection;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.*;
+
+/**
+ * Sends the chunks of a world to the clients viewing them, nearest first and a few at a time <p/> <p>Every client has
+ * a queue of the chunks in its view it did not receive yet, ordered in a spiral around the chunk it is in: ring by
+ * ring outwards, and nearest first within a ring. When the client moves to another chunk the queue is rebuilt around
+ * the new center, so the terrain around the client always comes first, and the chunks which left the view are
+ * unloaded on the client. The same happens when the view distance of the client changes, which is the distance the
+ * client asked for capped by {@link #getViewDistance()}.</p> <p/> <p>Each tick the clients take turns sending from
+ * their queues, until the budget of the tick runs out. A single client never gets more than its own budget per tick,
+ * and nothing more while its channel is not writable, so a join or a teleport neither saturates the link of the client
+ * nor takes the whole tick from the others. Chunks which are not loaded yet are requested in the background and
+ * skipped until they are loaded and lit.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public class ChunkStreamer {
+    /**
+     * The largest view distance a client can be streamed, in chunks
+     */
+    public static final int MAX_VIEW_DISTANCE = 32;
+    // Chunk loads a single client may start per tick, so a far teleport does not flood the lanes
+    private static final int MAX_REQUESTS = 8;
+    // The offsets of the spiral, the first (2r + 1)^2 of which cover exactly the square of radius r
+    private static final int[] SPIRAL_X;
+    private static final int[] SPIRAL_Z;
+
+    static {
+        int side = 2 * ChunkStreamer.MAX_VIEW_DISTANCE + 1;
+        Integer[] offsets = new Integer[side * side];
+        int count = 0;
+        for (int x = -ChunkStreamer.MAX_VIEW_DISTANCE; x <= ChunkStreamer.MAX_VIEW_DISTANCE; x++)
+            for (int z = -ChunkStreamer.MAX_VIEW_DISTANCE; z <= ChunkStreamer.MAX_VIEW_DISTANCE; z++)
+                offsets[count++] = (x + ChunkStreamer.MAX_VIEW_DISTANCE) * side + z + ChunkStreamer.MAX_VIEW_DISTANCE;
+
+        Arrays.sort(offsets, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer first, Integer second) {
+                int firstX = ChunkStreamer.offsetX(first);
+                int firstZ = ChunkStreamer.offsetZ(first);
+                int secondX = ChunkStreamer.offsetX(second);
+                int secondZ = ChunkStreamer.offsetZ(second);
+
+                int ring = Integer.compare(Math.max(Math.abs(firstX), Math.abs(firstZ)),
+                                           Math.max(Math.abs(secondX), Math.abs(secondZ)));
+                if (ring != 0)
+                    return ring;
+
+                return Integer.compare(firstX * firstX + firstZ * firstZ, secondX * secondX + secondZ * secondZ);
+            }
+        });
+
+        SPIRAL_X = new int[offsets.length];
+        SPIRAL_Z = new int[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            ChunkStreamer.SPIRAL_X[i] = ChunkStreamer.offsetX(offsets[i]);
+            ChunkStreamer.SPIRAL_Z[i] = ChunkStreamer.offsetZ(offsets[i]);
+        }
+    }
+
+    private static volatile long tickBudget = 1024L * 1024L;
+    private static volatile long connectionBudget = 128L * 1024L;
+    private static volatile int viewDistance = 10;
+
+    private final TridentWorld world;
+    @GuardedBy("this")
+    private final Map<ClientConnection, SendQueue> queues = new HashMap<>();
+    // The queues in the order they take turns, the first one to send moves along every tick
+    @GuardedBy("this")
+    private final List<SendQueue> order = new ArrayList<>();
+    @GuardedBy("this")
+    private int turn;
+
+    ChunkStreamer(TridentWorld world) {
+        this.world = world;
+    }
+
+    /**
+     * Gets the amount of chunk data all clients of a world are sent per tick, together
+     *
+     * @return the budget of a tick in bytes
+     */
+    public static long getTickBudget() {
+        return ChunkStreamer.tickBudget;
+    }
+
+    /**
+     * Sets the amount of chunk data all clients of a world are sent per tick, together
+     *
+     * @param bytes the budget of a tick in bytes
+     */
+    public static void setTickBudget(long bytes) {
+        if (bytes <= 0L)
+            throw new IllegalArgumentException("The chunk budget of a tick must be positive");
+
+        ChunkStreamer.tickBudget = bytes;
+    }
+
+    /**
+     * Gets the amount of chunk data a single client is sent per tick
+     *
+     * @return the budget of a client in bytes
+     */
+    public static long getConnectionBudget() {
+        return ChunkStreamer.connectionBudget;
+    }
+
+    /**
+     * Sets the amount of chunk data a single client is sent per tick
+     *
+     * @param bytes the budget of a client in bytes
+     */
+    public static void setConnectionBudget(long bytes) {
+        if (bytes <= 0L)
+            throw new IllegalArgumentException("The chunk budget of a connection must be positive");
+
+        ChunkStreamer.connectionBudget = bytes;
+    }
+
+    /**
+     * Gets the largest view distance the clients of every world are currently streamed, which the
+     * {@link net.tridentsdk.server.ViewDistanceGovernor} lowers while the server is under load
+     *
+     * @return the view distance cap, in chunks
+     */
+    public static int getViewDistance() {
+        return ChunkStreamer.viewDistance;
+    }
+
+    /**
+     * Sets the largest view distance the clients of every world are streamed. The streamers of the worlds pick it up
+     * once they are {@link #refresh() refreshed}.
+     *
+     * @param chunks the view distance cap, in chunks, at most {@link #MAX_VIEW_DISTANCE}
+     */
+    public static void setViewDistance(int chunks) {
+        if (chunks < 0 || chunks > ChunkStreamer.MAX_VIEW_DISTANCE)
+            throw new IllegalArgumentException("The view distance must be between 0 and " +
+                                                       ChunkStreamer.MAX_VIEW_DISTANCE);
+
+        ChunkStreamer.viewDistance = chunks;
+    }
+
+    /**
+     * Gets the view distance the client is streamed with, the distance it asked for capped by the server
+     *
+     * @param viewer the client
+     * @return the effective view distance, in chunks
+     */
+    public static int getViewDistance(ClientConnection viewer) {
+        return Math.max(0, Math.min(viewer.getViewDistance(), ChunkStreamer.viewDistance));
+    }
+
+    /**
+     * Moves the view of the client, queueing the chunks which entered it nearest first and unloading those which left
+     * it <p/> <p>The view is passed on to the {@link ChunkViewTracker}, which also decides the entities the client is
+     * shown. Nothing changes while the client stays in the same chunk with the same
+     * {@link #getViewDistance(ClientConnection) view distance}.</p>
+     *
+     * @param viewer  the client
+     * @param centerX the x coordinate of the chunk the client is in
+     * @param centerZ the z coordinate of the chunk the client is in
+     */
+    public synchronized void updateView(ClientConnection viewer, int centerX, int centerZ) {
+        SendQueue queue = this.queues.get(viewer);
+        if (queue == null) {
+            queue = new SendQueue(viewer);
+            this.queues.put(viewer, queue);
+            this.order.add(queue);
+        }
+
+        this.move(queue, centerX, centerZ);
+    }
+
+    /**
+     * Applies the current view distance of every client, after the client or the server changed it
+     */
+    public synchronized void refresh() {
+        for (SendQueue queue : this.order)
+            this.move(queue, queue.centerX, queue.centerZ);
+    }
+
+    /**
+     * Applies the current view distance of the client, after it changed it
+     *
+     * @param viewer the client
+     */
+    public synchronized void refresh(ClientConnection viewer) {
+        SendQueue queue = this.queues.get(viewer);
+        if (queue != null)
+            this.move(queue, queue.centerX, queue.centerZ);
+    }
+
+    /**
+     * Stops streaming chunks to the client, e.g. when it leaves the world or disconnects, and stops it from viewing
+     * any chunk of the world
+     *
+     * @param viewer the client
+     */
+    public synchronized void removeViewer(ClientConnection viewer) {
+        SendQueue queue = this.queues.remove(viewer);
+        if (queue != null)
+            this.order.remove(queue);
+
+        this.world.getViewTracker().removeViewer(viewer);
+    }
+
+    /**
+     * Gets the amount of chunks the client still has to be sent
+     *
+     * @param viewer the client
+     * @return the queued chunks, {@code 0} if the client views nothing in this world
+     */
+    public synchronized int getQueued(ClientConnection viewer) {
+        SendQueue queue = this.queues.get(viewer);
+        return queue == null ? 0 : queue.size;
+    }
+
+    /**
+     * Checks if the client was sent the chunk and still has it, so changes to the chunk can be sent to it
+     *
+     * @param viewer the client
+     * @param x      the chunk x coordinate
+     * @param z      the chunk z coordinate
+     * @return {@code true} if the chunk was sent and not unloaded since
+     */
+    public synchronized boolean wasSent(ClientConnection viewer, int x, int z) {
+        SendQueue queue = this.queues.get(viewer);
+        return queue != null && queue.sent.contains(ChunkMap.key(x, z));
+    }
+
+    /**
+     * Sends the next chunks to the clients within the budgets of the tick. Called by the server thread.
+     */
+    public synchronized void tick() {
+        int count = this.order.size();
+        if (count == 0)
+            return;
+
+        long budget = ChunkStreamer.tickBudget;
+        long perConnection = ChunkStreamer.connectionBudget;
+        this.turn = (this.turn + 1) % count;
+        for (int i = 0; i < count && budget > 0L; i++) {
+            SendQueue queue = this.order.get((this.turn + i) % count);
+            try {
+                budget -= queue.send(Math.min(budget, perConnection));
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @GuardedBy("this")
+    private void move(SendQueue queue, int centerX, int centerZ) {
+        int radius = ChunkStreamer.getViewDistance(queue.viewer);
+        if (queue.centerX == centerX && queue.centerZ == centerZ && queue.radius == radius)
+            return;
+
+        this.world.getViewTracker().updateView(queue.viewer, centerX, centerZ, radius);
+        queue.move(centerX, centerZ, radius);
+    }
+
+    private static int offsetX(int offset) {
+        return offset / (2 * ChunkStreamer.MAX_VIEW_DISTANCE + 1) - ChunkStreamer.MAX_VIEW_DISTANCE;
+    }
+
+    private static int offsetZ(int offset) {
+        return offset % (2 * ChunkStreamer.MAX_VIEW_DISTANCE + 1) - ChunkStreamer.MAX_VIEW_DISTANCE;
+    }
+
+    /**
+     * The chunks a single client still has to be sent, and those it was sent already
+     */
+    private final class SendQueue {
+        final ClientConnection viewer;
+        // Packed chunk keys, see ChunkMap#key(int, int), in the order they are sent
+        long[] pending = new long[0];
+        int size;
+        final Set<Long> sent = new HashSet<>();
+        int centerX;
+        int centerZ;
+        int radius = -1;
+
+        SendQueue(ClientConnection viewer) {
+            this.viewer = viewer;
+        }
+
+        void move(int centerX, int centerZ, int radius) {
+            this.centerX = centerX;
+            this.centerZ = centerZ;
+            this.radius = radius;
+
+            for (Iterator<Long> iterator = this.sent.iterator(); iterator.hasNext(); ) {
+                long key = iterator.next();
+                int x = ChunkMap.keyX(key);
+                int z = ChunkMap.keyZ(key);
+                if (Math.abs(x - centerX) > radius || Math.abs(z - centerZ) > radius) {
+                    iterator.remove();
+                    this.viewer.sendPacket(new PacketPlayOutChunkData().setUnload(x, z));
+                }
+            }
+
+            int side = 2 * radius + 1;
+            if (this.pending.length < side * side)
+                this.pending = new long[side * side];
+
+            this.size = 0;
+            for (int i = 0; i < side * side; i++) {
+                long key = ChunkMap.key(centerX + ChunkStreamer.SPIRAL_X[i], centerZ + ChunkStreamer.SPIRAL_Z[i]);
+                if (!this.sent.contains(key))
+                    this.pending[this.size++] = key;
+            }
+        }
+
+        /**
+         * Sends the nearest chunks which are ready, as long as the channel is writable and the allowance lasts; the
+         * chunk which crosses the allowance is still sent, so a chunk larger than the allowance does not stall
+         *
+         * @return the bytes sent
+         */
+        long send(long allowance) {
+            Channel channel = this.viewer.getChannel();
+            long bytes = 0L;
+            int requests = 0;
+            int read = 0;
+            int write = 0;
+
+            while (read < this.size && bytes < allowance && channel.isWritable()) {
+                long key = this.pending[read++];
+                int x = ChunkMap.keyX(key);
+                int z = ChunkMap.keyZ(key);
+
+                Chunk chunk = ChunkStreamer.this.world.getChunkAt(x, z, false);
+                if (chunk == null) {
+                    if (requests++ < ChunkStreamer.MAX_REQUESTS)
+                        ChunkStreamer.this.world.requestChunk(x, z);
+                    this.pending[write++] = key;
+                    continue;
+                }
+
+                // Other chunks cannot be encoded and are never sent; unlit ones wait for the light engine
+                if (!(chunk instanceof TridentChunk))
+                    continue;
+                if (!((TridentChunk) chunk).isLightPopulated()) {
+                    this.pending[write++] = key;
+                    continue;
+                }
+
+                ByteBuf encoded = ((TridentChunk) chunk).retainPacket();
+                bytes += encoded.readableBytes();
+                this.viewer.sendEncoded(encoded);
+                this.sent.add(key);
+            }
+
+            System.arraycopy(this.pending, read, this.pending, write, this.size - read);
+            this.size = write + this.size - read;
+            return bytes;
+        }
+    }
+}
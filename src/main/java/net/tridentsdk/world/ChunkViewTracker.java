@@ -0,0 +1,384 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world;
+
+import net.tridentsdk.api.world.Chunk;
+import net.tridentsdk.api.world.WorldLoader;
+import net.tridentsdk.server.netty.client.ClientConnection;
+import net.tridentsdk.server.threads.BackgroundTaskExecutor;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Counts the clients viewing every chunk of a world, and unloads the chunks nobody views <p/> <p>A client views the
+ * square of chunks within its view distance. Once the last viewer of a chunk leaves, the chunk is queued for eviction
+ * and unloaded after a grace period, unless a viewer comes back first; players walking back and forth over a border
+ * keep their chunks loaded. Chunks with unsaved changes are written on the IO lane of the
+ * {@link BackgroundTaskExecutor} first, and are only released once the save is done.</p> <p/> <p>Evictions are run by
+ * {@link #tick()}, on the server thread. Chunks loaded without any viewer, e.g. by a plugin, are queued the same way as
+ * soon as they are loaded.</p> <p/> <p>Viewers entering and leaving a chunk are passed on to the
+ * {@link EntityViewTracker}, which shows and hides the entities in the chunk.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public class ChunkViewTracker {
+    private static volatile int gracePeriod = 600;
+
+    private final TridentWorld world;
+    private final ChunkMap<ChunkView> views = new ChunkMap<>();
+    @GuardedBy("this")
+    private final Map<ClientConnection, ViewArea> areas = new HashMap<>();
+    @GuardedBy("this")
+    private final Queue<Eviction> evictions = new ArrayDeque<>();
+    private final Queue<TridentChunk> saved = new ConcurrentLinkedQueue<>();
+    @GuardedBy("this")
+    private long tick;
+
+    ChunkViewTracker(TridentWorld world) {
+        this.world = world;
+    }
+
+    /**
+     * Gets the amount of ticks a chunk stays loaded after its last viewer left
+     *
+     * @return the grace period in ticks
+     */
+    public static int getGracePeriod() {
+        return ChunkViewTracker.gracePeriod;
+    }
+
+    /**
+     * Sets the amount of ticks a chunk stays loaded after its last viewer left, for every world
+     *
+     * @param ticks the grace period in ticks, {@code 0} to unload chunks on the next tick
+     */
+    public static void setGracePeriod(int ticks) {
+        if (ticks < 0)
+            throw new IllegalArgumentException("The grace period cannot be negative");
+
+        ChunkViewTracker.gracePeriod = ticks;
+    }
+
+    /**
+     * Moves the area viewed by the client, which starts viewing the area if it did not view any chunk yet <p/> <p>Only
+     * the chunks which entered or left the view are touched. The chunks are not loaded, that is up to whoever streams
+     * them to the client.</p>
+     *
+     * @param viewer       the client
+     * @param centerX      the x coordinate of the chunk the client is in
+     * @param centerZ      the z coordinate of the chunk the client is in
+     * @param viewDistance the view distance of the client, in chunks
+     */
+    public synchronized void updateView(ClientConnection viewer, int centerX, int centerZ, int viewDistance) {
+        ViewArea area = new ViewArea(centerX, centerZ, viewDistance);
+        ViewArea old = this.areas.put(viewer, area);
+
+        if (old != null) {
+            for (int x = old.minX(); x <= old.maxX(); x++)
+                for (int z = old.minZ(); z <= old.maxZ(); z++)
+                    if (!area.contains(x, z))
+                        this.release(viewer, x, z);
+        }
+
+        for (int x = area.minX(); x <= area.maxX(); x++)
+            for (int z = area.minZ(); z <= area.maxZ(); z++)
+                if (old == null || !old.contains(x, z))
+                    this.acquire(viewer, x, z);
+    }
+
+    /**
+     * Stops the client from viewing any chunk of the world, e.g. when it leaves the world or disconnects
+     *
+     * @param viewer the client
+     */
+    public synchronized void removeViewer(ClientConnection viewer) {
+        ViewArea area = this.areas.remove(viewer);
+        if (area == null)
+            return;
+
+        for (int x = area.minX(); x <= area.maxX(); x++)
+            for (int z = area.minZ(); z <= area.maxZ(); z++)
+                this.release(viewer, x, z);
+    }
+
+    /**
+     * Gets the clients viewing the chunk
+     *
+     * @param x the chunk x coordinate
+     * @param z the chunk z coordinate
+     * @return the viewers, which is empty if there are none
+     */
+    public Set<ClientConnection> getViewers(int x, int z) {
+        ChunkView view = this.views.get(x, z);
+        if (view == null)
+            return Collections.emptySet();
+
+        return Collections.unmodifiableSet(view.viewers);
+    }
+
+    /**
+     * Gets the amount of clients viewing the chunk
+     *
+     * @param x the chunk x coordinate
+     * @param z the chunk z coordinate
+     * @return the reference count of the chunk
+     */
+    public int getViewerCount(int x, int z) {
+        ChunkView view = this.views.get(x, z);
+        return view == null ? 0 : view.viewers.size();
+    }
+
+    /**
+     * Gets the amount of chunks waiting for their grace period to run out
+     *
+     * @return the queued evictions, including those cancelled by a returning viewer
+     */
+    public synchronized int getPendingEvictions() {
+        return this.evictions.size();
+    }
+
+    /**
+     * Queues the chunk for eviction if nobody views it, called once the world loaded the chunk
+     */
+    synchronized void chunkLoaded(int x, int z) {
+        long key = ChunkMap.key(x, z);
+        ChunkView view = this.views.get(key);
+        if (view == null) {
+            view = new ChunkView();
+            this.views.put(key, view);
+        }
+
+        if (view.viewers.isEmpty() && view.evictAt < 0L && !view.saving)
+            this.queue(key, view);
+    }
+
+    /**
+     * Runs the evictions whose grace period ran out, and releases the chunks which finished saving
+     */
+    public synchronized void tick() {
+        this.tick++;
+
+        TridentChunk chunk;
+        while ((chunk = this.saved.poll()) != null) {
+            long key = ChunkMap.key(chunk.getX(), chunk.getZ());
+            ChunkView view = this.views.get(key);
+            if (view == null || !view.saving)
+                continue;
+
+            view.saving = false;
+            if (!view.viewers.isEmpty())
+                continue;
+
+            // Changed while it was written, or the write failed; try again later rather than losing the changes
+            if (!this.unloadSaved(key, chunk))
+                this.queue(key, view);
+        }
+
+        Eviction eviction;
+        while ((eviction = this.evictions.peek()) != null && eviction.deadline <= this.tick) {
+            this.evictions.poll();
+
+            ChunkView view = this.views.get(eviction.key);
+            if (view == null || view.evictAt != eviction.deadline || !view.viewers.isEmpty())
+                continue;
+
+            view.evictAt = -1L;
+            this.evict(eviction.key, view);
+        }
+    }
+
+    @GuardedBy("this")
+    private void acquire(ClientConnection viewer, int x, int z) {
+        long key = ChunkMap.key(x, z);
+        ChunkView view = this.views.get(key);
+        if (view == null) {
+            view = new ChunkView();
+            this.views.put(key, view);
+        }
+
+        view.evictAt = -1L; // The queued eviction is skipped once it comes up
+        if (view.viewers.add(viewer))
+            this.world.getEntityTracker().viewerAdded(viewer, x, z);
+    }
+
+    @GuardedBy("this")
+    private void release(ClientConnection viewer, int x, int z) {
+        long key = ChunkMap.key(x, z);
+        ChunkView view = this.views.get(key);
+        if (view == null || !view.viewers.remove(viewer))
+            return;
+
+        this.world.getEntityTracker().viewerRemoved(viewer, x, z);
+        if (!view.viewers.isEmpty())
+            return;
+
+        if (!view.saving)
+            this.queue(key, view);
+    }
+
+    @GuardedBy("this")
+    private void queue(long key, ChunkView view) {
+        view.evictAt = this.tick + ChunkViewTracker.gracePeriod;
+        this.evictions.add(new Eviction(key, view.evictAt));
+    }
+
+    @GuardedBy("this")
+    private void evict(long key, ChunkView view) {
+        Chunk chunk = this.world.getChunkAt(ChunkMap.keyX(key), ChunkMap.keyZ(key), false);
+        if (chunk == null) {
+            // Not loaded (yet), a chunk still loading is queued again once it is done
+            this.views.remove(key);
+            return;
+        }
+
+        WorldLoader loader = this.world.getLoader();
+        if (!(chunk instanceof TridentChunk) || !(loader instanceof TridentWorldLoader)) {
+            this.unload(key);
+            return;
+        }
+        if (this.unloadSaved(key, (TridentChunk) chunk))
+            return;
+
+        // Never written on the server thread; while the IO lane is saturated the eviction waits another grace period
+        if (BackgroundTaskExecutor.offer(new SaveTask((TridentWorldLoader) loader, (TridentChunk) chunk),
+                                         BackgroundTaskExecutor.Lane.IO))
+            view.saving = true;
+        else
+            this.queue(key, view);
+    }
+
+    /**
+     * Unloads the chunk if it has no unsaved changes and no write of it is still to commit <p/> <p>The check and the
+     * unload both hold the lock of the chunk, so a block cannot change in between and be dropped with the chunk.</p>
+     *
+     * @return {@code false} if the chunk has to be saved first
+     */
+    @GuardedBy("this")
+    private boolean unloadSaved(long key, TridentChunk chunk) {
+        synchronized (chunk) {
+            if (chunk.isDirty() || chunk.isWriting())
+                return false;
+
+            this.unload(key);
+            return true;
+        }
+    }
+
+    @GuardedBy("this")
+    private void unload(long key) {
+        this.views.remove(key);
+        this.world.unloadChunk(ChunkMap.keyX(key), ChunkMap.keyZ(key));
+    }
+
+    /**
+     * Writes an evicted chunk, handing it back to the tracker to release on the next tick
+     */
+    private final class SaveTask implements Runnable {
+        private final TridentWorldLoader loader;
+        private final TridentChunk chunk;
+
+        SaveTask(TridentWorldLoader loader, TridentChunk chunk) {
+            this.loader = loader;
+            this.chunk = chunk;
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.loader.saveChunk(this.chunk);
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            } finally {
+                ChunkViewTracker.this.saved.add(this.chunk);
+            }
+        }
+    }
+
+    /**
+     * The viewers and eviction state of a single chunk
+     */
+    private static final class ChunkView {
+        // Read without the lock when sending to the viewers, changes far less often
+        final Set<ClientConnection> viewers = new CopyOnWriteArraySet<>();
+        @GuardedBy("ChunkViewTracker.this")
+        long evictAt = -1L;
+        @GuardedBy("ChunkViewTracker.this")
+        boolean saving;
+    }
+
+    private static final class Eviction {
+        final long key;
+        final long deadline;
+
+        Eviction(long key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * The square of chunks a client views
+     */
+    private static final class ViewArea {
+        final int centerX;
+        final int centerZ;
+        final int radius;
+
+        ViewArea(int centerX, int centerZ, int radius) {
+            this.centerX = centerX;
+            this.centerZ = centerZ;
+            this.radius = Math.max(0, radius);
+        }
+
+        int minX() {
+            return this.centerX - this.radius;
+        }
+
+        int maxX() {
+            return this.centerX + this.radius;
+        }
+
+        int minZ() {
+            return this.centerZ - this.radius;
+        }
+
+        int maxZ() {
+            return this.centerZ + this.radius;
+        }
+
+        boolean contains(int x, int z) {
+            return Math.abs(x - this.centerX) <= this.radius && Math.abs(z - this.centerZ) <= this.radius;
+        }
+    }
+}
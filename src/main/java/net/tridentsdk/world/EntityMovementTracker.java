@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world;
+
+import net.tridentsdk.entity.TridentEntity;
+import net.tridentsdk.packets.play.out.*;
+import net.tridentsdk.server.netty.client.ClientConnection;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sends the entities which moved during a tick to their viewers, as the difference to what the viewers saw last <p/>
+ * <p>The tracker keeps the position and rotation last sent for every entity, in the fixed point units of the protocol.
+ * An entity which moved less than four blocks along every axis is sent as a relative move, a look or both at once;
+ * anything further, and every {@link #TELEPORT_INTERVAL} ticks to correct the rounding the clients add up, is sent as
+ * an absolute teleport. Entities which did not move are not looked at.</p> <p/> <p>Every packet is encoded once and
+ * shared by all viewers of the entity, see {@link TridentEntity#getViewers()}.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public class EntityMovementTracker {
+    /**
+     * The most ticks an entity which keeps moving is sent relative moves for, before it is sent a teleport
+     */
+    public static final int TELEPORT_INTERVAL = 400;
+
+    @GuardedBy("this")
+    private final Map<TridentEntity, Sent> sent = new HashMap<>();
+    @GuardedBy("this")
+    private List<Sent> moved = new ArrayList<>();
+    @GuardedBy("this")
+    private List<Sent> flushing = new ArrayList<>();
+    @GuardedBy("this")
+    private long tick;
+
+    @GuardedBy("this")
+    private final PacketPlayOutEntityRelativeMove move = new PacketPlayOutEntityRelativeMove();
+    @GuardedBy("this")
+    private final PacketPlayOutEntityLook look = new PacketPlayOutEntityLook();
+    @GuardedBy("this")
+    private final PacketPlayOutEntityLookAndMove lookAndMove = new PacketPlayOutEntityLookAndMove();
+    @GuardedBy("this")
+    private final PacketPlayOutEntityTeleport teleport = new PacketPlayOutEntityTeleport();
+    @GuardedBy("this")
+    private final PacketPlayOutEntityHeadLook headLook = new PacketPlayOutEntityHeadLook();
+
+    EntityMovementTracker() {
+    }
+
+    /**
+     * Starts tracking the movement of an entity from where it is now, which is where its viewers see it spawn. Called
+     * by the {@link EntityViewTracker}.
+     */
+    synchronized void add(TridentEntity entity) {
+        if (this.sent.containsKey(entity))
+            return;
+
+        Sent sent = new Sent(entity);
+        sent.update(this.tick);
+        this.sent.put(entity, sent);
+    }
+
+    /**
+     * Stops tracking the movement of an entity. Called by the {@link EntityViewTracker}.
+     */
+    synchronized void remove(TridentEntity entity) {
+        Sent sent = this.sent.remove(entity);
+        if (sent != null)
+            sent.removed = true;
+    }
+
+    /**
+     * Records that an entity moved or turned, to be sent at the end of the tick
+     *
+     * @param entity the entity which moved
+     */
+    public synchronized void entityMoved(TridentEntity entity) {
+        Sent sent = this.sent.get(entity);
+        if (sent == null || sent.queued)
+            return;
+
+        sent.queued = true;
+        this.moved.add(sent);
+    }
+
+    /**
+     * Gets the amount of entities which moved since the last tick
+     *
+     * @return the moved entity count
+     */
+    public synchronized int getMoved() {
+        return this.moved.size();
+    }
+
+    /**
+     * Sends the movement of the entities which moved since the last tick to their viewers. Called by the server
+     * thread.
+     */
+    public synchronized void tick() {
+        this.tick++;
+        if (this.moved.isEmpty())
+            return;
+
+        List<Sent> flushing = this.moved;
+        this.moved = this.flushing;
+        this.flushing = flushing;
+
+        for (Sent sent : flushing) {
+            sent.queued = false;
+            if (sent.removed)
+                continue;
+
+            try {
+                this.send(sent);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        flushing.clear();
+    }
+
+    @GuardedBy("this")
+    private void send(Sent sent) {
+        TridentEntity entity = sent.entity;
+        int x;
+        int y;
+        int z;
+        int yaw;
+        int pitch;
+        synchronized (entity) {
+            x = EntityMovementTracker.fixed(entity.getX());
+            y = EntityMovementTracker.fixed(entity.getY());
+            z = EntityMovementTracker.fixed(entity.getZ());
+            yaw = EntityMovementTracker.angle(entity.getYaw());
+            pitch = EntityMovementTracker.angle(entity.getPitch());
+        }
+
+        int dx = x - sent.x;
+        int dy = y - sent.y;
+        int dz = z - sent.z;
+        boolean turned = yaw != sent.yaw || pitch != sent.pitch;
+        Update update = EntityMovementTracker.choose(this.tick - sent.teleported, dx, dy, dz, turned);
+        if (update == Update.NONE)
+            return; // Less than the protocol can tell
+
+        boolean headTurned = yaw != sent.yaw;
+        int id = entity.getId();
+        boolean onGround = entity.isOnGround();
+
+        sent.x = x;
+        sent.y = y;
+        sent.z = z;
+        sent.yaw = yaw;
+        sent.pitch = pitch;
+        if (update == Update.TELEPORT)
+            sent.teleported = this.tick;
+
+        Set<ClientConnection> viewers = entity.getViewers();
+        if (viewers.isEmpty())
+            return;
+
+        switch (update) {
+            case TELEPORT:
+                ClientConnection.broadcast(viewers, this.teleport.set(id, x, y, z, yaw, pitch, onGround));
+                break;
+            case LOOK_AND_MOVE:
+                ClientConnection.broadcast(viewers, this.lookAndMove.set(id, dx, dy, dz, yaw, pitch, onGround));
+                break;
+            case MOVE:
+                ClientConnection.broadcast(viewers, this.move.set(id, dx, dy, dz, onGround));
+                break;
+            case LOOK:
+                ClientConnection.broadcast(viewers, this.look.set(id, yaw, pitch, onGround));
+                break;
+        }
+
+        if (headTurned)
+            ClientConnection.broadcast(viewers, this.headLook.set(id, yaw));
+    }
+
+    /**
+     * Picks the packet which brings the viewers of an entity up to date
+     *
+     * @param sinceTeleport the ticks since the entity was last sent as a teleport
+     * @param dx            the distance moved along the x axis, in 1/32 blocks
+     * @param dy            the distance moved along the y axis, in 1/32 blocks
+     * @param dz            the distance moved along the z axis, in 1/32 blocks
+     * @param turned        whether the yaw or the pitch changed
+     * @return the update to send
+     */
+    static Update choose(long sinceTeleport, int dx, int dy, int dz, boolean turned) {
+        boolean moved = (dx | dy | dz) != 0;
+        if (!moved && !turned)
+            return Update.NONE;
+
+        if (sinceTeleport >= EntityMovementTracker.TELEPORT_INTERVAL || !EntityMovementTracker.fits(dx) ||
+                !EntityMovementTracker.fits(dy) || !EntityMovementTracker.fits(dz))
+            return Update.TELEPORT;
+
+        if (moved)
+            return turned ? Update.LOOK_AND_MOVE : Update.MOVE;
+        return Update.LOOK;
+    }
+
+    private static int fixed(double coordinate) {
+        return (int) Math.floor(coordinate * 32.0);
+    }
+
+    private static int angle(float degrees) {
+        return (int) Math.floor(degrees * 256.0F / 360.0F) & 0xFF;
+    }
+
+    private static boolean fits(int delta) {
+        return delta >= Byte.MIN_VALUE && delta <= Byte.MAX_VALUE;
+    }
+
+    /**
+     * The packet an entity which moved is sent as
+     */
+    enum Update {
+        NONE, LOOK, MOVE, LOOK_AND_MOVE, TELEPORT
+    }
+
+    /**
+     * The position and rotation the viewers of an entity saw last
+     */
+    private static final class Sent {
+        final TridentEntity entity;
+        int x;
+        int y;
+        int z;
+        int yaw;
+        int pitch;
+        long teleported;
+        boolean queued;
+        boolean removed;
+
+        Sent(TridentEntity entity) {
+            this.entity = entity;
+        }
+
+        void update(long tick) {
+            synchronized (this.entity) {
+                this.x = EntityMovementTracker.fixed(this.entity.getX());
+                this.y = EntityMovementTracker.fixed(this.entity.getY());
+                this.z = EntityMovementTracker.fixed(this.entity.getZ());
+                this.yaw = EntityMovementTracker.angle(this.entity.getYaw());
+                this.pitch = EntityMovementTracker.angle(this.entity.getPitch());
+            }
+            this.teleported = tick;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world;
+
+import net.tridentsdk.entity.TridentEntity;
+import net.tridentsdk.entity.TridentPlayer;
+import net.tridentsdk.server.netty.client.ClientConnection;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Keeps the entities of a world in per chunk lists, and keeps the viewers of every entity up to date <p/> <p>A client
+ * sees the entities in the chunks it views, see {@link ChunkViewTracker}. The viewers of an entity are only touched at
+ * the edges: an entity crossing a chunk border gains the viewers of the new chunk which did not view the old one and
+ * loses those of the old chunk which do not view the new one, and a client moving its view gains and loses the
+ * entities of the chunks which entered and left it. Sending an update about an entity then only costs its viewers,
+ * see {@link TridentEntity#getViewers()}, rather than a check of every player.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public class EntityViewTracker {
+    private final TridentWorld world;
+    @GuardedBy("this")
+    private final ChunkMap<Set<TridentEntity>> chunks = new ChunkMap<>();
+    // The chunk every entity is filed under, which trails its location until the tracker is told it moved
+    @GuardedBy("this")
+    private final Map<TridentEntity, Long> filed = new HashMap<>();
+    // Iterated by the server thread every tick, changes only when a player joins or leaves
+    private final Set<TridentPlayer> players = new CopyOnWriteArraySet<>();
+
+    EntityViewTracker(TridentWorld world) {
+        this.world = world;
+    }
+
+    /**
+     * Adds an entity to the world, showing it to the viewers of its chunk
+     *
+     * @param entity the entity to add
+     */
+    public synchronized void add(TridentEntity entity) {
+        if (this.filed.containsKey(entity))
+            return;
+
+        long key = ChunkMap.key(entity.getChunkX(), entity.getChunkZ());
+        this.file(entity, key);
+        if (entity instanceof TridentPlayer)
+            this.players.add((TridentPlayer) entity);
+        this.world.getMovementTracker().add(entity);
+        for (ClientConnection viewer : this.viewers(key))
+            entity.addViewer(viewer);
+    }
+
+    /**
+     * Removes an entity from the world, hiding it from all of its viewers
+     *
+     * @param entity the entity to remove
+     */
+    public synchronized void remove(TridentEntity entity) {
+        Long key = this.filed.remove(entity);
+        if (key == null)
+            return;
+
+        this.unfile(entity, key);
+        if (entity instanceof TridentPlayer)
+            this.players.remove(entity);
+        this.world.getMovementTracker().remove(entity);
+        for (ClientConnection viewer : entity.getViewers())
+            entity.removeViewer(viewer);
+    }
+
+    /**
+     * Moves an entity to the list of the chunk it is in now, updating the edges of its viewers if it crossed a border
+     *
+     * @param entity the entity which moved
+     */
+    public synchronized void update(TridentEntity entity) {
+        Long from = this.filed.get(entity);
+        long to = ChunkMap.key(entity.getChunkX(), entity.getChunkZ());
+        if (from == null || from == to)
+            return;
+
+        this.unfile(entity, from);
+        this.file(entity, to);
+
+        Set<ClientConnection> oldViewers = this.viewers(from);
+        Set<ClientConnection> newViewers = this.viewers(to);
+        for (ClientConnection viewer : oldViewers)
+            if (!newViewers.contains(viewer))
+                entity.removeViewer(viewer);
+        for (ClientConnection viewer : newViewers)
+            if (!oldViewers.contains(viewer))
+                entity.addViewer(viewer);
+    }
+
+    /**
+     * Gets the entities in a chunk
+     *
+     * @param x the chunk x coordinate
+     * @param z the chunk z coordinate
+     * @return a copy of the entities in the chunk
+     */
+    public synchronized Collection<TridentEntity> getEntities(int x, int z) {
+        Set<TridentEntity> entities = this.chunks.get(x, z);
+        return entities == null ? Collections.<TridentEntity>emptyList() : new ArrayList<>(entities);
+    }
+
+    /**
+     * Gets the amount of entities in the world
+     *
+     * @return the tracked entity count
+     */
+    public synchronized int getEntityCount() {
+        return this.filed.size();
+    }
+
+    /**
+     * Gets the players in the world
+     *
+     * @return the spawned players
+     */
+    public Set<TridentPlayer> getPlayers() {
+        return Collections.unmodifiableSet(this.players);
+    }
+
+    /**
+     * Validates and applies the movement the clients of the players reported since the last tick, see
+     * {@link TridentPlayer#tickMovement()}. Called by the server thread.
+     */
+    public void tick() {
+        for (TridentPlayer player : this.players) {
+            try {
+                player.tickMovement();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Shows the entities of a chunk to a client which started viewing it, called by the {@link ChunkViewTracker}
+     */
+    synchronized void viewerAdded(ClientConnection viewer, int x, int z) {
+        Set<TridentEntity> entities = this.chunks.get(x, z);
+        if (entities != null)
+            for (TridentEntity entity : entities)
+                entity.addViewer(viewer);
+    }
+
+    /**
+     * Hides the entities of a chunk from a client which stopped viewing it, called by the {@link ChunkViewTracker}
+     */
+    synchronized void viewerRemoved(ClientConnection viewer, int x, int z) {
+        Set<TridentEntity> entities = this.chunks.get(x, z);
+        if (entities != null)
+            for (TridentEntity entity : entities)
+                entity.removeViewer(viewer);
+    }
+
+    private Set<ClientConnection> viewers(long key) {
+        return this.world.getViewTracker().getViewers(ChunkMap.keyX(key), ChunkMap.keyZ(key));
+    }
+
+    @GuardedBy("this")
+    private void file(TridentEntity entity, long key) {
+        Set<TridentEntity> entities = this.chunks.get(key);
+        if (entities == null) {
+            entities = new HashSet<>();
+            this.chunks.put(key, entities);
+        }
+
+        entities.add(entity);
+        this.filed.put(entity, key);
+    }
+
+    @GuardedBy("this")
+    private void unfile(TridentEntity entity, long key) {
+        Set<TridentEntity> entities = this.chunks.get(key);
+        if (entities != null && entities.remove(entity) && entities.isEmpty())
+            this.chunks.remove(key);
+    }
+}
@@ -27,17 +27,45 @@
 
 package net.tridentsdk.world;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import net.tridentsdk.api.world.Chunk;
 import net.tridentsdk.api.world.ChunkLocation;
+import net.tridentsdk.packets.play.out.PacketPlayOutChunkData;
+import net.tridentsdk.server.netty.client.ClientConnection;
+import net.tridentsdk.world.light.LightProperties;
 
+import javax.annotation.concurrent.GuardedBy;
+
+import java.io.InterruptedIOException;
 import java.io.Serializable;
-import java.util.Random;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class TridentChunk implements Serializable, Chunk {
+    /**
+     * The amount of sections stacked in a chunk
+     */
+    public static final int SECTIONS = 16;
+
     private static final long serialVersionUID = 3323137810332318805L;
     private final TridentWorld world;
     private final ChunkLocation location;
 
+    // All-air sections are left null, most chunks are empty above the surface
+    private final AtomicReferenceArray<ChunkSection> sections = new AtomicReferenceArray<>(TridentChunk.SECTIONS);
+    // One biome id per column, indexed z << 4 | x
+    private final byte[] biomes = new byte[16 * 16];
+    private volatile boolean dirty;
+    private volatile boolean lightPopulated;
+    // Set from the snapshot of a save until its region write commits, the chunk is not saved before that
+    @GuardedBy("this")
+    private boolean writing;
+    // The encoded chunk data packet, shared by every client the chunk is sent to until a block changes
+    @GuardedBy("this")
+    private transient ByteBuf packet;
+    @GuardedBy("this")
+    private transient boolean released;
+
     public TridentChunk(TridentWorld world, int x, int z) {
         this(world, new ChunkLocation(x, z));
     }
@@ -49,20 +77,394 @@ public class TridentChunk implements Serializable, Chunk {
 
     @Override
     public void generate() {
-        int chunkX = this.getX() * 16;
-        int chunkZ = this.getZ() * 16;
+        this.world.getGenerator().generate(this);
+    }
+
+    /**
+     * Gets the state of a block in the chunk
+     *
+     * @param x the x coordinate in the chunk, 0 to 15
+     * @param y the y coordinate, 0 to 255
+     * @param z the z coordinate in the chunk, 0 to 15
+     * @return the block state, see {@link BlockState}
+     */
+    public int getBlockState(int x, int y, int z) {
+        ChunkSection section = this.sections.get(y >> 4);
+        if (section == null)
+            return BlockState.AIR;
 
-        Random r = new Random();
+        return section.get(ChunkSection.index(x, y & 15, z));
+    }
+
+    /**
+     * Sets the state of a block in the chunk <p/> <p>A section is created when the first block in it is set, and
+     * dropped again once it only contains air.</p>
+     *
+     * @param x     the x coordinate in the chunk, 0 to 15
+     * @param y     the y coordinate, 0 to 255
+     * @param z     the z coordinate in the chunk, 0 to 15
+     * @param state the block state, see {@link BlockState}
+     * @return the previous state of the block
+     */
+    public synchronized int setBlockState(int x, int y, int z, int state) {
+        int index = y >> 4;
+        int block = ChunkSection.index(x, y & 15, z);
+        ChunkSection section = this.sections.get(index);
 
-        for (int x = 0; x < 16; x++) {
-            for (int z = 0; z < 16; z++) {
-                //TODO y
+        if (section == null) {
+            if (state == BlockState.AIR)
+                return BlockState.AIR;
 
-                int y = 0;
+            section = new ChunkSection();
+            this.sections.set(index, section);
+        } else if (section.isShared()) {
+            // Don't copy the section for a change which changes nothing
+            if (section.get(block) == state)
+                return state;
 
-                //TODO Place blocks
+            section = this.unshare(index, section);
+        }
+
+        int old = section.set(block, state);
+        if (old != state) {
+            this.dirty = true;
+            this.invalidatePacket();
+            if (this.world != null) {
+                this.world.getBlockChanges().blockChanged(this.getX() << 4 | x, y, this.getZ() << 4 | z);
+                if (LightProperties.changesLight(old, state))
+                    this.world.getLightEngine().blockChanged(this.getX() << 4 | x, y, this.getZ() << 4 | z);
             }
         }
+        // A section in the dark still holds light, which would read as full sky light once the section is dropped
+        if (state == BlockState.AIR && section.isEmpty() && section.hasDefaultLight()) {
+            this.sections.set(index, null);
+            section.release();
+        }
+
+        return old;
+    }
+
+    /**
+     * Checks if blocks changed since the chunk was last saved
+     *
+     * @return {@code true} if the chunk has to be saved before it is unloaded
+     */
+    public boolean isDirty() {
+        return this.dirty;
+    }
+
+    /**
+     * Marks whether the chunk has changes which are not saved yet <p/> <p>Savers clear the flag before encoding the
+     * chunk, so a block changed while the chunk is written marks it dirty again.</p>
+     *
+     * @param dirty {@code true} if the chunk has unsaved changes
+     */
+    public void setDirty(boolean dirty) {
+        this.dirty = dirty;
+    }
+
+    /**
+     * Checks if a save of the chunk took its snapshot but has not yet committed it to the region file <p/> <p>The
+     * chunk is not dirty while it is written, but unloading it then would lose the changes if the write fails.</p>
+     *
+     * @return {@code true} if a write of the chunk is in flight
+     */
+    public synchronized boolean isWriting() {
+        return this.writing;
+    }
+
+    /**
+     * Marks a write of the chunk as started, first waiting for a write already in flight to finish, so an older
+     * snapshot never commits over a newer one
+     *
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    synchronized void beginWrite() throws InterruptedIOException {
+        while (this.writing) {
+            try {
+                this.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting to save chunk " + this.getX() + ", " +
+                                                         this.getZ());
+            }
+        }
+        this.writing = true;
+    }
+
+    /**
+     * Marks the write of the chunk as committed or failed
+     */
+    synchronized void endWrite() {
+        this.writing = false;
+        this.notifyAll();
+    }
+
+    /**
+     * Checks if the light of the chunk was calculated, rather than being the default light of new sections
+     *
+     * @return {@code true} if the light engine lit the chunk
+     */
+    public boolean isLightPopulated() {
+        return this.lightPopulated;
+    }
+
+    /**
+     * Marks whether the light of the chunk was calculated
+     *
+     * @param lightPopulated {@code true} once the light engine lit the chunk
+     */
+    public void setLightPopulated(boolean lightPopulated) {
+        this.lightPopulated = lightPopulated;
+    }
+
+    /**
+     * Gets the light emitted onto a block by nearby blocks
+     *
+     * @param x the x coordinate in the chunk, 0 to 15
+     * @param y the y coordinate, 0 to 255
+     * @param z the z coordinate in the chunk, 0 to 15
+     * @return the block light, 0 to 15
+     */
+    public int getBlockLight(int x, int y, int z) {
+        ChunkSection section = this.sections.get(y >> 4);
+        return section == null ? 0 : section.getBlockLight(ChunkSection.index(x, y & 15, z));
+    }
+
+    /**
+     * Gets the light reaching a block from the sky
+     *
+     * @param x the x coordinate in the chunk, 0 to 15
+     * @param y the y coordinate, 0 to 255
+     * @param z the z coordinate in the chunk, 0 to 15
+     * @return the sky light, 0 to 15
+     */
+    public int getSkyLight(int x, int y, int z) {
+        ChunkSection section = this.sections.get(y >> 4);
+        return section == null ? 15 : section.getSkyLight(ChunkSection.index(x, y & 15, z));
+    }
+
+    /**
+     * Sets the light emitted onto a block by nearby blocks, creating the section if it does not exist yet
+     *
+     * @param x     the x coordinate in the chunk, 0 to 15
+     * @param y     the y coordinate, 0 to 255
+     * @param z     the z coordinate in the chunk, 0 to 15
+     * @param light the block light, 0 to 15
+     */
+    public synchronized void setBlockLight(int x, int y, int z, int light) {
+        ChunkSection section = this.lightSection(y >> 4, light == 0);
+        if (section != null)
+            section.setBlockLight(ChunkSection.index(x, y & 15, z), light);
+    }
+
+    /**
+     * Sets the light reaching a block from the sky, creating the section if it does not exist yet
+     *
+     * @param x     the x coordinate in the chunk, 0 to 15
+     * @param y     the y coordinate, 0 to 255
+     * @param z     the z coordinate in the chunk, 0 to 15
+     * @param light the sky light, 0 to 15
+     */
+    public synchronized void setSkyLight(int x, int y, int z, int light) {
+        ChunkSection section = this.lightSection(y >> 4, light == 15);
+        if (section != null)
+            section.setSkyLight(ChunkSection.index(x, y & 15, z), light);
+    }
+
+    /**
+     * Gets a section to change the light of, or {@code null} if the section is missing and the light is the default
+     */
+    @GuardedBy("this")
+    private ChunkSection lightSection(int index, boolean defaultLight) {
+        ChunkSection section = this.sections.get(index);
+        if (section == null) {
+            // The light engine may still be busy with a chunk which was unloaded, don't allocate for it
+            if (defaultLight || this.released)
+                return null;
+
+            section = new ChunkSection();
+            this.sections.set(index, section);
+        } else if (section.isShared()) {
+            section = this.unshare(index, section);
+        }
+
+        this.dirty = true;
+        this.invalidatePacket();
+        return section;
+    }
+
+    /**
+     * Replaces every block of a section at once, see {@link ChunkSection#loadStates(int[])}
+     *
+     * @param index  the index of the section from the bottom, 0 to 15
+     * @param states the block states in section index order, at least {@link ChunkSection#SIZE} long
+     */
+    public synchronized void setSection(int index, int[] states) {
+        ChunkSection section = this.sections.get(index);
+        if (section == null) {
+            section = new ChunkSection();
+            this.sections.set(index, section);
+        } else if (section.isShared()) {
+            section = this.unshare(index, section);
+        }
+
+        section.loadStates(states);
+        if (section.isEmpty()) {
+            this.sections.set(index, null);
+            section.release();
+        }
+
+        this.dirty = true;
+        this.invalidatePacket();
+    }
+
+    /**
+     * Replaces a section shared with a snapshot by a copy the chunk can change, leaving the original to the snapshots
+     */
+    @GuardedBy("this")
+    private ChunkSection unshare(int index, ChunkSection section) {
+        ChunkSection copy = section.copy();
+        this.sections.set(index, copy);
+        section.release();
+        return copy;
+    }
+
+    /**
+     * Takes a consistent, immutable copy of the blocks and biomes of the chunk <p/> <p>The snapshot shares the sections
+     * of the chunk rather than copying them, so it is cheap to take. A section is only copied when the chunk changes
+     * it while a snapshot still holds it. The snapshot must be {@link TridentChunkSnapshot#release() released} once it
+     * is no longer needed.</p>
+     *
+     * @return the snapshot
+     */
+    public synchronized TridentChunkSnapshot snapshot() {
+        ChunkSection[] sections = new ChunkSection[TridentChunk.SECTIONS];
+        for (int i = 0; i < TridentChunk.SECTIONS; i++) {
+            ChunkSection section = this.sections.get(i);
+            if (section != null)
+                sections[i] = section.retain();
+        }
+
+        return new TridentChunkSnapshot(this.world, this.location, sections, this.biomes.clone(),
+                                        this.lightPopulated);
+    }
+
+    /**
+     * Gets the biome of a column of the chunk
+     *
+     * @param x the x coordinate in the chunk, 0 to 15
+     * @param z the z coordinate in the chunk, 0 to 15
+     * @return the biome id
+     */
+    public synchronized int getBiome(int x, int z) {
+        return this.biomes[z << 4 | x] & 0xFF;
+    }
+
+    /**
+     * Copies the biomes of every column, indexed {@code z << 4 | x}
+     *
+     * @param biomes the array to copy into, at least 256 long
+     */
+    public synchronized void copyBiomes(byte[] biomes) {
+        System.arraycopy(this.biomes, 0, biomes, 0, this.biomes.length);
+    }
+
+    /**
+     * Replaces the biomes of every column
+     *
+     * @param biomes the biome ids, indexed {@code z << 4 | x}
+     */
+    public synchronized void setBiomes(byte[] biomes) {
+        System.arraycopy(biomes, 0, this.biomes, 0, this.biomes.length);
+        this.dirty = true;
+        this.invalidatePacket();
+    }
+
+    /**
+     * Gets a section of the chunk
+     *
+     * @param index the index of the section from the bottom, 0 to 15
+     * @return the section, or {@code null} if it only contains air
+     */
+    public ChunkSection getSection(int index) {
+        return this.sections.get(index);
+    }
+
+    /**
+     * Gets a mask with a bit set for every section which is not all air, the bottom section being the lowest bit
+     *
+     * @return the section mask
+     */
+    public int getSectionMask() {
+        int mask = 0;
+        for (int i = 0; i < TridentChunk.SECTIONS; i++)
+            if (this.sections.get(i) != null)
+                mask |= 1 << i;
+        return mask;
+    }
+
+    /**
+     * Gets the chunk data packet of the chunk, encoded the way {@link ClientConnection#sendPacket(
+     * net.tridentsdk.server.netty.packet.Packet)} writes packets <p/> <p>The packet is encoded once and kept until a
+     * block in the chunk changes, so every client the chunk is sent to shares the same bytes. The returned buffer is a
+     * retained duplicate; it is released by writing it with {@link ClientConnection#sendEncoded(ByteBuf)}, or has to be
+     * released by the caller.</p>
+     *
+     * @return the encoded packet
+     */
+    public synchronized ByteBuf retainPacket() {
+        if (this.packet == null) {
+            ByteBuf buffer = PooledByteBufAllocator.DEFAULT.directBuffer(
+                    Integer.bitCount(this.getSectionMask()) * 12288 + 512);
+            try {
+                ClientConnection.writePacket(new PacketPlayOutChunkData().setChunk(this), buffer);
+            } catch (RuntimeException e) {
+                buffer.release();
+                throw e;
+            }
+            this.packet = buffer;
+        }
+
+        return this.packet.duplicate().retain();
+    }
+
+    @GuardedBy("this")
+    private void invalidatePacket() {
+        if (this.packet != null) {
+            // Duplicates handed out share the count, the bytes are freed once the last of them is written
+            this.packet.release();
+            this.packet = null;
+        }
+    }
+
+    /**
+     * Hands the storage of every section back to the backend, once the chunk is unloaded <p/> <p>The chunk reads as
+     * air afterwards</p>
+     */
+    public synchronized void release() {
+        this.released = true;
+        this.invalidatePacket();
+        for (int i = 0; i < TridentChunk.SECTIONS; i++) {
+            ChunkSection section = this.sections.getAndSet(i, null);
+            if (section != null)
+                section.release();
+        }
+    }
+
+    /**
+     * Estimates the memory taken by the blocks of the chunk, in bytes
+     *
+     * @return the approximate size of the block data
+     */
+    public int getMemoryUsage() {
+        int usage = 0;
+        for (int i = 0; i < TridentChunk.SECTIONS; i++) {
+            ChunkSection section = this.sections.get(i);
+            if (section != null)
+                usage += section.getMemoryUsage();
+        }
+        return usage;
     }
 
     @Override
@@ -72,7 +474,7 @@ public class TridentChunk implements Serializable, Chunk {
 
     @Override
     public int getZ() {
-        return this.location.getX();
+        return this.location.getZ();
     }
 
     @Override
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world;
+
+import net.tridentsdk.api.world.Chunk;
+import net.tridentsdk.api.world.ChunkLocation;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An immutable copy of a chunk at the moment {@link TridentChunk#snapshot()} was called <p/> <p>The sections are
+ * shared with the chunk copy-on-write, see {@link ChunkSection#retain()}, so a snapshot costs a few references rather
+ * than a copy of the blocks. It can be read from any thread while the chunk keeps changing, e.g. to save or back up
+ * the chunk in the background.</p> <p/> <p>The snapshot holds on to the storage of its sections until it is
+ * {@link #release() released}.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public final class TridentChunkSnapshot implements Chunk {
+    private final TridentWorld world;
+    private final ChunkLocation location;
+    private final ChunkSection[] sections;
+    private final byte[] biomes;
+    private final boolean lightPopulated;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    TridentChunkSnapshot(TridentWorld world, ChunkLocation location, ChunkSection[] sections, byte[] biomes,
+                         boolean lightPopulated) {
+        this.world = world;
+        this.location = location;
+        this.sections = sections;
+        this.biomes = biomes;
+        this.lightPopulated = lightPopulated;
+    }
+
+    /**
+     * Gets the state of a block, as it was when the snapshot was taken
+     *
+     * @param x the x coordinate in the chunk, 0 to 15
+     * @param y the y coordinate, 0 to 255
+     * @param z the z coordinate in the chunk, 0 to 15
+     * @return the block state, see {@link BlockState}
+     */
+    public int getBlockState(int x, int y, int z) {
+        ChunkSection section = this.sections[y >> 4];
+        if (section == null)
+            return BlockState.AIR;
+
+        return section.get(ChunkSection.index(x, y & 15, z));
+    }
+
+    /**
+     * Gets a section of the snapshot, which must not be changed
+     *
+     * @param index the index of the section from the bottom, 0 to 15
+     * @return the section, or {@code null} if it only contained air
+     */
+    public ChunkSection getSection(int index) {
+        return this.sections[index];
+    }
+
+    /**
+     * Gets a mask with a bit set for every section which is not all air, the bottom section being the lowest bit
+     *
+     * @return the section mask
+     */
+    public int getSectionMask() {
+        int mask = 0;
+        for (int i = 0; i < TridentChunk.SECTIONS; i++)
+            if (this.sections[i] != null)
+                mask |= 1 << i;
+        return mask;
+    }
+
+    /**
+     * Gets the biome of a column of the snapshot
+     *
+     * @param x the x coordinate in the chunk, 0 to 15
+     * @param z the z coordinate in the chunk, 0 to 15
+     * @return the biome id
+     */
+    public int getBiome(int x, int z) {
+        return this.biomes[z << 4 | x] & 0xFF;
+    }
+
+    /**
+     * Copies the biomes of every column, indexed {@code z << 4 | x}
+     *
+     * @param biomes the array to copy into, at least 256 long
+     */
+    public void copyBiomes(byte[] biomes) {
+        System.arraycopy(this.biomes, 0, biomes, 0, this.biomes.length);
+    }
+
+    /**
+     * Checks if the light of the chunk was calculated when the snapshot was taken
+     *
+     * @return {@code true} if the light engine lit the chunk
+     */
+    public boolean isLightPopulated() {
+        return this.lightPopulated;
+    }
+
+    /**
+     * Drops the references of the snapshot to its sections, so the chunk can change them in place again. Only the
+     * first call does anything; the snapshot must not be read afterwards.
+     */
+    public void release() {
+        if (!this.released.compareAndSet(false, true))
+            return;
+
+        for (int i = 0; i < TridentChunk.SECTIONS; i++)
+            if (this.sections[i] != null)
+                this.sections[i].release();
+    }
+
+    /**
+     * {@inheritDoc} <p/> <p>Snapshots are only taken of loaded chunks, which are generated already, so this does
+     * nothing: the blocks stay as they were when the snapshot was taken.</p>
+     */
+    @Override
+    public void generate() {
+    }
+
+    @Override
+    public int getX() {
+        return this.location.getX();
+    }
+
+    @Override
+    public int getZ() {
+        return this.location.getZ();
+    }
+
+    @Override
+    public ChunkLocation getLocation() {
+        return this.location;
+    }
+
+    @Override
+    public TridentWorld getWorld() {
+        return this.world;
+    }
+}
@@ -27,14 +27,24 @@
 
 package net.tridentsdk.world;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import net.tridentsdk.api.Block;
 import net.tridentsdk.api.Location;
 import net.tridentsdk.api.world.*;
+import net.tridentsdk.server.threads.BackgroundTaskExecutor;
+import net.tridentsdk.world.collision.MovementValidator;
+import net.tridentsdk.world.gen.TerrainGenerator;
+import net.tridentsdk.world.light.LightEngine;
 
+import javax.annotation.concurrent.GuardedBy;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.concurrent.ConcurrentHashMap;
 
 public class TridentWorld implements Serializable, World {
     private static final int SIZE = 1;
@@ -42,16 +52,34 @@ public class TridentWorld implements Serializable, World {
     private static final int MAX_CHUNKS = -1;
     private static final long serialVersionUID = 2892463980167406259L;
 
-    private final Map<ChunkLocation, Chunk> chunks = new ConcurrentHashMap<>();
+    private final ChunkMap<Chunk> chunks = new ChunkMap<>();
+    private final ChunkMap<ChunkRequest> requests = new ChunkMap<>();
+    private final transient ChunkViewTracker viewTracker = new ChunkViewTracker(this);
+    private final transient EntityViewTracker entityTracker = new EntityViewTracker(this);
+    private final transient EntityMovementTracker movementTracker = new EntityMovementTracker();
+    private final transient ChunkSaver saver = new ChunkSaver(this);
+    private final transient LightEngine lightEngine = new LightEngine(this);
+    private final transient BlockChangeAggregator blockChanges = new BlockChangeAggregator(this);
+    private final transient ChunkStreamer streamer = new ChunkStreamer(this);
+    private final transient MovementValidator movementValidator = new MovementValidator(this);
     private final String name;
     private final Random random;
+    private final long seed;
+    private final transient TerrainGenerator generator;
     private final WorldLoader loader;
     private Location spawnLocation;
 
     TridentWorld(String name, WorldLoader loader) {
+        // Until the level data is saved, the name seeds the world so the terrain is the same after a restart
+        this(name, loader, name.hashCode());
+    }
+
+    TridentWorld(String name, WorldLoader loader, long seed) {
         this.name = name;
         this.loader = loader;
         this.random = new Random();
+        this.seed = seed;
+        this.generator = new TerrainGenerator(seed);
 
         // TODO Set spawn point
     }
@@ -61,9 +89,130 @@ public class TridentWorld implements Serializable, World {
         return this.name;
     }
 
+    /**
+     * Gets the loader which loaded this world, and which saves it
+     *
+     * @return the world loader
+     */
+    public WorldLoader getLoader() {
+        return this.loader;
+    }
+
+    /**
+     * Gets the seed the terrain of the world is generated from
+     *
+     * @return the world seed
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Gets the generator which fills new chunks of the world
+     *
+     * @return the terrain generator
+     */
+    public TerrainGenerator getGenerator() {
+        return this.generator;
+    }
+
+    /**
+     * Gets the tracker of the clients viewing the chunks of this world
+     *
+     * @return the chunk view tracker
+     */
+    public ChunkViewTracker getViewTracker() {
+        return this.viewTracker;
+    }
+
+    /**
+     * Gets the tracker of the entities in this world, and of the clients which can see them
+     *
+     * @return the entity view tracker
+     */
+    public EntityViewTracker getEntityTracker() {
+        return this.entityTracker;
+    }
+
+    /**
+     * Gets the tracker which sends the entities of this world which moved to the clients which can see them
+     *
+     * @return the entity movement tracker
+     */
+    public EntityMovementTracker getMovementTracker() {
+        return this.movementTracker;
+    }
+
+    /**
+     * Gets the saver which writes the changed chunks of this world in the background
+     *
+     * @return the chunk saver
+     */
+    public ChunkSaver getSaver() {
+        return this.saver;
+    }
+
+    /**
+     * Gets the engine which calculates the light of this world
+     *
+     * @return the light engine
+     */
+    public LightEngine getLightEngine() {
+        return this.lightEngine;
+    }
+
+    /**
+     * Gets the collector of the blocks changed during the current tick
+     *
+     * @return the block change aggregator
+     */
+    public BlockChangeAggregator getBlockChanges() {
+        return this.blockChanges;
+    }
+
+    /**
+     * Gets the streamer which sends the chunks of this world to the clients viewing them
+     *
+     * @return the chunk streamer
+     */
+    public ChunkStreamer getStreamer() {
+        return this.streamer;
+    }
+
+    /**
+     * Gets the validator which checks the moves of the players in this world against its blocks. Only used by the
+     * server thread.
+     *
+     * @return the movement validator
+     */
+    public MovementValidator getMovementValidator() {
+        return this.movementValidator;
+    }
+
+    /**
+     * Ticks the world, moving the players and sending the entities which moved, unloading the chunks which nobody
+     * viewed for long enough, saving changed chunks, lighting the blocks which changed, streaming chunks to the clients
+     * and finally sending the changed blocks to the clients. Called by the server thread.
+     */
+    public void tick() {
+        this.entityTracker.tick();
+        this.movementTracker.tick();
+        this.viewTracker.tick();
+        this.saver.tick();
+        this.lightEngine.tick();
+        this.streamer.tick();
+        this.blockChanges.flush();
+    }
+
     @Override
     public Chunk getChunkAt(int x, int z, boolean generateIfNotFound) {
-        return this.getChunkAt(new ChunkLocation(x, z), generateIfNotFound);
+        Chunk chunk = this.chunks.get(x, z);
+
+        if (chunk == null && generateIfNotFound) {
+            return Futures.getUnchecked(this.request(x, z, false));
+        } else {
+            return chunk;
+        }
     }
 
     @Override
@@ -72,18 +221,12 @@ public class TridentWorld implements Serializable, World {
             return null;
         }
 
-        Chunk chunk = this.chunks.get(location);
-
-        if (chunk == null && generateIfNotFound) {
-            return this.generateChunk(location);
-        } else {
-            return chunk;
-        }
+        return this.getChunkAt(location.getX(), location.getZ(), generateIfNotFound);
     }
 
     @Override
     public Chunk generateChunk(int x, int z) {
-        return this.generateChunk(new ChunkLocation(x, z));
+        return this.getChunkAt(x, z, true);
     }
 
     @Override
@@ -91,34 +234,209 @@ public class TridentWorld implements Serializable, World {
         if (location == null)
             throw new NullPointerException("Location cannot be null");
 
-        int x = location.getX();
-        int z = location.getZ();
+        return this.getChunkAt(location.getX(), location.getZ(), true);
+    }
+
+    /**
+     * Gets the chunk, loading it from disk or generating it in the background if it is not loaded yet <p/> <p>Disk
+     * reads run in the IO lane and generation in the CPU lane of the {@link BackgroundTaskExecutor}. Requests for a
+     * chunk which is already on its way share the same future, so a chunk is only ever loaded or generated once.</p>
+     *
+     * @param x the chunk x coordinate
+     * @param z the chunk z coordinate
+     * @return the future chunk, which completes with {@code null} if the chunk lies outside of the world
+     */
+    public ListenableFuture<Chunk> requestChunk(int x, int z) {
+        return this.request(x, z, true);
+    }
 
-        if (x > TridentWorld.MAX_CHUNKS || x < -TridentWorld.MAX_CHUNKS) {
-            return null;
+    /**
+     * Copies the chunks which are currently loaded
+     *
+     * @return the loaded chunks
+     */
+    public List<Chunk> getLoadedChunks() {
+        return this.chunks.values();
+    }
+
+    /**
+     * Gets the amount of chunks which are being loaded or generated
+     *
+     * @return the chunk requests in flight
+     */
+    public int getPendingRequests() {
+        return this.requests.size();
+    }
+
+    private ListenableFuture<Chunk> request(int x, int z, boolean async) {
+        Chunk chunk = this.chunks.get(x, z);
+        if (chunk != null)
+            return Futures.immediateFuture(chunk);
+
+        if (!TridentWorld.isInBounds(x) || !TridentWorld.isInBounds(z))
+            return Futures.immediateFuture(null);
+
+        ChunkRequest request = new ChunkRequest(x, z, async);
+        ChunkRequest inFlight = this.requests.putIfAbsent(x, z, request);
+        if (inFlight != null) {
+            // A blocking caller may be a worker of the lane the request waits in, which would never get to it
+            if (!async)
+                inFlight.runNow();
+            return inFlight.future;
         }
 
-        if (z > TridentWorld.MAX_CHUNKS || z < -TridentWorld.MAX_CHUNKS) {
-            return null;
+        // The chunk may have been completed between the lookup and claiming the request
+        chunk = this.chunks.get(x, z);
+        if (chunk != null) {
+            this.requests.remove(ChunkMap.key(x, z), request);
+            request.future.set(chunk);
+            return request.future;
         }
 
-        if (this.getChunkAt(location, false) == null) {
-            if (this.loader.chunkExists(this, x, z)) {
-                this.addChunkAt(location, this.loader.loadChunk(this, x, z));
-            } else {
-                Chunk chunk = new TridentChunk(this, x, z);
-                this.addChunkAt(location, chunk);
+        if (async)
+            BackgroundTaskExecutor.execute(request, BackgroundTaskExecutor.Lane.IO);
+        else
+            request.runNow(); // Blocking callers do the work themselves, rather than blocking a worker as well
+
+        return request.future;
+    }
+
+    private static boolean isInBounds(int coordinate) {
+        return TridentWorld.MAX_CHUNKS < 0 ||
+                coordinate <= TridentWorld.MAX_CHUNKS && coordinate >= -TridentWorld.MAX_CHUNKS;
+    }
+
+    /**
+     * Removes the chunk from the loaded chunks and frees its block data <p/> <p>The chunk is not saved</p>
+     *
+     * @param x the chunk x coordinate
+     * @param z the chunk z coordinate
+     * @return {@code true} if the chunk was loaded
+     */
+    public boolean unloadChunk(int x, int z) {
+        Chunk chunk = this.chunks.remove(x, z);
+        if (chunk instanceof TridentChunk)
+            ((TridentChunk) chunk).release();
+
+        return chunk != null;
+    }
+
+    /**
+     * Loads or generates a single chunk, first on the IO lane, handing over to the CPU lane to generate <p/> <p>A
+     * blocking caller asking for a chunk which is on its way takes the request over: a step still queued in a lane is
+     * run by the caller, and a step which is running generates the chunk right away rather than queueing again.</p>
+     */
+    private final class ChunkRequest implements Runnable {
+        private static final int QUEUED = 0;
+        private static final int RUNNING = 1;
+        private static final int DONE = 2;
+
+        private final int x;
+        private final int z;
+        private final SettableFuture<Chunk> future = SettableFuture.create();
+        private final boolean async;
+        @GuardedBy("this")
+        private int state = ChunkRequest.QUEUED;
+        // A blocking caller waits for the chunk, so it is not handed to another lane
+        @GuardedBy("this")
+        private boolean urgent;
+        private boolean generating;
+
+        ChunkRequest(int x, int z, boolean async) {
+            this.x = x;
+            this.z = z;
+            this.async = async;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (this.state != ChunkRequest.QUEUED)
+                    return; // Taken over by a blocking caller
+                this.state = ChunkRequest.RUNNING;
+            }
+
+            this.work();
+        }
+
+        /**
+         * Runs the request on the calling thread if it is queued, or waits until the step running elsewhere is done
+         */
+        void runNow() {
+            synchronized (this) {
+                this.urgent = true;
+                while (this.state == ChunkRequest.RUNNING) {
+                    try {
+                        this.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+
+                if (this.state == ChunkRequest.DONE)
+                    return;
+                this.state = ChunkRequest.RUNNING;
+            }
+
+            this.work();
+        }
+
+        private void work() {
+            TridentWorld world = TridentWorld.this;
+
+            try {
+                if (!this.generating && world.loader != null && world.loader.chunkExists(world, this.x, this.z)) {
+                    Chunk chunk = world.loader.loadChunk(world, this.x, this.z);
+                    if (chunk != null) {
+                        this.complete(chunk);
+                        return;
+                    }
+                }
+
+                if (this.async && !this.generating) {
+                    this.generating = true;
+
+                    boolean handOver;
+                    synchronized (this) {
+                        handOver = !this.urgent;
+                        if (handOver) {
+                            this.state = ChunkRequest.QUEUED;
+                            this.notifyAll();
+                        }
+                    }
+
+                    if (handOver) {
+                        BackgroundTaskExecutor.execute(this, BackgroundTaskExecutor.Lane.CPU);
+                        return;
+                    }
+                }
+
+                TridentChunk chunk = new TridentChunk(world, this.x, this.z);
                 chunk.generate();
+                this.complete(chunk);
+            } catch (RuntimeException | Error e) {
+                world.requests.remove(ChunkMap.key(this.x, this.z), this);
+                this.done();
+                this.future.setException(e);
             }
         }
-        return this.getChunkAt(location, false);
-    }
 
-    private void addChunkAt(ChunkLocation location, Chunk chunk) {
-        if (location == null) {
-            throw new NullPointerException("Location cannot be null");
+        private void complete(Chunk chunk) {
+            // Published before the request is dropped, so there is no window in which neither can be found
+            TridentWorld.this.chunks.put(this.x, this.z, chunk);
+            TridentWorld.this.requests.remove(ChunkMap.key(this.x, this.z), this);
+            this.done();
+            this.future.set(chunk);
+            TridentWorld.this.viewTracker.chunkLoaded(this.x, this.z);
+            if (chunk instanceof TridentChunk && !((TridentChunk) chunk).isLightPopulated())
+                TridentWorld.this.lightEngine.chunkLoaded(this.x, this.z);
+        }
+
+        private synchronized void done() {
+            this.state = ChunkRequest.DONE;
+            this.notifyAll();
         }
-        this.chunks.put(location, chunk);
     }
 
     @Override
@@ -129,9 +447,27 @@ public class TridentWorld implements Serializable, World {
         return null;
     }
 
+    /**
+     * {@inheritDoc} <p/> <p>Every chunk in the snapshot is a {@link TridentChunkSnapshot}, which keeps reading the
+     * blocks as they were when the snapshot was taken. The chunks share their sections with the world copy-on-write,
+     * so the world does not pause while the snapshot is taken or read. The snapshot must be {@link
+     * TridentWorldSnapshot#release() released} once it is no longer needed.</p>
+     */
     @Override
-    public ChunkSnapshot getChunkSnapshot() {
-        return new ChunkSnapshot(this.chunks);
+    public TridentWorldSnapshot getChunkSnapshot() {
+        Map<ChunkLocation, Chunk> chunks = new HashMap<>();
+        List<TridentChunkSnapshot> snapshots = new ArrayList<>();
+        for (Chunk chunk : this.chunks.values()) {
+            if (chunk instanceof TridentChunk) {
+                TridentChunkSnapshot snapshot = ((TridentChunk) chunk).snapshot();
+                snapshots.add(snapshot);
+                chunks.put(chunk.getLocation(), snapshot);
+            } else {
+                chunks.put(chunk.getLocation(), chunk);
+            }
+        }
+
+        return new TridentWorldSnapshot(chunks, snapshots);
     }
 }
 
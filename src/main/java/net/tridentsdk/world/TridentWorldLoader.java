@@ -27,35 +27,250 @@
 
 package net.tridentsdk.world;
 
+import net.tridentsdk.api.world.Chunk;
 import net.tridentsdk.api.world.World;
 import net.tridentsdk.api.world.WorldLoader;
+import net.tridentsdk.world.region.ChunkCodec;
+import net.tridentsdk.world.region.RegionFile;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-public abstract class TridentWorldLoader implements WorldLoader {
+/**
+ * Loads worlds and keeps their chunks in Anvil region files, in {@code <world>/region/r.<x>.<z>.mca}
+ *
+ * @author The TridentSDK Team
+ */
+public class TridentWorldLoader implements WorldLoader {
+    private static final Set<TridentWorld> LOADED_WORLDS =
+            Collections.newSetFromMap(new ConcurrentHashMap<TridentWorld, Boolean>());
 
     private final Map<String, World> worlds = new ConcurrentHashMap<>();
+    private final ConcurrentMap<File, RegionFile> regions = new ConcurrentHashMap<>();
+    private final File directory;
+
+    /**
+     * Creates a loader which keeps worlds in the working directory
+     */
+    public TridentWorldLoader() {
+        this(new File("."));
+    }
+
+    /**
+     * Creates a loader which keeps worlds in the given directory
+     *
+     * @param directory the directory containing a folder for each world
+     */
+    public TridentWorldLoader(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Gets every world loaded by any loader
+     *
+     * @return the loaded worlds
+     */
+    public static Collection<TridentWorld> getLoadedWorlds() {
+        return Collections.unmodifiableSet(TridentWorldLoader.LOADED_WORLDS);
+    }
 
     @Override
     public World load(String world) {
-        return new TridentWorld(world, this);
+        TridentWorld loaded = new TridentWorld(world, this);
+
+        this.worlds.put(world, loaded);
+        TridentWorldLoader.LOADED_WORLDS.add(loaded);
+        return loaded;
+    }
+
+    /**
+     * Saves the world and stops keeping it loaded, closing the region files it opened
+     *
+     * @param world the world to unload
+     */
+    public void unload(World world) {
+        this.save(world);
+
+        this.worlds.remove(world.getName());
+        TridentWorldLoader.LOADED_WORLDS.remove(world);
+
+        File folder = this.regionFolder(world);
+        for (Iterator<RegionFile> it = this.regions.values().iterator(); it.hasNext(); ) {
+            RegionFile region = it.next();
+            if (!folder.equals(region.getFile().getParentFile()))
+                continue;
+
+            it.remove();
+            try {
+                region.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
     }
 
     @Override
     public void save(World world) {
-        // TODO
+        if (!(world instanceof TridentWorld))
+            return;
+
+        for (Chunk chunk : ((TridentWorld) world).getLoadedChunks()) {
+            if (!((TridentChunk) chunk).isDirty())
+                continue;
+
+            try {
+                this.saveChunk((TridentChunk) chunk);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        this.flush(world);
+    }
+
+    /**
+     * Writes a single chunk to its region file. The data is not forced to the disk, see {@link #flush(World)}. <p/>
+     * <p>The chunk is encoded from a snapshot, so it can keep changing while it is written; changes made after the
+     * snapshot leave it dirty. Until the write commits the chunk is marked as {@link TridentChunk#isWriting() being
+     * written}, and a second save of the same chunk waits for the first one.</p>
+     *
+     * @param chunk the chunk to save
+     * @return the amount of bytes written to the region file
+     * @throws IOException if the region file cannot be written
+     */
+    public int saveChunk(TridentChunk chunk) throws IOException {
+        RegionFile region = this.region(chunk.getWorld(), chunk.getX(), chunk.getZ(), true);
+
+        TridentChunkSnapshot snapshot;
+        synchronized (chunk) {
+            // Cleared together with the snapshot, so nobody unloads the chunk as saved before its data is held
+            chunk.beginWrite();
+            snapshot = chunk.snapshot();
+            chunk.setDirty(false);
+        }
+
+        try {
+            return region.write(chunk.getX(), chunk.getZ(), ChunkCodec.encode(snapshot));
+        } catch (IOException | RuntimeException e) {
+            chunk.setDirty(true);
+            throw e;
+        } finally {
+            chunk.endWrite();
+            snapshot.release();
+        }
+    }
+
+    /**
+     * Forces the region files of the world to the disk
+     *
+     * @param world the world to flush
+     */
+    public void flush(World world) {
+        File folder = this.regionFolder(world);
+        for (RegionFile region : this.regions.values()) {
+            if (!folder.equals(region.getFile().getParentFile()))
+                continue;
+
+            try {
+                region.flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Forces the region file holding the chunk to the disk, if it is open
+     *
+     * @param world the world of the chunk
+     * @param x     the chunk x coordinate
+     * @param z     the chunk z coordinate
+     */
+    public void flush(World world, int x, int z) {
+        try {
+            RegionFile region = this.region(world, x, z, false);
+            if (region != null)
+                region.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     @Override
     public boolean worldExists(String world) {
-        return this.worlds.containsKey(world);
+        return this.worlds.containsKey(world) || new File(this.directory, world).isDirectory();
     }
 
-    //TODO: I dont' believe this is checking the right thing... This should be checking of it
-    //exist in the save file, not in memory
     @Override
     public boolean chunkExists(World world, int x, int z) {
-        return world.getChunkAt(x, z, false) != null;
+        try {
+            RegionFile region = this.region(world, x, z, false);
+            return region != null && region.exists(x, z);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    @Override
+    public Chunk loadChunk(World world, int x, int z) {
+        try {
+            RegionFile region = this.region(world, x, z, false);
+            if (region == null)
+                return null;
+
+            byte[] data = region.read(x, z);
+            return data == null ? null : ChunkCodec.decode((TridentWorld) world, x, z, data);
+        } catch (IOException e) {
+            // The chunk is damaged, it is generated from scratch like the vanilla server does
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private File regionFolder(World world) {
+        return new File(new File(this.directory, world.getName()), "region");
+    }
+
+    private RegionFile region(World world, int x, int z, boolean create) throws IOException {
+        File file = new File(this.regionFolder(world), "r." + (x >> 5) + "." + (z >> 5) + ".mca");
+
+        RegionFile region = this.regions.get(file);
+        if (region != null)
+            return region;
+        if (!create && !file.isFile())
+            return null;
+
+        file.getParentFile().mkdirs();
+        region = new RegionFile(file);
+
+        RegionFile opened = this.regions.putIfAbsent(file, region);
+        if (opened != null) {
+            region.close();
+            return opened;
+        }
+
+        return region;
+    }
+
+    /**
+     * Flushes and closes every region file opened by the loader
+     */
+    public void closeRegions() {
+        for (RegionFile region : this.regions.values()) {
+            try {
+                region.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        this.regions.clear();
     }
 }
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world;
+
+import net.tridentsdk.api.world.Chunk;
+import net.tridentsdk.api.world.ChunkLocation;
+import net.tridentsdk.api.world.ChunkSnapshot;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A snapshot of every chunk a world had loaded, see {@link TridentWorld#getChunkSnapshot()} <p/> <p>Every chunk of
+ * the snapshot holds on to the storage of its sections, which may live off the heap, until the snapshot is {@link
+ * #release() released}. Take it in a try-with-resources block, or release it once it is no longer read.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public final class TridentWorldSnapshot extends ChunkSnapshot implements Closeable {
+    private final List<TridentChunkSnapshot> snapshots;
+
+    TridentWorldSnapshot(Map<ChunkLocation, Chunk> chunks, List<TridentChunkSnapshot> snapshots) {
+        super(chunks);
+        this.snapshots = snapshots;
+    }
+
+    /**
+     * Releases the snapshot of every chunk, so the world can change their sections in place again. The snapshot must
+     * not be read afterwards; later calls do nothing.
+     */
+    public void release() {
+        for (TridentChunkSnapshot snapshot : this.snapshots)
+            snapshot.release();
+    }
+
+    /**
+     * Releases the snapshot, see {@link #release()}
+     */
+    @Override
+    public void close() {
+        this.release();
+    }
+}
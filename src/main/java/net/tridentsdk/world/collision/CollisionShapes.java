@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world.collision;
+
+import net.tridentsdk.world.BlockState;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Arrays;
+
+/**
+ * The boxes blocks collide with, by block state <p/> <p>Every shape is computed once, when the class loads. The boxes
+ * of all shapes are stored back to back in a single flat array of doubles, six per box: the minimum x, y and z and the
+ * maximum x, y and z, relative to the block. Equal shapes are stored once, and a block state only keeps the index of
+ * its shape, so looking up the boxes of a block is two array reads.</p> <p/> <p>Blocks are full cubes unless they are
+ * listed here. Shapes which depend on the neighbours of a block, like the arms of fences or the upper half of stairs,
+ * are left out: a shape is never larger than the vanilla one, so a legitimate move is never rejected.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public final class CollisionShapes {
+    private static final int STATES = 4096 * 16;
+    private static final double PIXEL = 1.0 / 16.0;
+
+    // The shape of every block state, an index into SHAPE_START and SHAPE_COUNT
+    private static final short[] SHAPES = new short[CollisionShapes.STATES];
+    static final int[] SHAPE_START;
+    static final int[] SHAPE_COUNT;
+    static final double[] BOXES;
+
+    // Only used while the class loads
+    private static double[] boxes = new double[6 * 64];
+    private static int boxCount;
+    private static int[] starts = new int[64];
+    private static int[] counts = new int[64];
+    private static int shapeCount;
+
+    static {
+        int full = CollisionShapes.shape(0, 0, 0, 1, 1, 1);
+        int empty = CollisionShapes.shape();
+        Arrays.fill(CollisionShapes.SHAPES, (short) full);
+
+        // Air, liquids, plants, rails, torches, signs and other blocks without collision; doors, trapdoors, ladders,
+        // skulls and cocoa depend on more than their own state and are left open
+        CollisionShapes.set(empty, 0, 6, 8, 9, 10, 11, 27, 28, 30, 31, 32, 34, 36, 37, 38, 39, 40, 50, 51, 55, 59,
+                            63, 64, 65, 66, 68, 69, 70, 71, 72, 75, 76, 77, 83, 90, 96, 104, 105, 106, 115, 119,
+                            127, 131, 132, 141, 142, 143, 144, 147, 148, 157, 167, 175, 176, 177, 193, 194, 195, 196,
+                            197);
+
+        // Slabs, the upper half when the top bit of the metadata is set
+        int bottom = CollisionShapes.shape(0, 0, 0, 1, 0.5, 1);
+        int top = CollisionShapes.shape(0, 0.5, 0, 1, 1, 1);
+        for (int id : new int[] { 44, 126, 182 })
+            for (int meta = 0; meta < 16; meta++)
+                CollisionShapes.SHAPES[BlockState.of(id, meta)] = (short) ((meta & 8) == 0 ? bottom : top);
+
+        // Stairs, only the half which does not depend on the neighbours
+        for (int id : new int[] { 53, 67, 108, 109, 114, 128, 134, 135, 136, 156, 163, 164, 180 })
+            for (int meta = 0; meta < 16; meta++)
+                CollisionShapes.SHAPES[BlockState.of(id, meta)] = (short) ((meta & 4) == 0 ? bottom : top);
+
+        // Fences, walls, panes and bars, only the post in the middle
+        CollisionShapes.set(CollisionShapes.shape(0.375, 0, 0.375, 0.625, 1.5, 0.625), 85, 113, 188, 189, 190, 191,
+                            192);
+        CollisionShapes.set(CollisionShapes.shape(0.25, 0, 0.25, 0.75, 1.5, 0.75), 139);
+        CollisionShapes.set(CollisionShapes.shape(0.4375, 0, 0.4375, 0.5625, 1, 0.5625), 101, 102, 160);
+
+        // Fence gates, open when the third bit of the metadata is set
+        int alongX = CollisionShapes.shape(0, 0, 0.375, 1, 1.5, 0.625);
+        int alongZ = CollisionShapes.shape(0.375, 0, 0, 0.625, 1.5, 1);
+        for (int id : new int[] { 107, 183, 184, 185, 186, 187 })
+            for (int meta = 0; meta < 16; meta++)
+                CollisionShapes.SHAPES[BlockState.of(id, meta)] = (short) ((meta & 4) != 0 ? empty :
+                        (meta & 1) == 0 ? alongX : alongZ);
+
+        // Snow layers, the lowest of which does not collide
+        for (int meta = 0; meta < 16; meta++)
+            CollisionShapes.SHAPES[BlockState.of(78, meta)] = (short) CollisionShapes.shape(0, 0, 0, 1,
+                                                                                             (meta & 7) / 8.0, 1);
+
+        // Cake, eaten from the low x side
+        for (int meta = 0; meta < 16; meta++)
+            CollisionShapes.SHAPES[BlockState.of(92, meta)] = (short) CollisionShapes.shape(
+                    (1 + Math.min(meta, 6) * 2) * CollisionShapes.PIXEL, 0, CollisionShapes.PIXEL,
+                    1 - CollisionShapes.PIXEL, 0.5, 1 - CollisionShapes.PIXEL);
+
+        // Anvils, lying along the x or the z axis
+        int anvilX = CollisionShapes.shape(0, 0, 0.125, 1, 1, 0.875);
+        int anvilZ = CollisionShapes.shape(0.125, 0, 0, 0.875, 1, 1);
+        for (int meta = 0; meta < 16; meta++)
+            CollisionShapes.SHAPES[BlockState.of(145, meta)] = (short) ((meta & 1) != 0 ? anvilX : anvilZ);
+
+        // Pistons, which are only a full block while they are retracted
+        for (int id : new int[] { 29, 33 })
+            for (int meta = 8; meta < 16; meta++)
+                CollisionShapes.SHAPES[BlockState.of(id, meta)] = (short) empty;
+
+        CollisionShapes.set(CollisionShapes.shape(0, 0, 0, 1, 0.5625, 1), 26);
+        CollisionShapes.set(CollisionShapes.shape(0, 0, 0, 1, 15 * CollisionShapes.PIXEL, 1), 60);
+        CollisionShapes.set(CollisionShapes.shape(0, 0, 0, 1, 0.875, 1), 88);
+        CollisionShapes.set(CollisionShapes.shape(CollisionShapes.PIXEL, 0, CollisionShapes.PIXEL,
+                                                  1 - CollisionShapes.PIXEL, 15 * CollisionShapes.PIXEL,
+                                                  1 - CollisionShapes.PIXEL), 81);
+        CollisionShapes.set(CollisionShapes.shape(CollisionShapes.PIXEL, 0, CollisionShapes.PIXEL,
+                                                  1 - CollisionShapes.PIXEL, 0.875, 1 - CollisionShapes.PIXEL), 54,
+                            130, 146);
+        CollisionShapes.set(CollisionShapes.shape(CollisionShapes.PIXEL, 0, CollisionShapes.PIXEL,
+                                                  1 - CollisionShapes.PIXEL, 1, 1 - CollisionShapes.PIXEL), 122);
+        CollisionShapes.set(CollisionShapes.shape(0, 0, 0, 1, 0.015625, 1), 111);
+        CollisionShapes.set(CollisionShapes.shape(0, 0, 0, 1, 0.75, 1), 116);
+        CollisionShapes.set(CollisionShapes.shape(0, 0, 0, 1, 0.8125, 1), 120);
+        CollisionShapes.set(CollisionShapes.shape(0, 0, 0, 1, 0.375, 1), 151, 178);
+        CollisionShapes.set(CollisionShapes.shape(0, 0, 0, 1, 0.125, 1), 93, 94, 149, 150);
+        CollisionShapes.set(CollisionShapes.shape(0, 0, 0, 1, CollisionShapes.PIXEL, 1), 171);
+        CollisionShapes.set(CollisionShapes.shape(0, 0, 0, 1, 0.625, 1), 154);
+        CollisionShapes.set(CollisionShapes.shape(0.3125, 0, 0.3125, 0.6875, 0.375, 0.6875), 140);
+        CollisionShapes.set(CollisionShapes.shape(0, 0, 0, 1, 0.125, 1,
+                                                  0.4375, 0, 0.4375, 0.5625, 0.875, 0.5625), 117);
+        CollisionShapes.set(CollisionShapes.shape(0, 0, 0, 1, 0.3125, 1,
+                                                  0, 0, 0, 0.125, 1, 1,
+                                                  0.875, 0, 0, 1, 1, 1,
+                                                  0, 0, 0, 1, 1, 0.125,
+                                                  0, 0, 0.875, 1, 1, 1), 118);
+
+        SHAPE_START = Arrays.copyOf(CollisionShapes.starts, CollisionShapes.shapeCount);
+        SHAPE_COUNT = Arrays.copyOf(CollisionShapes.counts, CollisionShapes.shapeCount);
+        BOXES = Arrays.copyOf(CollisionShapes.boxes, CollisionShapes.boxCount * 6);
+        CollisionShapes.boxes = null;
+        CollisionShapes.starts = null;
+        CollisionShapes.counts = null;
+    }
+
+    private CollisionShapes() {}
+
+    /**
+     * Adds a shape made of the given boxes, six coordinates each, unless an equal shape was added before
+     *
+     * @return the index of the shape
+     */
+    private static int shape(double... coordinates) {
+        int count = coordinates.length / 6;
+        for (int shape = 0; shape < CollisionShapes.shapeCount; shape++) {
+            if (CollisionShapes.counts[shape] != count)
+                continue;
+
+            int start = CollisionShapes.starts[shape] * 6;
+            if (Arrays.equals(Arrays.copyOfRange(CollisionShapes.boxes, start, start + coordinates.length),
+                              coordinates))
+                return shape;
+        }
+
+        if (CollisionShapes.shapeCount == CollisionShapes.starts.length) {
+            CollisionShapes.starts = Arrays.copyOf(CollisionShapes.starts, CollisionShapes.starts.length << 1);
+            CollisionShapes.counts = Arrays.copyOf(CollisionShapes.counts, CollisionShapes.counts.length << 1);
+        }
+        while ((CollisionShapes.boxCount + count) * 6 > CollisionShapes.boxes.length)
+            CollisionShapes.boxes = Arrays.copyOf(CollisionShapes.boxes, CollisionShapes.boxes.length << 1);
+
+        System.arraycopy(coordinates, 0, CollisionShapes.boxes, CollisionShapes.boxCount * 6, coordinates.length);
+        CollisionShapes.starts[CollisionShapes.shapeCount] = CollisionShapes.boxCount;
+        CollisionShapes.counts[CollisionShapes.shapeCount] = count;
+        CollisionShapes.boxCount += count;
+        return CollisionShapes.shapeCount++;
+    }
+
+    private static void set(int shape, int... ids) {
+        for (int id : ids)
+            Arrays.fill(CollisionShapes.SHAPES, BlockState.of(id, 0), BlockState.of(id, 15) + 1, (short) shape);
+    }
+
+    /**
+     * Gets the shape of a block state, which indexes {@link #SHAPE_START} and {@link #SHAPE_COUNT}
+     */
+    static int shapeOf(int state) {
+        return CollisionShapes.SHAPES[state & 0xFFFF];
+    }
+
+    /**
+     * Gets the amount of boxes the block collides with
+     *
+     * @param state the block state, see {@link BlockState}
+     * @return the box count, {@code 0} for a block which does not collide
+     */
+    public static int getBoxCount(int state) {
+        return CollisionShapes.SHAPE_COUNT[CollisionShapes.shapeOf(state)];
+    }
+
+    /**
+     * Copies the boxes the block collides with, relative to the block, six coordinates each: the minimum x, y and z
+     * followed by the maximum x, y and z
+     *
+     * @param state the block state, see {@link BlockState}
+     * @param boxes the array to copy to, at least six times {@link #getBoxCount(int)} long
+     * @return the box count
+     */
+    public static int copyBoxes(int state, double[] boxes) {
+        int shape = CollisionShapes.shapeOf(state);
+        int count = CollisionShapes.SHAPE_COUNT[shape];
+        System.arraycopy(CollisionShapes.BOXES, CollisionShapes.SHAPE_START[shape] * 6, boxes, 0, count * 6);
+        return count;
+    }
+}
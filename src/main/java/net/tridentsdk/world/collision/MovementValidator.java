@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world.collision;
+
+import net.tridentsdk.world.BlockState;
+import net.tridentsdk.world.ChunkSection;
+import net.tridentsdk.world.TridentChunk;
+import net.tridentsdk.world.TridentWorld;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+
+/**
+ * Checks the moves clients report against the blocks of a world <p/> <p>The box of the player is swept from where it
+ * was to where the client claims it is, the way the client moves it: along the y axis first, then along the x and the
+ * z axis, each time stopping at the first block box in the way, and once more stepping up if it stands on the ground.
+ * A move is accepted if the sweep ends within {@link #MAX_ERROR} of the reported position for every movement packet
+ * it merges, as each packet was rounded by the client.</p> <p/> <p>The boxes of
+ * the blocks around a move are gathered once, from the {@link CollisionShapes} of their states, into a flat array of
+ * doubles which is swept three times. The chunk and the section of the last block read are kept, so the neighbouring
+ * blocks of a column or a chunk cost an array read. The arrays only grow, so a validator allocates nothing once it has
+ * seen the longest move.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@NotThreadSafe
+public class MovementValidator {
+    /**
+     * The width of the box of a player
+     */
+    public static final double WIDTH = 0.6;
+    /**
+     * The height of the box of a player
+     */
+    public static final double HEIGHT = 1.8;
+    /**
+     * How high a player on the ground climbs without jumping
+     */
+    public static final double STEP_HEIGHT = 0.6;
+    /**
+     * The furthest the end of a move may be from where the blocks would have stopped the player, as the vanilla server
+     * allows for the rounding of the client
+     */
+    public static final double MAX_ERROR = 0.25;
+    /**
+     * The most merged movement packets which each add {@link #MAX_ERROR} to the allowed error, so flooding packets
+     * does not let a client through walls
+     */
+    public static final int MAX_MERGED_PACKETS = 4;
+
+    // The box of the player is shrunk slightly, so a client standing a rounding error inside a block is not stopped
+    private static final double EPSILON = 1.0E-5;
+    private static final double HALF_WIDTH = MovementValidator.WIDTH / 2.0 - MovementValidator.EPSILON;
+
+    private final TridentWorld world;
+    // The minimum x, y and z followed by the maximum x, y and z of the player, then of every block box
+    private final double[] player = new double[6];
+    private double[] boxes = new double[6 * 64];
+    private int count;
+
+    private TridentChunk chunk;
+    private int chunkX;
+    private int chunkZ;
+    private ChunkSection section;
+    private int sectionY;
+
+    /**
+     * Creates a validator of the moves in a world, see {@link TridentWorld#getMovementValidator()}
+     *
+     * @param world the world to validate moves in
+     */
+    public MovementValidator(TridentWorld world) {
+        this.world = world;
+    }
+
+    /**
+     * Checks if a player may move between two positions without passing through blocks
+     *
+     * @param fromX    the x coordinate the player was at
+     * @param fromY    the y coordinate of the feet the player was at
+     * @param fromZ    the z coordinate the player was at
+     * @param toX      the x coordinate the client reported
+     * @param toY      the y coordinate of the feet the client reported
+     * @param toZ      the z coordinate the client reported
+     * @param onGround whether the player stands on the ground, and may step up
+     * @param packets  how many movement packets of the client were merged into the move
+     * @return {@code true} if the move is possible
+     */
+    public boolean isValid(double fromX, double fromY, double fromZ, double toX, double toY, double toZ,
+                           boolean onGround, int packets) {
+        this.gather(Math.min(fromX, toX) - MovementValidator.HALF_WIDTH, Math.min(fromY, toY),
+                    Math.min(fromZ, toZ) - MovementValidator.HALF_WIDTH,
+                    Math.max(fromX, toX) + MovementValidator.HALF_WIDTH,
+                    Math.max(fromY, toY) + MovementValidator.HEIGHT + MovementValidator.STEP_HEIGHT,
+                    Math.max(fromZ, toZ) + MovementValidator.HALF_WIDTH);
+        if (this.count == 0)
+            return true;
+
+        double maxError = MovementValidator.MAX_ERROR *
+                Math.max(1, Math.min(packets, MovementValidator.MAX_MERGED_PACKETS));
+        maxError *= maxError;
+        if (this.sweep(fromX, fromY, fromZ, toX, toY, toZ, 0.0) <= maxError)
+            return true;
+
+        return onGround && this.sweep(fromX, fromY, fromZ, toX, toY, toZ, MovementValidator.STEP_HEIGHT) <= maxError;
+    }
+
+    /**
+     * Moves the box of the player along the axes in the order the client does: along the y axis, then the x and the z
+     * axis. A step climbs first and moves the rest of the way along the y axis last, as the client steps up and then
+     * falls back onto what it stepped on.
+     *
+     * @param step how high to climb before moving sideways, {@code 0} not to
+     * @return how far, squared, the sweep ended from the reported position
+     */
+    private double sweep(double fromX, double fromY, double fromZ, double toX, double toY, double toZ, double step) {
+        double[] player = this.player;
+        player[0] = fromX - MovementValidator.HALF_WIDTH;
+        player[1] = fromY + MovementValidator.EPSILON;
+        player[2] = fromZ - MovementValidator.HALF_WIDTH;
+        player[3] = fromX + MovementValidator.HALF_WIDTH;
+        player[4] = fromY + MovementValidator.HEIGHT - MovementValidator.EPSILON;
+        player[5] = fromZ + MovementValidator.HALF_WIDTH;
+
+        double y;
+        double x;
+        double z;
+        if (step > 0.0) {
+            double climbed = this.clip(1, step);
+            x = fromX + this.clip(0, toX - fromX);
+            z = fromZ + this.clip(2, toZ - fromZ);
+            y = fromY + climbed + this.clip(1, toY - fromY - climbed);
+        } else {
+            y = fromY + this.clip(1, toY - fromY);
+            x = fromX + this.clip(0, toX - fromX);
+            z = fromZ + this.clip(2, toZ - fromZ);
+        }
+
+        double errorX = toX - x;
+        double errorY = toY - y;
+        double errorZ = toZ - z;
+        return errorX * errorX + errorY * errorY + errorZ * errorZ;
+    }
+
+    /**
+     * Moves the box of the player along an axis until it hits the first block box in the way
+     *
+     * @param axis  0 for the x axis, 1 for the y axis and 2 for the z axis
+     * @param delta how far to move
+     * @return how far the player moved
+     */
+    private double clip(int axis, double delta) {
+        if (delta == 0.0)
+            return 0.0;
+
+        double[] player = this.player;
+        double[] boxes = this.boxes;
+        int a = axis == 0 ? 1 : 0;
+        int b = axis == 2 ? 1 : 2;
+        for (int i = 0, end = this.count * 6; i < end; i += 6) {
+            if (boxes[i + 3 + a] <= player[a] || boxes[i + a] >= player[3 + a] ||
+                    boxes[i + 3 + b] <= player[b] || boxes[i + b] >= player[3 + b])
+                continue;
+
+            // Boxes the player is already inside of do not stop it, so it can get out
+            if (delta > 0.0 && boxes[i + axis] >= player[3 + axis])
+                delta = Math.min(delta, boxes[i + axis] - player[3 + axis]);
+            else if (delta < 0.0 && boxes[i + 3 + axis] <= player[axis])
+                delta = Math.max(delta, boxes[i + 3 + axis] - player[axis]);
+        }
+
+        player[axis] += delta;
+        player[3 + axis] += delta;
+        return delta;
+    }
+
+    /**
+     * Collects the boxes of the blocks which intersect the given region, and of the fences and walls below it which
+     * reach into it
+     */
+    private void gather(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        this.count = 0;
+        this.chunk = null;
+        this.section = null;
+
+        int fromX = (int) Math.floor(minX);
+        int fromY = Math.max((int) Math.floor(minY) - 1, 0);
+        int fromZ = (int) Math.floor(minZ);
+        int toX = (int) Math.floor(maxX);
+        int toY = Math.min((int) Math.floor(maxY), 255);
+        int toZ = (int) Math.floor(maxZ);
+
+        for (int x = fromX; x <= toX; x++) {
+            for (int z = fromZ; z <= toZ; z++) {
+                if (!this.column(x >> 4, z >> 4))
+                    continue; // Nothing to collide with in unloaded chunks
+
+                for (int y = fromY; y <= toY; y++) {
+                    int shape = CollisionShapes.shapeOf(this.state(x & 15, y, z & 15));
+                    int boxes = CollisionShapes.SHAPE_COUNT[shape];
+                    if (boxes != 0)
+                        this.add(x, y, z, CollisionShapes.SHAPE_START[shape], boxes);
+                }
+            }
+        }
+
+        this.chunk = null;
+        this.section = null;
+    }
+
+    /**
+     * Moves to the chunk of a column, reusing the current one if the column is in it
+     *
+     * @return {@code false} if the chunk is not loaded
+     */
+    private boolean column(int chunkX, int chunkZ) {
+        if (this.chunk == null || this.chunkX != chunkX || this.chunkZ != chunkZ) {
+            this.chunk = (TridentChunk) this.world.getChunkAt(chunkX, chunkZ, false);
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.section = null;
+            this.sectionY = -1;
+        }
+        return this.chunk != null;
+    }
+
+    private int state(int x, int y, int z) {
+        int sectionY = y >> 4;
+        if (sectionY != this.sectionY) {
+            this.section = this.chunk.getSection(sectionY);
+            this.sectionY = sectionY;
+        }
+
+        ChunkSection section = this.section;
+        return section == null ? BlockState.AIR : section.get(ChunkSection.index(x, y & 15, z));
+    }
+
+    private void add(int x, int y, int z, int start, int count) {
+        int end = (this.count + count) * 6;
+        if (end > this.boxes.length)
+            this.boxes = Arrays.copyOf(this.boxes, Math.max(this.boxes.length << 1, end));
+
+        double[] shapes = CollisionShapes.BOXES;
+        double[] boxes = this.boxes;
+        for (int i = start * 6, j = this.count * 6; j < end; i += 6, j += 6) {
+            boxes[j] = x + shapes[i];
+            boxes[j + 1] = y + shapes[i + 1];
+            boxes[j + 2] = z + shapes[i + 2];
+            boxes[j + 3] = x + shapes[i + 3];
+            boxes[j + 4] = y + shapes[i + 4];
+            boxes[j + 5] = z + shapes[i + 5];
+        }
+        this.count += count;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world.gen;
+
+import net.tridentsdk.world.BlockState;
+
+/**
+ * The biomes placed by the {@link TerrainGenerator}, with the ids the client knows them by
+ *
+ * @author The TridentSDK Team
+ */
+public enum Biome {
+    OCEAN(0, BlockState.of(13, 0), BlockState.of(13, 0)),
+    PLAINS(1, BlockState.of(2, 0), BlockState.of(3, 0)),
+    DESERT(2, BlockState.of(12, 0), BlockState.of(24, 0)),
+    EXTREME_HILLS(3, BlockState.of(2, 0), BlockState.of(1, 0)),
+    FOREST(4, BlockState.of(2, 0), BlockState.of(3, 0)),
+    TAIGA(5, BlockState.of(2, 0), BlockState.of(3, 0)),
+    SWAMPLAND(6, BlockState.of(2, 0), BlockState.of(3, 0)),
+    ICE_PLAINS(12, BlockState.of(2, 0), BlockState.of(3, 0)),
+    BEACH(16, BlockState.of(12, 0), BlockState.of(12, 0)),
+    JUNGLE(21, BlockState.of(2, 0), BlockState.of(3, 0)),
+    SAVANNA(35, BlockState.of(2, 0), BlockState.of(3, 0));
+
+    private final int id;
+    private final int top;
+    private final int filler;
+
+    Biome(int id, int top, int filler) {
+        this.id = id;
+        this.top = top;
+        this.filler = filler;
+    }
+
+    /**
+     * Picks the biome of a column
+     *
+     * @param height      the height of the terrain
+     * @param temperature the temperature noise, -1 to 1
+     * @param humidity    the humidity noise, -1 to 1
+     * @return the biome
+     */
+    public static Biome of(int height, double temperature, double humidity) {
+        if (height < TerrainGenerator.SEA_LEVEL - 1)
+            return Biome.OCEAN;
+        if (height <= TerrainGenerator.SEA_LEVEL + 1)
+            return temperature < -0.4 ? Biome.ICE_PLAINS : Biome.BEACH;
+        if (height > TerrainGenerator.SEA_LEVEL + 36)
+            return Biome.EXTREME_HILLS;
+
+        if (temperature < -0.4)
+            return Biome.ICE_PLAINS;
+        if (temperature < -0.1)
+            return humidity < 0.0 ? Biome.PLAINS : Biome.TAIGA;
+        if (temperature < 0.3) {
+            if (humidity > 0.35 && height < TerrainGenerator.SEA_LEVEL + 4)
+                return Biome.SWAMPLAND;
+            return humidity < -0.1 ? Biome.PLAINS : Biome.FOREST;
+        }
+
+        if (humidity < -0.2)
+            return Biome.DESERT;
+        return humidity < 0.2 ? Biome.SAVANNA : Biome.JUNGLE;
+    }
+
+    /**
+     * Gets the id the client knows the biome by
+     *
+     * @return the biome id
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * Gets the block covering the surface
+     *
+     * @return the block state of the top block
+     */
+    public int getTop() {
+        return this.top;
+    }
+
+    /**
+     * Gets the blocks between the top block and the stone
+     *
+     * @return the block state of the filler blocks
+     */
+    public int getFiller() {
+        return this.filler;
+    }
+}
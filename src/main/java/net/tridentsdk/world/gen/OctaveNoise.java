@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world.gen;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Random;
+
+/**
+ * Layers octaves of {@link PerlinNoise}, each twice the frequency and a fraction of the amplitude of the one before
+ * <p/> <p>Samples are written into flat arrays a grid at a time, with the octaves in the outer loop. The inner loops
+ * only step a coordinate and accumulate into the array, which keeps them short and free of allocation.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public final class OctaveNoise {
+    private final PerlinNoise[] octaves;
+    private final double frequency;
+    private final double persistence;
+    private final double normalization;
+
+    /**
+     * Creates layered noise
+     *
+     * @param seed        the seed, every octave gets its own seed derived from it
+     * @param octaves     the amount of octaves
+     * @param frequency   the frequency of the first octave, in cycles per block
+     * @param persistence the amplitude of each octave relative to the one before
+     */
+    public OctaveNoise(long seed, int octaves, double frequency, double persistence) {
+        if (octaves < 1)
+            throw new IllegalArgumentException("Needs at least one octave");
+
+        Random random = new Random(seed);
+        this.octaves = new PerlinNoise[octaves];
+        for (int i = 0; i < octaves; i++)
+            this.octaves[i] = new PerlinNoise(random.nextLong());
+
+        this.frequency = frequency;
+        this.persistence = persistence;
+
+        double total = 0.0;
+        double amplitude = 1.0;
+        for (int i = 0; i < octaves; i++) {
+            total += amplitude;
+            amplitude *= persistence;
+        }
+        this.normalization = 1.0 / total;
+    }
+
+    /**
+     * Samples a point in two dimensions
+     *
+     * @param x the x coordinate, in blocks
+     * @param z the z coordinate, in blocks
+     * @return the noise, roughly -1 to 1
+     */
+    public double sample(double x, double z) {
+        double value = 0.0;
+        double frequency = this.frequency;
+        double amplitude = 1.0;
+        for (PerlinNoise octave : this.octaves) {
+            value += octave.noise(x * frequency, z * frequency) * amplitude;
+            frequency *= 2.0;
+            amplitude *= this.persistence;
+        }
+        return value * this.normalization;
+    }
+
+    /**
+     * Samples a grid in two dimensions
+     *
+     * @param out   the array to write to, indexed {@code z * width + x}, at least {@code width * depth} long
+     * @param x     the x coordinate of the first sample, in blocks
+     * @param z     the z coordinate of the first sample, in blocks
+     * @param width the amount of samples along x
+     * @param depth the amount of samples along z
+     * @param step  the distance between samples, in blocks
+     */
+    public void fill(double[] out, double x, double z, int width, int depth, double step) {
+        int size = width * depth;
+        for (int i = 0; i < size; i++)
+            out[i] = 0.0;
+
+        double frequency = this.frequency;
+        double amplitude = this.normalization;
+        for (PerlinNoise octave : this.octaves) {
+            double stepped = step * frequency;
+            for (int dz = 0, i = 0; dz < depth; dz++) {
+                double sampleZ = (z + dz * step) * frequency;
+                double sampleX = x * frequency;
+                for (int dx = 0; dx < width; dx++, i++)
+                    out[i] += octave.noise(sampleX + dx * stepped, sampleZ) * amplitude;
+            }
+
+            frequency *= 2.0;
+            amplitude *= this.persistence;
+        }
+    }
+
+    /**
+     * Samples a grid in three dimensions
+     *
+     * @param out    the array to write to, indexed {@code (x * depth + z) * height + y}, at least
+     *               {@code width * height * depth} long
+     * @param x      the x coordinate of the first sample, in blocks
+     * @param y      the y coordinate of the first sample, in blocks
+     * @param z      the z coordinate of the first sample, in blocks
+     * @param width  the amount of samples along x
+     * @param height the amount of samples along y
+     * @param depth  the amount of samples along z
+     * @param stepXZ the horizontal distance between samples, in blocks
+     * @param stepY  the vertical distance between samples, in blocks
+     */
+    public void fill(double[] out, double x, double y, double z, int width, int height, int depth, double stepXZ,
+            double stepY) {
+        int size = width * height * depth;
+        for (int i = 0; i < size; i++)
+            out[i] = 0.0;
+
+        double frequency = this.frequency;
+        double amplitude = this.normalization;
+        for (PerlinNoise octave : this.octaves) {
+            int i = 0;
+            for (int dx = 0; dx < width; dx++) {
+                double sampleX = (x + dx * stepXZ) * frequency;
+                for (int dz = 0; dz < depth; dz++) {
+                    double sampleZ = (z + dz * stepXZ) * frequency;
+                    for (int dy = 0; dy < height; dy++, i++)
+                        out[i] += octave.noise(sampleX, (y + dy * stepY) * frequency, sampleZ) * amplitude;
+                }
+            }
+
+            frequency *= 2.0;
+            amplitude *= this.persistence;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world.gen;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Random;
+
+/**
+ * Improved gradient noise, as described by Ken Perlin <p/> <p>The permutation is shuffled from the seed, so the noise
+ * at a point only depends on the seed and the point, never on what was sampled before. Instances are immutable and
+ * can be shared between any amount of threads.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public final class PerlinNoise {
+    private final int[] permutation = new int[512];
+    // Moves the lattice off the origin, so noise of different seeds doesn't line up at 0, 0
+    private final double offsetX;
+    private final double offsetY;
+    private final double offsetZ;
+
+    /**
+     * Creates the noise of a seed
+     *
+     * @param seed the seed of the permutation
+     */
+    public PerlinNoise(long seed) {
+        Random random = new Random(seed);
+        this.offsetX = random.nextDouble() * 256.0;
+        this.offsetY = random.nextDouble() * 256.0;
+        this.offsetZ = random.nextDouble() * 256.0;
+
+        for (int i = 0; i < 256; i++)
+            this.permutation[i] = i;
+        for (int i = 255; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = this.permutation[i];
+            this.permutation[i] = this.permutation[j];
+            this.permutation[j] = swap;
+        }
+        System.arraycopy(this.permutation, 0, this.permutation, 256, 256);
+    }
+
+    /**
+     * Samples the noise in two dimensions
+     *
+     * @param x the x coordinate
+     * @param z the z coordinate
+     * @return the noise, roughly -1 to 1
+     */
+    public double noise(double x, double z) {
+        x += this.offsetX;
+        z += this.offsetZ;
+
+        int floorX = PerlinNoise.floor(x);
+        int floorZ = PerlinNoise.floor(z);
+        x -= floorX;
+        z -= floorZ;
+        int cellX = floorX & 255;
+        int cellZ = floorZ & 255;
+
+        double u = PerlinNoise.fade(x);
+        double v = PerlinNoise.fade(z);
+
+        int[] p = this.permutation;
+        int a = p[cellX] + cellZ;
+        int b = p[cellX + 1] + cellZ;
+
+        return PerlinNoise.lerp(v,
+                                PerlinNoise.lerp(u, PerlinNoise.grad(p[a], x, z),
+                                                 PerlinNoise.grad(p[b], x - 1.0, z)),
+                                PerlinNoise.lerp(u, PerlinNoise.grad(p[a + 1], x, z - 1.0),
+                                                 PerlinNoise.grad(p[b + 1], x - 1.0, z - 1.0)));
+    }
+
+    /**
+     * Samples the noise in three dimensions
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param z the z coordinate
+     * @return the noise, roughly -1 to 1
+     */
+    public double noise(double x, double y, double z) {
+        x += this.offsetX;
+        y += this.offsetY;
+        z += this.offsetZ;
+
+        int floorX = PerlinNoise.floor(x);
+        int floorY = PerlinNoise.floor(y);
+        int floorZ = PerlinNoise.floor(z);
+        x -= floorX;
+        y -= floorY;
+        z -= floorZ;
+        int cellX = floorX & 255;
+        int cellY = floorY & 255;
+        int cellZ = floorZ & 255;
+
+        double u = PerlinNoise.fade(x);
+        double v = PerlinNoise.fade(y);
+        double w = PerlinNoise.fade(z);
+
+        int[] p = this.permutation;
+        int a = p[cellX] + cellY;
+        int aa = p[a] + cellZ;
+        int ab = p[a + 1] + cellZ;
+        int b = p[cellX + 1] + cellY;
+        int ba = p[b] + cellZ;
+        int bb = p[b + 1] + cellZ;
+
+        return PerlinNoise.lerp(w,
+                PerlinNoise.lerp(v,
+                        PerlinNoise.lerp(u, PerlinNoise.grad(p[aa], x, y, z),
+                                         PerlinNoise.grad(p[ba], x - 1.0, y, z)),
+                        PerlinNoise.lerp(u, PerlinNoise.grad(p[ab], x, y - 1.0, z),
+                                         PerlinNoise.grad(p[bb], x - 1.0, y - 1.0, z))),
+                PerlinNoise.lerp(v,
+                        PerlinNoise.lerp(u, PerlinNoise.grad(p[aa + 1], x, y, z - 1.0),
+                                         PerlinNoise.grad(p[ba + 1], x - 1.0, y, z - 1.0)),
+                        PerlinNoise.lerp(u, PerlinNoise.grad(p[ab + 1], x, y - 1.0, z - 1.0),
+                                         PerlinNoise.grad(p[bb + 1], x - 1.0, y - 1.0, z - 1.0))));
+    }
+
+    private static int floor(double value) {
+        int floor = (int) value;
+        return value < floor ? floor - 1 : floor;
+    }
+
+    private static double fade(double t) {
+        return t * t * t * (t * (t * 6.0 - 15.0) + 10.0);
+    }
+
+    private static double lerp(double t, double a, double b) {
+        return a + t * (b - a);
+    }
+
+    private static double grad(int hash, double x, double z) {
+        switch (hash & 3) {
+            case 0:
+                return x + z;
+            case 1:
+                return -x + z;
+            case 2:
+                return x - z;
+            default:
+                return -x - z;
+        }
+    }
+
+    private static double grad(int hash, double x, double y, double z) {
+        int h = hash & 15;
+        double u = h < 8 ? x : y;
+        double v = h < 4 ? y : h == 12 || h == 14 ? x : z;
+        return ((h & 1) == 0 ? u : -u) + ((h & 2) == 0 ? v : -v);
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world.gen;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import net.tridentsdk.world.ChunkMap;
+import net.tridentsdk.world.TridentChunk;
+import net.tridentsdk.world.TridentWorld;
+import net.tridentsdk.world.TridentWorldLoader;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates an area of a world ahead of time and writes it to the region files, so players don't wait for generation
+ * when they get there <p/> <p>Chunks are generated from the center of the area outwards, on a {@link ForkJoinPool}
+ * with a worker for every core of the CPU budget. A fractional budget is kept by letting the workers rest in
+ * proportion to the time they spend generating, e.g. a budget of 1.5 cores runs two workers which each rest a third
+ * of the time.</p> <p/> <p>Generated chunks are saved and released right away rather than added to the world, so an
+ * area of any size fits in memory. Chunks which are loaded or already on the disk are skipped, which also makes
+ * an interrupted pregeneration resume where it stopped when it is started again.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public class Pregenerator {
+    private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toNanos(5L);
+    private static final int FLUSH_CHUNKS = 1024;
+
+    private final TridentWorld world;
+    private final TridentWorldLoader loader;
+    private final long[] order;
+    private final double cores;
+    private final int workers;
+
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger generated = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong lastReport = new AtomicLong();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final SettableFuture<Pregenerator> future = SettableFuture.create();
+
+    private volatile boolean cancelled;
+    private volatile long startTime;
+    private volatile ForkJoinPool pool;
+
+    /**
+     * Prepares the pregeneration of a rectangle of chunks
+     *
+     * @param world the world to generate, which must be saved by a {@link TridentWorldLoader}
+     * @param minX  the smallest chunk x coordinate
+     * @param minZ  the smallest chunk z coordinate
+     * @param maxX  the largest chunk x coordinate
+     * @param maxZ  the largest chunk z coordinate
+     * @param cores the CPU budget, in cores
+     */
+    public Pregenerator(TridentWorld world, int minX, int minZ, int maxX, int maxZ, double cores) {
+        if (!(world.getLoader() instanceof TridentWorldLoader))
+            throw new IllegalArgumentException("World " + world.getName() + " is not saved to region files");
+        if (maxX < minX || maxZ < minZ)
+            throw new IllegalArgumentException("The area is empty");
+        if (!(cores > 0.0))
+            throw new IllegalArgumentException("The CPU budget must be positive");
+
+        this.world = world;
+        this.loader = (TridentWorldLoader) world.getLoader();
+        this.order = Pregenerator.spiral(minX, minZ, maxX, maxZ);
+        this.cores = cores;
+        this.workers = (int) Math.ceil(cores);
+    }
+
+    /**
+     * Prepares the pregeneration of the square of chunks around a chunk
+     *
+     * @param world   the world to generate, which must be saved by a {@link TridentWorldLoader}
+     * @param centerX the x coordinate of the chunk in the middle
+     * @param centerZ the z coordinate of the chunk in the middle
+     * @param radius  the radius of the square in chunks, {@code 0} only generates the middle chunk
+     * @param cores   the CPU budget, in cores
+     * @return the pregenerator, which still has to be started
+     */
+    public static Pregenerator around(TridentWorld world, int centerX, int centerZ, int radius, double cores) {
+        return new Pregenerator(world, centerX - radius, centerZ - radius, centerX + radius, centerZ + radius, cores);
+    }
+
+    /**
+     * Lists the chunks of the rectangle ring by ring, starting in its middle
+     */
+    private static long[] spiral(int minX, int minZ, int maxX, int maxZ) {
+        long count = (long) (maxX - minX + 1) * (maxZ - minZ + 1);
+        if (count > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("The area is too large");
+
+        long[] order = new long[(int) count];
+        int centerX = (int) (((long) minX + maxX) >> 1);
+        int centerZ = (int) (((long) minZ + maxZ) >> 1);
+        int rings = Math.max(Math.max(centerX - minX, maxX - centerX), Math.max(centerZ - minZ, maxZ - centerZ));
+
+        int i = 0;
+        for (int ring = 0; ring <= rings; ring++) {
+            for (int x = centerX - ring; x <= centerX + ring; x++) {
+                for (int z = centerZ - ring; z <= centerZ + ring; z++) {
+                    // Only the edge of the square belongs to the ring, jump over the inside
+                    if (x != centerX - ring && x != centerX + ring && z == centerZ - ring + 1)
+                        z = centerZ + ring;
+
+                    if (x >= minX && x <= maxX && z >= minZ && z <= maxZ)
+                        order[i++] = ChunkMap.key(x, z);
+                }
+            }
+        }
+
+        return order;
+    }
+
+    /**
+     * Starts generating in the background. Only the first call does anything.
+     *
+     * @return the future which completes once every chunk is done or the pregeneration is cancelled
+     */
+    public ListenableFuture<Pregenerator> start() {
+        if (!this.started.compareAndSet(false, true))
+            return this.future;
+
+        this.startTime = System.nanoTime();
+        this.lastReport.set(this.startTime);
+        this.running.set(this.workers);
+        this.pool = new ForkJoinPool(this.workers);
+        for (int i = 0; i < this.workers; i++)
+            this.pool.execute(new Worker());
+
+        System.out.println("Pregenerating " + this.order.length + " chunks of " + this.world.getName() + " on " +
+                                   this.cores + " cores");
+        return this.future;
+    }
+
+    /**
+     * Stops generating once the chunks in progress are done. The chunks generated so far are kept.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * Checks if the pregeneration was cancelled
+     *
+     * @return {@code true} if {@link #cancel()} was called
+     */
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Gets the amount of chunks in the area
+     *
+     * @return the total chunk count
+     */
+    public int getTotal() {
+        return this.order.length;
+    }
+
+    /**
+     * Gets the amount of chunks which were generated
+     *
+     * @return the generated chunk count
+     */
+    public int getGenerated() {
+        return this.generated.get();
+    }
+
+    /**
+     * Gets the amount of chunks which were skipped, because they were loaded or already on the disk
+     *
+     * @return the skipped chunk count
+     */
+    public int getSkipped() {
+        return this.skipped.get();
+    }
+
+    /**
+     * Gets the amount of chunks which could not be saved
+     *
+     * @return the failed chunk count
+     */
+    public int getFailed() {
+        return this.failed.get();
+    }
+
+    /**
+     * Gets the share of the area which is done
+     *
+     * @return the progress, 0 to 1
+     */
+    public double getProgress() {
+        int done = this.generated.get() + this.skipped.get() + this.failed.get();
+        return this.order.length == 0 ? 1.0 : done / (double) this.order.length;
+    }
+
+    private void process(long key) {
+        int x = ChunkMap.keyX(key);
+        int z = ChunkMap.keyZ(key);
+
+        // The world saves the chunks it has loaded itself
+        if (this.world.getChunkAt(x, z, false) != null || this.loader.chunkExists(this.world, x, z)) {
+            this.skipped.incrementAndGet();
+            return;
+        }
+
+        TridentChunk chunk = new TridentChunk(this.world, x, z);
+        try {
+            this.world.getGenerator().generate(chunk);
+            this.loader.saveChunk(chunk);
+        } catch (IOException | RuntimeException e) {
+            this.failed.incrementAndGet();
+            e.printStackTrace();
+            return;
+        } finally {
+            chunk.release();
+        }
+
+        if (this.generated.incrementAndGet() % Pregenerator.FLUSH_CHUNKS == 0)
+            this.loader.flush(this.world);
+    }
+
+    private void report() {
+        long now = System.nanoTime();
+        long last = this.lastReport.get();
+        if (now - last < Pregenerator.REPORT_INTERVAL || !this.lastReport.compareAndSet(last, now))
+            return;
+
+        System.out.println("Pregenerating " + this.world.getName() + ": " + this.status(now));
+    }
+
+    private String status(long now) {
+        double seconds = Math.max(1L, now - this.startTime) / 1.0E9;
+        double rate = this.generated.get() / seconds;
+        int remaining = this.order.length - this.next.get();
+
+        StringBuilder builder = new StringBuilder();
+        builder.append((int) (this.getProgress() * 100.0)).append("%, ");
+        builder.append(this.generated.get()).append(" generated, ");
+        builder.append(this.skipped.get()).append(" skipped, ");
+        builder.append((int) rate).append(" chunks/s");
+        if (rate > 0.0 && remaining > 0)
+            builder.append(", about ").append((int) (remaining / rate)).append("s left");
+        return builder.toString();
+    }
+
+    private void finished() {
+        this.loader.flush(this.world);
+        this.pool.shutdown();
+
+        String result = this.cancelled ? "Cancelled pregenerating " : "Finished pregenerating ";
+        System.out.println(result + this.world.getName() + ": " + this.status(System.nanoTime()));
+        if (this.failed.get() > 0)
+            System.err.println(this.failed.get() + " chunks could not be saved");
+
+        this.future.set(this);
+    }
+
+    /**
+     * Takes chunks off the shared order until there are none left, resting to stay within the CPU budget
+     */
+    private final class Worker implements Runnable {
+        @Override
+        public void run() {
+            Pregenerator pregenerator = Pregenerator.this;
+            double rest = pregenerator.workers / pregenerator.cores - 1.0;
+
+            try {
+                int index;
+                while (!pregenerator.cancelled && (index = pregenerator.next.getAndIncrement()) <
+                        pregenerator.order.length) {
+                    long start = System.nanoTime();
+                    pregenerator.process(pregenerator.order[index]);
+                    pregenerator.report();
+
+                    if (rest > 0.0) {
+                        long nanos = (long) ((System.nanoTime() - start) * rest);
+                        TimeUnit.NANOSECONDS.sleep(nanos);
+                    }
+                }
+            } catch (InterruptedException e) {
+                pregenerator.cancelled = true;
+            } finally {
+                if (pregenerator.running.decrementAndGet() == 0)
+                    pregenerator.finished();
+            }
+        }
+    }
+}
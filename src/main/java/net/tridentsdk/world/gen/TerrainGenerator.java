@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world.gen;
+
+import net.tridentsdk.world.BlockState;
+import net.tridentsdk.world.ChunkSection;
+import net.tridentsdk.world.TridentChunk;
+import net.tridentsdk.world.TridentWorld;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Generates terrain out of layered noise <p/> <p>A heightmap is shaped by a slow continent noise and a faster detail
+ * noise, which is stronger further inland so the coasts stay flat and the interior gets hills. Temperature and
+ * humidity noise pick the biome of every column, which decides the surface blocks. Two 3D noise fields carve caves
+ * where both are close to zero, which makes long winding tunnels. The 3D noise is sampled on a coarse grid and
+ * interpolated, the way the vanilla generator does.</p> <p/> <p>Every block only depends on the seed and its
+ * coordinates, so chunks come out the same no matter in which order or on which thread they are generated. All
+ * state is immutable and the per chunk work happens in flat arrays, so one generator serves any amount of threads,
+ * e.g. a {@link ForkJoinPool} working through an area with {@link #generateArea(TridentWorld, int, int, int, int,
+ * ForkJoinPool)}.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public class TerrainGenerator {
+    /**
+     * The height the oceans are filled up to
+     */
+    public static final int SEA_LEVEL = 62;
+
+    private static final int HEIGHT = TridentChunk.SECTIONS * 16;
+
+    // The cave noise is sampled every 4 blocks horizontally and every 8 vertically
+    private static final int CELL_XZ = 4;
+    private static final int CELL_Y = 8;
+    private static final int GRID_XZ = 16 / TerrainGenerator.CELL_XZ + 1;
+    private static final int GRID_Y = TerrainGenerator.HEIGHT / TerrainGenerator.CELL_Y + 1;
+    private static final double CAVE_WIDTH = 0.045;
+    private static final int CAVE_FLOOR = 5;
+
+    private static final int STONE = BlockState.of(1, 0);
+    private static final int BEDROCK = BlockState.of(7, 0);
+    private static final int WATER = BlockState.of(9, 0);
+    private static final int ICE = BlockState.of(79, 0);
+
+    private final long seed;
+    private final OctaveNoise continent;
+    private final OctaveNoise detail;
+    private final OctaveNoise temperature;
+    private final OctaveNoise humidity;
+    private final OctaveNoise caveA;
+    private final OctaveNoise caveB;
+
+    /**
+     * Creates a generator
+     *
+     * @param seed the world seed
+     */
+    public TerrainGenerator(long seed) {
+        this.seed = seed;
+
+        Random random = new Random(seed);
+        this.continent = new OctaveNoise(random.nextLong(), 4, 1.0 / 512.0, 0.5);
+        this.detail = new OctaveNoise(random.nextLong(), 4, 1.0 / 96.0, 0.5);
+        this.temperature = new OctaveNoise(random.nextLong(), 2, 1.0 / 640.0, 0.5);
+        this.humidity = new OctaveNoise(random.nextLong(), 2, 1.0 / 640.0, 0.5);
+        this.caveA = new OctaveNoise(random.nextLong(), 2, 1.0 / 48.0, 0.5);
+        this.caveB = new OctaveNoise(random.nextLong(), 2, 1.0 / 48.0, 0.5);
+    }
+
+    /**
+     * Gets the seed all noise is derived from
+     *
+     * @return the world seed
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Generates the terrain of a chunk, replacing its blocks and biomes
+     *
+     * @param chunk the chunk to fill
+     */
+    public void generate(TridentChunk chunk) {
+        int blockX = chunk.getX() << 4;
+        int blockZ = chunk.getZ() << 4;
+
+        double[] continent = new double[256];
+        double[] detail = new double[256];
+        double[] temperature = new double[256];
+        double[] humidity = new double[256];
+        this.continent.fill(continent, blockX, blockZ, 16, 16, 1.0);
+        this.detail.fill(detail, blockX, blockZ, 16, 16, 1.0);
+        this.temperature.fill(temperature, blockX, blockZ, 16, 16, 1.0);
+        this.humidity.fill(humidity, blockX, blockZ, 16, 16, 1.0);
+
+        int[] heights = new int[256];
+        int maxHeight = TerrainGenerator.SEA_LEVEL;
+        for (int i = 0; i < 256; i++) {
+            double land = continent[i] * 48.0;
+            double hills = 6.0 + 40.0 * Math.max(0.0, continent[i]);
+            int height = (int) (TerrainGenerator.SEA_LEVEL + 4 + land + detail[i] * hills);
+            heights[i] = Math.max(1, Math.min(TerrainGenerator.HEIGHT - 2, height));
+            maxHeight = Math.max(maxHeight, heights[i]);
+        }
+
+        Biome[] biomes = new Biome[256];
+        byte[] biomeIds = new byte[256];
+        for (int i = 0; i < 256; i++) {
+            biomes[i] = Biome.of(heights[i], temperature[i] * 2.0, humidity[i] * 2.0);
+            biomeIds[i] = (byte) biomes[i].getId();
+        }
+
+        int cells = TerrainGenerator.GRID_XZ * TerrainGenerator.GRID_XZ * TerrainGenerator.GRID_Y;
+        double[] caveA = new double[cells];
+        double[] caveB = new double[cells];
+        this.caveA.fill(caveA, blockX, 0.0, blockZ, TerrainGenerator.GRID_XZ, TerrainGenerator.GRID_Y,
+                        TerrainGenerator.GRID_XZ, TerrainGenerator.CELL_XZ, TerrainGenerator.CELL_Y);
+        this.caveB.fill(caveB, blockX, 0.0, blockZ, TerrainGenerator.GRID_XZ, TerrainGenerator.GRID_Y,
+                        TerrainGenerator.GRID_XZ, TerrainGenerator.CELL_XZ, TerrainGenerator.CELL_Y);
+
+        Random random = new Random(this.seed ^ chunk.getX() * 341873128712L ^ chunk.getZ() * 132897987541L);
+        int[] states = new int[ChunkSection.SIZE];
+        double[] densityA = new double[ChunkSection.SIZE];
+        double[] densityB = new double[ChunkSection.SIZE];
+
+        int sections = maxHeight / 16 + 1;
+        for (int section = 0; section < sections; section++) {
+            int baseY = section << 4;
+            TerrainGenerator.interpolate(caveA, densityA, baseY);
+            TerrainGenerator.interpolate(caveB, densityB, baseY);
+
+            for (int y = 0; y < 16; y++) {
+                int worldY = baseY + y;
+                for (int column = 0; column < 256; column++) {
+                    int index = y << 8 | column;
+                    int height = heights[column];
+                    Biome biome = biomes[column];
+
+                    int state;
+                    if (worldY > height) {
+                        if (worldY > TerrainGenerator.SEA_LEVEL)
+                            state = BlockState.AIR;
+                        else if (worldY == TerrainGenerator.SEA_LEVEL && biome == Biome.ICE_PLAINS)
+                            state = TerrainGenerator.ICE;
+                        else
+                            state = TerrainGenerator.WATER;
+                    } else if (worldY == 0 || worldY < 5 && random.nextInt(worldY + 1) == 0) {
+                        state = TerrainGenerator.BEDROCK;
+                    } else {
+                        int depth = height - worldY;
+                        if (depth == 0)
+                            state = height < TerrainGenerator.SEA_LEVEL ? biome.getFiller() : biome.getTop();
+                        else if (depth < 4)
+                            state = biome.getFiller();
+                        else
+                            state = TerrainGenerator.STONE;
+
+                        // Keep the sea out of the caves, don't open the ground right under the water
+                        int roof = height < TerrainGenerator.SEA_LEVEL + 2 ? height - 4 : height;
+                        if (worldY >= TerrainGenerator.CAVE_FLOOR && worldY <= roof &&
+                                Math.abs(densityA[index]) < TerrainGenerator.CAVE_WIDTH &&
+                                Math.abs(densityB[index]) < TerrainGenerator.CAVE_WIDTH)
+                            state = BlockState.AIR;
+                    }
+
+                    states[index] = state;
+                }
+            }
+
+            chunk.setSection(section, states);
+        }
+
+        for (int section = sections; section < TridentChunk.SECTIONS; section++) {
+            if (chunk.getSection(section) != null) {
+                Arrays.fill(states, BlockState.AIR);
+                chunk.setSection(section, states);
+            }
+        }
+
+        chunk.setBiomes(biomeIds);
+    }
+
+    /**
+     * Generates a rectangle of chunks on the pool, splitting it until every task holds a single chunk <p/> <p>The
+     * chunks are created for the world, but not added to it.</p>
+     *
+     * @param world the world the chunks belong to
+     * @param minX  the smallest chunk x coordinate
+     * @param minZ  the smallest chunk z coordinate
+     * @param maxX  the largest chunk x coordinate
+     * @param maxZ  the largest chunk z coordinate
+     * @param pool  the pool to generate on
+     * @return the generated chunks, ordered by z and then x
+     */
+    public List<TridentChunk> generateArea(TridentWorld world, int minX, int minZ, int maxX, int maxZ,
+            ForkJoinPool pool) {
+        if (maxX < minX || maxZ < minZ)
+            throw new IllegalArgumentException("The area is empty");
+
+        int width = maxX - minX + 1;
+        TridentChunk[] chunks = new TridentChunk[width * (maxZ - minZ + 1)];
+        pool.invoke(new AreaTask(world, chunks, width, minX, minZ, minX, minZ, maxX, maxZ));
+        return Arrays.asList(chunks);
+    }
+
+    /**
+     * Fills the cave density of a section from the coarse grid, interpolating between the corners of every cell
+     */
+    private static void interpolate(double[] grid, double[] density, int baseY) {
+        int gridZ = TerrainGenerator.GRID_Y;
+        int gridX = TerrainGenerator.GRID_XZ * gridZ;
+
+        for (int y = 0; y < 16; y++) {
+            int worldY = baseY + y;
+            int cellY = worldY / TerrainGenerator.CELL_Y;
+            double fy = (worldY % TerrainGenerator.CELL_Y) / (double) TerrainGenerator.CELL_Y;
+
+            for (int z = 0; z < 16; z++) {
+                int cellZ = z / TerrainGenerator.CELL_XZ;
+                double fz = (z % TerrainGenerator.CELL_XZ) / (double) TerrainGenerator.CELL_XZ;
+
+                for (int x = 0; x < 16; x++) {
+                    int cellX = x / TerrainGenerator.CELL_XZ;
+                    double fx = (x % TerrainGenerator.CELL_XZ) / (double) TerrainGenerator.CELL_XZ;
+
+                    int corner = cellX * gridX + cellZ * gridZ + cellY;
+                    double c00 = TerrainGenerator.lerp(fy, grid[corner], grid[corner + 1]);
+                    double c01 = TerrainGenerator.lerp(fy, grid[corner + gridZ], grid[corner + gridZ + 1]);
+                    double c10 = TerrainGenerator.lerp(fy, grid[corner + gridX], grid[corner + gridX + 1]);
+                    double c11 = TerrainGenerator.lerp(fy, grid[corner + gridX + gridZ],
+                                                       grid[corner + gridX + gridZ + 1]);
+
+                    density[y << 8 | z << 4 | x] = TerrainGenerator.lerp(fx, TerrainGenerator.lerp(fz, c00, c01),
+                                                                         TerrainGenerator.lerp(fz, c10, c11));
+                }
+            }
+        }
+    }
+
+    private static double lerp(double t, double a, double b) {
+        return a + t * (b - a);
+    }
+
+    /**
+     * Generates a rectangle of chunks, splitting it in halves along its longer side
+     */
+    private final class AreaTask extends RecursiveAction {
+        private static final long serialVersionUID = -2751082196034528447L;
+
+        private final TridentWorld world;
+        private final TridentChunk[] chunks;
+        private final int width;
+        private final int originX;
+        private final int originZ;
+        private final int minX;
+        private final int minZ;
+        private final int maxX;
+        private final int maxZ;
+
+        AreaTask(TridentWorld world, TridentChunk[] chunks, int width, int originX, int originZ, int minX, int minZ,
+                int maxX, int maxZ) {
+            this.world = world;
+            this.chunks = chunks;
+            this.width = width;
+            this.originX = originX;
+            this.originZ = originZ;
+            this.minX = minX;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxZ = maxZ;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.minX == this.maxX && this.minZ == this.maxZ) {
+                TridentChunk chunk = new TridentChunk(this.world, this.minX, this.minZ);
+                TerrainGenerator.this.generate(chunk);
+                this.chunks[(this.minZ - this.originZ) * this.width + this.minX - this.originX] = chunk;
+                return;
+            }
+
+            if (this.maxX - this.minX >= this.maxZ - this.minZ) {
+                int middle = (this.minX + this.maxX) >> 1;
+                ForkJoinTask.invokeAll(this.split(this.minX, this.minZ, middle, this.maxZ),
+                                       this.split(middle + 1, this.minZ, this.maxX, this.maxZ));
+            } else {
+                int middle = (this.minZ + this.maxZ) >> 1;
+                ForkJoinTask.invokeAll(this.split(this.minX, this.minZ, this.maxX, middle),
+                                       this.split(this.minX, middle + 1, this.maxX, this.maxZ));
+            }
+        }
+
+        private AreaTask split(int minX, int minZ, int maxX, int maxZ) {
+            return new AreaTask(this.world, this.chunks, this.width, this.originX, this.originZ, minX, minZ, maxX,
+                                maxZ);
+        }
+    }
+}
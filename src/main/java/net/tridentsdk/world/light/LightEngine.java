@@ -0,0 +1,508 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world.light;
+
+import net.tridentsdk.api.world.Chunk;
+import net.tridentsdk.server.threads.BackgroundTaskExecutor;
+import net.tridentsdk.world.ChunkMap;
+import net.tridentsdk.world.TridentChunk;
+import net.tridentsdk.world.TridentWorld;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Calculates the block light and sky light of a world incrementally <p/> <p>Light spreads breadth first: an increase
+ * queue carries light outwards, one level lower every step and lower still through blocks with an opacity, see
+ * {@link LightProperties}. Sky light is 15 above the highest opaque block of a column and keeps that level straight
+ * down through transparent blocks. When a block changes, a decrease queue first takes away the light which came through
+ * the block, and hands every block still lit by another source to the increase queue to fill the gap again.</p> <p/>
+ * <p>Queue entries are positions packed into a long together with a light level, so the queues are arrays of
+ * primitives. The queues, the column heights and the batch task are allocated once per world and reused, so lighting
+ * does not allocate once the queues grew large enough.</p> <p/> <p>Block changes and newly loaded chunks are collected
+ * during the tick, and {@link #tick()} hands each batch to the CPU lane of the {@link BackgroundTaskExecutor}. At most
+ * one batch runs at a time; changes made meanwhile wait for the next tick. Chunks which are not lit yet are treated as
+ * dark walls, so their default light never spreads into lit chunks.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public class LightEngine {
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final int MAX_Y = 255;
+
+    // Neighbours in the order west, east, down, up, north, south
+    private static final int[] DX = { -1, 1, 0, 0, 0, 0 };
+    private static final int[] DY = { 0, 0, -1, 1, 0, 0 };
+    private static final int[] DZ = { 0, 0, 0, 0, -1, 1 };
+    private static final int DOWN = 2;
+
+    private final TridentWorld world;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Runnable batch = new Batch();
+
+    @GuardedBy("this")
+    private LongQueue pendingChanges = new LongQueue(LightEngine.INITIAL_CAPACITY);
+    @GuardedBy("this")
+    private LongQueue pendingChunks = new LongQueue(64);
+
+    // Only touched by the running batch, handed over through the running flag
+    private LongQueue changes = new LongQueue(LightEngine.INITIAL_CAPACITY);
+    private LongQueue chunks = new LongQueue(64);
+    private final LongQueue increase = new LongQueue(LightEngine.INITIAL_CAPACITY);
+    private final LongQueue decrease = new LongQueue(LightEngine.INITIAL_CAPACITY);
+    private final int[] heights = new int[16 * 16];
+    private TridentChunk cached;
+
+    /**
+     * Creates the light engine of a world
+     *
+     * @param world the world to light
+     */
+    public LightEngine(TridentWorld world) {
+        this.world = world;
+    }
+
+    /**
+     * Queues the light around a block to be recalculated, after the block changed to one which lets through or gives
+     * off a different amount of light <p/> <p>Changes to a chunk which isn't part of the world yet are dropped, such a
+     * chunk is being filled before it is loaded and gets its light with it.</p>
+     *
+     * @param x the block x coordinate
+     * @param y the block y coordinate
+     * @param z the block z coordinate
+     */
+    public void blockChanged(int x, int y, int z) {
+        if (this.world.getChunkAt(x >> 4, z >> 4, false) == null)
+            return;
+
+        synchronized (this) {
+            this.pendingChanges.add(LightEngine.pack(x, y, z, 0));
+        }
+    }
+
+    /**
+     * Queues a chunk to be lit from scratch, e.g. once it was generated
+     *
+     * @param x the chunk x coordinate
+     * @param z the chunk z coordinate
+     */
+    public synchronized void chunkLoaded(int x, int z) {
+        this.pendingChunks.add(ChunkMap.key(x, z));
+    }
+
+    /**
+     * Gets the amount of block changes and chunks waiting for the next batch
+     *
+     * @return the queued light updates
+     */
+    public synchronized int getPending() {
+        return this.pendingChanges.size() + this.pendingChunks.size();
+    }
+
+    /**
+     * Checks if a batch of light updates is being calculated
+     *
+     * @return {@code true} if a batch runs
+     */
+    public boolean isRunning() {
+        return this.running.get();
+    }
+
+    /**
+     * Hands the light updates collected since the last batch to the CPU lane, unless the last batch is still running.
+     * Called by the server thread.
+     */
+    public void tick() {
+        if (!this.running.compareAndSet(false, true))
+            return;
+
+        synchronized (this) {
+            if (this.pendingChanges.isEmpty() && this.pendingChunks.isEmpty()) {
+                this.running.set(false);
+                return;
+            }
+
+            LongQueue changes = this.changes;
+            this.changes = this.pendingChanges;
+            this.pendingChanges = changes;
+
+            LongQueue chunks = this.chunks;
+            this.chunks = this.pendingChunks;
+            this.pendingChunks = chunks;
+        }
+
+        BackgroundTaskExecutor.execute(this.batch, BackgroundTaskExecutor.Lane.CPU);
+    }
+
+    private static long pack(int x, int y, int z, int level) {
+        return ((long) x & 0x3FFFFFFL) << 38 | ((long) z & 0x3FFFFFFL) << 12 | (y & 0xFF) << 4 | level & 0xF;
+    }
+
+    private static int unpackX(long entry) {
+        return (int) (entry >> 38);
+    }
+
+    private static int unpackZ(long entry) {
+        return (int) (entry << 26 >> 38);
+    }
+
+    private static int unpackY(long entry) {
+        return (int) (entry >>> 4 & 0xFF);
+    }
+
+    private static int unpackLevel(long entry) {
+        return (int) (entry & 0xF);
+    }
+
+    private static int light(TridentChunk chunk, int x, int y, int z, boolean sky) {
+        return sky ? chunk.getSkyLight(x & 15, y, z & 15) : chunk.getBlockLight(x & 15, y, z & 15);
+    }
+
+    private static void setLight(TridentChunk chunk, int x, int y, int z, int light, boolean sky) {
+        if (sky)
+            chunk.setSkyLight(x & 15, y, z & 15, light);
+        else
+            chunk.setBlockLight(x & 15, y, z & 15, light);
+    }
+
+    private static int opacity(TridentChunk chunk, int x, int y, int z) {
+        return LightProperties.getOpacity(chunk.getBlockState(x & 15, y, z & 15));
+    }
+
+    /**
+     * Gets the y coordinate above the highest block of the column which lets no sky light straight through
+     */
+    private static int height(TridentChunk chunk, int x, int z) {
+        for (int section = TridentChunk.SECTIONS - 1; section >= 0; section--) {
+            if (chunk.getSection(section) == null)
+                continue;
+
+            for (int y = (section << 4) + 15; y >= section << 4; y--)
+                if (LightProperties.getOpacity(chunk.getBlockState(x, y, z)) != 0)
+                    return y + 1;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Gets a lit chunk by its chunk coordinates, or {@code null} if it is not loaded or not lit yet
+     */
+    private TridentChunk chunk(int x, int z) {
+        TridentChunk cached = this.cached;
+        if (cached != null && cached.getX() == x && cached.getZ() == z)
+            return cached;
+
+        Chunk chunk = this.world.getChunkAt(x, z, false);
+        if (!(chunk instanceof TridentChunk) || !((TridentChunk) chunk).isLightPopulated())
+            return null;
+
+        this.cached = (TridentChunk) chunk;
+        return this.cached;
+    }
+
+    private void lightChunk(TridentChunk chunk) {
+        int baseX = chunk.getX() << 4;
+        int baseZ = chunk.getZ() << 4;
+
+        int top = 0;
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                int height = LightEngine.height(chunk, x, z);
+                this.heights[z << 4 | x] = height;
+                top = Math.max(top, height);
+            }
+        }
+
+        // Start from darkness below the surface and full sky above it; missing sections above every column already are
+        for (int section = 0; section < TridentChunk.SECTIONS; section++) {
+            boolean empty = chunk.getSection(section) == null;
+            if (empty && section << 4 >= top)
+                continue;
+
+            for (int y = section << 4; y < (section << 4) + 16; y++) {
+                for (int x = 0; x < 16; x++) {
+                    for (int z = 0; z < 16; z++) {
+                        int sky = y >= this.heights[z << 4 | x] ? 15 : 0;
+                        if (chunk.getSkyLight(x, y, z) != sky)
+                            chunk.setSkyLight(x, y, z, sky);
+                        if (empty)
+                            continue;
+
+                        int emission = LightProperties.getEmission(chunk.getBlockState(x, y, z));
+                        if (chunk.getBlockLight(x, y, z) != emission)
+                            chunk.setBlockLight(x, y, z, emission);
+                        if (emission > 0)
+                            this.increase.add(LightEngine.pack(baseX | x, y, baseZ | z, emission));
+                    }
+                }
+            }
+        }
+
+        chunk.setLightPopulated(true);
+        this.cached = chunk;
+        this.flowIn(chunk, false);
+        this.runIncrease(false);
+
+        // Sky light spreads sideways below the surface of the neighbouring columns, e.g. under overhangs
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                int height = this.heights[z << 4 | x];
+                if (height > LightEngine.MAX_Y)
+                    continue;
+
+                int max = height;
+                for (int i = 0; i < 6; i++) {
+                    if (LightEngine.DY[i] != 0)
+                        continue;
+
+                    int nx = x + LightEngine.DX[i];
+                    int nz = z + LightEngine.DZ[i];
+                    if ((nx & 15) == nx && (nz & 15) == nz) {
+                        max = Math.max(max, this.heights[nz << 4 | nx]);
+                    } else {
+                        TridentChunk neighbour = this.chunk((baseX + nx) >> 4, (baseZ + nz) >> 4);
+                        if (neighbour != null)
+                            max = Math.max(max, LightEngine.height(neighbour, nx & 15, nz & 15));
+                    }
+                }
+
+                for (int y = height; y <= Math.min(LightEngine.MAX_Y, Math.max(height, max - 1)); y++)
+                    this.increase.add(LightEngine.pack(baseX | x, y, baseZ | z, 15));
+            }
+        }
+
+        this.flowIn(chunk, true);
+        this.runIncrease(true);
+    }
+
+    /**
+     * Queues the light of the lit neighbours along the borders of a chunk, so it flows into the chunk
+     */
+    private void flowIn(TridentChunk chunk, boolean sky) {
+        int baseX = chunk.getX() << 4;
+        int baseZ = chunk.getZ() << 4;
+
+        for (int i = 0; i < 6; i++) {
+            if (LightEngine.DY[i] != 0)
+                continue;
+
+            TridentChunk neighbour = this.chunk(chunk.getX() + LightEngine.DX[i], chunk.getZ() + LightEngine.DZ[i]);
+            if (neighbour == null)
+                continue;
+
+            for (int along = 0; along < 16; along++) {
+                // The column of the chunk on the border, and the column of the neighbour it touches
+                int x = LightEngine.DX[i] == 0 ? along : LightEngine.DX[i] < 0 ? 0 : 15;
+                int z = LightEngine.DZ[i] == 0 ? along : LightEngine.DZ[i] < 0 ? 0 : 15;
+                int nx = baseX + x + LightEngine.DX[i];
+                int nz = baseZ + z + LightEngine.DZ[i];
+
+                // Columns of the chunk are fully lit by the sky above their height already
+                int max = sky ? this.heights[z << 4 | x] - 1 : LightEngine.MAX_Y;
+                for (int y = 0; y <= Math.min(max, LightEngine.MAX_Y); y++) {
+                    int level = LightEngine.light(neighbour, nx, y, nz, sky);
+                    if (level > 1)
+                        this.increase.add(LightEngine.pack(nx, y, nz, level));
+                }
+            }
+        }
+    }
+
+    private void lightChanges(boolean sky) {
+        for (int i = 0; i < this.changes.size(); i++) {
+            long entry = this.changes.get(i);
+            int x = LightEngine.unpackX(entry);
+            int y = LightEngine.unpackY(entry);
+            int z = LightEngine.unpackZ(entry);
+
+            TridentChunk chunk = this.chunk(x >> 4, z >> 4);
+            if (chunk == null)
+                continue;
+
+            int level = LightEngine.light(chunk, x, y, z, sky);
+            if (level != 0)
+                LightEngine.setLight(chunk, x, y, z, 0, sky);
+            this.decrease.add(LightEngine.pack(x, y, z, level));
+        }
+        this.runDecrease(sky);
+
+        for (int i = 0; i < this.changes.size(); i++) {
+            long entry = this.changes.get(i);
+            int x = LightEngine.unpackX(entry);
+            int y = LightEngine.unpackY(entry);
+            int z = LightEngine.unpackZ(entry);
+
+            TridentChunk chunk = this.chunk(x >> 4, z >> 4);
+            if (chunk == null)
+                continue;
+
+            if (sky) {
+                if (y == LightEngine.MAX_Y)
+                    this.seedSky(chunk, x, z);
+            } else {
+                int emission = LightProperties.getEmission(chunk.getBlockState(x & 15, y, z & 15));
+                if (emission > LightEngine.light(chunk, x, y, z, false)) {
+                    LightEngine.setLight(chunk, x, y, z, emission, false);
+                    this.increase.add(LightEngine.pack(x, y, z, emission));
+                }
+            }
+        }
+        this.runIncrease(sky);
+    }
+
+    /**
+     * Lights the top block of a column from the sky above the world
+     */
+    private void seedSky(TridentChunk chunk, int x, int z) {
+        int opacity = LightEngine.opacity(chunk, x, LightEngine.MAX_Y, z);
+        int level = opacity == 0 ? 15 : 15 - Math.max(1, opacity);
+        if (level > LightEngine.light(chunk, x, LightEngine.MAX_Y, z, true)) {
+            LightEngine.setLight(chunk, x, LightEngine.MAX_Y, z, level, true);
+            this.increase.add(LightEngine.pack(x, LightEngine.MAX_Y, z, level));
+        }
+    }
+
+    private void runIncrease(boolean sky) {
+        while (!this.increase.isEmpty()) {
+            long entry = this.increase.poll();
+            int x = LightEngine.unpackX(entry);
+            int y = LightEngine.unpackY(entry);
+            int z = LightEngine.unpackZ(entry);
+
+            TridentChunk chunk = this.chunk(x >> 4, z >> 4);
+            if (chunk == null)
+                continue;
+
+            // The level may have changed since the entry was queued, spread what the block holds now
+            int level = LightEngine.light(chunk, x, y, z, sky);
+            if (level <= 1)
+                continue;
+
+            for (int i = 0; i < 6; i++) {
+                int ny = y + LightEngine.DY[i];
+                if (ny < 0 || ny > LightEngine.MAX_Y)
+                    continue;
+
+                int nx = x + LightEngine.DX[i];
+                int nz = z + LightEngine.DZ[i];
+                TridentChunk neighbour = this.chunk(nx >> 4, nz >> 4);
+                if (neighbour == null)
+                    continue;
+
+                int opacity = LightEngine.opacity(neighbour, nx, ny, nz);
+                int spread = sky && i == LightEngine.DOWN && level == 15 && opacity == 0 ? 15 :
+                        level - Math.max(1, opacity);
+                if (spread > 0 && spread > LightEngine.light(neighbour, nx, ny, nz, sky)) {
+                    LightEngine.setLight(neighbour, nx, ny, nz, spread, sky);
+                    this.increase.add(LightEngine.pack(nx, ny, nz, spread));
+                }
+            }
+        }
+    }
+
+    private void runDecrease(boolean sky) {
+        while (!this.decrease.isEmpty()) {
+            long entry = this.decrease.poll();
+            int x = LightEngine.unpackX(entry);
+            int y = LightEngine.unpackY(entry);
+            int z = LightEngine.unpackZ(entry);
+            int level = LightEngine.unpackLevel(entry);
+
+            for (int i = 0; i < 6; i++) {
+                int ny = y + LightEngine.DY[i];
+                if (ny < 0 || ny > LightEngine.MAX_Y)
+                    continue;
+
+                int nx = x + LightEngine.DX[i];
+                int nz = z + LightEngine.DZ[i];
+                TridentChunk neighbour = this.chunk(nx >> 4, nz >> 4);
+                if (neighbour == null)
+                    continue;
+
+                int current = LightEngine.light(neighbour, nx, ny, nz, sky);
+                if (current == 0)
+                    continue;
+
+                boolean fromHere = current < level || sky && i == LightEngine.DOWN && level == 15 && current == 15;
+                if (!fromHere) {
+                    // Lit by another source, which fills the gap again
+                    this.increase.add(LightEngine.pack(nx, ny, nz, current));
+                    continue;
+                }
+
+                LightEngine.setLight(neighbour, nx, ny, nz, 0, sky);
+                this.decrease.add(LightEngine.pack(nx, ny, nz, current));
+
+                if (sky) {
+                    if (ny == LightEngine.MAX_Y)
+                        this.seedSky(neighbour, nx, nz);
+                } else {
+                    int emission = LightProperties.getEmission(neighbour.getBlockState(nx & 15, ny, nz & 15));
+                    if (emission > 0) {
+                        LightEngine.setLight(neighbour, nx, ny, nz, emission, false);
+                        this.increase.add(LightEngine.pack(nx, ny, nz, emission));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Lights the queued chunks, then recalculates the light around the changed blocks
+     */
+    private final class Batch implements Runnable {
+        @Override
+        public void run() {
+            LightEngine engine = LightEngine.this;
+
+            try {
+                while (!engine.chunks.isEmpty()) {
+                    long key = engine.chunks.poll();
+                    Chunk chunk = engine.world.getChunkAt(ChunkMap.keyX(key), ChunkMap.keyZ(key), false);
+                    if (chunk instanceof TridentChunk && !((TridentChunk) chunk).isLightPopulated())
+                        engine.lightChunk((TridentChunk) chunk);
+                }
+
+                engine.lightChanges(false);
+                engine.lightChanges(true);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            } finally {
+                engine.changes.clear();
+                engine.chunks.clear();
+                engine.increase.clear();
+                engine.decrease.clear();
+                engine.cached = null;
+                engine.running.set(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world.light;
+
+import net.tridentsdk.world.BlockState;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Arrays;
+
+/**
+ * How much light blocks let through and give off, by block id <p/> <p>Blocks are opaque unless they are listed here.
+ * The opacity is the amount of light lost passing through the block on top of the level lost every step; a block
+ * with an opacity of 15 stops light entirely. The values are those of the vanilla server.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public final class LightProperties {
+    private static final int IDS = 4096;
+
+    private static final byte[] OPACITY = new byte[LightProperties.IDS];
+    private static final byte[] EMISSION = new byte[LightProperties.IDS];
+
+    static {
+        Arrays.fill(LightProperties.OPACITY, (byte) 15);
+
+        // Air, plants, torches, rails and other blocks which do not fill their space
+        LightProperties.opacity(0, 0, 6, 20, 26, 27, 28, 31, 32, 37, 38, 39, 40, 50, 51, 55, 59, 63, 64, 65, 66, 68,
+                                69, 70, 71, 72, 75, 76, 77, 78, 83, 85, 90, 92, 93, 94, 95, 96, 101, 102, 104, 105, 106,
+                                107, 113, 115, 119, 131, 132, 140, 141, 142, 143, 147, 148, 149, 150, 157, 160, 166,
+                                167, 171, 175, 176, 177, 183, 184, 185, 186, 187, 188, 189, 190, 191, 192, 193, 194,
+                                195, 196, 197);
+        LightProperties.opacity(1, 18, 30, 161);
+        LightProperties.opacity(3, 8, 9, 79);
+
+        LightProperties.emission(15, 10, 11, 51, 89, 91, 119, 124, 138, 169);
+        LightProperties.emission(14, 50);
+        LightProperties.emission(13, 62);
+        LightProperties.emission(11, 90);
+        LightProperties.emission(9, 74);
+        LightProperties.emission(7, 76, 130);
+        LightProperties.emission(1, 39, 117, 122);
+    }
+
+    private LightProperties() {}
+
+    private static void opacity(int opacity, int... ids) {
+        for (int id : ids)
+            LightProperties.OPACITY[id] = (byte) opacity;
+    }
+
+    private static void emission(int emission, int... ids) {
+        for (int id : ids)
+            LightProperties.EMISSION[id] = (byte) emission;
+    }
+
+    /**
+     * Gets the amount of light the block absorbs
+     *
+     * @param state the block state, see {@link BlockState}
+     * @return the opacity, 0 to 15
+     */
+    public static int getOpacity(int state) {
+        return LightProperties.OPACITY[BlockState.id(state) & 0xFFF];
+    }
+
+    /**
+     * Gets the block light the block gives off
+     *
+     * @param state the block state, see {@link BlockState}
+     * @return the emitted light, 0 to 15
+     */
+    public static int getEmission(int state) {
+        return LightProperties.EMISSION[BlockState.id(state) & 0xFFF];
+    }
+
+    /**
+     * Checks if replacing a block with another changes how the light around it spreads
+     *
+     * @param from the old block state
+     * @param to   the new block state
+     * @return {@code true} if the light has to be recalculated
+     */
+    public static boolean changesLight(int from, int to) {
+        int fromId = BlockState.id(from) & 0xFFF;
+        int toId = BlockState.id(to) & 0xFFF;
+        return LightProperties.OPACITY[fromId] != LightProperties.OPACITY[toId] ||
+                LightProperties.EMISSION[fromId] != LightProperties.EMISSION[toId];
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world.light;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A first in, first out queue of primitive longs, backed by an array which grows but never shrinks <p/> <p>Once the
+ * array is large enough for the work it is used for, adding and polling never allocate. The queue empties into the
+ * start of the array again, so a queue which is drained as fast as it fills does not grow.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@NotThreadSafe
+final class LongQueue {
+    private long[] elements;
+    private int head;
+    private int tail;
+
+    LongQueue(int capacity) {
+        this.elements = new long[capacity];
+    }
+
+    void add(long element) {
+        if (this.tail == this.elements.length) {
+            if (this.head > this.elements.length >> 1) {
+                // Mostly polled already, move the rest to the front rather than growing
+                System.arraycopy(this.elements, this.head, this.elements, 0, this.tail - this.head);
+            } else {
+                long[] elements = new long[this.elements.length << 1];
+                System.arraycopy(this.elements, this.head, elements, 0, this.tail - this.head);
+                this.elements = elements;
+            }
+            this.tail -= this.head;
+            this.head = 0;
+        }
+
+        this.elements[this.tail++] = element;
+    }
+
+    long poll() {
+        long element = this.elements[this.head++];
+        if (this.head == this.tail)
+            this.head = this.tail = 0;
+        return element;
+    }
+
+    long get(int index) {
+        return this.elements[this.head + index];
+    }
+
+    int size() {
+        return this.tail - this.head;
+    }
+
+    boolean isEmpty() {
+        return this.head == this.tail;
+    }
+
+    void clear() {
+        this.head = this.tail = 0;
+    }
+}
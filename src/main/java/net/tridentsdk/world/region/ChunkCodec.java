@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world.region;
+
+import net.tridentsdk.world.BlockState;
+import net.tridentsdk.world.ChunkSection;
+import net.tridentsdk.world.TridentChunk;
+import net.tridentsdk.world.TridentChunkSnapshot;
+import net.tridentsdk.world.TridentWorld;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts chunks from and to the NBT layout the Anvil format stores them in <p/> <p>Only the parts of the layout the
+ * server keeps are written: the position, the sections with their blocks, metadata and light, and empty entity
+ * lists. Anything else found when reading is skipped.</p>
+ *
+ * @author The TridentSDK Team
+ */
+public final class ChunkCodec {
+    private static final byte TAG_END = 0;
+    private static final byte TAG_BYTE = 1;
+    private static final byte TAG_SHORT = 2;
+    private static final byte TAG_INT = 3;
+    private static final byte TAG_LONG = 4;
+    private static final byte TAG_FLOAT = 5;
+    private static final byte TAG_DOUBLE = 6;
+    private static final byte TAG_BYTE_ARRAY = 7;
+    private static final byte TAG_STRING = 8;
+    private static final byte TAG_LIST = 9;
+    private static final byte TAG_COMPOUND = 10;
+    private static final byte TAG_INT_ARRAY = 11;
+
+    private static final int NIBBLES = ChunkSection.SIZE / 2;
+
+    private ChunkCodec() {}
+
+    /**
+     * Writes the chunk as NBT, from a snapshot so the chunk can keep changing while it is written
+     *
+     * @param chunk the chunk to write
+     * @return the uncompressed NBT data
+     */
+    public static byte[] encode(TridentChunk chunk) {
+        TridentChunkSnapshot snapshot = chunk.snapshot();
+        try {
+            return ChunkCodec.encode(snapshot);
+        } finally {
+            snapshot.release();
+        }
+    }
+
+    /**
+     * Writes the snapshot of a chunk as NBT
+     *
+     * @param chunk the snapshot to write
+     * @return the uncompressed NBT data
+     */
+    public static byte[] encode(TridentChunkSnapshot chunk) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16384);
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        try {
+            ChunkCodec.tag(out, ChunkCodec.TAG_COMPOUND, "");
+            ChunkCodec.tag(out, ChunkCodec.TAG_COMPOUND, "Level");
+
+            ChunkCodec.tag(out, ChunkCodec.TAG_INT, "xPos");
+            out.writeInt(chunk.getX());
+            ChunkCodec.tag(out, ChunkCodec.TAG_INT, "zPos");
+            out.writeInt(chunk.getZ());
+            ChunkCodec.tag(out, ChunkCodec.TAG_LONG, "LastUpdate");
+            out.writeLong(0L);
+            ChunkCodec.tag(out, ChunkCodec.TAG_BYTE, "TerrainPopulated");
+            out.writeByte(1);
+            ChunkCodec.tag(out, ChunkCodec.TAG_BYTE, "LightPopulated");
+            out.writeByte(chunk.isLightPopulated() ? 1 : 0);
+
+            List<ChunkSection> sections = new ArrayList<>(TridentChunk.SECTIONS);
+            List<Integer> heights = new ArrayList<>(TridentChunk.SECTIONS);
+            for (int y = 0; y < TridentChunk.SECTIONS; y++) {
+                ChunkSection section = chunk.getSection(y);
+                if (section != null) {
+                    sections.add(section);
+                    heights.add(y);
+                }
+            }
+
+            byte[] biomes = new byte[16 * 16];
+            chunk.copyBiomes(biomes);
+            ChunkCodec.byteArray(out, "Biomes", biomes);
+
+            ChunkCodec.tag(out, ChunkCodec.TAG_LIST, "Sections");
+            out.writeByte(ChunkCodec.TAG_COMPOUND);
+            out.writeInt(sections.size());
+
+            int[] states = new int[ChunkSection.SIZE];
+            for (int i = 0; i < sections.size(); i++)
+                ChunkCodec.writeSection(out, heights.get(i), sections.get(i), states);
+
+            ChunkCodec.tag(out, ChunkCodec.TAG_LIST, "Entities");
+            out.writeByte(ChunkCodec.TAG_COMPOUND);
+            out.writeInt(0);
+            ChunkCodec.tag(out, ChunkCodec.TAG_LIST, "TileEntities");
+            out.writeByte(ChunkCodec.TAG_COMPOUND);
+            out.writeInt(0);
+
+            out.writeByte(ChunkCodec.TAG_END);
+            out.writeByte(ChunkCodec.TAG_END);
+        } catch (IOException e) {
+            // Memory streams do not throw
+            throw new IllegalStateException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static void writeSection(DataOutputStream out, int y, ChunkSection section, int[] states)
+            throws IOException {
+        byte[] blocks = new byte[ChunkSection.SIZE];
+        byte[] add = new byte[ChunkCodec.NIBBLES];
+        byte[] data = new byte[ChunkCodec.NIBBLES];
+        byte[] blockLight = new byte[ChunkCodec.NIBBLES];
+        byte[] skyLight = new byte[ChunkCodec.NIBBLES];
+        boolean hasAdd = false;
+
+        section.copyStates(states);
+        section.copyLight(blockLight, skyLight);
+        for (int i = 0; i < ChunkSection.SIZE; i++) {
+            int id = BlockState.id(states[i]);
+            int shift = (i & 1) << 2;
+
+            blocks[i] = (byte) id;
+            data[i >> 1] |= BlockState.meta(states[i]) << shift;
+            if (id > 0xFF) {
+                add[i >> 1] |= (id >> 8 & 0xF) << shift;
+                hasAdd = true;
+            }
+        }
+
+        ChunkCodec.tag(out, ChunkCodec.TAG_BYTE, "Y");
+        out.writeByte(y);
+        ChunkCodec.byteArray(out, "Blocks", blocks);
+        if (hasAdd)
+            ChunkCodec.byteArray(out, "Add", add);
+        ChunkCodec.byteArray(out, "Data", data);
+        ChunkCodec.byteArray(out, "BlockLight", blockLight);
+        ChunkCodec.byteArray(out, "SkyLight", skyLight);
+        out.writeByte(ChunkCodec.TAG_END);
+    }
+
+    private static void tag(DataOutputStream out, byte type, String name) throws IOException {
+        out.writeByte(type);
+        out.writeUTF(name);
+    }
+
+    private static void byteArray(DataOutputStream out, String name, byte[] array) throws IOException {
+        ChunkCodec.tag(out, ChunkCodec.TAG_BYTE_ARRAY, name);
+        out.writeInt(array.length);
+        out.write(array);
+    }
+
+    /**
+     * Reads a chunk written as NBT
+     *
+     * @param world the world the chunk belongs to
+     * @param x     the chunk x coordinate
+     * @param z     the chunk z coordinate
+     * @param nbt   the uncompressed NBT data
+     * @return the chunk
+     * @throws IOException if the data is damaged, or belongs to another chunk
+     */
+    @SuppressWarnings("unchecked")
+    public static TridentChunk decode(TridentWorld world, int x, int z, byte[] nbt) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(nbt));
+        if (in.readByte() != ChunkCodec.TAG_COMPOUND)
+            throw new IOException("Chunk " + x + ", " + z + " does not start with a compound");
+        in.readUTF();
+
+        Map<String, Object> root = (Map<String, Object>) ChunkCodec.read(in, ChunkCodec.TAG_COMPOUND);
+        Map<String, Object> level = (Map<String, Object>) root.get("Level");
+        if (level == null)
+            throw new IOException("Chunk " + x + ", " + z + " has no level");
+
+        Object xPos = level.get("xPos");
+        Object zPos = level.get("zPos");
+        if (!Integer.valueOf(x).equals(xPos) || !Integer.valueOf(z).equals(zPos))
+            throw new IOException("Chunk " + x + ", " + z + " holds the data of " + xPos + ", " + zPos);
+
+        TridentChunk chunk = new TridentChunk(world, x, z);
+        try {
+            Object sections = level.get("Sections");
+            if (sections instanceof List)
+                for (Object section : (List<Object>) sections)
+                    ChunkCodec.readSection(chunk, (Map<String, Object>) section);
+
+            Object biomes = level.get("Biomes");
+            if (biomes instanceof byte[] && ((byte[]) biomes).length == 16 * 16)
+                chunk.setBiomes((byte[]) biomes);
+
+            // Chunks saved before their light was calculated are lit once they are loaded
+            chunk.setLightPopulated(Byte.valueOf((byte) 1).equals(level.get("LightPopulated")));
+        } catch (IOException | RuntimeException e) {
+            chunk.release();
+            throw e;
+        }
+
+        // Everything was just read from the disk
+        chunk.setDirty(false);
+        return chunk;
+    }
+
+    private static void readSection(TridentChunk chunk, Map<String, Object> section) throws IOException {
+        Object y = section.get("Y");
+        byte[] blocks = (byte[]) section.get("Blocks");
+        byte[] add = (byte[]) section.get("Add");
+        byte[] data = (byte[]) section.get("Data");
+        if (!(y instanceof Byte) || blocks == null || blocks.length != ChunkSection.SIZE || data == null)
+            throw new IOException("Chunk " + chunk.getX() + ", " + chunk.getZ() + " has a damaged section");
+
+        // The section is replaced as a whole, so neither the light engine nor the clients hear of each block
+        int index = (Byte) y & 0xF;
+        int[] states = new int[ChunkSection.SIZE];
+        for (int i = 0; i < ChunkSection.SIZE; i++) {
+            int shift = (i & 1) << 2;
+            int id = blocks[i] & 0xFF;
+            if (add != null)
+                id |= (add[i >> 1] >> shift & 0xF) << 8;
+
+            states[i] = BlockState.of(id, data[i >> 1] >> shift & 0xF);
+        }
+        chunk.setSection(index, states);
+
+        byte[] blockLight = (byte[]) section.get("BlockLight");
+        byte[] skyLight = (byte[]) section.get("SkyLight");
+        ChunkSection loaded = chunk.getSection(index);
+        if (loaded != null && blockLight != null && skyLight != null)
+            loaded.loadLight(blockLight, skyLight);
+    }
+
+    private static Object read(DataInputStream in, byte type) throws IOException {
+        switch (type) {
+            case ChunkCodec.TAG_BYTE:
+                return in.readByte();
+            case ChunkCodec.TAG_SHORT:
+                return in.readShort();
+            case ChunkCodec.TAG_INT:
+                return in.readInt();
+            case ChunkCodec.TAG_LONG:
+                return in.readLong();
+            case ChunkCodec.TAG_FLOAT:
+                return in.readFloat();
+            case ChunkCodec.TAG_DOUBLE:
+                return in.readDouble();
+            case ChunkCodec.TAG_STRING:
+                return in.readUTF();
+
+            case ChunkCodec.TAG_BYTE_ARRAY:
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return bytes;
+
+            case ChunkCodec.TAG_INT_ARRAY:
+                int[] ints = new int[in.readInt()];
+                for (int i = 0; i < ints.length; i++)
+                    ints[i] = in.readInt();
+                return ints;
+
+            case ChunkCodec.TAG_LIST:
+                byte element = in.readByte();
+                int length = in.readInt();
+                List<Object> list = new ArrayList<>(Math.max(0, length));
+                for (int i = 0; i < length; i++)
+                    list.add(ChunkCodec.read(in, element));
+                return list;
+
+            case ChunkCodec.TAG_COMPOUND:
+                Map<String, Object> compound = new HashMap<>();
+                byte child;
+                while ((child = in.readByte()) != ChunkCodec.TAG_END)
+                    compound.put(in.readUTF(), ChunkCodec.read(in, child));
+                return compound;
+
+            default:
+                throw new IOException("Unknown NBT tag " + type);
+        }
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world.region;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.zip.*;
+
+/**
+ * A region file in the Anvil format, holding 32x32 chunks <p/> <p>The file is split into sectors of 4 KiB. The first
+ * two hold the header: the location of every chunk as its first sector and sector count, then the time every chunk
+ * was last saved. A chunk is stored as its length, the compression type and the compressed data.</p> <p/> <p>The
+ * header is memory mapped, and a bitmap tracks which sectors are in use so space freed by a chunk which shrank or moved
+ * is reused. Chunk data is read and written with positional I/O, so any number of threads can use the file at once;
+ * only claiming sectors and updating the header are serialized. A rewritten chunk goes to fresh sectors and the header
+ * is only pointed at them once they are written, so a crash never leaves a chunk half written. The sectors it moved
+ * away from stay reserved while a read of the chunk is still copying them, so a concurrent write cannot reuse them
+ * under the reader.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public final class RegionFile implements Closeable {
+    /**
+     * The size of a sector, in bytes
+     */
+    public static final int SECTOR_SIZE = 4096;
+
+    private static final int CHUNKS = 32 * 32;
+    private static final int HEADER_SECTORS = 2;
+    private static final int MAX_SECTORS = 255;
+
+    private static final byte GZIP = 1;
+    private static final byte ZLIB = 2;
+
+    private final File file;
+    private final FileChannel channel;
+    @GuardedBy("this")
+    private final MappedByteBuffer header;
+    @GuardedBy("this")
+    private final BitSet used = new BitSet();
+    // How many reads of each chunk are copying its sectors, and the sectors it left which they may still be copying
+    @GuardedBy("this")
+    private final int[] pins = new int[RegionFile.CHUNKS];
+    @GuardedBy("this")
+    private final BitSet[] retired = new BitSet[RegionFile.CHUNKS];
+
+    /**
+     * Opens the region file, creating it if it does not exist
+     *
+     * @param file the {@code .mca} file
+     * @throws IOException if the file cannot be opened, or its header is damaged
+     */
+    public RegionFile(File file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                        StandardOpenOption.WRITE);
+
+        try {
+            long size = this.channel.size();
+            if (size < RegionFile.HEADER_SECTORS * RegionFile.SECTOR_SIZE) {
+                this.channel.write(ByteBuffer.allocate((int) (RegionFile.HEADER_SECTORS * RegionFile.SECTOR_SIZE -
+                        size)), size);
+            } else if (size % RegionFile.SECTOR_SIZE != 0) {
+                // Pad a file cut off in the middle of a sector, the same way the vanilla server does
+                this.channel.write(ByteBuffer.allocate((int) (RegionFile.SECTOR_SIZE - size % RegionFile.SECTOR_SIZE)),
+                                   size);
+            }
+
+            this.header = this.channel.map(FileChannel.MapMode.READ_WRITE, 0L,
+                                           RegionFile.HEADER_SECTORS * RegionFile.SECTOR_SIZE);
+
+            long sectors = this.channel.size() / RegionFile.SECTOR_SIZE;
+            this.used.set(0, RegionFile.HEADER_SECTORS);
+            for (int i = 0; i < RegionFile.CHUNKS; i++) {
+                int location = this.header.getInt(i * 4);
+                int offset = location >>> 8;
+                int count = location & 0xFF;
+
+                if (location == 0)
+                    continue;
+                int overlap = this.used.nextSetBit(offset);
+                if (count == 0 || offset < RegionFile.HEADER_SECTORS || offset + count > sectors ||
+                        (overlap != -1 && overlap < offset + count)) {
+                    // Points outside of the file or into the data of another chunk, the chunk is lost either way
+                    this.header.putInt(i * 4, 0);
+                    continue;
+                }
+
+                this.used.set(offset, offset + count);
+            }
+        } catch (IOException | RuntimeException e) {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    private static int index(int x, int z) {
+        return (x & 31) + (z & 31) * 32;
+    }
+
+    /**
+     * Gets the file backing the region
+     *
+     * @return the region file
+     */
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * Checks if the chunk was saved to the region
+     *
+     * @param x the chunk x coordinate, only the lower 5 bits are used
+     * @param z the chunk z coordinate, only the lower 5 bits are used
+     * @return {@code true} if the chunk has data
+     */
+    public synchronized boolean exists(int x, int z) {
+        return this.header.getInt(RegionFile.index(x, z) * 4) != 0;
+    }
+
+    /**
+     * Gets the time the chunk was last saved
+     *
+     * @param x the chunk x coordinate, only the lower 5 bits are used
+     * @param z the chunk z coordinate, only the lower 5 bits are used
+     * @return the save time in seconds since the epoch, {@code 0} if the chunk was never saved
+     */
+    public synchronized int getTimestamp(int x, int z) {
+        return this.header.getInt(RegionFile.SECTOR_SIZE + RegionFile.index(x, z) * 4);
+    }
+
+    /**
+     * Reads and decompresses the data of the chunk
+     *
+     * @param x the chunk x coordinate, only the lower 5 bits are used
+     * @param z the chunk z coordinate, only the lower 5 bits are used
+     * @return the chunk data, or {@code null} if the chunk was never saved
+     * @throws IOException if the data cannot be read or is damaged
+     */
+    public byte[] read(int x, int z) throws IOException {
+        int index = RegionFile.index(x, z);
+        int location;
+        synchronized (this) {
+            location = this.header.getInt(index * 4);
+            if (location == 0)
+                return null;
+            if ((location & 0xFF) == 0)
+                throw new IOException("Chunk " + x + ", " + z + " in " + this.file + " has no sectors");
+
+            this.pins[index]++;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((location & 0xFF) * RegionFile.SECTOR_SIZE);
+        try {
+            this.readFully(buffer, (long) (location >>> 8) * RegionFile.SECTOR_SIZE);
+        } finally {
+            this.unpin(index);
+        }
+
+        int length = buffer.getInt(0);
+        if (length <= 0 || length + 4 > buffer.capacity())
+            throw new IOException("Chunk " + x + ", " + z + " in " + this.file + " has an invalid length " + length);
+
+        byte type = buffer.get(4);
+        InputStream in = new ByteArrayInputStream(buffer.array(), 5, length - 1);
+        switch (type) {
+            case RegionFile.ZLIB:
+                in = new InflaterInputStream(in);
+                break;
+            case RegionFile.GZIP:
+                in = new GZIPInputStream(in);
+                break;
+            default:
+                throw new IOException("Chunk " + x + ", " + z + " in " + this.file + " has unknown compression " + type);
+        }
+
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(length * 4);
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = stream.read(chunk)) != -1)
+                out.write(chunk, 0, read);
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Compresses and writes the data of the chunk
+     *
+     * @param x    the chunk x coordinate, only the lower 5 bits are used
+     * @param z    the chunk z coordinate, only the lower 5 bits are used
+     * @param data the chunk data
+     * @return the amount of bytes written to the file, whole sectors
+     * @throws IOException if the data cannot be written, or compresses to more than 1 MiB
+     */
+    public int write(int x, int z, byte[] data) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 4 + 64);
+        compressed.write(new byte[5], 0, 5);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(compressed)) {
+            out.write(data);
+        }
+
+        byte[] bytes = compressed.toByteArray();
+        int count = (bytes.length + RegionFile.SECTOR_SIZE - 1) / RegionFile.SECTOR_SIZE;
+        if (count > RegionFile.MAX_SECTORS)
+            throw new IOException("Chunk " + x + ", " + z + " is too large to save: " + bytes.length + " bytes");
+
+        ByteBuffer buffer = ByteBuffer.allocate(count * RegionFile.SECTOR_SIZE);
+        buffer.put(bytes);
+        buffer.putInt(0, bytes.length - 4);
+        buffer.put(4, RegionFile.ZLIB);
+        buffer.clear();
+
+        int offset = this.claim(count);
+        try {
+            this.writeFully(buffer, (long) offset * RegionFile.SECTOR_SIZE);
+        } catch (IOException e) {
+            this.release(offset, count);
+            throw e;
+        }
+
+        this.commit(RegionFile.index(x, z), offset, count);
+        return buffer.capacity();
+    }
+
+    /**
+     * Removes the chunk from the region, freeing its sectors
+     *
+     * @param x the chunk x coordinate, only the lower 5 bits are used
+     * @param z the chunk z coordinate, only the lower 5 bits are used
+     */
+    public void delete(int x, int z) {
+        this.commit(RegionFile.index(x, z), 0, 0);
+    }
+
+    /**
+     * Forces the header and the chunk data written so far to the disk
+     *
+     * @throws IOException if the file cannot be synced
+     */
+    public void flush() throws IOException {
+        synchronized (this) {
+            this.header.force();
+        }
+        this.channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.flush();
+        } finally {
+            this.channel.close();
+        }
+    }
+
+    /**
+     * Finds a run of free sectors, extending the file if there is none
+     */
+    private synchronized int claim(int count) {
+        int offset = RegionFile.HEADER_SECTORS;
+        while (true) {
+            offset = this.used.nextClearBit(offset);
+            int end = this.used.nextSetBit(offset);
+            if (end == -1 || end - offset >= count)
+                break;
+            offset = end;
+        }
+
+        this.used.set(offset, offset + count);
+        return offset;
+    }
+
+    private synchronized void release(int offset, int count) {
+        this.used.clear(offset, offset + count);
+    }
+
+    private synchronized void commit(int index, int offset, int count) {
+        int old = this.header.getInt(index * 4);
+
+        this.header.putInt(index * 4, offset == 0 ? 0 : offset << 8 | count);
+        this.header.putInt(RegionFile.SECTOR_SIZE + index * 4,
+                           offset == 0 ? 0 : (int) (System.currentTimeMillis() / 1000L));
+
+        if (old == 0)
+            return;
+
+        if (this.pins[index] == 0) {
+            this.used.clear(old >>> 8, (old >>> 8) + (old & 0xFF));
+        } else {
+            // A reader may still be copying the old sectors, they are freed once the last one is done
+            if (this.retired[index] == null)
+                this.retired[index] = new BitSet();
+            this.retired[index].set(old >>> 8, (old >>> 8) + (old & 0xFF));
+        }
+    }
+
+    private synchronized void unpin(int index) {
+        if (--this.pins[index] != 0 || this.retired[index] == null)
+            return;
+
+        this.used.andNot(this.retired[index]);
+        this.retired[index] = null;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = this.channel.read(buffer, position + buffer.position());
+            if (read < 0)
+                throw new IOException("Unexpected end of " + this.file);
+        }
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            this.channel.write(buffer, position + buffer.position());
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world.storage;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps storage in plain long arrays on the heap, which the garbage collector frees
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public final class HeapStorageBackend implements StorageBackend {
+    private final AtomicLong used = new AtomicLong();
+
+    @Override
+    public LongStorage allocate(int length) {
+        this.used.addAndGet(length * 8L);
+        return new HeapStorage(length);
+    }
+
+    @Override
+    public String getName() {
+        return "heap";
+    }
+
+    @Override
+    public long getUsedBytes() {
+        return this.used.get();
+    }
+
+    private final class HeapStorage implements LongStorage {
+        private final long[] data;
+
+        HeapStorage(int length) {
+            this.data = new long[length];
+        }
+
+        @Override
+        public long get(int index) {
+            return this.data[index];
+        }
+
+        @Override
+        public void set(int index, long value) {
+            this.data[index] = value;
+        }
+
+        @Override
+        public int length() {
+            return this.data.length;
+        }
+
+        @Override
+        public void release() {
+            HeapStorageBackend.this.used.addAndGet(this.data.length * -8L);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world.storage;
+
+/**
+ * A fixed length array of longs handed out by a {@link StorageBackend} <p/> <p>Storage is not thread-safe, the owner
+ * guards access to it. It must be released exactly once when it is no longer used, after which it must not be
+ * touched.</p>
+ *
+ * @author The TridentSDK Team
+ */
+public interface LongStorage {
+    /**
+     * Gets the long at the index
+     *
+     * @param index the index, from 0 to {@link #length()}
+     * @return the value at the index
+     */
+    long get(int index);
+
+    /**
+     * Sets the long at the index
+     *
+     * @param index the index, from 0 to {@link #length()}
+     * @param value the new value
+     */
+    void set(int index, long value);
+
+    /**
+     * Gets the amount of longs in the storage
+     *
+     * @return the length of the storage
+     */
+    int length();
+
+    /**
+     * Hands the memory back to the backend which allocated it
+     */
+    void release();
+}
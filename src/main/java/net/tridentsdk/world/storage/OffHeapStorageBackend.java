@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world.storage;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps storage in direct memory, out of reach of the garbage collector <p/> <p>Memory is reserved from the system in
+ * slabs of 1 MiB, which are cut into equally sized blocks of a power of two bytes, one size class per slab. Released
+ * blocks go back on the free list of their slab and are handed out again, so a steady amount of loaded chunks never
+ * allocates. Slabs which empty are dropped, so the capacity is shared by all size classes rather than held by the
+ * first to use it.</p> <p/> <p>The slabs reserved may not exceed the capacity. Past it, or when the JVM refuses to
+ * give out more direct memory, storage is allocated on the heap instead.</p>
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public final class OffHeapStorageBackend implements StorageBackend {
+    private static final int SLAB_SHIFT = 20;
+    private static final int SLAB_SIZE = 1 << OffHeapStorageBackend.SLAB_SHIFT;
+    // A section of 4 bits per block, and a light array, is 2 KiB
+    private static final int MIN_BLOCK_SHIFT = 11;
+
+    private final long capacity;
+    private final SizeClass[] classes = new SizeClass[OffHeapStorageBackend.SLAB_SHIFT -
+            OffHeapStorageBackend.MIN_BLOCK_SHIFT + 1];
+    private final StorageBackend fallback = new HeapStorageBackend();
+
+    private final AtomicLong reserved = new AtomicLong();
+    private final AtomicLong used = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    /**
+     * Creates a backend which reserves up to the given amount of direct memory
+     *
+     * @param capacity the maximum amount of direct memory, in bytes
+     */
+    public OffHeapStorageBackend(long capacity) {
+        this.capacity = capacity;
+        for (int i = 0; i < this.classes.length; i++)
+            this.classes[i] = new SizeClass(OffHeapStorageBackend.MIN_BLOCK_SHIFT + i);
+    }
+
+    @Override
+    public LongStorage allocate(int length) {
+        int bytes = length * 8;
+        int shift = OffHeapStorageBackend.MIN_BLOCK_SHIFT;
+        while (1 << shift < bytes)
+            shift++;
+
+        if (shift <= OffHeapStorageBackend.SLAB_SHIFT) {
+            LongStorage storage = this.classes[shift - OffHeapStorageBackend.MIN_BLOCK_SHIFT].allocate(length);
+            if (storage != null)
+                return storage;
+        }
+
+        this.fallbacks.incrementAndGet();
+        return this.fallback.allocate(length);
+    }
+
+    @Override
+    public String getName() {
+        return "off-heap";
+    }
+
+    /**
+     * Gets the direct memory in blocks currently handed out, in bytes. Storage which fell back to the heap is not
+     * counted.
+     *
+     * @return the direct memory in use
+     */
+    @Override
+    public long getUsedBytes() {
+        return this.used.get();
+    }
+
+    /**
+     * Gets the direct memory reserved for slabs, in bytes
+     *
+     * @return the reserved direct memory
+     */
+    public long getReservedBytes() {
+        return this.reserved.get();
+    }
+
+    /**
+     * Gets the maximum amount of direct memory the backend reserves, in bytes
+     *
+     * @return the capacity
+     */
+    public long getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Gets the amount of allocations which ended up on the heap, because the capacity was reached
+     *
+     * @return the fallback count
+     */
+    public long getFallbacks() {
+        return this.fallbacks.get();
+    }
+
+    /**
+     * Gets the heap memory handed out after the capacity was reached, in bytes
+     *
+     * @return the heap memory in use
+     */
+    public long getFallbackBytes() {
+        return this.fallback.getUsedBytes();
+    }
+
+    private boolean reserveSlab() {
+        long reserved;
+        do {
+            reserved = this.reserved.get();
+            if (reserved + OffHeapStorageBackend.SLAB_SIZE > this.capacity)
+                return false;
+        } while (!this.reserved.compareAndSet(reserved, reserved + OffHeapStorageBackend.SLAB_SIZE));
+        return true;
+    }
+
+    /**
+     * The blocks of a single size, and the slabs they are cut from <p/> <p>Blocks are taken from the first slab with
+     * room. A slab which empties is dropped, and its share of the capacity is free for any size class again, unless it
+     * is the only slab of the class with room left: one allocation going back and forth should not reserve and drop a
+     * whole slab every time.</p>
+     */
+    private final class SizeClass {
+        private final int blockSize;
+        // The slabs with free blocks
+        @GuardedBy("this")
+        private final Deque<Slab> available = new ArrayDeque<>();
+
+        SizeClass(int shift) {
+            this.blockSize = 1 << shift;
+        }
+
+        synchronized LongStorage allocate(int length) {
+            Slab slab = this.available.peekFirst();
+            if (slab == null) {
+                slab = this.addSlab();
+                if (slab == null)
+                    return null;
+            }
+
+            Block block = slab.free.pop();
+            slab.used++;
+            if (slab.free.isEmpty())
+                this.available.pollFirst();
+
+            block.claim(length);
+            OffHeapStorageBackend.this.used.addAndGet(this.blockSize);
+            return block;
+        }
+
+        synchronized void release(Block block) {
+            Slab slab = block.slab;
+            if (slab.free.isEmpty())
+                this.available.addLast(slab);
+            slab.free.push(block);
+            slab.used--;
+            OffHeapStorageBackend.this.used.addAndGet(-this.blockSize);
+
+            if (slab.used == 0 && this.available.size() > 1) {
+                // The direct memory goes back once the collector finds the slab unreachable
+                this.available.remove(slab);
+                slab.free.clear();
+                OffHeapStorageBackend.this.reserved.addAndGet(-OffHeapStorageBackend.SLAB_SIZE);
+            }
+        }
+
+        @GuardedBy("this")
+        private Slab addSlab() {
+            if (!OffHeapStorageBackend.this.reserveSlab())
+                return null;
+
+            ByteBuffer buffer;
+            try {
+                buffer = ByteBuffer.allocateDirect(OffHeapStorageBackend.SLAB_SIZE).order(ByteOrder.nativeOrder());
+            } catch (OutOfMemoryError e) {
+                // -XX:MaxDirectMemorySize is lower than the configured capacity
+                OffHeapStorageBackend.this.reserved.addAndGet(-OffHeapStorageBackend.SLAB_SIZE);
+                return null;
+            }
+
+            Slab slab = new Slab();
+            for (int offset = 0; offset < OffHeapStorageBackend.SLAB_SIZE; offset += this.blockSize) {
+                buffer.limit(offset + this.blockSize).position(offset);
+                slab.free.push(new Block(this, slab, buffer.slice().order(ByteOrder.nativeOrder()).asLongBuffer()));
+            }
+
+            this.available.addFirst(slab);
+            return slab;
+        }
+    }
+
+    /**
+     * A slab of direct memory, and the blocks of it which are not handed out. Guarded by the size class it belongs
+     * to.
+     */
+    private static final class Slab {
+        final Deque<Block> free = new ArrayDeque<>();
+        int used;
+    }
+
+    /**
+     * A block of a slab, which is reused for every storage allocated from it
+     */
+    private static final class Block implements LongStorage {
+        private final SizeClass owner;
+        private final Slab slab;
+        private final LongBuffer buffer;
+        private int length;
+        private boolean released;
+
+        Block(SizeClass owner, Slab slab, LongBuffer buffer) {
+            this.owner = owner;
+            this.slab = slab;
+            this.buffer = buffer;
+        }
+
+        void claim(int length) {
+            this.length = length;
+            this.released = false;
+            for (int i = 0; i < length; i++)
+                this.buffer.put(i, 0L);
+        }
+
+        @Override
+        public long get(int index) {
+            return this.buffer.get(index);
+        }
+
+        @Override
+        public void set(int index, long value) {
+            this.buffer.put(index, value);
+        }
+
+        @Override
+        public int length() {
+            return this.length;
+        }
+
+        @Override
+        public void release() {
+            if (this.released)
+                throw new IllegalStateException("Storage was released already");
+
+            this.released = true;
+            this.owner.release(this);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world.storage;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Holds the {@link StorageBackend} new chunk sections allocate their data from
+ *
+ * @author The TridentSDK Team
+ */
+@ThreadSafe
+public final class StorageBackends {
+    private static volatile StorageBackend backend = new HeapStorageBackend();
+
+    private StorageBackends() {}
+
+    /**
+     * Gets the backend chunk sections currently allocate from
+     *
+     * @return the current backend
+     */
+    public static StorageBackend get() {
+        return StorageBackends.backend;
+    }
+
+    /**
+     * Sets the backend new chunk sections allocate from. Sections which already exist keep their storage.
+     *
+     * @param backend the backend to use from now on
+     */
+    public static void set(StorageBackend backend) {
+        if (backend == null)
+            throw new NullPointerException("Backend cannot be null");
+        StorageBackends.backend = backend;
+    }
+
+    /**
+     * Creates the backend with the given configuration name
+     *
+     * @param name     {@code heap} or {@code off-heap}
+     * @param capacity the maximum direct memory used by the off-heap backend, in bytes
+     * @return the new backend
+     * @throws IllegalArgumentException if there is no backend with the name
+     */
+    public static StorageBackend forName(String name, long capacity) {
+        switch (name) {
+            case "heap":
+                return new HeapStorageBackend();
+
+            case "off-heap":
+                return new OffHeapStorageBackend(capacity);
+
+            default:
+                throw new IllegalArgumentException("Unknown chunk storage backend " + name);
+        }
+    }
+}
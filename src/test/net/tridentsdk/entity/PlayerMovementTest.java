@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.entity;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that the movement packets of a tick merge into one movement, and that positions reported before a teleport
+ * is confirmed are dropped
+ */
+public class PlayerMovementTest {
+    private static final double DELTA = 1.0E-9;
+
+    @Test
+    public void mergesPacketsOfATick() {
+        PlayerMovement movement = new PlayerMovement();
+        movement.position(1.0, 64.0, 1.0, true);
+        movement.look(90.0F, 10.0F, true);
+        movement.move(2.0, 65.0, 3.0, 180.0F, -10.0F, false);
+        movement.ground(true);
+
+        synchronized (movement) {
+            Assert.assertEquals(4, movement.packets);
+            Assert.assertEquals(PlayerMovement.POSITION | PlayerMovement.LOOK | PlayerMovement.GROUND,
+                                movement.changes);
+            Assert.assertEquals(2.0, movement.x, PlayerMovementTest.DELTA);
+            Assert.assertEquals(65.0, movement.y, PlayerMovementTest.DELTA);
+            Assert.assertEquals(3.0, movement.z, PlayerMovementTest.DELTA);
+            Assert.assertEquals(180.0F, movement.yaw, PlayerMovementTest.DELTA);
+            Assert.assertEquals(-10.0F, movement.pitch, PlayerMovementTest.DELTA);
+            Assert.assertTrue(movement.onGround);
+        }
+    }
+
+    @Test
+    public void lookDoesNotMove() {
+        PlayerMovement movement = new PlayerMovement();
+        movement.look(45.0F, 0.0F, false);
+
+        synchronized (movement) {
+            Assert.assertEquals(PlayerMovement.LOOK | PlayerMovement.GROUND, movement.changes);
+            Assert.assertEquals(1, movement.getPackets());
+        }
+    }
+
+    @Test
+    public void dropsPositionsBeforeTheTeleportIsConfirmed() {
+        PlayerMovement movement = new PlayerMovement();
+        movement.position(5.0, 70.0, 5.0, false);
+        movement.teleported(100.5, 64.0, -20.5);
+
+        synchronized (movement) {
+            Assert.assertEquals(0, movement.changes & PlayerMovement.POSITION);
+        }
+
+        // Still in flight when the teleport was sent
+        movement.position(6.0, 70.0, 6.0, false);
+        movement.move(7.0, 70.0, 7.0, 0.0F, 0.0F, false);
+        synchronized (movement) {
+            Assert.assertEquals(0, movement.changes & PlayerMovement.POSITION);
+            Assert.assertEquals(5.0, movement.x, PlayerMovementTest.DELTA);
+        }
+    }
+
+    @Test
+    public void confirmsTheExactTeleport() {
+        PlayerMovement movement = new PlayerMovement();
+        movement.teleported(100.5, 64.0, -20.5);
+
+        movement.position(100.5, 64.0, -20.5, true);
+        movement.position(101.0, 64.0, -20.5, true);
+        synchronized (movement) {
+            Assert.assertEquals(PlayerMovement.POSITION, movement.changes & PlayerMovement.POSITION);
+            Assert.assertEquals(101.0, movement.x, PlayerMovementTest.DELTA);
+        }
+    }
+
+    @Test
+    public void confirmsATeleportWithASettledY() {
+        PlayerMovement movement = new PlayerMovement();
+        movement.teleported(100.5, 64.0, -20.5);
+
+        // The client lands a little below the position it was sent
+        movement.position(100.5, 63.95, -20.5, true);
+        synchronized (movement) {
+            Assert.assertEquals(PlayerMovement.POSITION, movement.changes & PlayerMovement.POSITION);
+            Assert.assertEquals(63.95, movement.y, PlayerMovementTest.DELTA);
+        }
+    }
+
+    @Test
+    public void keepsWaitingForPositionsFarFromTheTeleport() {
+        PlayerMovement movement = new PlayerMovement();
+        movement.teleported(100.5, 64.0, -20.5);
+
+        movement.position(100.5, 64.2, -20.5, true);
+        movement.position(100.6, 64.0, -20.5, true);
+        movement.position(100.5, 64.0, -20.4, true);
+        synchronized (movement) {
+            Assert.assertEquals(0, movement.changes & PlayerMovement.POSITION);
+        }
+
+        movement.position(100.5, 64.0, -20.5, true);
+        synchronized (movement) {
+            Assert.assertEquals(PlayerMovement.POSITION, movement.changes & PlayerMovement.POSITION);
+        }
+    }
+}
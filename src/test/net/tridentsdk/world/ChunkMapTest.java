@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world;
+
+import net.tridentsdk.api.world.Chunk;
+import net.tridentsdk.api.world.ChunkLocation;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares coordinate lookups on the {@link ChunkMap} with the {@link ConcurrentHashMap} keyed by {@link
+ * ChunkLocation} the worlds used before, with 10k loaded chunks
+ */
+@State(Scope.Benchmark)
+public class ChunkMapTest {
+    private static final int RADIUS = 50;
+    private static final int LOOKUPS = 1024;
+
+    private final Map<ChunkLocation, Chunk> concurrentHashMap = new ConcurrentHashMap<>();
+    private final ChunkMap<Chunk> chunkMap = new ChunkMap<>();
+
+    // Half of the lookups hit a loaded chunk
+    private final int[] xs = new int[ChunkMapTest.LOOKUPS];
+    private final int[] zs = new int[ChunkMapTest.LOOKUPS];
+
+    @Setup public void setup() {
+        TridentWorld world = new TridentWorld("benchmark", null);
+        // A square of 100 * 100 chunks around spawn
+        for (int x = -ChunkMapTest.RADIUS; x < ChunkMapTest.RADIUS; x++) {
+            for (int z = -ChunkMapTest.RADIUS; z < ChunkMapTest.RADIUS; z++) {
+                TridentChunk chunk = new TridentChunk(world, x, z);
+                this.concurrentHashMap.put(chunk.getLocation(), chunk);
+                this.chunkMap.put(x, z, chunk);
+            }
+        }
+
+        Random random = new Random(0L);
+        for (int i = 0; i < ChunkMapTest.LOOKUPS; i++) {
+            this.xs[i] = random.nextInt(ChunkMapTest.RADIUS * 4) - ChunkMapTest.RADIUS * 2;
+            this.zs[i] = random.nextInt(ChunkMapTest.RADIUS * 2) - ChunkMapTest.RADIUS;
+        }
+    }
+
+    public static void main(String... args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + ChunkMapTest.class.getSimpleName() + ".*")
+                .timeUnit(TimeUnit.NANOSECONDS)
+                .mode(Mode.AverageTime)
+                .warmupIterations(10)
+                .measurementIterations(10)
+                .forks(1)
+                .threads(4)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Benchmark @OperationsPerInvocation(ChunkMapTest.LOOKUPS)
+    public void concurrentHashMapLookup(Blackhole blackhole) {
+        for (int i = 0; i < ChunkMapTest.LOOKUPS; i++)
+            blackhole.consume(this.concurrentHashMap.get(new ChunkLocation(this.xs[i], this.zs[i])));
+    }
+
+    @Benchmark @OperationsPerInvocation(ChunkMapTest.LOOKUPS)
+    public void chunkMapLookup(Blackhole blackhole) {
+        for (int i = 0; i < ChunkMapTest.LOOKUPS; i++)
+            blackhole.consume(this.chunkMap.get(this.xs[i], this.zs[i]));
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world;
+
+import net.tridentsdk.api.world.Chunk;
+import net.tridentsdk.api.world.World;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks that autosaves write one region per batch, force each region to the disk once per round, and stay within the
+ * I/O budget <p/> <p>Three dirty chunks lie in the region at 0, 0 and two in the region at 1, 0. The saver is ticked by
+ * hand and every batch is waited for before the next tick.</p>
+ */
+public class ChunkSaverTest {
+    private static final int[][] DIRTY = { { 0, 0 }, { 1, 0 }, { 2, 0 }, { 32, 0 }, { 33, 0 } };
+    private static final int MAX_TICKS = 2000;
+
+    private File directory;
+    private RecordingLoader loader;
+    private TridentWorld world;
+    private int interval;
+    private long budget;
+
+    @Before
+    public void setUp() throws IOException {
+        this.interval = ChunkSaver.getInterval();
+        this.budget = ChunkSaver.getBudget();
+        // Autosaves are started by the tests
+        ChunkSaver.setInterval(0);
+
+        this.directory = Files.createTempDirectory("saver").toFile();
+        this.loader = new RecordingLoader(this.directory);
+        this.world = (TridentWorld) this.loader.load("saver");
+
+        for (int[] chunk : ChunkSaverTest.DIRTY)
+            Assert.assertNotNull(this.world.getChunkAt(chunk[0], chunk[1], true));
+        for (Chunk chunk : this.world.getLoadedChunks())
+            ((TridentChunk) chunk).setDirty(false);
+        for (int[] chunk : ChunkSaverTest.DIRTY)
+            ((TridentChunk) this.world.getChunkAt(chunk[0], chunk[1], false)).setDirty(true);
+    }
+
+    @After
+    public void tearDown() {
+        this.loader.unload(this.world);
+        ChunkSaverTest.delete(this.directory);
+
+        ChunkSaver.setInterval(this.interval);
+        ChunkSaver.setBudget(this.budget);
+    }
+
+    @Test
+    public void batchHoldsASingleRegion() throws InterruptedException {
+        ChunkSaver saver = this.world.getSaver();
+        saver.autosave();
+        Assert.assertEquals(5, saver.getQueued());
+
+        ChunkSaverTest.tick(saver);
+        Assert.assertEquals(2, saver.getQueued());
+        Assert.assertEquals(Collections.nCopies(3, "save 0"), this.loader.saves());
+        Assert.assertEquals(Collections.singletonList("flush 0"), this.loader.flushes());
+
+        this.loader.clear();
+        ChunkSaverTest.tick(saver);
+        Assert.assertEquals(0, saver.getQueued());
+        Assert.assertEquals(Collections.nCopies(2, "save 1"), this.loader.saves());
+        Assert.assertEquals(Collections.singletonList("flush 1"), this.loader.flushes());
+
+        for (int[] chunk : ChunkSaverTest.DIRTY)
+            Assert.assertFalse(((TridentChunk) this.world.getChunkAt(chunk[0], chunk[1], false)).isDirty());
+    }
+
+    @Test
+    public void flushesEachRegionOnceARound() throws InterruptedException {
+        // Less than two chunks a tick, so every batch holds a single chunk
+        ChunkSaver.setBudget(20L * 1024L);
+        ChunkSaver saver = this.world.getSaver();
+        saver.autosave();
+
+        int batches = 0;
+        for (int tick = 0; tick < ChunkSaverTest.MAX_TICKS && saver.getQueued() > 0; tick++) {
+            int queued = saver.getQueued();
+            ChunkSaverTest.tick(saver);
+            if (saver.getQueued() < queued)
+                batches++;
+        }
+
+        Assert.assertEquals(0, saver.getQueued());
+        Assert.assertEquals(5, batches);
+        Assert.assertEquals(Arrays.asList("save 0", "save 0", "save 0", "flush 0", "save 1", "save 1", "flush 1"),
+                            new ArrayList<>(this.loader.events));
+    }
+
+    @Test
+    public void pacesWritesToTheBudget() throws InterruptedException {
+        long perTick = 1024L;
+        ChunkSaver.setBudget(20L * perTick);
+        ChunkSaver saver = this.world.getSaver();
+        saver.autosave();
+
+        int ticks = 0;
+        while (saver.getQueued() > 0) {
+            Assert.assertTrue("saver timed out", ticks < ChunkSaverTest.MAX_TICKS);
+            ChunkSaverTest.tick(saver);
+            ticks++;
+
+            // A batch may overdraw the bucket by its last chunk, which later ticks pay back
+            Assert.assertTrue("wrote " + this.loader.written.get() + " bytes in " + ticks + " ticks",
+                              this.loader.written.get() <= ticks * perTick + this.loader.largest.get());
+        }
+
+        Assert.assertTrue("every chunk was written in its own tick", ticks > ChunkSaverTest.DIRTY.length);
+    }
+
+    /**
+     * Ticks the saver and waits for the batch it started to be written
+     */
+    private static void tick(ChunkSaver saver) throws InterruptedException {
+        saver.tick();
+
+        long deadline = System.currentTimeMillis() + 30000L;
+        while (saver.isWriting()) {
+            Assert.assertTrue("batch timed out", System.currentTimeMillis() < deadline);
+            Thread.sleep(1L);
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null)
+            for (File child : children)
+                ChunkSaverTest.delete(child);
+        file.delete();
+    }
+
+    /**
+     * Records the chunk writes and region flushes of the saver, by the region x coordinate
+     */
+    private static final class RecordingLoader extends TridentWorldLoader {
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        final AtomicLong written = new AtomicLong();
+        final AtomicLong largest = new AtomicLong();
+
+        RecordingLoader(File directory) {
+            super(directory);
+        }
+
+        @Override
+        public int saveChunk(TridentChunk chunk) throws IOException {
+            this.events.add("save " + (chunk.getX() >> 5));
+            int bytes = super.saveChunk(chunk);
+
+            this.written.addAndGet(bytes);
+            if (bytes > this.largest.get())
+                this.largest.set(bytes);
+            return bytes;
+        }
+
+        @Override
+        public void flush(World world, int x, int z) {
+            this.events.add("flush " + (x >> 5));
+            super.flush(world, x, z);
+        }
+
+        List<String> saves() {
+            return this.filter("save");
+        }
+
+        List<String> flushes() {
+            return this.filter("flush");
+        }
+
+        void clear() {
+            this.events.clear();
+        }
+
+        private List<String> filter(String kind) {
+            List<String> filtered = new ArrayList<>();
+            synchronized (this.events) {
+                for (String event : this.events)
+                    if (event.startsWith(kind + " "))
+                        filtered.add(event);
+            }
+            return filtered;
+        }
+    }
+}
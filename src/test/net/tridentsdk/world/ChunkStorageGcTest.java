@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world;
+
+import net.tridentsdk.world.storage.StorageBackends;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the garbage collection pauses with chunk data on the heap and off the heap <p/> <p>Loads a few thousand
+ * chunks, then keeps unloading and loading chunks while allocating short lived garbage, the way a server with moving
+ * players does. Run with a fixed heap, e.g. {@code -Xmx2g -XX:MaxDirectMemorySize=2g}, and pass the backend to
+ * measure: {@code heap} or {@code off-heap}.</p>
+ */
+public final class ChunkStorageGcTest {
+    private static final int CHUNKS = 4_000;
+    private static final int ROUNDS = 200;
+    private static final int CHURN = 100;
+
+    // Keeps the garbage from being optimized away
+    private static volatile Object sink;
+
+    private ChunkStorageGcTest() {}
+
+    public static void main(String... args) {
+        String backend = args.length == 0 ? "off-heap" : args[0];
+        StorageBackends.set(StorageBackends.forName(backend, 4096L * 1024L * 1024L));
+
+        TridentWorld world = new TridentWorld("gc", null);
+        Random random = new Random(0L);
+        List<TridentChunk> chunks = new ArrayList<>();
+        for (int i = 0; i < ChunkStorageGcTest.CHUNKS; i++)
+            chunks.add(ChunkStorageGcTest.fill(new TridentChunk(world, i, 0), random));
+
+        long[] before = ChunkStorageGcTest.gcTotals();
+        long start = System.nanoTime();
+
+        for (int round = 0; round < ChunkStorageGcTest.ROUNDS; round++) {
+            for (int i = 0; i < ChunkStorageGcTest.CHURN; i++) {
+                int index = random.nextInt(chunks.size());
+                chunks.get(index).release();
+                chunks.set(index, ChunkStorageGcTest.fill(new TridentChunk(world, index, round), random));
+            }
+
+            // Packets, events and the like
+            for (int i = 0; i < 20_000; i++)
+                ChunkStorageGcTest.sink = new byte[256];
+        }
+
+        long[] after = ChunkStorageGcTest.gcTotals();
+        long collections = after[0] - before[0];
+        long pauses = after[1] - before[1];
+
+        System.out.println("Backend:      " + backend);
+        System.out.println("Run time:     " + (System.nanoTime() - start) / 1_000_000L + "ms");
+        System.out.println("Collections:  " + collections);
+        System.out.println("Total pause:  " + pauses + "ms");
+        System.out.println("Average:      " + (collections == 0 ? 0 : pauses / (double) collections) + "ms");
+        System.out.println("Heap used:    " + (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory())
+                / 1024L / 1024L + "MiB");
+        System.out.println("Backend used: " + StorageBackends.get().getUsedBytes() / 1024L / 1024L + "MiB");
+    }
+
+    private static TridentChunk fill(TridentChunk chunk, Random random) {
+        // Eight sections of terrain with a varied palette, like an ordinary surface chunk
+        int[] states = new int[ChunkSection.SIZE];
+        for (int section = 0; section < 8; section++) {
+            for (int i = 0; i < states.length; i++)
+                states[i] = BlockState.of(1 + random.nextInt(24), 0);
+            chunk.setSection(section, states);
+        }
+        return chunk;
+    }
+
+    private static long[] gcTotals() {
+        long count = 0L;
+        long time = 0L;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0L, bean.getCollectionCount());
+            time += Math.max(0L, bean.getCollectionTime());
+        }
+        return new long[] { count, time };
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world;
+
+import net.tridentsdk.world.EntityMovementTracker.Update;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that the tracker sends short moves as relative moves and looks, and falls back to a teleport for moves a
+ * relative move cannot carry and for entities which were not teleported for too long
+ */
+public class EntityMovementTrackerTest {
+    @Test
+    public void sendsNothingBelowTheProtocolResolution() {
+        Assert.assertEquals(Update.NONE, EntityMovementTracker.choose(1L, 0, 0, 0, false));
+    }
+
+    @Test
+    public void sendsShortMovesAsRelativeMoves() {
+        Assert.assertEquals(Update.MOVE, EntityMovementTracker.choose(1L, 1, 0, 0, false));
+        Assert.assertEquals(Update.MOVE, EntityMovementTracker.choose(1L, 0, -32, 5, false));
+    }
+
+    @Test
+    public void sendsTurnsAsLooks() {
+        Assert.assertEquals(Update.LOOK, EntityMovementTracker.choose(1L, 0, 0, 0, true));
+        Assert.assertEquals(Update.LOOK_AND_MOVE, EntityMovementTracker.choose(1L, 3, 0, -3, true));
+    }
+
+    @Test
+    public void sendsMovesUpToFourBlocksRelative() {
+        // A relative move carries a byte of 1/32 blocks along every axis
+        Assert.assertEquals(Update.MOVE, EntityMovementTracker.choose(1L, 127, -128, 127, false));
+        Assert.assertEquals(Update.LOOK_AND_MOVE, EntityMovementTracker.choose(1L, -128, 127, -128, true));
+    }
+
+    @Test
+    public void teleportsFurtherMoves() {
+        Assert.assertEquals(Update.TELEPORT, EntityMovementTracker.choose(1L, 128, 0, 0, false));
+        Assert.assertEquals(Update.TELEPORT, EntityMovementTracker.choose(1L, 0, -129, 0, false));
+        Assert.assertEquals(Update.TELEPORT, EntityMovementTracker.choose(1L, 0, 0, 4096, true));
+    }
+
+    @Test
+    public void teleportsOnceTheIntervalRanOut() {
+        long interval = EntityMovementTracker.TELEPORT_INTERVAL;
+        Assert.assertEquals(Update.MOVE, EntityMovementTracker.choose(interval - 1L, 1, 0, 0, false));
+        Assert.assertEquals(Update.TELEPORT, EntityMovementTracker.choose(interval, 1, 0, 0, false));
+        Assert.assertEquals(Update.TELEPORT, EntityMovementTracker.choose(interval, 0, 0, 0, true));
+        // Nothing to correct if the entity did not move at all
+        Assert.assertEquals(Update.NONE, EntityMovementTracker.choose(interval, 0, 0, 0, false));
+    }
+}
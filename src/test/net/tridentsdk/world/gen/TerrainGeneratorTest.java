@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world.gen;
+
+import net.tridentsdk.world.TridentChunk;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of the {@link TerrainGenerator} in chunks per second <p/> <p>{@code generate} runs on a
+ * single thread, so its score is the throughput of one core. {@code generateArea} spreads a 16x16 area over a
+ * {@link ForkJoinPool} with a thread per core; divide its score by the core count to compare it with the single
+ * threaded score and see how well generation scales.</p>
+ */
+@State(Scope.Benchmark)
+public class TerrainGeneratorTest {
+    private static final int AREA = 16;
+
+    private final TerrainGenerator generator = new TerrainGenerator(0L);
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    // Walks over new terrain, rather than generating the same chunk over and over
+    private int next;
+
+    public static void main(String... args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + TerrainGeneratorTest.class.getSimpleName() + ".*")
+                .timeUnit(TimeUnit.SECONDS)
+                .mode(Mode.Throughput)
+                .warmupIterations(5)
+                .measurementIterations(10)
+                .forks(1)
+                .threads(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @TearDown public void tearDown() {
+        this.pool.shutdown();
+    }
+
+    @Benchmark
+    public void generate(Blackhole blackhole) {
+        int index = this.next++;
+        TridentChunk chunk = new TridentChunk(null, index % 1024, index / 1024);
+        this.generator.generate(chunk);
+
+        blackhole.consume(chunk.getSectionMask());
+        chunk.release();
+    }
+
+    @Benchmark @OperationsPerInvocation(TerrainGeneratorTest.AREA * TerrainGeneratorTest.AREA)
+    public void generateArea(Blackhole blackhole) {
+        int x = (this.next++ % 64) * TerrainGeneratorTest.AREA;
+        int z = (this.next / 64) * TerrainGeneratorTest.AREA;
+
+        for (TridentChunk chunk : this.generator.generateArea(null, x, z, x + TerrainGeneratorTest.AREA - 1,
+                                                             z + TerrainGeneratorTest.AREA - 1, this.pool)) {
+            blackhole.consume(chunk.getSectionMask());
+            chunk.release();
+        }
+    }
+}
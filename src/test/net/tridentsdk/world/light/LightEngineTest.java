@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world.light;
+
+import net.tridentsdk.world.BlockState;
+import net.tridentsdk.world.TridentChunk;
+import net.tridentsdk.world.TridentWorld;
+import net.tridentsdk.world.TridentWorldLoader;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Checks that the light after incremental updates is the light a chunk lit from scratch with the same blocks gets
+ * <p/> <p>Two worlds with the same seed generate the same 3x3 chunks. The first is lit, then has its blocks changed and
+ * relit incrementally; the second has the same blocks changed before it is lit for the first time.</p>
+ */
+public class LightEngineTest {
+    private static final int RADIUS = 1;
+    private static final int STONE = BlockState.of(1, 0);
+    private static final int GLOWSTONE = BlockState.of(89, 0);
+    private static final int TORCH = BlockState.of(50, 5);
+
+    private File directory;
+    private TridentWorldLoader loader;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("light").toFile();
+        this.loader = new TridentWorldLoader(this.directory);
+    }
+
+    @After
+    public void tearDown() {
+        for (TridentWorld world : TridentWorldLoader.getLoadedWorlds())
+            this.loader.unload(world);
+        LightEngineTest.delete(this.directory);
+    }
+
+    @Test
+    public void incrementalMatchesFullRelight() throws InterruptedException {
+        TridentWorld incremental = this.generate(new File(this.directory, "a"));
+        LightEngineTest.light(incremental);
+        LightEngineTest.carveCave(incremental);
+        LightEngineTest.light(incremental);
+        LightEngineTest.digShaftAndRoof(incremental);
+        LightEngineTest.light(incremental);
+
+        TridentWorld full = this.generate(new File(this.directory, "b"));
+        LightEngineTest.carveCave(full);
+        LightEngineTest.digShaftAndRoof(full);
+        LightEngineTest.light(full);
+
+        for (int cx = -LightEngineTest.RADIUS; cx <= LightEngineTest.RADIUS; cx++) {
+            for (int cz = -LightEngineTest.RADIUS; cz <= LightEngineTest.RADIUS; cz++) {
+                TridentChunk expected = (TridentChunk) full.getChunkAt(cx, cz, false);
+                TridentChunk actual = (TridentChunk) incremental.getChunkAt(cx, cz, false);
+
+                for (int y = 0; y < 256; y++) {
+                    for (int x = 0; x < 16; x++) {
+                        for (int z = 0; z < 16; z++) {
+                            String at = " at " + ((cx << 4) + x) + ", " + y + ", " + ((cz << 4) + z);
+                            Assert.assertEquals("block light" + at, expected.getBlockLight(x, y, z),
+                                                actual.getBlockLight(x, y, z));
+                            Assert.assertEquals("sky light" + at, expected.getSkyLight(x, y, z),
+                                                actual.getSkyLight(x, y, z));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void removedLightSourceLeavesDarkness() throws InterruptedException {
+        TridentWorld world = this.generate(new File(this.directory, "c"));
+        LightEngineTest.light(world);
+        LightEngineTest.carveCave(world);
+        LightEngineTest.light(world);
+
+        TridentChunk chunk = (TridentChunk) world.getChunkAt(0, 0, false);
+        Assert.assertEquals(15, chunk.getBlockLight(8, 21, 8));
+        Assert.assertEquals(14, chunk.getBlockLight(7, 21, 8));
+
+        LightEngineTest.set(world, 8, 21, 8, BlockState.AIR);
+        LightEngineTest.set(world, 12, 20, 12, BlockState.AIR);
+        LightEngineTest.set(world, 17, 20, 3, BlockState.AIR);
+        LightEngineTest.light(world);
+
+        for (int x = 2; x < 14; x++)
+            for (int z = 2; z < 14; z++)
+                for (int y = 20; y < 23; y++)
+                    Assert.assertEquals(0, chunk.getBlockLight(x, y, z));
+    }
+
+    private TridentWorld generate(File directory) {
+        // Both worlds have the same name, so they have the same seed
+        TridentWorld world = (TridentWorld) new TridentWorldLoader(directory).load("light");
+        for (int x = -LightEngineTest.RADIUS; x <= LightEngineTest.RADIUS; x++)
+            for (int z = -LightEngineTest.RADIUS; z <= LightEngineTest.RADIUS; z++)
+                Assert.assertNotNull(world.getChunkAt(x, z, true));
+        return world;
+    }
+
+    /**
+     * A lit cave deep underground, which reaches into the chunk east of the center one
+     */
+    private static void carveCave(TridentWorld world) {
+        for (int x = 2; x < 20; x++)
+            for (int z = 2; z < 14; z++)
+                for (int y = 20; y < 23; y++)
+                    LightEngineTest.set(world, x, y, z, BlockState.AIR);
+
+        LightEngineTest.set(world, 8, 21, 8, LightEngineTest.GLOWSTONE);
+        LightEngineTest.set(world, 17, 20, 3, LightEngineTest.TORCH);
+        LightEngineTest.set(world, 12, 20, 12, LightEngineTest.GLOWSTONE);
+    }
+
+    /**
+     * A shaft letting the sky into the cave, and a roof casting a shadow over the surface
+     */
+    private static void digShaftAndRoof(TridentWorld world) {
+        for (int y = 23; y < 256; y++)
+            LightEngineTest.set(world, 4, y, 4, BlockState.AIR);
+
+        int roof = LightEngineTest.surface(world, -6, -6) + 3;
+        for (int x = -8; x < -3; x++)
+            for (int z = -8; z < -3; z++)
+                LightEngineTest.set(world, x, roof, z, LightEngineTest.STONE);
+
+        // Closes part of the cave again
+        for (int z = 2; z < 14; z++)
+            LightEngineTest.set(world, 10, 21, z, LightEngineTest.STONE);
+    }
+
+    private static int surface(TridentWorld world, int x, int z) {
+        TridentChunk chunk = (TridentChunk) world.getChunkAt(x >> 4, z >> 4, false);
+        int y = 255;
+        while (y > 0 && chunk.getBlockState(x & 15, y, z & 15) == BlockState.AIR)
+            y--;
+        return y;
+    }
+
+    private static void set(TridentWorld world, int x, int y, int z, int state) {
+        ((TridentChunk) world.getChunkAt(x >> 4, z >> 4, false)).setBlockState(x & 15, y, z & 15, state);
+    }
+
+    /**
+     * Runs the light engine until every queued update is done
+     */
+    private static void light(TridentWorld world) throws InterruptedException {
+        LightEngine engine = world.getLightEngine();
+        long deadline = System.currentTimeMillis() + 30000L;
+        while (engine.isRunning() || engine.getPending() > 0) {
+            Assert.assertTrue("light engine timed out", System.currentTimeMillis() < deadline);
+            engine.tick();
+            Thread.sleep(5L);
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null)
+            for (File child : children)
+                LightEngineTest.delete(child);
+        file.delete();
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2014, The TridentSDK Team
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     1. Redistributions of source code must retain the above copyright
+ *        notice, this list of conditions and the following disclaimer.
+ *     2. Redistributions in binary form must reproduce the above copyright
+ *        notice, this list of conditions and the following disclaimer in the
+ *        documentation and/or other materials provided with the distribution.
+ *     3. Neither the name of the The TridentSDK Team nor the
+ *        names of its contributors may be used to endorse or promote products
+ *        derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL The TridentSDK Team BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.tridentsdk.world.region;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+/**
+ * Checks that chunks written to a region file read back the same, also after reopening it, and that the sectors of
+ * rewritten and deleted chunks are used again
+ */
+public class RegionFileTest {
+    private File file;
+    private RegionFile region;
+
+    @Before
+    public void setUp() throws IOException {
+        this.file = File.createTempFile("region", ".mca");
+        this.region = new RegionFile(this.file);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.region.close();
+        this.file.delete();
+    }
+
+    // Random bytes do not compress, so the size on disk is known
+    private static byte[] data(int length, long seed) {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static int sectors(long bytes) {
+        return (int) (bytes / RegionFile.SECTOR_SIZE);
+    }
+
+    @Test
+    public void readsWhatWasWritten() throws IOException {
+        byte[] small = RegionFileTest.data(100, 1L);
+        byte[] large = RegionFileTest.data(50000, 2L);
+        this.region.write(0, 0, small);
+        this.region.write(31, 31, large);
+        this.region.write(-1, 5, small);
+
+        Assert.assertArrayEquals(small, this.region.read(0, 0));
+        Assert.assertArrayEquals(large, this.region.read(31, 31));
+        Assert.assertArrayEquals(small, this.region.read(31, 5));
+        Assert.assertNull(this.region.read(1, 0));
+        Assert.assertTrue(this.region.exists(31, 31));
+        Assert.assertFalse(this.region.exists(1, 0));
+        Assert.assertTrue(this.region.getTimestamp(0, 0) > 0);
+        Assert.assertEquals(0, this.region.getTimestamp(1, 0));
+    }
+
+    @Test
+    public void readsWhatWasWrittenAfterReopening() throws IOException {
+        byte[] data = RegionFileTest.data(10000, 3L);
+        this.region.write(4, 7, data);
+        this.region.close();
+
+        this.region = new RegionFile(this.file);
+        Assert.assertArrayEquals(data, this.region.read(4, 7));
+        Assert.assertEquals(0L, this.file.length() % RegionFile.SECTOR_SIZE);
+    }
+
+    @Test
+    public void reusesSectorsOfARewrittenChunk() throws IOException {
+        this.region.write(0, 0, RegionFileTest.data(40000, 4L));
+        // The smaller data goes to fresh sectors at the end, freeing the ones before them
+        this.region.write(0, 0, RegionFileTest.data(100, 5L));
+        long length = this.file.length();
+
+        byte[] data = RegionFileTest.data(30000, 6L);
+        this.region.write(1, 0, data);
+        Assert.assertEquals(length, this.file.length());
+        Assert.assertArrayEquals(data, this.region.read(1, 0));
+    }
+
+    @Test
+    public void reusesSectorsOfADeletedChunk() throws IOException {
+        this.region.write(0, 0, RegionFileTest.data(20000, 7L));
+        this.region.write(1, 0, RegionFileTest.data(100, 8L));
+        long length = this.file.length();
+
+        this.region.delete(0, 0);
+        Assert.assertFalse(this.region.exists(0, 0));
+        Assert.assertNull(this.region.read(0, 0));
+
+        this.region.write(2, 0, RegionFileTest.data(20000, 9L));
+        Assert.assertEquals(length, this.file.length());
+    }
+
+    @Test
+    public void growsWhenNoFreeRunFits() throws IOException {
+        this.region.write(0, 0, RegionFileTest.data(100, 10L));
+        int before = RegionFileTest.sectors(this.file.length());
+
+        this.region.write(1, 0, RegionFileTest.data(20000, 11L));
+        Assert.assertTrue(RegionFileTest.sectors(this.file.length()) > before);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsChunksOverOneMegabyte() throws IOException {
+        this.region.write(0, 0, RegionFileTest.data(1100000, 12L));
+    }
+
+    @Test
+    public void dropsDamagedHeaderEntries() throws IOException {
+        byte[] data = RegionFileTest.data(100, 13L);
+        this.region.write(0, 0, data);
+        this.region.close();
+
+        try (RandomAccessFile raw = new RandomAccessFile(this.file, "rw")) {
+            int location = raw.readInt();
+            // No sectors at all
+            raw.seek(4L);
+            raw.writeInt(location & ~0xFF);
+            // The sectors of the first chunk
+            raw.seek(8L);
+            raw.writeInt(location);
+            // Past the end of the file
+            raw.seek(12L);
+            raw.writeInt(1000 << 8 | 1);
+        }
+
+        this.region = new RegionFile(this.file);
+        Assert.assertArrayEquals(data, this.region.read(0, 0));
+        Assert.assertFalse(this.region.exists(1, 0));
+        Assert.assertFalse(this.region.exists(2, 0));
+        Assert.assertFalse(this.region.exists(3, 0));
+        Assert.assertNull(this.region.read(1, 0));
+
+        // The sectors of the overlapping entry still belong to the first chunk only
+        this.region.write(2, 0, RegionFileTest.data(100, 14L));
+        Assert.assertArrayEquals(data, this.region.read(0, 0));
+    }
+}